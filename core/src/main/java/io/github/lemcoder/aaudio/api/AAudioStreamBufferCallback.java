@@ -0,0 +1,19 @@
+package io.github.lemcoder.aaudio.api;
+
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+@FunctionalInterface
+public interface AAudioStreamBufferCallback {
+    /**
+     * Called on the real-time callback thread for every buffer.
+     * <p>
+     * For output streams the callback writes numFrames frames into the buffer,
+     * for input streams it reads them. The buffer and its scratch memory are reused
+     * between calls and must not be retained.
+     *
+     * @param buffer the native audio data of this callback
+     * @return {@link AAudioCallbackResult#CONTINUE} or {@link AAudioCallbackResult#STOP}
+     */
+    AAudioCallbackResult onAudioReady(AudioBuffer buffer);
+}
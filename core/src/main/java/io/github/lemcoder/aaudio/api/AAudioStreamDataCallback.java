@@ -1,6 +1,20 @@
 package io.github.lemcoder.aaudio.api;
 
 public interface AAudioStreamDataCallback {
+    /**
+     * Called for output streams when the device needs more data.
+     *
+     * @param numFrames number of frames requested
+     * @return audio data in the stream format. Missing frames are filled with silence.
+     */
     byte[] onOutputReady(int numFrames);
+
+    /**
+     * Called for input streams when captured data is available.
+     *
+     * @param input     audio data in the stream format. The array is reused between callbacks
+     *                  and may be longer than the data, only the first numFrames frames are valid.
+     * @param numFrames number of frames captured
+     */
     void onInputReady(byte[] input, int numFrames);
 }
@@ -8,8 +8,21 @@ import java.lang.invoke.MethodHandle;
 import static io.github.lemcoder.aaudio.audioSystem.NativeHelper.*;
 
 public class AAudioStream implements AutoCloseable {
+    /**
+     * Clock used by System.nanoTime(), for {@link #getTimestamp(int, MemorySegment, MemorySegment)}.
+     */
+    public static final int CLOCK_MONOTONIC = 1;
+
+    /**
+     * Like CLOCK_MONOTONIC, but also counts time the device was suspended.
+     */
+    public static final int CLOCK_BOOTTIME = 7;
+
     protected final Arena lifetimeArena = Arena.ofShared();
     private MemorySegment nativeInstance;
+    private AAudioAudioDirection direction;
+    private int bytesPerFrame;
+    private AAudioStreamBuilder builder;
 
     protected AAudioStream() {
 
@@ -20,6 +33,9 @@ public class AAudioStream implements AutoCloseable {
             MemorySegment ptr = lifetimeArena.allocate(C_POINTER);
             builder.openStream(ptr);
             this.nativeInstance = ptr.get(ValueLayout.ADDRESS, 0);
+            this.builder = builder;
+            this.direction = getDirection();
+            this.bytesPerFrame = getChannelCount() * getFormat().getBytesPerSample();
         } catch (Throwable t) {
             close();
             throw t;
@@ -230,10 +246,9 @@ public class AAudioStream implements AutoCloseable {
      * @param timeoutNanoseconds Maximum number of nanoseconds to wait for completion.
      * @return The number of frames actually read or a negative error.
      */
-//    public int read(MemorySegment buffer, int numFrames, long timeoutNanoseconds) throws Throwable {
-//        // TODO
-//        return 0;
-//    }
+    public int read(MemorySegment buffer, int numFrames, long timeoutNanoseconds) throws Throwable {
+        return (int) AAudioStream_read.invokeExact(nativeInstance, buffer, numFrames, timeoutNanoseconds);
+    }
 
     private final static MethodHandle AAudioStream_read = LINKER.downcallHandle(
             SymbolLookup.loaderLookup().findOrThrow("AAudioStream_read"),
@@ -261,9 +276,9 @@ public class AAudioStream implements AutoCloseable {
      * @param timeoutNanoseconds Maximum number of nanoseconds to wait for completion.
      * @return The number of frames actually written or a negative error.
      */
-//    TODO
-//    public int write(MemorySegment buffer, int numFrames, long timeoutNanoseconds) throws Throwable {
-//    }
+    public int write(MemorySegment buffer, int numFrames, long timeoutNanoseconds) throws Throwable {
+        return (int) AAudioStream_write.invokeExact(nativeInstance, buffer, numFrames, timeoutNanoseconds);
+    }
 
     private final static MethodHandle AAudioStream_write = LINKER.downcallHandle(
             SymbolLookup.loaderLookup().findOrThrow("AAudioStream_write"),
@@ -603,6 +618,28 @@ public class AAudioStream implements AutoCloseable {
             FunctionDescriptor.of(C_INT, C_POINTER)
     );
 
+    /**
+     * Size of one frame in bytes, ie. channel count times the size of a sample in the stream format.
+     * <p>
+     * The value is queried once when the stream is opened, so it is cheap to call from the data callback.
+     *
+     * @return bytes per frame
+     */
+    public int getBytesPerFrame() {
+        return bytesPerFrame;
+    }
+
+    boolean isInput() {
+        return direction == AAudioAudioDirection.INPUT;
+    }
+
+    /**
+     * @return address of the native stream, as passed to the data callback
+     */
+    long address() {
+        return nativeInstance.address();
+    }
+
     /**
      * Passes back the number of frames that have been written since the stream was created.
      * For an output stream, this will be advanced by the application calling write()
@@ -700,10 +737,8 @@ public class AAudioStream implements AutoCloseable {
      * @param timeNanoseconds pointer to a variable to receive the time
      * @return {AAudioResult#AAUDIO_OK} or a negative error
      */
-    // TODO
     public AAudioResult getTimestamp(int clockid, MemorySegment framePosition, MemorySegment timeNanoseconds) throws Throwable {
-//        return AAudioResult.fromValue((int) AAudioStream_getTimestamp.invokeExact(nativeInstance, clockid, framePosition, timeNanoseconds));
-        return AAudioResult.fromValue(0);
+        return AAudioResult.fromValue((int) AAudioStream_getTimestamp.invokeExact(nativeInstance, clockid, framePosition, timeNanoseconds));
     }
 
     private final static MethodHandle AAudioStream_getTimestamp = LINKER.downcallHandle(
@@ -852,6 +887,10 @@ public class AAudioStream implements AutoCloseable {
     public void close() throws Exception {
         try {
             closeStream();
+            if (builder != null) {
+                // No callbacks run after the native close, so the builder can drop the stream.
+                builder.unregisterOpenedStream(this);
+            }
             lifetimeArena.close();
         } catch (Throwable ignored) {
 
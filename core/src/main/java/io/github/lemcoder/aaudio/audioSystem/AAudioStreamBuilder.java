@@ -2,18 +2,26 @@ package io.github.lemcoder.aaudio.audioSystem;
 
 import com.v7878.foreign.*;
 import io.github.lemcoder.aaudio.api.AAudioErrorCallback;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
 import io.github.lemcoder.aaudio.api.AAudioStreamDataCallback;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
 import io.github.lemcoder.aaudio.model.*;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.github.lemcoder.aaudio.audioSystem.NativeHelper.*;
 
 public class AAudioStreamBuilder implements AutoCloseable {
     private final Arena lifetimeArena;
     private final MemorySegment nativeInstance;
+    private boolean usesAudioBuffer;
+    // Streams opened from this builder, the data callback finds its stream here by native address.
+    private volatile OpenedStream[] openedStreams = new OpenedStream[0];
+    private final AtomicLong invalidCallbacks = new AtomicLong();
 
     private static final MethodHandle _createStreamBuilder;
     private static final MethodHandle _setDeviceId;
@@ -448,30 +456,90 @@ public class AAudioStreamBuilder implements AutoCloseable {
      * <p>
      * Note that the AAudio callbacks will never be called simultaneously from multiple threads.
      * <p>
+     * Output streams call {@link AAudioStreamDataCallback#onOutputReady(int)}, input streams call
+     * {@link AAudioStreamDataCallback#onInputReady(byte[], int)}.
+     * <p>
      * Available since API level 26.
      *
      * @param callback a function that will process audio data.
      */
     public void setDataCallback(AAudioStreamDataCallback callback) throws Throwable {
+        usesAudioBuffer = false;
         // Create a stub as a native symbol to be passed into native function.
         AAudioStreamDataCallbackInternal callbackInternal = (stream, userData, audioData, numFrames) -> {
-            // TODO: All memory segments will be zero size because there is nowhere to get this information from. It is the same as a pointer in C
-            //  The size will need to be specified here via MemorySegment.reinterpret (It should be known as in C)
+            OpenedStream opened = findOpenedStream(stream);
+            if (audioData == null || audioData.equals(MemorySegment.NULL) || opened == null) {
+                invalidCallbacks.incrementAndGet(); // no logging on the audio thread
+                return AAudioCallbackResult.CONTINUE.getValue();
+            }
 
-            if (audioData == null || audioData.equals(MemorySegment.NULL) || audioData.byteSize() == 0) {
-                System.err.println("Error: Invalid or empty audioData buffer!");
-                return AAudioCallbackResult.CONTINUE.getValue(); // Stop if buffer is unusable
+            // The native pointer carries no size, it is known from the stream configuration.
+            int size = numFrames * opened.stream.getBytesPerFrame();
+            MemorySegment buffer = audioData.reinterpret(size);
+
+            if (opened.stream.isInput()) {
+                if (opened.inputBuffer.length < size) {
+                    opened.inputBuffer = new byte[size]; // only when the callback size grows
+                }
+                MemorySegment.copy(buffer, ValueLayout.JAVA_BYTE, 0, opened.inputBuffer, 0, size);
+                callback.onInputReady(opened.inputBuffer, numFrames);
+            } else {
+                byte[] data = callback.onOutputReady(numFrames);
+                int length = data == null ? 0 : Math.min(data.length, size);
+                if (length > 0) {
+                    MemorySegment.copy(data, 0, buffer, ValueLayout.JAVA_BYTE, 0, length);
+                }
+                if (length < size) {
+                    buffer.asSlice(length).fill((byte) 0);
+                }
             }
 
-            byte[] data = callback.onOutputReady(numFrames);
-            callback.onInputReady(audioData.asByteBuffer().array(), numFrames); // FIXME
+            return AAudioCallbackResult.CONTINUE.getValue();
+        };
 
-            MemorySegment.copy(data, 0, audioData, ValueLayout.JAVA_BYTE, 0, data.length);
+        MemorySegment pCallback = createDataCallbackPtr(callbackInternal);
 
-            return AAudioCallbackResult.CONTINUE.getValue();
+        _setDataCallback.invokeExact(nativeInstance, pCallback, MemorySegment.NULL);
+    }
+
+    /**
+     * Request that AAudio call this function when the stream is running, passing the native
+     * buffer without copying it.
+     * <p>
+     * Unlike {@link #setDataCallback(AAudioStreamDataCallback)} no Java arrays are created or copied:
+     * the callback receives an {@link AudioBuffer} wrapping the native data, with planar and interleaved
+     * float scratch memory sized to the buffer capacity of the stream. The same instance is reused for
+     * every callback.
+     * <p>
+     * The stream format must be {@link AAudioFormat#PCM_FLOAT} or {@link AAudioFormat#PCM_I16}.
+     * <p>
+     * The same threading rules as for {@link #setDataCallback(AAudioStreamDataCallback)} apply.
+     *
+     * @param callback a function that will process audio data.
+     */
+    public void setDataCallback(AAudioStreamBufferCallback callback) throws Throwable {
+        AAudioStreamDataCallbackInternal callbackInternal = (stream, userData, audioData, numFrames) -> {
+            OpenedStream opened = findOpenedStream(stream);
+            AudioBuffer buffer = opened != null ? opened.audioBuffer : null;
+            if (audioData == null || audioData.equals(MemorySegment.NULL) || buffer == null) {
+                invalidCallbacks.incrementAndGet();
+                return AAudioCallbackResult.CONTINUE.getValue();
+            }
+
+            AAudioStream s = opened.stream;
+            long framePosition;
+            try {
+                framePosition = s.isInput() ? s.getFramesRead() : s.getFramesWritten();
+            } catch (Throwable t) {
+                framePosition = buffer.getFramePosition() + buffer.getNumFrames();
+            }
+            buffer.wrap(audioData.reinterpret((long) numFrames * s.getBytesPerFrame()), numFrames, framePosition);
+
+            return callback.onAudioReady(buffer).getValue();
         };
 
         MemorySegment pCallback = createDataCallbackPtr(callbackInternal);
+        usesAudioBuffer = true;
 
         _setDataCallback.invokeExact(nativeInstance, pCallback, MemorySegment.NULL);
     }
@@ -595,9 +663,86 @@ public class AAudioStreamBuilder implements AutoCloseable {
     public AAudioStream openStream() throws Throwable {
         AAudioStream s = new AAudioStream();
         s.open(this);
+        // Callbacks only start after requestStart, so registering after the open is in time.
+        OpenedStream opened;
+        try {
+            opened = usesAudioBuffer
+                    ? new OpenedStream(s, new AudioBuffer(s.getChannelCount(), s.getFormat(), s.getBufferCapacityInFrames(), s.getDirection()), new byte[0])
+                    : new OpenedStream(s, null, new byte[s.getBufferCapacityInFrames() * s.getBytesPerFrame()]);
+        } catch (Throwable t) {
+            // Eg. a format AudioBuffer does not support, the stream must not leak.
+            s.close();
+            throw t;
+        }
+        registerOpenedStream(opened);
         return s;
     }
 
+    /**
+     * @return data callbacks skipped for a missing audio buffer or an unknown stream
+     */
+    public long getInvalidCallbackCount() {
+        return invalidCallbacks.get();
+    }
+
+    private synchronized void registerOpenedStream(OpenedStream opened) {
+        // A stream at the same address was closed, the native side reused its memory.
+        OpenedStream[] current = openedStreams;
+        OpenedStream[] next = new OpenedStream[current.length + 1];
+        int n = 0;
+        for (OpenedStream o : current) {
+            if (o.address != opened.address) {
+                next[n++] = o;
+            }
+        }
+        next[n++] = opened;
+        openedStreams = n == next.length ? next : Arrays.copyOf(next, n);
+    }
+
+    synchronized void unregisterOpenedStream(AAudioStream stream) {
+        OpenedStream[] current = openedStreams;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].stream == stream) {
+                OpenedStream[] next = new OpenedStream[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                openedStreams = next;
+                return;
+            }
+        }
+    }
+
+    private OpenedStream findOpenedStream(MemorySegment stream) {
+        if (stream == null) {
+            return null;
+        }
+        long address = stream.address();
+        for (OpenedStream opened : openedStreams) {
+            if (opened.address == address) {
+                return opened;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A stream opened from this builder and the callback buffers that belong to it.
+     */
+    private static final class OpenedStream {
+        final long address;
+        final AAudioStream stream;
+        final AudioBuffer audioBuffer;
+        // Callback thread only.
+        byte[] inputBuffer;
+
+        OpenedStream(AAudioStream stream, AudioBuffer audioBuffer, byte[] inputBuffer) {
+            this.address = stream.address();
+            this.stream = stream;
+            this.audioBuffer = audioBuffer;
+            this.inputBuffer = inputBuffer;
+        }
+    }
+
     protected void openStream(MemorySegment streamPtr) throws Throwable {
         try {
             int result = (int) _openStream.invokeExact(nativeInstance, streamPtr);
@@ -0,0 +1,209 @@
+package io.github.lemcoder.aaudio.automation;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A smoothed parameter, eg. gain, filter cutoff or pan, owned by a {@link ParameterBank}.
+ * <p>
+ * Control threads publish values through {@link #setTarget(float)}, which writes an atomic slot,
+ * or through {@link #scheduleRamp(float, long, int)}, which enqueues a timestamped ramp.
+ * Neither call blocks or allocates.
+ * <p>
+ * The data callback reads the smoothed values after {@link ParameterBank#process(long, int)}:
+ * {@link #getValues()} for {@link ParameterSmoothing#PER_SAMPLE} parameters and
+ * {@link #getValue()} for {@link ParameterSmoothing#PER_BLOCK} parameters.
+ */
+public class AutomatedParameter {
+    private final int id;
+    private final String name;
+    private final float minValue;
+    private final float maxValue;
+    private final int smoothingFrames;
+    private final ParameterSmoothing smoothing;
+    private final AutomationEventQueue queue;
+
+    // Written by control threads, read by the data callback.
+    private final AtomicInteger targetBits;
+
+    // Owned by the data callback.
+    private final float[] values;
+    private int lastTargetBits;
+    private float current;
+    private float step;
+    private float rampTarget;
+    private int rampRemaining;
+    private int renderedFrames;
+
+    AutomatedParameter(int id, String name, float initialValue, float minValue, float maxValue,
+                       int smoothingFrames, ParameterSmoothing smoothing,
+                       AutomationEventQueue queue, int maxFramesPerBlock) {
+        if (minValue > maxValue) {
+            throw new IllegalArgumentException("minValue must not be greater than maxValue");
+        }
+        this.id = id;
+        this.name = name;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.smoothingFrames = Math.max(0, smoothingFrames);
+        this.smoothing = smoothing;
+        this.queue = queue;
+        this.values = new float[maxFramesPerBlock];
+
+        float initial = clamp(initialValue);
+        this.current = initial;
+        this.rampTarget = initial;
+        this.lastTargetBits = Float.floatToRawIntBits(initial);
+        this.targetBits = new AtomicInteger(lastTargetBits);
+        Arrays.fill(values, initial);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ParameterSmoothing getSmoothing() {
+        return smoothing;
+    }
+
+    // ============================================================
+    // Control thread
+    // ============================================================
+
+    /**
+     * Set a new target value. The data callback glides to it over the smoothing time
+     * starting at the next block.
+     * <p>
+     * Safe to call from any thread.
+     *
+     * @param value the new target, clamped to the parameter range
+     */
+    public void setTarget(float value) {
+        targetBits.set(Float.floatToRawIntBits(clamp(value)));
+    }
+
+    /**
+     * Schedule a linear ramp that starts at the given stream frame.
+     * <p>
+     * Frame positions are in the same time base as {@link ParameterBank#process(long, int)},
+     * usually {@code AAudioStream.getFramesWritten()} for output streams and
+     * {@code AAudioStream.getFramesRead()} for input streams.
+     * Ramps in the past start at the beginning of the next block.
+     * <p>
+     * The event queue is single-producer: all calls to this method for parameters of the same
+     * bank must come from one thread at a time.
+     *
+     * @param value          the value reached at the end of the ramp, clamped to the parameter range
+     * @param startFrame     stream frame at which the ramp starts
+     * @param durationFrames ramp length in frames, 0 for an immediate jump
+     * @return false if the event queue is full and the ramp was dropped
+     */
+    public boolean scheduleRamp(float value, long startFrame, int durationFrames) {
+        return queue.offer(id, clamp(value), startFrame, Math.max(0, durationFrames));
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Per-frame values for the last processed block.
+     * Only valid for {@link ParameterSmoothing#PER_SAMPLE} parameters and only for
+     * the first numFrames entries passed to {@link ParameterBank#process(long, int)}.
+     * <p>
+     * The array is reused, it must not be retained or modified.
+     *
+     * @return per-frame values
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    /**
+     * For {@link ParameterSmoothing#PER_BLOCK} parameters this is the value to use for
+     * the whole block. For {@link ParameterSmoothing#PER_SAMPLE} parameters this is the value
+     * of the last frame of the block.
+     *
+     * @return current value
+     */
+    public float getValue() {
+        return current;
+    }
+
+    /**
+     * @return true if the value is still moving towards its target
+     */
+    public boolean isSmoothing() {
+        return rampRemaining > 0;
+    }
+
+    void beginBlock() {
+        renderedFrames = 0;
+        int bits = targetBits.get();
+        if (bits != lastTargetBits) {
+            lastTargetBits = bits;
+            startRamp(Float.intBitsToFloat(bits), smoothingFrames);
+        }
+    }
+
+    void startRamp(float target, int durationFrames) {
+        if (durationFrames <= 0) {
+            current = target;
+            rampTarget = target;
+            rampRemaining = 0;
+        } else {
+            rampTarget = target;
+            step = (target - current) / durationFrames;
+            rampRemaining = durationFrames;
+        }
+    }
+
+    /**
+     * Render per-frame values up to, but excluding, the given block offset.
+     */
+    void renderUntil(int offset) {
+        int i = renderedFrames;
+        if (i >= offset) {
+            return;
+        }
+        if (rampRemaining > 0) {
+            int n = Math.min(offset - i, rampRemaining);
+            float v = current;
+            float s = step;
+            for (int end = i + n; i < end; i++) {
+                v += s;
+                values[i] = v;
+            }
+            rampRemaining -= n;
+            current = rampRemaining == 0 ? rampTarget : v;
+        }
+        if (i < offset) {
+            Arrays.fill(values, i, offset, current);
+        }
+        renderedFrames = offset;
+    }
+
+    /**
+     * Advance a per-block value by a whole block.
+     */
+    void advance(int numFrames) {
+        if (rampRemaining == 0) {
+            return;
+        }
+        if (numFrames >= rampRemaining) {
+            current = rampTarget;
+            rampRemaining = 0;
+        } else {
+            current += step * numFrames;
+            rampRemaining -= numFrames;
+        }
+    }
+
+    private float clamp(float value) {
+        return Math.max(minValue, Math.min(maxValue, value));
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.lemcoder.aaudio.automation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer single-consumer queue of timestamped ramp events.
+ * <p>
+ * Events are stored in preallocated primitive arrays, so neither side allocates.
+ * The producer is the control (UI) thread, the consumer is the data callback.
+ */
+class AutomationEventQueue {
+    private final int mask;
+    private final int[] parameterIds;
+    private final float[] targets;
+    private final long[] startFrames;
+    private final int[] durations;
+
+    private final AtomicLong head = new AtomicLong(); // next slot to read, owned by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, owned by the producer
+
+    AutomationEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.parameterIds = new int[size];
+        this.targets = new float[size];
+        this.startFrames = new long[size];
+        this.durations = new int[size];
+    }
+
+    /**
+     * Called from the producer thread only.
+     *
+     * @return false if the queue is full and the event was dropped
+     */
+    boolean offer(int parameterId, float target, long startFrame, int durationFrames) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        int i = (int) t & mask;
+        parameterIds[i] = parameterId;
+        targets[i] = target;
+        startFrames[i] = startFrame;
+        durations[i] = durationFrames;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Called from the consumer thread only.
+     *
+     * @return the number of events that can be read with the peek methods
+     */
+    int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    int peekParameterId(int index) {
+        return parameterIds[(int) (head.get() + index) & mask];
+    }
+
+    float peekTarget(int index) {
+        return targets[(int) (head.get() + index) & mask];
+    }
+
+    long peekStartFrame(int index) {
+        return startFrames[(int) (head.get() + index) & mask];
+    }
+
+    int peekDuration(int index) {
+        return durations[(int) (head.get() + index) & mask];
+    }
+
+    void skip(int count) {
+        head.lazySet(head.get() + count);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
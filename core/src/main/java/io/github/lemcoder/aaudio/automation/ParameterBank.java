@@ -0,0 +1,207 @@
+package io.github.lemcoder.aaudio.automation;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+
+/**
+ * A set of {@link AutomatedParameter}s that is advanced once per data callback.
+ * <p>
+ * Parameters are registered up front with {@link #addParameter}. Afterwards the bank is
+ * lock-free and allocation-free: control threads publish values through the parameters and
+ * the data callback calls {@link #process(long, int)} at the start of every buffer.
+ * Scheduled ramps are applied at their exact frame offset within the buffer.
+ * <p>
+ * Example data callback:
+ * <pre>{@code
+ * bank.process(ParameterBank.getStreamFrame(stream), numFrames);
+ * float[] gain = gainParam.getValues();
+ * for (int i = 0; i < numFrames; i++) {
+ *     out[i] *= gain[i];
+ * }
+ * }</pre>
+ */
+public class ParameterBank {
+    private final AutomatedParameter[] parameters;
+    private final int maxFramesPerBlock;
+    private final AutomationEventQueue queue;
+    private int parameterCount;
+
+    // Events taken from the queue but not yet due, sorted by start frame.
+    private final int[] pendingIds;
+    private final float[] pendingTargets;
+    private final long[] pendingFrames;
+    private final int[] pendingDurations;
+    private int pendingCount;
+
+    /**
+     * @param maxParameters     maximum number of parameters that can be registered
+     * @param eventCapacity     maximum number of ramps queued ahead of the stream position
+     * @param maxFramesPerBlock largest numFrames that will be passed to {@link #process(long, int)},
+     *                          eg. AAudioStream_getBufferCapacityInFrames()
+     */
+    public ParameterBank(int maxParameters, int eventCapacity, int maxFramesPerBlock) {
+        if (maxParameters <= 0 || eventCapacity <= 0 || maxFramesPerBlock <= 0) {
+            throw new IllegalArgumentException("Sizes must be positive");
+        }
+        this.parameters = new AutomatedParameter[maxParameters];
+        this.maxFramesPerBlock = maxFramesPerBlock;
+        this.queue = new AutomationEventQueue(eventCapacity);
+
+        int capacity = queue.capacity();
+        this.pendingIds = new int[capacity];
+        this.pendingTargets = new float[capacity];
+        this.pendingFrames = new long[capacity];
+        this.pendingDurations = new int[capacity];
+    }
+
+    /**
+     * Register a parameter. Must be called before the stream is started.
+     *
+     * @param name            name used for debugging
+     * @param initialValue    value before any automation
+     * @param minValue        lower bound for all targets
+     * @param maxValue        upper bound for all targets
+     * @param smoothingFrames glide time used by {@link AutomatedParameter#setTarget(float)}
+     * @param smoothing       whether the value moves per sample or per block
+     * @return the new parameter
+     * @throws IllegalStateException if the bank is full
+     */
+    public AutomatedParameter addParameter(String name, float initialValue, float minValue, float maxValue,
+                                           int smoothingFrames, ParameterSmoothing smoothing) {
+        if (parameterCount == parameters.length) {
+            throw new IllegalStateException("Parameter bank is full: " + parameters.length);
+        }
+        AutomatedParameter parameter = new AutomatedParameter(parameterCount, name, initialValue, minValue, maxValue,
+                smoothingFrames, smoothing, queue, maxFramesPerBlock);
+        parameters[parameterCount++] = parameter;
+        return parameter;
+    }
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    public AutomatedParameter getParameter(int id) {
+        return parameters[id];
+    }
+
+    /**
+     * Frame position of the first frame of the current data callback buffer:
+     * frames written for an output stream, frames read for an input stream.
+     * <p>
+     * Safe to call from the data callback.
+     *
+     * @param stream the stream making the callback
+     * @return stream frame position
+     */
+    public static long getStreamFrame(AAudioStream stream) throws Throwable {
+        return stream.getDirection() == AAudioAudioDirection.INPUT
+                ? stream.getFramesRead()
+                : stream.getFramesWritten();
+    }
+
+    /**
+     * Advance all parameters by one block. Call once at the start of every data callback.
+     *
+     * @param blockStartFrame stream frame of the first frame in the block
+     * @param numFrames       number of frames in the block
+     */
+    public void process(long blockStartFrame, int numFrames) {
+        if (numFrames > maxFramesPerBlock) {
+            throw new IllegalArgumentException("numFrames " + numFrames + " exceeds " + maxFramesPerBlock);
+        }
+        drainQueue();
+
+        int count = parameterCount;
+        for (int p = 0; p < count; p++) {
+            parameters[p].beginBlock();
+        }
+
+        long blockEnd = blockStartFrame + numFrames;
+        int due = 0;
+        while (due < pendingCount && pendingFrames[due] < blockEnd) {
+            AutomatedParameter parameter = parameters[pendingIds[due]];
+            if (parameter.getSmoothing() == ParameterSmoothing.PER_SAMPLE) {
+                int offset = (int) Math.max(0, pendingFrames[due] - blockStartFrame);
+                parameter.renderUntil(offset);
+            }
+            parameter.startRamp(pendingTargets[due], pendingDurations[due]);
+            due++;
+        }
+        removePending(due);
+
+        for (int p = 0; p < count; p++) {
+            AutomatedParameter parameter = parameters[p];
+            if (parameter.getSmoothing() == ParameterSmoothing.PER_SAMPLE) {
+                parameter.renderUntil(numFrames);
+            }
+        }
+    }
+
+    /**
+     * Convenience for {@link #process(long, int)} that reads the block position from the stream.
+     * Call once at the start of every data callback.
+     *
+     * @param stream    the stream making the callback
+     * @param numFrames number of frames in the block
+     */
+    public void process(AAudioStream stream, int numFrames) throws Throwable {
+        process(getStreamFrame(stream), numFrames);
+    }
+
+    /**
+     * Per-block parameters keep their value for the whole block, so they are advanced
+     * after the block has been rendered. Call at the end of every data callback
+     * if any {@link ParameterSmoothing#PER_BLOCK} parameters are registered.
+     *
+     * @param numFrames number of frames in the block
+     */
+    public void endBlock(int numFrames) {
+        for (int p = 0; p < parameterCount; p++) {
+            AutomatedParameter parameter = parameters[p];
+            if (parameter.getSmoothing() == ParameterSmoothing.PER_BLOCK) {
+                parameter.advance(numFrames);
+            }
+        }
+    }
+
+    private void drainQueue() {
+        int available = queue.available();
+        int taken = 0;
+        while (taken < available && pendingCount < pendingFrames.length) {
+            insertPending(queue.peekParameterId(taken), queue.peekTarget(taken),
+                    queue.peekStartFrame(taken), queue.peekDuration(taken));
+            taken++;
+        }
+        queue.skip(taken);
+    }
+
+    private void insertPending(int id, float target, long frame, int duration) {
+        // Events usually arrive in order, so this rarely moves anything.
+        int i = pendingCount;
+        while (i > 0 && pendingFrames[i - 1] > frame) {
+            pendingIds[i] = pendingIds[i - 1];
+            pendingTargets[i] = pendingTargets[i - 1];
+            pendingFrames[i] = pendingFrames[i - 1];
+            pendingDurations[i] = pendingDurations[i - 1];
+            i--;
+        }
+        pendingIds[i] = id;
+        pendingTargets[i] = target;
+        pendingFrames[i] = frame;
+        pendingDurations[i] = duration;
+        pendingCount++;
+    }
+
+    private void removePending(int count) {
+        if (count == 0) {
+            return;
+        }
+        int remaining = pendingCount - count;
+        System.arraycopy(pendingIds, count, pendingIds, 0, remaining);
+        System.arraycopy(pendingTargets, count, pendingTargets, 0, remaining);
+        System.arraycopy(pendingFrames, count, pendingFrames, 0, remaining);
+        System.arraycopy(pendingDurations, count, pendingDurations, 0, remaining);
+        pendingCount = remaining;
+    }
+}
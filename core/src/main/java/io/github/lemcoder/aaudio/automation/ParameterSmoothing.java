@@ -0,0 +1,16 @@
+package io.github.lemcoder.aaudio.automation;
+
+public enum ParameterSmoothing {
+    /**
+     * The value is advanced for every frame of the block.
+     * Use this for parameters that are applied per sample, eg. gain or pan.
+     */
+    PER_SAMPLE,
+
+    /**
+     * The value is held constant for the whole block and advanced at block boundaries.
+     * Use this for parameters that are expensive to apply, eg. filter coefficients.
+     * Scheduled ramps start at the beginning of the block in which they fall.
+     */
+    PER_BLOCK
+}
@@ -0,0 +1,198 @@
+package io.github.lemcoder.aaudio.buffer;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+/**
+ * The audio data of one data callback, with reusable scratch memory.
+ * <p>
+ * The native buffer is always interleaved. It can be accessed directly through {@link #getSegment()},
+ * per channel without copying through {@link #channel(int)}, or converted to planar float channels
+ * with {@link #deinterleave()} and back with {@link #interleave()}.
+ * <p>
+ * One instance is created per stream and rewrapped for every callback, so nothing here allocates.
+ * Supported formats are {@link AAudioFormat#PCM_FLOAT} and {@link AAudioFormat#PCM_I16}.
+ */
+public class AudioBuffer {
+    private final int channelCount;
+    private final AAudioFormat format;
+    private final AAudioAudioDirection direction;
+    private final ChannelView[] channels;
+
+    private float[][] planar;
+    private float[] interleavedFloats;
+    private short[] interleavedShorts;
+    private int maxFrames;
+
+    private MemorySegment segment = MemorySegment.NULL;
+    private int numFrames;
+    private long framePosition;
+
+    /**
+     * @param channelCount number of interleaved channels
+     * @param format       sample format of the native data
+     * @param maxFrames    largest expected numFrames, eg. AAudioStream_getBufferCapacityInFrames()
+     * @param direction    direction of the stream the data belongs to
+     */
+    public AudioBuffer(int channelCount, AAudioFormat format, int maxFrames, AAudioAudioDirection direction) {
+        if (format != AAudioFormat.PCM_FLOAT && format != AAudioFormat.PCM_I16) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        if (channelCount <= 0) {
+            throw new IllegalArgumentException("Invalid channel count: " + channelCount);
+        }
+        this.channelCount = channelCount;
+        this.format = format;
+        this.direction = direction;
+        this.channels = new ChannelView[channelCount];
+        for (int c = 0; c < channelCount; c++) {
+            channels[c] = new ChannelView(this, c);
+        }
+        allocate(Math.max(1, maxFrames));
+    }
+
+    /**
+     * Point the buffer at new native data. Called once per data callback.
+     *
+     * @param data          interleaved native data of at least numFrames frames
+     * @param numFrames     number of frames
+     * @param framePosition stream frame of the first frame in data
+     */
+    public void wrap(MemorySegment data, int numFrames, long framePosition) {
+        if (numFrames > maxFrames) {
+            // Only if the device exceeds the capacity reported when the stream was opened.
+            allocate(numFrames);
+        }
+        this.segment = data;
+        this.numFrames = numFrames;
+        this.framePosition = framePosition;
+    }
+
+    private void allocate(int frames) {
+        this.maxFrames = frames;
+        this.planar = new float[channelCount][frames];
+        this.interleavedFloats = new float[frames * channelCount];
+        this.interleavedShorts = format == AAudioFormat.PCM_I16 ? new short[frames * channelCount] : null;
+    }
+
+    public MemorySegment getSegment() {
+        return segment;
+    }
+
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public AAudioFormat getFormat() {
+        return format;
+    }
+
+    public AAudioAudioDirection getDirection() {
+        return direction;
+    }
+
+    /**
+     * Stream frame of the first frame in this buffer: frames written for output streams,
+     * frames read for input streams.
+     *
+     * @return frame position
+     */
+    public long getFramePosition() {
+        return framePosition;
+    }
+
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * @param channel channel index
+     * @return zero-copy strided view of the channel
+     */
+    public ChannelView channel(int channel) {
+        return channels[channel];
+    }
+
+    /**
+     * Planar float scratch, one array per channel of at least {@link #getMaxFrames()} frames.
+     * Valid after {@link #deinterleave()}; written back by {@link #interleave()}.
+     *
+     * @return planar channels
+     */
+    public float[][] getPlanar() {
+        return planar;
+    }
+
+    /**
+     * Interleaved float scratch of at least {@link #getMaxFrames()} frames.
+     * Filled by {@link #readInterleaved()}, written back by {@link #writeInterleaved()}.
+     *
+     * @return interleaved samples
+     */
+    public float[] getInterleaved() {
+        return interleavedFloats;
+    }
+
+    /**
+     * Copy the native data into the planar scratch, reading the native data directly.
+     *
+     * @return the planar channels, see {@link #getPlanar()}
+     */
+    public float[][] deinterleave() {
+        Interleaver.deinterleave(segment, format, planar, channelCount, numFrames);
+        return planar;
+    }
+
+    /**
+     * Write the planar scratch back to the native data directly.
+     */
+    public void interleave() {
+        Interleaver.interleave(planar, segment, format, channelCount, numFrames);
+    }
+
+    /**
+     * Copy the native data into the interleaved float scratch.
+     *
+     * @return the interleaved samples, see {@link #getInterleaved()}
+     */
+    public float[] readInterleaved() {
+        int samples = numFrames * channelCount;
+        if (format == AAudioFormat.PCM_FLOAT) {
+            MemorySegment.copy(segment, ValueLayout.JAVA_FLOAT, 0, interleavedFloats, 0, samples);
+        } else {
+            MemorySegment.copy(segment, ValueLayout.JAVA_SHORT, 0, interleavedShorts, 0, samples);
+            for (int i = 0; i < samples; i++) {
+                interleavedFloats[i] = interleavedShorts[i] / 32768f;
+            }
+        }
+        return interleavedFloats;
+    }
+
+    /**
+     * Write the interleaved float scratch back to the native data.
+     */
+    public void writeInterleaved() {
+        int samples = numFrames * channelCount;
+        if (format == AAudioFormat.PCM_FLOAT) {
+            MemorySegment.copy(interleavedFloats, 0, segment, ValueLayout.JAVA_FLOAT, 0, samples);
+        } else {
+            for (int i = 0; i < samples; i++) {
+                interleavedShorts[i] = (short) SampleConverter.toI16(interleavedFloats[i]);
+            }
+            MemorySegment.copy(interleavedShorts, 0, segment, ValueLayout.JAVA_SHORT, 0, samples);
+        }
+    }
+
+    /**
+     * Fill the native data with silence.
+     */
+    public void clear() {
+        segment.asSlice(0, (long) numFrames * channelCount * format.getBytesPerSample()).fill((byte) 0);
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.lemcoder.aaudio.buffer;
+
+/**
+ * Processes audio in blocks of a fixed size, see {@link FixedBlockAdapter}.
+ */
+@FunctionalInterface
+public interface BlockProcessor {
+    /**
+     * Called on the data callback thread. Must not block or allocate.
+     *
+     * @param input     interleaved input block, or null when the adapter only generates output
+     * @param output    interleaved output block to fill
+     * @param blockSize number of frames in both blocks
+     */
+    void process(float[] input, float[] output, int blockSize);
+}
@@ -0,0 +1,69 @@
+package io.github.lemcoder.aaudio.buffer;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+/**
+ * Zero-copy view of one channel of an {@link AudioBuffer}.
+ * <p>
+ * Reads and writes go straight to the interleaved native buffer with a stride of one frame.
+ * This is cheapest when only a few samples of a channel are touched; for whole-buffer DSP
+ * {@link AudioBuffer#deinterleave()} is usually faster.
+ */
+public class ChannelView {
+    private final AudioBuffer buffer;
+    private final int channel;
+
+    ChannelView(AudioBuffer buffer, int channel) {
+        this.buffer = buffer;
+        this.channel = channel;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    public int getNumFrames() {
+        return buffer.getNumFrames();
+    }
+
+    public float get(int frame) {
+        long index = (long) frame * buffer.getChannelCount() + channel;
+        MemorySegment data = buffer.getSegment();
+        if (buffer.getFormat() == AAudioFormat.PCM_FLOAT) {
+            return data.getAtIndex(ValueLayout.JAVA_FLOAT, index);
+        }
+        return data.getAtIndex(ValueLayout.JAVA_SHORT, index) / 32768f;
+    }
+
+    public void set(int frame, float value) {
+        long index = (long) frame * buffer.getChannelCount() + channel;
+        MemorySegment data = buffer.getSegment();
+        if (buffer.getFormat() == AAudioFormat.PCM_FLOAT) {
+            data.setAtIndex(ValueLayout.JAVA_FLOAT, index, value);
+        } else {
+            data.setAtIndex(ValueLayout.JAVA_SHORT, index, (short) SampleConverter.toI16(value));
+        }
+    }
+
+    /**
+     * Copy the channel into a float array.
+     */
+    public void copyTo(float[] dst, int offset) {
+        int frames = buffer.getNumFrames();
+        for (int i = 0; i < frames; i++) {
+            dst[offset + i] = get(i);
+        }
+    }
+
+    /**
+     * Overwrite the channel from a float array.
+     */
+    public void copyFrom(float[] src, int offset) {
+        int frames = buffer.getNumFrames();
+        for (int i = 0; i < frames; i++) {
+            set(i, src[offset + i]);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package io.github.lemcoder.aaudio.buffer;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.Arrays;
+
+/**
+ * Runs a {@link BlockProcessor} in fixed-size blocks while the data callback keeps its native,
+ * variable size.
+ * <p>
+ * Forcing a callback size with AAudioStreamBuilder_setFramesPerDataCallback() adds buffering inside
+ * AAudio. This adapter instead buffers on the Java side, in preallocated FIFOs, only as much as needed:
+ * <ul>
+ *     <li>Generating output ({@link #render(float[], int)}) adds no latency, blocks are rendered ahead
+ *     when the FIFO runs short.</li>
+ *     <li>Processing input ({@link #process(float[], float[], int)}) delays the signal by
+ *     {@link #getLatencyFrames()}: zero when every callback is a multiple of the block size,
+ *     blockSize - gcd(callbackSize, blockSize) for a constant callback size, and at most blockSize - 1
+ *     otherwise. If an unexpected callback size would underrun the output, the latency grows by the
+ *     missing frames once and the event is counted.</li>
+ * </ul>
+ */
+public class FixedBlockAdapter {
+    private final int blockSize;
+    private final int inputChannels;
+    private final int outputChannels;
+    private final BlockProcessor processor;
+    private final int initialLatency;
+
+    private final float[] inputBlock;
+    private final float[] outputBlock;
+    private float[] inputFifo;
+    private float[] outputFifo;
+    private float[] processedInput;
+    private int inputFrames;
+    private int outputFrames;
+    private int maxFramesPerCallback;
+
+    private boolean primed;
+    private volatile int latencyFrames;
+    private volatile long latencyIncreases;
+
+    /**
+     * @param blockSize                 frames per block, a power of two
+     * @param inputChannels             channels of the input blocks, 0 when only generating output
+     * @param outputChannels            channels of the output blocks
+     * @param maxFramesPerCallback      largest expected callback, eg. AAudioStream_getBufferCapacityInFrames()
+     * @param expectedFramesPerCallback typical callback size, eg. AAudioStream_getFramesPerBurst(),
+     *                                  or 0 if unknown
+     * @param processor                 called once per block
+     */
+    public FixedBlockAdapter(int blockSize, int inputChannels, int outputChannels, int maxFramesPerCallback,
+                             int expectedFramesPerCallback, BlockProcessor processor) {
+        if (blockSize <= 0 || Integer.bitCount(blockSize) != 1) {
+            throw new IllegalArgumentException("Block size must be a power of two: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.inputChannels = inputChannels;
+        this.outputChannels = outputChannels;
+        this.processor = processor;
+        this.initialLatency = minimumLatency(blockSize, expectedFramesPerCallback);
+        this.latencyFrames = initialLatency;
+        this.inputBlock = inputChannels > 0 ? new float[blockSize * inputChannels] : null;
+        this.outputBlock = new float[blockSize * outputChannels];
+        allocate(Math.max(1, maxFramesPerCallback));
+    }
+
+    /**
+     * @param blockSize         frames per block
+     * @param framesPerCallback constant callback size, or 0 if the size varies
+     * @return frames of delay needed to process input in blocks without ever running short
+     */
+    public static int minimumLatency(int blockSize, int framesPerCallback) {
+        if (framesPerCallback <= 0) {
+            return blockSize - 1;
+        }
+        return blockSize - gcd(framesPerCallback, blockSize);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private void allocate(int frames) {
+        this.maxFramesPerCallback = frames;
+        float[] newInput = new float[(blockSize + frames) * Math.max(1, inputChannels)];
+        float[] newOutput = new float[(2 * blockSize + frames) * outputChannels];
+        if (inputFifo != null) {
+            System.arraycopy(inputFifo, 0, newInput, 0, inputFrames * inputChannels);
+            System.arraycopy(outputFifo, 0, newOutput, 0, outputFrames * outputChannels);
+        }
+        this.inputFifo = newInput;
+        this.outputFifo = newOutput;
+        this.processedInput = new float[frames * outputChannels];
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return current delay added by {@link #process(float[], float[], int)}, in frames
+     */
+    public int getLatencyFrames() {
+        return latencyFrames;
+    }
+
+    /**
+     * @return how often the latency had to grow because of an unexpected callback size
+     */
+    public long getLatencyIncreases() {
+        return latencyIncreases;
+    }
+
+    /**
+     * Drop all buffered frames and return to the initial latency. Not thread safe with respect
+     * to the callback, call it while the stream is stopped.
+     */
+    public void reset() {
+        inputFrames = 0;
+        outputFrames = 0;
+        primed = false;
+        latencyFrames = initialLatency;
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Feed numFrames input frames and take numFrames processed frames. in and out may be the same array
+     * if the channel counts match.
+     *
+     * @param in        interleaved input
+     * @param out       receives interleaved output, delayed by {@link #getLatencyFrames()}
+     * @param numFrames frames in this callback
+     */
+    public void process(float[] in, float[] out, int numFrames) {
+        if (numFrames > maxFramesPerCallback) {
+            // Only if the device exceeds the capacity given at construction.
+            allocate(numFrames);
+        }
+        if (!primed) {
+            Arrays.fill(outputFifo, 0, latencyFrames * outputChannels, 0f);
+            outputFrames = latencyFrames;
+            primed = true;
+        }
+
+        System.arraycopy(in, 0, inputFifo, inputFrames * inputChannels, numFrames * inputChannels);
+        inputFrames += numFrames;
+        int consumed = 0;
+        while (inputFrames - consumed >= blockSize) {
+            System.arraycopy(inputFifo, consumed * inputChannels, inputBlock, 0, blockSize * inputChannels);
+            processor.process(inputBlock, outputBlock, blockSize);
+            appendOutputBlock();
+            consumed += blockSize;
+        }
+        inputFrames -= consumed;
+        System.arraycopy(inputFifo, consumed * inputChannels, inputFifo, 0, inputFrames * inputChannels);
+
+        if (outputFrames < numFrames) {
+            int missing = numFrames - outputFrames;
+            System.arraycopy(outputFifo, 0, outputFifo, missing * outputChannels, outputFrames * outputChannels);
+            Arrays.fill(outputFifo, 0, missing * outputChannels, 0f);
+            outputFrames = numFrames;
+            latencyFrames += missing;
+            latencyIncreases++;
+        }
+        takeOutput(out, numFrames);
+    }
+
+    /**
+     * Generate numFrames frames, calling the processor with a null input for every block needed.
+     *
+     * @param out       receives interleaved output
+     * @param numFrames frames in this callback
+     */
+    public void render(float[] out, int numFrames) {
+        if (numFrames > maxFramesPerCallback) {
+            allocate(numFrames);
+        }
+        while (outputFrames < numFrames) {
+            processor.process(null, outputBlock, blockSize);
+            appendOutputBlock();
+        }
+        takeOutput(out, numFrames);
+    }
+
+    /**
+     * Generate output for an output stream, or process an input stream's data without handing on the
+     * processed frames.
+     */
+    public void process(AudioBuffer buffer) {
+        process(buffer, null);
+    }
+
+    /**
+     * Generate output for an output stream, or process an input stream's data and pass the processed
+     * frames to the sink. The input stream's buffer is left unmodified.
+     *
+     * @param sink receives the processed input frames, may be null
+     */
+    public void process(AudioBuffer buffer, ProcessedInputSink sink) {
+        int numFrames = buffer.getNumFrames();
+        if (buffer.getDirection() == AAudioAudioDirection.OUTPUT) {
+            render(buffer.getInterleaved(), numFrames);
+            buffer.writeInterleaved();
+        } else {
+            process(buffer.readInterleaved(), processedInput, numFrames);
+            if (sink != null) {
+                sink.onProcessed(processedInput, numFrames);
+            }
+        }
+    }
+
+    /**
+     * A data callback that runs the processor in fixed blocks.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return asBufferCallback(null);
+    }
+
+    /**
+     * A data callback that runs the processor in fixed blocks.
+     *
+     * @param sink receives the processed frames of an input stream, may be null
+     */
+    public AAudioStreamBufferCallback asBufferCallback(ProcessedInputSink sink) {
+        return buffer -> {
+            process(buffer, sink);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    private void appendOutputBlock() {
+        System.arraycopy(outputBlock, 0, outputFifo, outputFrames * outputChannels, blockSize * outputChannels);
+        outputFrames += blockSize;
+    }
+
+    private void takeOutput(float[] out, int numFrames) {
+        System.arraycopy(outputFifo, 0, out, 0, numFrames * outputChannels);
+        outputFrames -= numFrames;
+        System.arraycopy(outputFifo, numFrames * outputChannels, outputFifo, 0, outputFrames * outputChannels);
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.lemcoder.aaudio.buffer;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring of float samples that always keeps the most recent history.
+ * <p>
+ * One writer, usually the data callback, appends samples without ever blocking: old samples are
+ * simply overwritten. Any number of readers can take a snapshot of the latest samples.
+ * The write position acts as a sequence number: a reader checks it again after copying and retries
+ * if the writer may have overwritten part of the snapshot in the meantime.
+ * <p>
+ * Samples are stored with release semantics and read with acquire semantics, so a reader that sees
+ * a sample from the next lap also sees the write position that makes the check fail. Without that,
+ * the copy could be reordered after the check. Snapshots are meant for monitoring, eg. meters and
+ * spectrum displays.
+ */
+public class FloatSnapshotRing {
+    private final AtomicIntegerArray data;
+    private final int mask;
+    private final int chunk;
+    private final AtomicLong writePosition = new AtomicLong();
+
+    /**
+     * @param maxSnapshot the largest number of samples a reader will request
+     */
+    public FloatSnapshotRing(int maxSnapshot) {
+        if (maxSnapshot <= 0) {
+            throw new IllegalArgumentException("maxSnapshot must be positive");
+        }
+        // The writer publishes in chunks of a quarter of the ring, which leaves
+        // room for a full snapshot plus one chunk in flight.
+        int capacity = Integer.highestOneBit(Math.max(4, maxSnapshot * 2 - 1)) << 1;
+        this.data = new AtomicIntegerArray(capacity);
+        this.mask = capacity - 1;
+        this.chunk = capacity / 4;
+    }
+
+    /**
+     * Append samples. Must only be called from the writer thread.
+     */
+    public void write(float[] src, int offset, int length) {
+        long position = writePosition.get();
+        while (length > 0) {
+            int n = Math.min(length, chunk);
+            for (int i = 0; i < n; i++) {
+                data.lazySet((int) (position + i) & mask, Float.floatToRawIntBits(src[offset + i]));
+            }
+            position += n;
+            offset += n;
+            length -= n;
+            writePosition.lazySet(position);
+        }
+    }
+
+    /**
+     * @return total number of samples written since creation
+     */
+    public long getWritePosition() {
+        return writePosition.get();
+    }
+
+    /**
+     * Copy the most recent samples.
+     *
+     * @param dst    receives the samples, oldest first
+     * @param offset index of the first sample in dst
+     * @param length number of samples, at most maxSnapshot
+     * @return the write position of the last sample copied plus one, or -1 if not enough samples
+     * were written yet or the writer kept overwriting the snapshot
+     */
+    public long readLatest(float[] dst, int offset, int length) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            long end = writePosition.get();
+            if (end < length) {
+                return -1;
+            }
+            long start = end - length;
+            for (int i = 0; i < length; i++) {
+                dst[offset + i] = Float.intBitsToFloat(data.get((int) (start + i) & mask));
+            }
+            // The writer may be up to one chunk past the published position.
+            if (writePosition.get() + chunk - data.length() <= start) {
+                return end;
+            }
+        }
+        return -1;
+    }
+}
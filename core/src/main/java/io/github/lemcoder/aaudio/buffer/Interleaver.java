@@ -0,0 +1,568 @@
+package io.github.lemcoder.aaudio.buffer;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+/**
+ * Conversion between interleaved frames and planar channels.
+ * <p>
+ * Mono, stereo, quad, 5.1 and 7.1 have unrolled code paths for float and 16 bit samples, other channel
+ * counts use a generic strided loop. Native data can be converted in place in its segment, without an
+ * intermediate interleaved copy. None of the methods allocate.
+ */
+public class Interleaver {
+
+    Interleaver() {
+        // Should not be called directly
+    }
+
+    private static final float I16_SCALE = 1f / 32768f;
+
+    /**
+     * Split interleaved float frames into planar channels.
+     *
+     * @param src       interleaved samples
+     * @param srcOffset index of the first sample
+     * @param dst       one array per channel, at least numFrames long
+     * @param channels  number of channels
+     * @param numFrames number of frames
+     */
+    public static void deinterleave(float[] src, int srcOffset, float[][] dst, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> System.arraycopy(src, srcOffset, dst[0], 0, numFrames);
+            case 2 -> {
+                float[] d0 = dst[0], d1 = dst[1];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 2) {
+                    d0[i] = src[s];
+                    d1[i] = src[s + 1];
+                }
+            }
+            case 4 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 4) {
+                    d0[i] = src[s];
+                    d1[i] = src[s + 1];
+                    d2[i] = src[s + 2];
+                    d3[i] = src[s + 3];
+                }
+            }
+            case 6 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3], d4 = dst[4], d5 = dst[5];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 6) {
+                    d0[i] = src[s];
+                    d1[i] = src[s + 1];
+                    d2[i] = src[s + 2];
+                    d3[i] = src[s + 3];
+                    d4[i] = src[s + 4];
+                    d5[i] = src[s + 5];
+                }
+            }
+            case 8 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                float[] d4 = dst[4], d5 = dst[5], d6 = dst[6], d7 = dst[7];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 8) {
+                    d0[i] = src[s];
+                    d1[i] = src[s + 1];
+                    d2[i] = src[s + 2];
+                    d3[i] = src[s + 3];
+                    d4[i] = src[s + 4];
+                    d5[i] = src[s + 5];
+                    d6[i] = src[s + 6];
+                    d7[i] = src[s + 7];
+                }
+            }
+            default -> {
+                for (int c = 0; c < channels; c++) {
+                    float[] d = dst[c];
+                    for (int i = 0, s = srcOffset + c; i < numFrames; i++, s += channels) {
+                        d[i] = src[s];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge planar channels into interleaved float frames.
+     *
+     * @param src       one array per channel, at least numFrames long
+     * @param dst       receives the interleaved samples
+     * @param dstOffset index of the first sample
+     * @param channels  number of channels
+     * @param numFrames number of frames
+     */
+    public static void interleave(float[][] src, float[] dst, int dstOffset, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> System.arraycopy(src[0], 0, dst, dstOffset, numFrames);
+            case 2 -> {
+                float[] s0 = src[0], s1 = src[1];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 2) {
+                    dst[d] = s0[i];
+                    dst[d + 1] = s1[i];
+                }
+            }
+            case 4 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 4) {
+                    dst[d] = s0[i];
+                    dst[d + 1] = s1[i];
+                    dst[d + 2] = s2[i];
+                    dst[d + 3] = s3[i];
+                }
+            }
+            case 6 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3], s4 = src[4], s5 = src[5];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 6) {
+                    dst[d] = s0[i];
+                    dst[d + 1] = s1[i];
+                    dst[d + 2] = s2[i];
+                    dst[d + 3] = s3[i];
+                    dst[d + 4] = s4[i];
+                    dst[d + 5] = s5[i];
+                }
+            }
+            case 8 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                float[] s4 = src[4], s5 = src[5], s6 = src[6], s7 = src[7];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 8) {
+                    dst[d] = s0[i];
+                    dst[d + 1] = s1[i];
+                    dst[d + 2] = s2[i];
+                    dst[d + 3] = s3[i];
+                    dst[d + 4] = s4[i];
+                    dst[d + 5] = s5[i];
+                    dst[d + 6] = s6[i];
+                    dst[d + 7] = s7[i];
+                }
+            }
+            default -> {
+                for (int c = 0; c < channels; c++) {
+                    float[] s = src[c];
+                    for (int i = 0, d = dstOffset + c; i < numFrames; i++, d += channels) {
+                        dst[d] = s[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Split interleaved 16 bit frames into planar float channels.
+     */
+    public static void deinterleave(short[] src, int srcOffset, float[][] dst, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> {
+                float[] d0 = dst[0];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s++) {
+                    d0[i] = src[s] * I16_SCALE;
+                }
+            }
+            case 2 -> {
+                float[] d0 = dst[0], d1 = dst[1];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 2) {
+                    d0[i] = src[s] * I16_SCALE;
+                    d1[i] = src[s + 1] * I16_SCALE;
+                }
+            }
+            case 4 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 4) {
+                    d0[i] = src[s] * I16_SCALE;
+                    d1[i] = src[s + 1] * I16_SCALE;
+                    d2[i] = src[s + 2] * I16_SCALE;
+                    d3[i] = src[s + 3] * I16_SCALE;
+                }
+            }
+            case 6 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3], d4 = dst[4], d5 = dst[5];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 6) {
+                    d0[i] = src[s] * I16_SCALE;
+                    d1[i] = src[s + 1] * I16_SCALE;
+                    d2[i] = src[s + 2] * I16_SCALE;
+                    d3[i] = src[s + 3] * I16_SCALE;
+                    d4[i] = src[s + 4] * I16_SCALE;
+                    d5[i] = src[s + 5] * I16_SCALE;
+                }
+            }
+            case 8 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                float[] d4 = dst[4], d5 = dst[5], d6 = dst[6], d7 = dst[7];
+                for (int i = 0, s = srcOffset; i < numFrames; i++, s += 8) {
+                    d0[i] = src[s] * I16_SCALE;
+                    d1[i] = src[s + 1] * I16_SCALE;
+                    d2[i] = src[s + 2] * I16_SCALE;
+                    d3[i] = src[s + 3] * I16_SCALE;
+                    d4[i] = src[s + 4] * I16_SCALE;
+                    d5[i] = src[s + 5] * I16_SCALE;
+                    d6[i] = src[s + 6] * I16_SCALE;
+                    d7[i] = src[s + 7] * I16_SCALE;
+                }
+            }
+            default -> {
+                for (int c = 0; c < channels; c++) {
+                    float[] d = dst[c];
+                    for (int i = 0, s = srcOffset + c; i < numFrames; i++, s += channels) {
+                        d[i] = src[s] * I16_SCALE;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge planar float channels into interleaved 16 bit frames, clipping out of range values.
+     */
+    public static void interleave(float[][] src, short[] dst, int dstOffset, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> {
+                float[] s0 = src[0];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d++) {
+                    dst[d] = (short) SampleConverter.toI16(s0[i]);
+                }
+            }
+            case 2 -> {
+                float[] s0 = src[0], s1 = src[1];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 2) {
+                    dst[d] = (short) SampleConverter.toI16(s0[i]);
+                    dst[d + 1] = (short) SampleConverter.toI16(s1[i]);
+                }
+            }
+            case 4 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 4) {
+                    dst[d] = (short) SampleConverter.toI16(s0[i]);
+                    dst[d + 1] = (short) SampleConverter.toI16(s1[i]);
+                    dst[d + 2] = (short) SampleConverter.toI16(s2[i]);
+                    dst[d + 3] = (short) SampleConverter.toI16(s3[i]);
+                }
+            }
+            case 6 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3], s4 = src[4], s5 = src[5];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 6) {
+                    dst[d] = (short) SampleConverter.toI16(s0[i]);
+                    dst[d + 1] = (short) SampleConverter.toI16(s1[i]);
+                    dst[d + 2] = (short) SampleConverter.toI16(s2[i]);
+                    dst[d + 3] = (short) SampleConverter.toI16(s3[i]);
+                    dst[d + 4] = (short) SampleConverter.toI16(s4[i]);
+                    dst[d + 5] = (short) SampleConverter.toI16(s5[i]);
+                }
+            }
+            case 8 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                float[] s4 = src[4], s5 = src[5], s6 = src[6], s7 = src[7];
+                for (int i = 0, d = dstOffset; i < numFrames; i++, d += 8) {
+                    dst[d] = (short) SampleConverter.toI16(s0[i]);
+                    dst[d + 1] = (short) SampleConverter.toI16(s1[i]);
+                    dst[d + 2] = (short) SampleConverter.toI16(s2[i]);
+                    dst[d + 3] = (short) SampleConverter.toI16(s3[i]);
+                    dst[d + 4] = (short) SampleConverter.toI16(s4[i]);
+                    dst[d + 5] = (short) SampleConverter.toI16(s5[i]);
+                    dst[d + 6] = (short) SampleConverter.toI16(s6[i]);
+                    dst[d + 7] = (short) SampleConverter.toI16(s7[i]);
+                }
+            }
+            default -> {
+                for (int c = 0; c < channels; c++) {
+                    float[] s = src[c];
+                    for (int i = 0, d = dstOffset + c; i < numFrames; i++, d += channels) {
+                        dst[d] = (short) SampleConverter.toI16(s[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Split interleaved native frames into planar float channels, reading the segment directly.
+     *
+     * @param src       interleaved native data, aligned to the sample size
+     * @param format    {@link AAudioFormat#PCM_FLOAT} or {@link AAudioFormat#PCM_I16}
+     * @param dst       one array per channel, at least numFrames long
+     * @param channels  number of channels
+     * @param numFrames number of frames
+     */
+    public static void deinterleave(MemorySegment src, AAudioFormat format, float[][] dst, int channels, int numFrames) {
+        if (format == AAudioFormat.PCM_FLOAT) {
+            deinterleaveFloat(src, dst, channels, numFrames);
+        } else if (format == AAudioFormat.PCM_I16) {
+            deinterleaveI16(src, dst, channels, numFrames);
+        } else {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    /**
+     * Merge planar float channels into interleaved native frames, writing the segment directly.
+     * 16 bit samples are clipped.
+     *
+     * @param src       one array per channel, at least numFrames long
+     * @param dst       receives the interleaved native data, aligned to the sample size
+     * @param format    {@link AAudioFormat#PCM_FLOAT} or {@link AAudioFormat#PCM_I16}
+     * @param channels  number of channels
+     * @param numFrames number of frames
+     */
+    public static void interleave(float[][] src, MemorySegment dst, AAudioFormat format, int channels, int numFrames) {
+        if (format == AAudioFormat.PCM_FLOAT) {
+            interleaveFloat(src, dst, channels, numFrames);
+        } else if (format == AAudioFormat.PCM_I16) {
+            interleaveI16(src, dst, channels, numFrames);
+        } else {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    private static void deinterleaveFloat(MemorySegment src, float[][] dst, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> MemorySegment.copy(src, ValueLayout.JAVA_FLOAT, 0, dst[0], 0, numFrames);
+            case 2 -> {
+                float[] d0 = dst[0], d1 = dst[1];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 8) {
+                    d0[i] = src.get(ValueLayout.JAVA_FLOAT, o);
+                    d1[i] = src.get(ValueLayout.JAVA_FLOAT, o + 4);
+                }
+            }
+            case 4 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 16) {
+                    d0[i] = src.get(ValueLayout.JAVA_FLOAT, o);
+                    d1[i] = src.get(ValueLayout.JAVA_FLOAT, o + 4);
+                    d2[i] = src.get(ValueLayout.JAVA_FLOAT, o + 8);
+                    d3[i] = src.get(ValueLayout.JAVA_FLOAT, o + 12);
+                }
+            }
+            case 6 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3], d4 = dst[4], d5 = dst[5];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 24) {
+                    d0[i] = src.get(ValueLayout.JAVA_FLOAT, o);
+                    d1[i] = src.get(ValueLayout.JAVA_FLOAT, o + 4);
+                    d2[i] = src.get(ValueLayout.JAVA_FLOAT, o + 8);
+                    d3[i] = src.get(ValueLayout.JAVA_FLOAT, o + 12);
+                    d4[i] = src.get(ValueLayout.JAVA_FLOAT, o + 16);
+                    d5[i] = src.get(ValueLayout.JAVA_FLOAT, o + 20);
+                }
+            }
+            case 8 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                float[] d4 = dst[4], d5 = dst[5], d6 = dst[6], d7 = dst[7];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 32) {
+                    d0[i] = src.get(ValueLayout.JAVA_FLOAT, o);
+                    d1[i] = src.get(ValueLayout.JAVA_FLOAT, o + 4);
+                    d2[i] = src.get(ValueLayout.JAVA_FLOAT, o + 8);
+                    d3[i] = src.get(ValueLayout.JAVA_FLOAT, o + 12);
+                    d4[i] = src.get(ValueLayout.JAVA_FLOAT, o + 16);
+                    d5[i] = src.get(ValueLayout.JAVA_FLOAT, o + 20);
+                    d6[i] = src.get(ValueLayout.JAVA_FLOAT, o + 24);
+                    d7[i] = src.get(ValueLayout.JAVA_FLOAT, o + 28);
+                }
+            }
+            default -> {
+                long stride = (long) channels * 4;
+                for (int c = 0; c < channels; c++) {
+                    float[] d = dst[c];
+                    long o = (long) c * 4;
+                    for (int i = 0; i < numFrames; i++, o += stride) {
+                        d[i] = src.get(ValueLayout.JAVA_FLOAT, o);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void deinterleaveI16(MemorySegment src, float[][] dst, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> {
+                float[] d0 = dst[0];
+                for (int i = 0; i < numFrames; i++) {
+                    d0[i] = src.getAtIndex(ValueLayout.JAVA_SHORT, i) * I16_SCALE;
+                }
+            }
+            case 2 -> {
+                float[] d0 = dst[0], d1 = dst[1];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 4) {
+                    d0[i] = src.get(ValueLayout.JAVA_SHORT, o) * I16_SCALE;
+                    d1[i] = src.get(ValueLayout.JAVA_SHORT, o + 2) * I16_SCALE;
+                }
+            }
+            case 4 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 8) {
+                    d0[i] = src.get(ValueLayout.JAVA_SHORT, o) * I16_SCALE;
+                    d1[i] = src.get(ValueLayout.JAVA_SHORT, o + 2) * I16_SCALE;
+                    d2[i] = src.get(ValueLayout.JAVA_SHORT, o + 4) * I16_SCALE;
+                    d3[i] = src.get(ValueLayout.JAVA_SHORT, o + 6) * I16_SCALE;
+                }
+            }
+            case 6 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3], d4 = dst[4], d5 = dst[5];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 12) {
+                    d0[i] = src.get(ValueLayout.JAVA_SHORT, o) * I16_SCALE;
+                    d1[i] = src.get(ValueLayout.JAVA_SHORT, o + 2) * I16_SCALE;
+                    d2[i] = src.get(ValueLayout.JAVA_SHORT, o + 4) * I16_SCALE;
+                    d3[i] = src.get(ValueLayout.JAVA_SHORT, o + 6) * I16_SCALE;
+                    d4[i] = src.get(ValueLayout.JAVA_SHORT, o + 8) * I16_SCALE;
+                    d5[i] = src.get(ValueLayout.JAVA_SHORT, o + 10) * I16_SCALE;
+                }
+            }
+            case 8 -> {
+                float[] d0 = dst[0], d1 = dst[1], d2 = dst[2], d3 = dst[3];
+                float[] d4 = dst[4], d5 = dst[5], d6 = dst[6], d7 = dst[7];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 16) {
+                    d0[i] = src.get(ValueLayout.JAVA_SHORT, o) * I16_SCALE;
+                    d1[i] = src.get(ValueLayout.JAVA_SHORT, o + 2) * I16_SCALE;
+                    d2[i] = src.get(ValueLayout.JAVA_SHORT, o + 4) * I16_SCALE;
+                    d3[i] = src.get(ValueLayout.JAVA_SHORT, o + 6) * I16_SCALE;
+                    d4[i] = src.get(ValueLayout.JAVA_SHORT, o + 8) * I16_SCALE;
+                    d5[i] = src.get(ValueLayout.JAVA_SHORT, o + 10) * I16_SCALE;
+                    d6[i] = src.get(ValueLayout.JAVA_SHORT, o + 12) * I16_SCALE;
+                    d7[i] = src.get(ValueLayout.JAVA_SHORT, o + 14) * I16_SCALE;
+                }
+            }
+            default -> {
+                long stride = (long) channels * 2;
+                for (int c = 0; c < channels; c++) {
+                    float[] d = dst[c];
+                    long o = (long) c * 2;
+                    for (int i = 0; i < numFrames; i++, o += stride) {
+                        d[i] = src.get(ValueLayout.JAVA_SHORT, o) * I16_SCALE;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void interleaveFloat(float[][] src, MemorySegment dst, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> MemorySegment.copy(src[0], 0, dst, ValueLayout.JAVA_FLOAT, 0, numFrames);
+            case 2 -> {
+                float[] s0 = src[0], s1 = src[1];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 8) {
+                    dst.set(ValueLayout.JAVA_FLOAT, o, s0[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 4, s1[i]);
+                }
+            }
+            case 4 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 16) {
+                    dst.set(ValueLayout.JAVA_FLOAT, o, s0[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 4, s1[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 8, s2[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 12, s3[i]);
+                }
+            }
+            case 6 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3], s4 = src[4], s5 = src[5];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 24) {
+                    dst.set(ValueLayout.JAVA_FLOAT, o, s0[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 4, s1[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 8, s2[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 12, s3[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 16, s4[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 20, s5[i]);
+                }
+            }
+            case 8 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                float[] s4 = src[4], s5 = src[5], s6 = src[6], s7 = src[7];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 32) {
+                    dst.set(ValueLayout.JAVA_FLOAT, o, s0[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 4, s1[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 8, s2[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 12, s3[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 16, s4[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 20, s5[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 24, s6[i]);
+                    dst.set(ValueLayout.JAVA_FLOAT, o + 28, s7[i]);
+                }
+            }
+            default -> {
+                long stride = (long) channels * 4;
+                for (int c = 0; c < channels; c++) {
+                    float[] s = src[c];
+                    long o = (long) c * 4;
+                    for (int i = 0; i < numFrames; i++, o += stride) {
+                        dst.set(ValueLayout.JAVA_FLOAT, o, s[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void interleaveI16(float[][] src, MemorySegment dst, int channels, int numFrames) {
+        switch (channels) {
+            case 1 -> {
+                float[] s0 = src[0];
+                for (int i = 0; i < numFrames; i++) {
+                    dst.setAtIndex(ValueLayout.JAVA_SHORT, i, (short) SampleConverter.toI16(s0[i]));
+                }
+            }
+            case 2 -> {
+                float[] s0 = src[0], s1 = src[1];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 4) {
+                    dst.set(ValueLayout.JAVA_SHORT, o, (short) SampleConverter.toI16(s0[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 2, (short) SampleConverter.toI16(s1[i]));
+                }
+            }
+            case 4 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 8) {
+                    dst.set(ValueLayout.JAVA_SHORT, o, (short) SampleConverter.toI16(s0[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 2, (short) SampleConverter.toI16(s1[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 4, (short) SampleConverter.toI16(s2[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 6, (short) SampleConverter.toI16(s3[i]));
+                }
+            }
+            case 6 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3], s4 = src[4], s5 = src[5];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 12) {
+                    dst.set(ValueLayout.JAVA_SHORT, o, (short) SampleConverter.toI16(s0[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 2, (short) SampleConverter.toI16(s1[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 4, (short) SampleConverter.toI16(s2[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 6, (short) SampleConverter.toI16(s3[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 8, (short) SampleConverter.toI16(s4[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 10, (short) SampleConverter.toI16(s5[i]));
+                }
+            }
+            case 8 -> {
+                float[] s0 = src[0], s1 = src[1], s2 = src[2], s3 = src[3];
+                float[] s4 = src[4], s5 = src[5], s6 = src[6], s7 = src[7];
+                long o = 0;
+                for (int i = 0; i < numFrames; i++, o += 16) {
+                    dst.set(ValueLayout.JAVA_SHORT, o, (short) SampleConverter.toI16(s0[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 2, (short) SampleConverter.toI16(s1[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 4, (short) SampleConverter.toI16(s2[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 6, (short) SampleConverter.toI16(s3[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 8, (short) SampleConverter.toI16(s4[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 10, (short) SampleConverter.toI16(s5[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 12, (short) SampleConverter.toI16(s6[i]));
+                    dst.set(ValueLayout.JAVA_SHORT, o + 14, (short) SampleConverter.toI16(s7[i]));
+                }
+            }
+            default -> {
+                long stride = (long) channels * 2;
+                for (int c = 0; c < channels; c++) {
+                    float[] s = src[c];
+                    long o = (long) c * 2;
+                    for (int i = 0; i < numFrames; i++, o += stride) {
+                        dst.set(ValueLayout.JAVA_SHORT, o, (short) SampleConverter.toI16(s[i]));
+                    }
+                }
+            }
+        }
+    }
+}
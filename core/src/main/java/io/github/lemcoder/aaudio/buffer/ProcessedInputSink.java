@@ -0,0 +1,17 @@
+package io.github.lemcoder.aaudio.buffer;
+
+/**
+ * Receives the processed frames of an input stream from {@link FixedBlockAdapter}, which must not write
+ * them back into the stream's buffer.
+ */
+@FunctionalInterface
+public interface ProcessedInputSink {
+    /**
+     * Called on the data callback thread. Must not block or allocate.
+     *
+     * @param interleaved processed frames, delayed by {@link FixedBlockAdapter#getLatencyFrames()};
+     *                    only valid during the call
+     * @param numFrames   frames in this callback
+     */
+    void onProcessed(float[] interleaved, int numFrames);
+}
@@ -0,0 +1,169 @@
+package io.github.lemcoder.aaudio.buffer;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+/**
+ * Conversion between native PCM samples and float samples in the range [-1.0f, 1.0f).
+ * <p>
+ * Native data is little-endian, as on all Android ABIs.
+ * None of the methods allocate, so they can be called from the data callback.
+ */
+public class SampleConverter {
+
+    SampleConverter() {
+        // Should not be called directly
+    }
+
+    private static final float I16_SCALE = 1f / 32768f;
+    private static final float I24_SCALE = 1f / 8388608f;
+    private static final float I32_SCALE = 1f / 2147483648f;
+
+    /**
+     * Convert native samples to floats.
+     *
+     * @param src         native data
+     * @param srcOffset   byte offset of the first sample
+     * @param format      format of the native data
+     * @param dst         receives the float samples
+     * @param dstOffset   index of the first float sample
+     * @param sampleCount number of samples (frames times channels)
+     */
+    public static void toFloat(byte[] src, int srcOffset, AAudioFormat format, float[] dst, int dstOffset, int sampleCount) {
+        switch (format) {
+            case PCM_FLOAT -> {
+                for (int i = 0, b = srcOffset; i < sampleCount; i++, b += 4) {
+                    dst[dstOffset + i] = Float.intBitsToFloat(readInt(src, b));
+                }
+            }
+            case PCM_I16 -> {
+                for (int i = 0, b = srcOffset; i < sampleCount; i++, b += 2) {
+                    dst[dstOffset + i] = (short) ((src[b] & 0xff) | (src[b + 1] << 8)) * I16_SCALE;
+                }
+            }
+            case PCM_I24_PACKED -> {
+                for (int i = 0, b = srcOffset; i < sampleCount; i++, b += 3) {
+                    int v = (src[b] & 0xff) | ((src[b + 1] & 0xff) << 8) | (src[b + 2] << 16);
+                    dst[dstOffset + i] = v * I24_SCALE;
+                }
+            }
+            case PCM_I32 -> {
+                for (int i = 0, b = srcOffset; i < sampleCount; i++, b += 4) {
+                    dst[dstOffset + i] = readInt(src, b) * I32_SCALE;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    /**
+     * Convert floats to native samples. Values outside [-1.0f, 1.0f) are clipped for integer formats.
+     *
+     * @param src         float samples
+     * @param srcOffset   index of the first float sample
+     * @param dst         receives the native data
+     * @param dstOffset   byte offset of the first sample
+     * @param format      format of the native data
+     * @param sampleCount number of samples (frames times channels)
+     */
+    public static void fromFloat(float[] src, int srcOffset, byte[] dst, int dstOffset, AAudioFormat format, int sampleCount) {
+        switch (format) {
+            case PCM_FLOAT -> {
+                for (int i = 0, b = dstOffset; i < sampleCount; i++, b += 4) {
+                    writeInt(dst, b, Float.floatToRawIntBits(src[srcOffset + i]));
+                }
+            }
+            case PCM_I16 -> {
+                for (int i = 0, b = dstOffset; i < sampleCount; i++, b += 2) {
+                    int v = toI16(src[srcOffset + i]);
+                    dst[b] = (byte) v;
+                    dst[b + 1] = (byte) (v >> 8);
+                }
+            }
+            case PCM_I24_PACKED -> {
+                for (int i = 0, b = dstOffset; i < sampleCount; i++, b += 3) {
+                    int v = toI24(src[srcOffset + i]);
+                    dst[b] = (byte) v;
+                    dst[b + 1] = (byte) (v >> 8);
+                    dst[b + 2] = (byte) (v >> 16);
+                }
+            }
+            case PCM_I32 -> {
+                for (int i = 0, b = dstOffset; i < sampleCount; i++, b += 4) {
+                    writeInt(dst, b, toI32(src[srcOffset + i]));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    /**
+     * Read one native sample from a segment. The offset need not be aligned.
+     *
+     * @param src    native data
+     * @param offset byte offset of the sample
+     * @param format format of the native data
+     * @return the sample as float
+     */
+    public static float readFloat(MemorySegment src, long offset, AAudioFormat format) {
+        return switch (format) {
+            case PCM_FLOAT -> src.get(ValueLayout.JAVA_FLOAT_UNALIGNED, offset);
+            case PCM_I16 -> src.get(ValueLayout.JAVA_SHORT_UNALIGNED, offset) * I16_SCALE;
+            case PCM_I24_PACKED -> ((src.get(ValueLayout.JAVA_BYTE, offset) & 0xff)
+                    | ((src.get(ValueLayout.JAVA_BYTE, offset + 1) & 0xff) << 8)
+                    | (src.get(ValueLayout.JAVA_BYTE, offset + 2) << 16)) * I24_SCALE;
+            case PCM_I32 -> src.get(ValueLayout.JAVA_INT_UNALIGNED, offset) * I32_SCALE;
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        };
+    }
+
+    /**
+     * Write one native sample to a segment, clipped for integer formats. The offset need not be aligned.
+     *
+     * @param dst    native data
+     * @param offset byte offset of the sample
+     * @param format format of the native data
+     * @param sample float sample
+     */
+    public static void writeFloat(MemorySegment dst, long offset, AAudioFormat format, float sample) {
+        switch (format) {
+            case PCM_FLOAT -> dst.set(ValueLayout.JAVA_FLOAT_UNALIGNED, offset, sample);
+            case PCM_I16 -> dst.set(ValueLayout.JAVA_SHORT_UNALIGNED, offset, (short) toI16(sample));
+            case PCM_I24_PACKED -> {
+                int v = toI24(sample);
+                dst.set(ValueLayout.JAVA_BYTE, offset, (byte) v);
+                dst.set(ValueLayout.JAVA_BYTE, offset + 1, (byte) (v >> 8));
+                dst.set(ValueLayout.JAVA_BYTE, offset + 2, (byte) (v >> 16));
+            }
+            case PCM_I32 -> dst.set(ValueLayout.JAVA_INT_UNALIGNED, offset, toI32(sample));
+            default -> throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+    }
+
+    public static int toI16(float sample) {
+        float v = sample * 32768f;
+        return (int) Math.max(-32768f, Math.min(32767f, v));
+    }
+
+    public static int toI24(float sample) {
+        float v = sample * 8388608f;
+        return (int) Math.max(-8388608f, Math.min(8388607f, v));
+    }
+
+    public static int toI32(float sample) {
+        // (int) saturates, so clipping is implicit
+        return (int) ((double) sample * 2147483648.0);
+    }
+
+    private static int readInt(byte[] src, int b) {
+        return (src[b] & 0xff) | ((src[b + 1] & 0xff) << 8) | ((src[b + 2] & 0xff) << 16) | (src[b + 3] << 24);
+    }
+
+    private static void writeInt(byte[] dst, int b, int v) {
+        dst[b] = (byte) v;
+        dst[b + 1] = (byte) (v >> 8);
+        dst[b + 2] = (byte) (v >> 16);
+        dst[b + 3] = (byte) (v >> 24);
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.lemcoder.aaudio.buffer;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer single-consumer byte ring in off-heap memory.
+ * <p>
+ * One thread writes, one other thread reads; neither blocks nor allocates.
+ * Data is moved with bulk {@link MemorySegment#copy} calls, at most two per operation.
+ */
+public class SegmentRingBuffer {
+    private final MemorySegment data;
+    private final long capacity;
+    private final long mask;
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong writePosition = new AtomicLong();
+
+    /**
+     * @param arena         arena that owns the ring memory
+     * @param minimumBytes  minimum capacity, rounded up to a power of two
+     */
+    public SegmentRingBuffer(Arena arena, long minimumBytes) {
+        if (minimumBytes <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        long size = Long.highestOneBit(minimumBytes);
+        if (size < minimumBytes) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.data = arena.allocate(size, 64);
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return bytes that can be read now. Exact on the reader thread, a lower bound elsewhere.
+     */
+    public long availableToRead() {
+        return writePosition.get() - readPosition.get();
+    }
+
+    /**
+     * @return bytes that can be written now. Exact on the writer thread, a lower bound elsewhere.
+     */
+    public long availableToWrite() {
+        return capacity - (writePosition.get() - readPosition.get());
+    }
+
+    /**
+     * Total number of bytes written since creation.
+     */
+    public long getWritePosition() {
+        return writePosition.get();
+    }
+
+    /**
+     * Total number of bytes read since creation.
+     */
+    public long getReadPosition() {
+        return readPosition.get();
+    }
+
+    // ============================================================
+    // Writer
+    // ============================================================
+
+    /**
+     * Append up to length bytes.
+     *
+     * @return number of bytes written, less than length if the ring is full
+     */
+    public long write(MemorySegment src, long srcOffset, long length) {
+        long w = writePosition.get();
+        long n = Math.min(length, capacity - (w - readPosition.get()));
+        if (n <= 0) {
+            return 0;
+        }
+        long index = w & mask;
+        long first = Math.min(n, capacity - index);
+        MemorySegment.copy(src, srcOffset, data, index, first);
+        if (first < n) {
+            MemorySegment.copy(src, srcOffset + first, data, 0, n - first);
+        }
+        writePosition.lazySet(w + n);
+        return n;
+    }
+
+    /**
+     * Append up to length bytes from a heap array.
+     *
+     * @return number of bytes written, less than length if the ring is full
+     */
+    public int write(byte[] src, int srcOffset, int length) {
+        long w = writePosition.get();
+        int n = (int) Math.min(length, capacity - (w - readPosition.get()));
+        if (n <= 0) {
+            return 0;
+        }
+        long index = w & mask;
+        int first = (int) Math.min(n, capacity - index);
+        MemorySegment.copy(src, srcOffset, data, ValueLayout.JAVA_BYTE, index, first);
+        if (first < n) {
+            MemorySegment.copy(src, srcOffset + first, data, ValueLayout.JAVA_BYTE, 0, n - first);
+        }
+        writePosition.lazySet(w + n);
+        return n;
+    }
+
+    // ============================================================
+    // Reader
+    // ============================================================
+
+    /**
+     * Remove up to length bytes.
+     *
+     * @return number of bytes read, less than length if the ring did not hold enough data
+     */
+    public long read(MemorySegment dst, long dstOffset, long length) {
+        long n = peek(dst, dstOffset, length);
+        skip(n);
+        return n;
+    }
+
+    /**
+     * Remove up to length bytes into a heap array.
+     *
+     * @return number of bytes read
+     */
+    public int read(byte[] dst, int dstOffset, int length) {
+        long r = readPosition.get();
+        int n = (int) Math.min(length, writePosition.get() - r);
+        if (n <= 0) {
+            return 0;
+        }
+        long index = r & mask;
+        int first = (int) Math.min(n, capacity - index);
+        MemorySegment.copy(data, ValueLayout.JAVA_BYTE, index, dst, dstOffset, first);
+        if (first < n) {
+            MemorySegment.copy(data, ValueLayout.JAVA_BYTE, 0, dst, dstOffset + first, n - first);
+        }
+        readPosition.lazySet(r + n);
+        return n;
+    }
+
+    /**
+     * Copy up to length bytes without removing them.
+     *
+     * @return number of bytes copied
+     */
+    public long peek(MemorySegment dst, long dstOffset, long length) {
+        long r = readPosition.get();
+        long n = Math.min(length, writePosition.get() - r);
+        if (n <= 0) {
+            return 0;
+        }
+        long index = r & mask;
+        long first = Math.min(n, capacity - index);
+        MemorySegment.copy(data, index, dst, dstOffset, first);
+        if (first < n) {
+            MemorySegment.copy(data, 0, dst, dstOffset + first, n - first);
+        }
+        return n;
+    }
+
+    /**
+     * Drop up to length bytes.
+     *
+     * @return number of bytes dropped
+     */
+    public long skip(long length) {
+        long r = readPosition.get();
+        long n = Math.min(length, writePosition.get() - r);
+        if (n > 0) {
+            readPosition.lazySet(r + n);
+        }
+        return Math.max(0, n);
+    }
+}
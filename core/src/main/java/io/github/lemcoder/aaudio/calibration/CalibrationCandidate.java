@@ -0,0 +1,80 @@
+package io.github.lemcoder.aaudio.calibration;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+import java.io.Serializable;
+
+/**
+ * One point of the calibration matrix: the stream parameters as requested.
+ */
+public class CalibrationCandidate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final AAudioSharingMode sharingMode;
+    private final AAudioPerformanceMode performanceMode;
+    private final int framesPerDataCallback;
+    private final int bufferBursts;
+
+    /**
+     * @param framesPerDataCallback requested frames per data callback, or 0 to leave it to the device
+     * @param bufferBursts          buffer size in multiples of {@link AAudioStream#getFramesPerBurst()}
+     */
+    public CalibrationCandidate(AAudioSharingMode sharingMode, AAudioPerformanceMode performanceMode,
+                                int framesPerDataCallback, int bufferBursts) {
+        if (framesPerDataCallback < 0 || bufferBursts <= 0) {
+            throw new IllegalArgumentException("Invalid candidate: " + framesPerDataCallback + " frames per callback, "
+                    + bufferBursts + " bursts");
+        }
+        this.sharingMode = sharingMode;
+        this.performanceMode = performanceMode;
+        this.framesPerDataCallback = framesPerDataCallback;
+        this.bufferBursts = bufferBursts;
+    }
+
+    /**
+     * Request the sharing mode, performance mode and frames per data callback on a builder.
+     */
+    public void applyTo(AAudioStreamBuilder builder) throws Throwable {
+        builder.setSharingMode(sharingMode);
+        builder.setPerformanceMode(performanceMode);
+        if (framesPerDataCallback > 0) {
+            builder.setFramesPerDataCallback(framesPerDataCallback);
+        }
+    }
+
+    /**
+     * Set the buffer size of a stream opened with {@link #applyTo(AAudioStreamBuilder)}.
+     *
+     * @return actual buffer size in frames or a negative error
+     */
+    public int applyTo(AAudioStream stream) throws Throwable {
+        return stream.setBufferSizeInFrames(bufferBursts * stream.getFramesPerBurst());
+    }
+
+    public AAudioSharingMode getSharingMode() {
+        return sharingMode;
+    }
+
+    public AAudioPerformanceMode getPerformanceMode() {
+        return performanceMode;
+    }
+
+    public int getFramesPerDataCallback() {
+        return framesPerDataCallback;
+    }
+
+    public int getBufferBursts() {
+        return bufferBursts;
+    }
+
+    @Override
+    public String toString() {
+        return "CalibrationCandidate{sharingMode=" + sharingMode
+                + ", performanceMode=" + performanceMode
+                + ", framesPerDataCallback=" + framesPerDataCallback
+                + ", bufferBursts=" + bufferBursts + '}';
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.lemcoder.aaudio.calibration;
+
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Measurements of one {@link CalibrationCandidate}.
+ */
+public class CalibrationResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final CalibrationCandidate candidate;
+    private final String error;
+    private final AAudioSharingMode sharingMode;
+    private final AAudioPerformanceMode performanceMode;
+    private final int sampleRate;
+    private final int framesPerBurst;
+    private final int bufferSizeInFrames;
+    private final long openNanos;
+    private final long callbacks;
+    private final int xRuns;
+    private final double maxJitterMicros;
+    private final double rmsJitterMicros;
+    private final double meanLoad;
+    private final double maxLoad;
+    private final double latencyMillis;
+
+    /**
+     * @param sharingMode     sharing mode granted by the device
+     * @param performanceMode performance mode granted by the device
+     * @param latencyMillis   output latency estimated from timestamps, or from the buffer size if the
+     *                        stream reported none
+     */
+    public CalibrationResult(CalibrationCandidate candidate, AAudioSharingMode sharingMode,
+                             AAudioPerformanceMode performanceMode, int sampleRate, int framesPerBurst,
+                             int bufferSizeInFrames, long openNanos, long callbacks, int xRuns,
+                             double maxJitterMicros, double rmsJitterMicros, double meanLoad, double maxLoad,
+                             double latencyMillis) {
+        this.candidate = candidate;
+        this.error = null;
+        this.sharingMode = sharingMode;
+        this.performanceMode = performanceMode;
+        this.sampleRate = sampleRate;
+        this.framesPerBurst = framesPerBurst;
+        this.bufferSizeInFrames = bufferSizeInFrames;
+        this.openNanos = openNanos;
+        this.callbacks = callbacks;
+        this.xRuns = xRuns;
+        this.maxJitterMicros = maxJitterMicros;
+        this.rmsJitterMicros = rmsJitterMicros;
+        this.meanLoad = meanLoad;
+        this.maxLoad = maxLoad;
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * A candidate that could not be opened or run.
+     */
+    public CalibrationResult(CalibrationCandidate candidate, String error) {
+        this.candidate = candidate;
+        this.error = error;
+        this.sharingMode = null;
+        this.performanceMode = null;
+        this.sampleRate = 0;
+        this.framesPerBurst = 0;
+        this.bufferSizeInFrames = 0;
+        this.openNanos = 0;
+        this.callbacks = 0;
+        this.xRuns = 0;
+        this.maxJitterMicros = Double.NaN;
+        this.rmsJitterMicros = Double.NaN;
+        this.meanLoad = Double.NaN;
+        this.maxLoad = Double.NaN;
+        this.latencyMillis = Double.NaN;
+    }
+
+    public CalibrationCandidate getCandidate() {
+        return candidate;
+    }
+
+    /**
+     * @return true if the stream was opened and delivered callbacks
+     */
+    public boolean isSuccessful() {
+        return error == null && callbacks > 0;
+    }
+
+    /**
+     * @return why the candidate failed, or null
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the device granted the requested sharing and performance mode
+     */
+    public boolean isGranted() {
+        return sharingMode == candidate.getSharingMode() && performanceMode == candidate.getPerformanceMode();
+    }
+
+    public AAudioSharingMode getSharingMode() {
+        return sharingMode;
+    }
+
+    public AAudioPerformanceMode getPerformanceMode() {
+        return performanceMode;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFramesPerBurst() {
+        return framesPerBurst;
+    }
+
+    public int getBufferSizeInFrames() {
+        return bufferSizeInFrames;
+    }
+
+    public long getOpenNanos() {
+        return openNanos;
+    }
+
+    public long getCallbacks() {
+        return callbacks;
+    }
+
+    /**
+     * @return xruns while measuring
+     */
+    public int getXRuns() {
+        return xRuns;
+    }
+
+    /**
+     * @return largest deviation of a callback interval from the duration of its frames
+     */
+    public double getMaxJitterMicros() {
+        return maxJitterMicros;
+    }
+
+    public double getRmsJitterMicros() {
+        return rmsJitterMicros;
+    }
+
+    /**
+     * @return mean callback duration, including the synthetic load, as a fraction of the callback period
+     */
+    public double getMeanLoad() {
+        return meanLoad;
+    }
+
+    public double getMaxLoad() {
+        return maxLoad;
+    }
+
+    public double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return candidate + " failed: " + error;
+        }
+        return String.format(Locale.ROOT,
+                "%s -> %s/%s, burst %d, buffer %d, open %.1f ms, %d xruns, jitter %.0f/%.0f us, load %.2f/%.2f, "
+                        + "latency %.1f ms",
+                candidate, sharingMode, performanceMode, framesPerBurst, bufferSizeInFrames, openNanos / 1e6, xRuns,
+                rmsJitterMicros, maxJitterMicros, meanLoad, maxLoad, latencyMillis);
+    }
+}
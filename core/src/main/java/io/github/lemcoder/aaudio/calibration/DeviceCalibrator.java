@@ -0,0 +1,310 @@
+package io.github.lemcoder.aaudio.calibration;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilderFactory;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the lowest-latency output configuration a device can sustain.
+ * <p>
+ * Every combination of sharing mode, performance mode, frames per data callback and buffer size, in
+ * multiples of the burst, is opened and run for a while with silence and a synthetic load that busy-waits
+ * for a fraction of each callback period. Each run records xruns, callback jitter, callback load and the
+ * output latency estimated from the stream timestamps.
+ * <p>
+ * The recommendation is the lowest-latency candidate that was granted what it asked for and stayed within
+ * the glitch budget. Runs are sequential and block the calling thread, so calibrate off the main thread,
+ * eg. once after install or an OS update, and keep the {@link DeviceProfile}.
+ */
+public class DeviceCalibrator {
+    private static final long SAMPLE_MILLIS = 50;
+    private static final int SKIPPED_CALLBACKS = 4;
+
+    private final int deviceId;
+    private final int sampleRate;
+    private final int channelCount;
+
+    private AAudioSharingMode[] sharingModes = {
+            AAudioSharingMode.AAUDIO_SHARING_MODE_EXCLUSIVE, AAudioSharingMode.AAUDIO_SHARING_MODE_SHARED};
+    private AAudioPerformanceMode[] performanceModes = {AAudioPerformanceMode.LOW_LATENCY, AAudioPerformanceMode.NONE};
+    private int[] framesPerDataCallback = {0};
+    private int[] bufferBursts = {1, 2, 3, 4};
+    private int settleMillis = 300;
+    private int measureMillis = 2000;
+    private float syntheticLoad = 0.3f;
+    private int maxXRuns = 0;
+    private double maxLoad = 0.8;
+    private double maxJitterMicros = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param deviceId     device to calibrate, 0 for the default device
+     * @param sampleRate   requested sample rate, 0 to leave it to the device
+     * @param channelCount channel count of the calibrated streams
+     */
+    public DeviceCalibrator(int deviceId, int sampleRate, int channelCount) {
+        this.deviceId = deviceId;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+    }
+
+    /**
+     * @param framesPerDataCallback frames per data callback to try, 0 for the device's choice
+     * @param bufferBursts          buffer sizes to try, in multiples of the burst
+     */
+    public void setMatrix(AAudioSharingMode[] sharingModes, AAudioPerformanceMode[] performanceModes,
+                          int[] framesPerDataCallback, int[] bufferBursts) {
+        this.sharingModes = sharingModes.clone();
+        this.performanceModes = performanceModes.clone();
+        this.framesPerDataCallback = framesPerDataCallback.clone();
+        this.bufferBursts = bufferBursts.clone();
+    }
+
+    /**
+     * @param settleMillis  time after start that is not measured
+     * @param measureMillis measured time per candidate
+     * @param syntheticLoad busy time per callback, as a fraction of the callback period
+     */
+    public void setRun(int settleMillis, int measureMillis, float syntheticLoad) {
+        if (syntheticLoad < 0 || syntheticLoad >= 1) {
+            throw new IllegalArgumentException("Synthetic load must be in [0, 1): " + syntheticLoad);
+        }
+        this.settleMillis = settleMillis;
+        this.measureMillis = measureMillis;
+        this.syntheticLoad = syntheticLoad;
+    }
+
+    /**
+     * @param maxXRuns        most xruns a recommended candidate may have while measuring
+     * @param maxLoad         highest callback load, as a fraction of the callback period
+     * @param maxJitterMicros largest callback jitter
+     */
+    public void setGlitchBudget(int maxXRuns, double maxLoad, double maxJitterMicros) {
+        this.maxXRuns = maxXRuns;
+        this.maxLoad = maxLoad;
+        this.maxJitterMicros = maxJitterMicros;
+    }
+
+    /**
+     * @return the candidates in sweep order
+     */
+    public List<CalibrationCandidate> getCandidates() {
+        List<CalibrationCandidate> candidates = new ArrayList<>();
+        for (AAudioSharingMode sharingMode : sharingModes) {
+            for (AAudioPerformanceMode performanceMode : performanceModes) {
+                for (int frames : framesPerDataCallback) {
+                    for (int bursts : bufferBursts) {
+                        candidates.add(new CalibrationCandidate(sharingMode, performanceMode, frames, bursts));
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Measure every candidate. Blocks for about the settle plus measure time per candidate.
+     *
+     * @param description identifies the device and software in the profile, eg. the build fingerprint
+     */
+    public DeviceProfile calibrate(String description) throws InterruptedException {
+        List<CalibrationResult> results = new ArrayList<>();
+        for (CalibrationCandidate candidate : getCandidates()) {
+            results.add(measure(candidate));
+        }
+        return new DeviceProfile(deviceId, description, System.currentTimeMillis(), results, recommend(results));
+    }
+
+    /**
+     * @return the lowest-latency result within the glitch budget, or null
+     */
+    public CalibrationResult recommend(List<CalibrationResult> results) {
+        CalibrationResult best = null;
+        for (CalibrationResult result : results) {
+            if (!result.isSuccessful() || !result.isGranted()
+                    || result.getXRuns() > maxXRuns
+                    || result.getMaxLoad() > maxLoad
+                    || result.getMaxJitterMicros() > maxJitterMicros) {
+                continue;
+            }
+            if (best == null || result.getLatencyMillis() < best.getLatencyMillis()) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Open, run and close one candidate.
+     */
+    public CalibrationResult measure(CalibrationCandidate candidate) throws InterruptedException {
+        try (AAudioStreamBuilder builder = AAudioStreamBuilderFactory.createStreamBuilder()) {
+            builder.setDirection(AAudioAudioDirection.OUTPUT);
+            builder.setFormat(AAudioFormat.PCM_FLOAT);
+            builder.setChannelCount(channelCount);
+            if (deviceId != 0) {
+                builder.setDeviceId(deviceId);
+            }
+            if (sampleRate != 0) {
+                builder.setSampleRate(sampleRate);
+            }
+            candidate.applyTo(builder);
+            Probe probe = new Probe(syntheticLoad);
+            builder.setDataCallback(probe);
+
+            long openStart = System.nanoTime();
+            AAudioStream stream;
+            try {
+                stream = builder.openStream();
+            } catch (RuntimeException e) {
+                return new CalibrationResult(candidate, "open failed: " + e.getMessage());
+            }
+            long openNanos = System.nanoTime() - openStart;
+
+            try (Arena arena = Arena.ofConfined()) {
+                return run(candidate, stream, probe, openNanos, arena);
+            } finally {
+                stream.close();
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Throwable t) {
+            return new CalibrationResult(candidate, String.valueOf(t));
+        }
+    }
+
+    private CalibrationResult run(CalibrationCandidate candidate, AAudioStream stream, Probe probe, long openNanos,
+                                  Arena arena) throws Throwable {
+        int rate = stream.getSampleRate();
+        int bufferSize = candidate.applyTo(stream);
+        if (bufferSize < 0) {
+            return new CalibrationResult(candidate, "setBufferSizeInFrames failed: " + bufferSize);
+        }
+        probe.sampleRate = rate;
+
+        AAudioResult result = stream.requestStart();
+        if (result != AAudioResult.OK) {
+            return new CalibrationResult(candidate, "start failed: " + result);
+        }
+        List<Double> latencies = new ArrayList<>();
+        int xRunsStart;
+        try {
+            Thread.sleep(settleMillis);
+            xRunsStart = stream.getXRunCount();
+            probe.measuring = true;
+            MemorySegment frame = arena.allocate(ValueLayout.JAVA_LONG);
+            MemorySegment nanos = arena.allocate(ValueLayout.JAVA_LONG);
+            long end = System.nanoTime() + measureMillis * 1_000_000L;
+            while (System.nanoTime() < end) {
+                Thread.sleep(SAMPLE_MILLIS);
+                double latency = latencyMillis(stream, rate, frame, nanos);
+                if (!Double.isNaN(latency)) {
+                    latencies.add(latency);
+                }
+            }
+            probe.measuring = false;
+        } finally {
+            stream.requestStop();
+        }
+
+        int xRuns = stream.getXRunCount() - xRunsStart;
+        double latency = latencies.isEmpty() ? stream.getBufferSizeInFrames() * 1000.0 / rate : median(latencies);
+        long callbacks = probe.callbacks;
+        double periodNanosTotal = probe.periodNanosTotal;
+        return new CalibrationResult(candidate, stream.getSharingMode(), stream.getPerformanceMode(), rate,
+                stream.getFramesPerBurst(), stream.getBufferSizeInFrames(), openNanos, callbacks, xRuns,
+                probe.maxJitterNanos / 1000.0,
+                callbacks > 0 ? Math.sqrt(probe.jitterSquaresNanos / callbacks) / 1000.0 : Double.NaN,
+                periodNanosTotal > 0 ? probe.busyNanosTotal / periodNanosTotal : Double.NaN,
+                probe.maxLoad, latency);
+    }
+
+    /**
+     * Time until the frame written next is presented, extrapolated from the last timestamp.
+     */
+    private static double latencyMillis(AAudioStream stream, int rate, MemorySegment frame, MemorySegment nanos)
+            throws Throwable {
+        if (stream.getTimestamp(AAudioStream.CLOCK_MONOTONIC, frame, nanos) != AAudioResult.OK) {
+            return Double.NaN;
+        }
+        long now = System.nanoTime();
+        double presented = nanos.get(ValueLayout.JAVA_LONG, 0)
+                + (stream.getFramesWritten() - frame.get(ValueLayout.JAVA_LONG, 0)) * 1e9 / rate;
+        return (presented - now) / 1e6;
+    }
+
+    private static double median(List<Double> values) {
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    /**
+     * Plays silence, burns the synthetic load and collects timing. The statistics are written by the
+     * callback while measuring and read after the stream stopped.
+     */
+    private static final class Probe implements AAudioStreamBufferCallback {
+        private final float syntheticLoad;
+        volatile int sampleRate;
+        volatile boolean measuring;
+
+        private long lastNanos;
+        private int skipped;
+        private double sink;
+        volatile long callbacks;
+        volatile double maxJitterNanos;
+        volatile double jitterSquaresNanos;
+        volatile double busyNanosTotal;
+        volatile double periodNanosTotal;
+        volatile double maxLoad;
+
+        Probe(float syntheticLoad) {
+            this.syntheticLoad = syntheticLoad;
+        }
+
+        @Override
+        public AAudioCallbackResult onAudioReady(AudioBuffer buffer) {
+            long begin = System.nanoTime();
+            int rate = sampleRate;
+            double periodNanos = rate > 0 ? buffer.getNumFrames() * 1e9 / rate : 0;
+
+            long busyUntil = begin + (long) (periodNanos * syntheticLoad);
+            double x = sink;
+            while (System.nanoTime() < busyUntil) {
+                x = x * 0.999 + 1.0;
+            }
+            sink = x;
+            buffer.clear();
+
+            if (measuring && periodNanos > 0) {
+                if (skipped < SKIPPED_CALLBACKS) {
+                    skipped++;
+                } else {
+                    double jitter = Math.abs(begin - lastNanos - periodNanos);
+                    double busy = System.nanoTime() - begin;
+                    callbacks++;
+                    maxJitterNanos = Math.max(maxJitterNanos, jitter);
+                    jitterSquaresNanos += jitter * jitter;
+                    busyNanosTotal += busy;
+                    periodNanosTotal += periodNanos;
+                    maxLoad = Math.max(maxLoad, busy / periodNanos);
+                }
+            }
+            lastNanos = begin;
+            return AAudioCallbackResult.CONTINUE;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.lemcoder.aaudio.calibration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link DeviceCalibrator} run: every measured candidate and the recommended one.
+ * <p>
+ * Profiles are {@link Serializable}; {@link #writeTo(OutputStream)} and {@link #readFrom(InputStream)} store
+ * them, eg. in the app's files, and the description tells stale profiles apart, eg. after an OS update.
+ */
+public class DeviceProfile implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int deviceId;
+    private final String description;
+    private final long createdMillis;
+    private final ArrayList<CalibrationResult> results;
+    private final CalibrationResult recommended;
+
+    /**
+     * @param deviceId    calibrated device, 0 for the default device
+     * @param description identifies the device and software, eg. the build fingerprint
+     * @param recommended recommended result, or null if no candidate met the glitch budget
+     */
+    public DeviceProfile(int deviceId, String description, long createdMillis, List<CalibrationResult> results,
+                         CalibrationResult recommended) {
+        this.deviceId = deviceId;
+        this.description = description;
+        this.createdMillis = createdMillis;
+        this.results = new ArrayList<>(results);
+        this.recommended = recommended;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return creation time, in milliseconds since the epoch
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public List<CalibrationResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return the lowest-latency result within the glitch budget, or null
+     */
+    public CalibrationResult getRecommended() {
+        return recommended;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        ObjectOutputStream objects = new ObjectOutputStream(out);
+        objects.writeObject(this);
+        objects.flush();
+    }
+
+    /**
+     * @throws IOException if the data is not a profile, eg. written by an incompatible version
+     */
+    public static DeviceProfile readFrom(InputStream in) throws IOException {
+        try {
+            Object object = new ObjectInputStream(in).readObject();
+            if (!(object instanceof DeviceProfile)) {
+                throw new IOException("Not a device profile: " + object);
+            }
+            return (DeviceProfile) object;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Not a device profile", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DeviceProfile{deviceId=").append(deviceId)
+                .append(", description=").append(description)
+                .append(", createdMillis=").append(createdMillis)
+                .append(", recommended=").append(recommended != null ? recommended.getCandidate() : null)
+                .append('}');
+        for (CalibrationResult result : results) {
+            sb.append("\n  ").append(result == recommended ? "* " : "  ").append(result);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,270 @@
+package io.github.lemcoder.aaudio.capability;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers what each requested stream configuration negotiated on this device, so later opens skip
+ * what is known not to work.
+ * <p>
+ * A typical case is an EXCLUSIVE request that the device always downgrades to SHARED: the first open
+ * pays for the failed exclusive attempt, {@link #openStream(AAudioStreamBuilder, StreamRequest)} records the
+ * SHARED outcome, and later opens request SHARED directly.
+ * <p>
+ * The cache is a small versioned binary file. It is keyed by the requested configuration, including the
+ * device id, and belongs to one OS build: a file written by another build or another format version is
+ * ignored. An entry is dropped when a stream opened from it does not match it or fails to open.
+ * All methods are thread-safe.
+ */
+public class CapabilityCache {
+    private static final int MAGIC = 0x41414343; // "AACC"
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final String osBuild;
+    private final Map<StreamRequest, StreamCapability> entries = new HashMap<>();
+    private boolean dirty;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * @param file    backing file, eg. in the app's files directory
+     * @param osBuild identifies the OS build, eg. the build fingerprint
+     */
+    public CapabilityCache(File file, String osBuild) {
+        this.file = file;
+        this.osBuild = osBuild;
+    }
+
+    /**
+     * Replace the entries with those in the file.
+     *
+     * @return false if the file is missing, unreadable or belongs to another OS build or version,
+     * in which case the cache starts empty
+     */
+    public synchronized boolean load() {
+        entries.clear();
+        dirty = false;
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !osBuild.equals(in.readUTF())) {
+                dirty = true;
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                StreamRequest request = readRequest(in);
+                StreamCapability capability = readCapability(in);
+                if (request != null && capability != null) {
+                    entries.put(request, capability);
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            entries.clear();
+            dirty = true;
+            return false;
+        }
+    }
+
+    /**
+     * Write the entries if they changed since the last load or save. The file is replaced atomically.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(osBuild);
+            out.writeInt(entries.size());
+            for (Map.Entry<StreamRequest, StreamCapability> entry : entries.entrySet()) {
+                writeRequest(out, entry.getKey());
+                writeCapability(out, entry.getValue());
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+        dirty = false;
+    }
+
+    /**
+     * @return the recorded outcome of a request, or null
+     */
+    public synchronized StreamCapability get(StreamRequest request) {
+        return entries.get(request);
+    }
+
+    public synchronized void put(StreamRequest request, StreamCapability capability) {
+        entries.put(request, capability);
+        dirty = true;
+    }
+
+    /**
+     * Drop the entry of a request, eg. after the stream it produced failed.
+     */
+    public synchronized void invalidate(StreamRequest request) {
+        if (entries.remove(request) != null) {
+            invalidations++;
+            dirty = true;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        dirty = true;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Open a stream for a request, going straight to the known-good configuration if there is one.
+     * <p>
+     * The builder must have everything else configured, eg. the data callback; this sets the device,
+     * direction, format, channel count, sample rate, sharing and performance mode. Without an entry, or if
+     * the cached configuration fails to open or opens differently, the request is opened as is and its
+     * outcome recorded. Changes are saved right away; failing to save does not fail the open.
+     *
+     * @throws RuntimeException if the stream could not be opened as requested either
+     */
+    public AAudioStream openStream(AAudioStreamBuilder builder, StreamRequest request) throws Throwable {
+        StreamCapability cached = get(request);
+        if (cached != null) {
+            request.applyTo(builder, cached.getSharingMode(), cached.getPerformanceMode(), cached.getSampleRate());
+            AAudioStream stream = null;
+            try {
+                stream = builder.openStream();
+            } catch (RuntimeException ignored) {
+            }
+            if (stream != null && cached.matches(stream)) {
+                synchronized (this) {
+                    hits++;
+                }
+                return stream;
+            }
+            if (stream != null) {
+                stream.close();
+            }
+            invalidate(request);
+        }
+
+        synchronized (this) {
+            misses++;
+        }
+        request.applyTo(builder);
+        long start = System.nanoTime();
+        AAudioStream stream = builder.openStream();
+        put(request, StreamCapability.of(stream, System.nanoTime() - start));
+        try {
+            save();
+        } catch (IOException ignored) {
+            // The cache only saves time, the stream is fine without it.
+        }
+        return stream;
+    }
+
+    /**
+     * @return opens that used a cached configuration
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return opens without a usable cached configuration
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return entries dropped because of a mismatch or failure
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    // ============================================================
+    // Serialization
+    // ============================================================
+
+    private static void writeRequest(DataOutputStream out, StreamRequest request) throws IOException {
+        out.writeInt(request.getDeviceId());
+        out.writeInt(request.getDirection().getValue());
+        out.writeInt(request.getFormat().getValue());
+        out.writeInt(request.getSampleRate());
+        out.writeInt(request.getChannelCount());
+        out.writeInt(request.getSharingMode().getValue());
+        out.writeInt(request.getPerformanceMode().getValue());
+    }
+
+    /**
+     * @return the request, or null if it has values this version does not know
+     */
+    private static StreamRequest readRequest(DataInputStream in) throws IOException {
+        int deviceId = in.readInt();
+        AAudioAudioDirection direction = AAudioAudioDirection.fromValue(in.readInt());
+        AAudioFormat format = AAudioFormat.fromValue(in.readInt());
+        int sampleRate = in.readInt();
+        int channelCount = in.readInt();
+        AAudioSharingMode sharingMode = AAudioSharingMode.fromValue(in.readInt());
+        AAudioPerformanceMode performanceMode = AAudioPerformanceMode.fromValue(in.readInt());
+        if (direction == null || format == null || sharingMode == null || performanceMode == null) {
+            return null;
+        }
+        return new StreamRequest(deviceId, direction, format, sampleRate, channelCount, sharingMode,
+                performanceMode);
+    }
+
+    private static void writeCapability(DataOutputStream out, StreamCapability capability) throws IOException {
+        out.writeInt(capability.getSharingMode().getValue());
+        out.writeInt(capability.getPerformanceMode().getValue());
+        out.writeInt(capability.getSampleRate());
+        out.writeInt(capability.getFramesPerBurst());
+        out.writeInt(capability.getHardwareSampleRate());
+        AAudioFormat hardwareFormat = capability.getHardwareFormat();
+        out.writeInt(hardwareFormat != null ? hardwareFormat.getValue() : AAudioFormat.INVALID.getValue());
+        out.writeLong(capability.getOpenNanos());
+        out.writeLong(capability.getRecordedMillis());
+    }
+
+    private static StreamCapability readCapability(DataInputStream in) throws IOException {
+        AAudioSharingMode sharingMode = AAudioSharingMode.fromValue(in.readInt());
+        AAudioPerformanceMode performanceMode = AAudioPerformanceMode.fromValue(in.readInt());
+        int sampleRate = in.readInt();
+        int framesPerBurst = in.readInt();
+        int hardwareSampleRate = in.readInt();
+        AAudioFormat hardwareFormat = AAudioFormat.fromValue(in.readInt());
+        long openNanos = in.readLong();
+        long recordedMillis = in.readLong();
+        if (sharingMode == null || performanceMode == null) {
+            return null;
+        }
+        return new StreamCapability(sharingMode, performanceMode, sampleRate, framesPerBurst, hardwareSampleRate,
+                hardwareFormat, openNanos, recordedMillis);
+    }
+}
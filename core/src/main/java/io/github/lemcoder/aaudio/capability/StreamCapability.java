@@ -0,0 +1,100 @@
+package io.github.lemcoder.aaudio.capability;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+/**
+ * What the device negotiated for a {@link StreamRequest}, and what opening the stream cost.
+ */
+public final class StreamCapability {
+    private final AAudioSharingMode sharingMode;
+    private final AAudioPerformanceMode performanceMode;
+    private final int sampleRate;
+    private final int framesPerBurst;
+    private final int hardwareSampleRate;
+    private final AAudioFormat hardwareFormat;
+    private final long openNanos;
+    private final long recordedMillis;
+
+    public StreamCapability(AAudioSharingMode sharingMode, AAudioPerformanceMode performanceMode, int sampleRate,
+                            int framesPerBurst, int hardwareSampleRate, AAudioFormat hardwareFormat, long openNanos,
+                            long recordedMillis) {
+        this.sharingMode = sharingMode;
+        this.performanceMode = performanceMode;
+        this.sampleRate = sampleRate;
+        this.framesPerBurst = framesPerBurst;
+        this.hardwareSampleRate = hardwareSampleRate;
+        this.hardwareFormat = hardwareFormat;
+        this.openNanos = openNanos;
+        this.recordedMillis = recordedMillis;
+    }
+
+    /**
+     * Read the negotiated configuration of an open stream.
+     *
+     * @param openNanos time it took to open the stream
+     */
+    public static StreamCapability of(AAudioStream stream, long openNanos) throws Throwable {
+        return new StreamCapability(stream.getSharingMode(), stream.getPerformanceMode(), stream.getSampleRate(),
+                stream.getFramesPerBurst(), stream.getHardwareSampleRate(), stream.getHardwareFormat(), openNanos,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * @return true if an open stream has the negotiated sharing mode, performance mode and sample rate
+     */
+    public boolean matches(AAudioStream stream) throws Throwable {
+        return stream.getSharingMode() == sharingMode
+                && stream.getPerformanceMode() == performanceMode
+                && stream.getSampleRate() == sampleRate;
+    }
+
+    public AAudioSharingMode getSharingMode() {
+        return sharingMode;
+    }
+
+    public AAudioPerformanceMode getPerformanceMode() {
+        return performanceMode;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFramesPerBurst() {
+        return framesPerBurst;
+    }
+
+    public int getHardwareSampleRate() {
+        return hardwareSampleRate;
+    }
+
+    public AAudioFormat getHardwareFormat() {
+        return hardwareFormat;
+    }
+
+    public long getOpenNanos() {
+        return openNanos;
+    }
+
+    /**
+     * @return when the capability was recorded, in milliseconds since the epoch
+     */
+    public long getRecordedMillis() {
+        return recordedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamCapability{sharingMode=" + sharingMode
+                + ", performanceMode=" + performanceMode
+                + ", sampleRate=" + sampleRate
+                + ", framesPerBurst=" + framesPerBurst
+                + ", hardwareSampleRate=" + hardwareSampleRate
+                + ", hardwareFormat=" + hardwareFormat
+                + ", openNanos=" + openNanos
+                + ", recordedMillis=" + recordedMillis + '}';
+    }
+}
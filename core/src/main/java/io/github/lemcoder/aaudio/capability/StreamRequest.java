@@ -0,0 +1,118 @@
+package io.github.lemcoder.aaudio.capability;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+import java.util.Objects;
+
+/**
+ * Stream configuration as requested by the application, the key of a {@link CapabilityCache} entry.
+ */
+public final class StreamRequest {
+    private final int deviceId;
+    private final AAudioAudioDirection direction;
+    private final AAudioFormat format;
+    private final int sampleRate;
+    private final int channelCount;
+    private final AAudioSharingMode sharingMode;
+    private final AAudioPerformanceMode performanceMode;
+
+    /**
+     * @param deviceId   requested device, 0 for the default device
+     * @param sampleRate requested sample rate, 0 to leave it to the device
+     */
+    public StreamRequest(int deviceId, AAudioAudioDirection direction, AAudioFormat format, int sampleRate,
+                         int channelCount, AAudioSharingMode sharingMode, AAudioPerformanceMode performanceMode) {
+        this.deviceId = deviceId;
+        this.direction = Objects.requireNonNull(direction);
+        this.format = Objects.requireNonNull(format);
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.sharingMode = Objects.requireNonNull(sharingMode);
+        this.performanceMode = Objects.requireNonNull(performanceMode);
+    }
+
+    /**
+     * Configure a builder exactly as requested, overriding any earlier settings of these properties.
+     */
+    public void applyTo(AAudioStreamBuilder builder) throws Throwable {
+        applyTo(builder, sharingMode, performanceMode, sampleRate);
+    }
+
+    void applyTo(AAudioStreamBuilder builder, AAudioSharingMode sharingMode, AAudioPerformanceMode performanceMode,
+                 int sampleRate) throws Throwable {
+        // Always set, 0 being AAUDIO_UNSPECIFIED, so a builder reused after a cached attempt is reset too.
+        builder.setDeviceId(deviceId);
+        builder.setDirection(direction);
+        builder.setFormat(format);
+        builder.setChannelCount(channelCount);
+        builder.setSampleRate(sampleRate);
+        builder.setSharingMode(sharingMode);
+        builder.setPerformanceMode(performanceMode);
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public AAudioAudioDirection getDirection() {
+        return direction;
+    }
+
+    public AAudioFormat getFormat() {
+        return format;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public AAudioSharingMode getSharingMode() {
+        return sharingMode;
+    }
+
+    public AAudioPerformanceMode getPerformanceMode() {
+        return performanceMode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StreamRequest)) {
+            return false;
+        }
+        StreamRequest that = (StreamRequest) o;
+        return deviceId == that.deviceId
+                && sampleRate == that.sampleRate
+                && channelCount == that.channelCount
+                && direction == that.direction
+                && format == that.format
+                && sharingMode == that.sharingMode
+                && performanceMode == that.performanceMode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(deviceId, direction, format, sampleRate, channelCount, sharingMode, performanceMode);
+    }
+
+    @Override
+    public String toString() {
+        return "StreamRequest{deviceId=" + deviceId
+                + ", direction=" + direction
+                + ", format=" + format
+                + ", sampleRate=" + sampleRate
+                + ", channelCount=" + channelCount
+                + ", sharingMode=" + sharingMode
+                + ", performanceMode=" + performanceMode + '}';
+    }
+}
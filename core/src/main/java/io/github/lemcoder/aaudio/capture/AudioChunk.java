@@ -0,0 +1,114 @@
+package io.github.lemcoder.aaudio.capture;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pooled, reference counted block of captured audio in the stream format.
+ * <p>
+ * A subscriber owns one reference to every chunk it receives and must call {@link #release()} once it
+ * is done with it. Call {@link #retain()} before handing the chunk to another owner. When the last
+ * reference is released the chunk goes back to the pool and its memory is reused.
+ */
+public class AudioChunk {
+    private final MemorySegment memory;
+    private final Queue<AudioChunk> pool;
+    private final AAudioFormat format;
+    private final int channelCount;
+    private final int bytesPerFrame;
+    private final AtomicInteger references = new AtomicInteger();
+
+    private MemorySegment data;
+    private int numFrames;
+    private long framePosition;
+
+    AudioChunk(MemorySegment memory, Queue<AudioChunk> pool, AAudioFormat format, int channelCount) {
+        this.memory = memory;
+        this.pool = pool;
+        this.format = format;
+        this.channelCount = channelCount;
+        this.bytesPerFrame = format.getBytesPerSample() * channelCount;
+    }
+
+    /**
+     * Take the chunk out of the pool with a single reference.
+     */
+    void reset(int numFrames, long framePosition) {
+        this.numFrames = numFrames;
+        this.framePosition = framePosition;
+        this.data = memory.asSlice(0, (long) numFrames * bytesPerFrame);
+        references.set(1);
+    }
+
+    MemorySegment getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return interleaved samples of this chunk, valid until the last reference is released
+     */
+    public MemorySegment getSegment() {
+        return data;
+    }
+
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    /**
+     * @return position of the first frame among all frames published, gaps from overflow not counted
+     */
+    public long getFramePosition() {
+        return framePosition;
+    }
+
+    public AAudioFormat getFormat() {
+        return format;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * Copy the samples to a heap array.
+     *
+     * @return number of bytes copied
+     */
+    public int copyTo(byte[] dst, int dstOffset) {
+        int bytes = (int) data.byteSize();
+        MemorySegment.copy(data, ValueLayout.JAVA_BYTE, 0, dst, dstOffset, bytes);
+        return bytes;
+    }
+
+    /**
+     * Add a reference.
+     *
+     * @return this chunk
+     */
+    public AudioChunk retain() {
+        if (references.getAndIncrement() <= 0) {
+            references.getAndDecrement();
+            throw new IllegalStateException("Chunk already released");
+        }
+        return this;
+    }
+
+    /**
+     * Drop a reference; the last one returns the chunk to the pool.
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            data = null;
+            pool.offer(this);
+        } else if (remaining < 0) {
+            references.incrementAndGet();
+            throw new IllegalStateException("Chunk already released");
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package io.github.lemcoder.aaudio.capture;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.buffer.SegmentRingBuffer;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes the audio of an input stream as {@link AudioChunk}s.
+ * <p>
+ * The data callback only copies frames into an off-heap {@link SegmentRingBuffer}. A delivery thread cuts
+ * the ring into chunks of a fixed number of frames, taken from a preallocated pool, and hands them to
+ * every subscriber as far as its demand allows. Chunks a subscriber has not requested yet are queued per
+ * subscriber, up to a limit; beyond it the {@link OverflowPolicy} applies. All signals to subscribers are
+ * sent from the delivery thread.
+ * <p>
+ * Each subscriber receives its own reference to a chunk and must release it. If the pool runs empty
+ * because chunks are not released, new audio is dropped (or, with {@link OverflowPolicy#BLOCK}, left
+ * in the ring).
+ * <p>
+ * java.util.concurrent.Flow is available since API level 30.
+ */
+public class CapturePublisher implements Flow.Publisher<AudioChunk>, AutoCloseable {
+    private final AAudioFormat format;
+    private final int channelCount;
+    private final int bytesPerFrame;
+    private final int chunkFrames;
+    private final int maxQueuedChunks;
+    private final OverflowPolicy policy;
+    private final long idleParkNanos;
+
+    private final Arena arena = Arena.ofShared();
+    private final SegmentRingBuffer ring;
+    private final Queue<AudioChunk> pool = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<ChunkSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong callbackDroppedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private long publishedFrames;
+
+    // Read by the data callback and subscribers to unpark it.
+    private volatile Thread delivery;
+    private volatile boolean running;
+    private volatile Throwable error;
+
+    /**
+     * @param format          format of the captured data
+     * @param sampleRate      sample rate of the stream
+     * @param channelCount    channels of the captured data
+     * @param chunkFrames     frames per chunk
+     * @param poolSize        number of chunks allocated up front
+     * @param ringFrames      frames buffered between the callback and the delivery thread
+     * @param maxQueuedChunks chunks queued per subscriber without demand before the policy applies
+     * @param policy          overflow policy
+     */
+    public CapturePublisher(AAudioFormat format, int sampleRate, int channelCount, int chunkFrames, int poolSize,
+                            int ringFrames, int maxQueuedChunks, OverflowPolicy policy) {
+        if (chunkFrames <= 0 || poolSize <= 0 || maxQueuedChunks <= 0) {
+            throw new IllegalArgumentException("Chunk size, pool size and queue length must be positive");
+        }
+        this.format = format;
+        this.channelCount = channelCount;
+        this.bytesPerFrame = format.getBytesPerSample() * channelCount;
+        this.chunkFrames = chunkFrames;
+        this.maxQueuedChunks = maxQueuedChunks;
+        this.policy = policy;
+        this.idleParkNanos = Math.max(100_000L, chunkFrames * 1_000_000_000L / sampleRate / 4);
+        this.ring = new SegmentRingBuffer(arena, (long) Math.max(ringFrames, chunkFrames) * bytesPerFrame);
+
+        // Chunks may outlive the publisher in a slow subscriber, so they are freed by the GC.
+        Arena chunkArena = Arena.ofAuto();
+        for (int i = 0; i < poolSize; i++) {
+            MemorySegment memory = chunkArena.allocate((long) chunkFrames * bytesPerFrame, 64);
+            pool.offer(new AudioChunk(memory, pool, format, channelCount));
+        }
+    }
+
+    /**
+     * Create a publisher matching the format of the stream.
+     *
+     * @param chunkMillis  duration of one chunk
+     * @param bufferMillis duration buffered in the ring, and per subscriber without demand
+     */
+    public static CapturePublisher forStream(AAudioStream stream, int chunkMillis, int bufferMillis,
+                                             OverflowPolicy policy) throws Throwable {
+        int sampleRate = stream.getSampleRate();
+        int chunkFrames = Math.max(1, sampleRate * chunkMillis / 1000);
+        int chunks = Math.max(2, bufferMillis / Math.max(1, chunkMillis));
+        return new CapturePublisher(stream.getFormat(), sampleRate, stream.getChannelCount(), chunkFrames,
+                2 * chunks, chunkFrames * chunks, chunks, policy);
+    }
+
+    /**
+     * Start the delivery thread.
+     */
+    public synchronized void start() {
+        if (delivery != null) {
+            return;
+        }
+        running = true;
+        delivery = new Thread(this::deliver, "CapturePublisher");
+        delivery.setPriority(Thread.NORM_PRIORITY + 1);
+        delivery.start();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super AudioChunk> subscriber) {
+        ChunkSubscription subscription = new ChunkSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscriptions.add(subscription);
+        LockSupport.unpark(delivery);
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Queue interleaved frames from the data callback. Never blocks.
+     *
+     * @return false if the frames were dropped because the ring is full
+     */
+    public boolean write(MemorySegment data, int numFrames) {
+        long bytes = (long) numFrames * bytesPerFrame;
+        if (ring.availableToWrite() < bytes) {
+            callbackDroppedFrames.addAndGet(numFrames);
+            return false;
+        }
+        ring.write(data, 0, bytes);
+        return true;
+    }
+
+    public boolean write(AudioBuffer buffer) {
+        return write(buffer.getSegment(), buffer.getNumFrames());
+    }
+
+    /**
+     * A data callback that publishes everything it receives.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return buffer -> {
+            write(buffer);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    /**
+     * @return frames dropped by the data callback plus chunks dropped by the overflow policy or an empty pool
+     */
+    public long getDroppedFrames() {
+        return callbackDroppedFrames.get() + droppedFrames.get();
+    }
+
+    public int getChunkFrames() {
+        return chunkFrames;
+    }
+
+    public AAudioFormat getFormat() {
+        return format;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    // ============================================================
+    // Delivery thread
+    // ============================================================
+
+    private void deliver() {
+        long chunkBytes = (long) chunkFrames * bytesPerFrame;
+        while (running) {
+            boolean progress = drainQueues();
+            if (ring.availableToRead() >= chunkBytes) {
+                progress |= publishChunk(chunkFrames);
+            }
+            if (!progress) {
+                LockSupport.parkNanos(this, idleParkNanos);
+            }
+        }
+
+        // Flush what is left, including a final partial chunk, then complete.
+        while (ring.availableToRead() >= bytesPerFrame && !pool.isEmpty()) {
+            int frames = (int) Math.min(chunkFrames, ring.availableToRead() / bytesPerFrame);
+            if (!publishChunk(frames)) {
+                break;
+            }
+        }
+        for (ChunkSubscription subscription : subscriptions) {
+            subscription.drain();
+            subscription.finish(error);
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * @return true if any chunk was handed to a subscriber
+     */
+    private boolean drainQueues() {
+        boolean progress = false;
+        for (ChunkSubscription subscription : subscriptions) {
+            if (subscription.cancelled) {
+                subscription.clear();
+                subscriptions.remove(subscription);
+                continue;
+            }
+            progress |= subscription.drain();
+        }
+        return progress;
+    }
+
+    /**
+     * @return true if the ring was read
+     */
+    private boolean publishChunk(int frames) {
+        if (policy == OverflowPolicy.BLOCK) {
+            for (ChunkSubscription subscription : subscriptions) {
+                if (subscription.queue.size() >= maxQueuedChunks) {
+                    return false;
+                }
+            }
+        }
+        long bytes = (long) frames * bytesPerFrame;
+        AudioChunk chunk = pool.poll();
+        if (chunk == null) {
+            if (policy == OverflowPolicy.BLOCK) {
+                return false;
+            }
+            ring.skip(bytes);
+            droppedFrames.addAndGet(frames);
+            return true;
+        }
+        ring.read(chunk.getMemory(), 0, bytes);
+        chunk.reset(frames, publishedFrames);
+        publishedFrames += frames;
+
+        for (ChunkSubscription subscription : subscriptions) {
+            if (!subscription.cancelled) {
+                subscription.enqueue(chunk.retain());
+            }
+        }
+        chunk.release();
+        return true;
+    }
+
+    // ============================================================
+    // Shutdown
+    // ============================================================
+
+    /**
+     * Signal an error, eg. from the stream's error callback. Subscribers receive onError once the queued
+     * chunks are delivered.
+     */
+    public void fail(Throwable throwable) {
+        error = throwable;
+        stopDelivery();
+    }
+
+    /**
+     * Deliver what was captured so far as far as demand allows, complete all subscribers and free the ring.
+     * The data callback must not write to the publisher anymore.
+     */
+    @Override
+    public void close() {
+        stopDelivery();
+        arena.close();
+    }
+
+    private void stopDelivery() {
+        Thread thread;
+        synchronized (this) {
+            thread = delivery;
+            running = false;
+        }
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class ChunkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super AudioChunk> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final ArrayDeque<AudioChunk> queue = new ArrayDeque<>();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        ChunkSubscription(Flow.Subscriber<? super AudioChunk> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+                cancelled = true;
+            } else {
+                demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            LockSupport.unpark(delivery);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            LockSupport.unpark(delivery);
+        }
+
+        /**
+         * Delivery thread only.
+         */
+        void enqueue(AudioChunk chunk) {
+            if (queue.size() >= maxQueuedChunks) {
+                if (policy == OverflowPolicy.DROP_NEWEST) {
+                    droppedFrames.addAndGet(chunk.getNumFrames());
+                    chunk.release();
+                    return;
+                }
+                AudioChunk oldest = queue.poll();
+                droppedFrames.addAndGet(oldest.getNumFrames());
+                oldest.release();
+            }
+            queue.offer(chunk);
+        }
+
+        /**
+         * Delivery thread only.
+         *
+         * @return true if a chunk was delivered
+         */
+        boolean drain() {
+            boolean delivered = false;
+            while (!cancelled && !queue.isEmpty() && demand.get() > 0) {
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(queue.poll());
+                } catch (Throwable t) {
+                    cancelled = true;
+                }
+                delivered = true;
+            }
+            if (cancelled) {
+                clear();
+            }
+            return delivered;
+        }
+
+        void clear() {
+            AudioChunk chunk;
+            while ((chunk = queue.poll()) != null) {
+                chunk.release();
+            }
+            Throwable invalid = invalidRequest;
+            if (invalid != null) {
+                invalidRequest = null;
+                subscriber.onError(invalid);
+            }
+        }
+
+        void finish(Throwable error) {
+            clear();
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
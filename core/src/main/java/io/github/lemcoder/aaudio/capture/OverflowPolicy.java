@@ -0,0 +1,22 @@
+package io.github.lemcoder.aaudio.capture;
+
+/**
+ * What a {@link CapturePublisher} does with new audio when a subscriber has no demand and its queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Release the oldest queued chunk to make room. Subscribers always get the most recent audio.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Release the new chunk. Subscribers get a gap-free prefix, then a gap.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Stop reading from the capture ring until there is demand. Once the ring is full as well,
+     * the data callback drops the newest frames.
+     */
+    BLOCK
+}
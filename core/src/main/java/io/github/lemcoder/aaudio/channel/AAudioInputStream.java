@@ -0,0 +1,211 @@
+package io.github.lemcoder.aaudio.channel;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reads the raw interleaved bytes of an input stream that was opened without a data callback.
+ * <p>
+ * {@link #read(ByteBuffer)} into a direct buffer reads straight from AAudioStream_read() into the buffer's
+ * memory. Heap arrays and partial frames go through a one burst staging buffer.
+ * <p>
+ * A read blocks until at least one frame is available. Instead of waiting inside AAudioStream_read(),
+ * the thread polls with a zero timeout and parks in between, so a waiting virtual thread releases its
+ * carrier. Closing this object does not close the stream.
+ */
+public class AAudioInputStream extends InputStream implements ReadableByteChannel {
+    private final AAudioStream stream;
+    private final int bytesPerFrame;
+    private final int framesPerBurst;
+    private final long parkNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment staging;
+    private long stagingOffset;
+    private long stagingLimit;
+    private volatile boolean open = true;
+    private boolean freed;
+
+    /**
+     * @param stream started input stream without a data callback
+     */
+    public AAudioInputStream(AAudioStream stream) throws Throwable {
+        if (stream.getDirection() != AAudioAudioDirection.INPUT) {
+            throw new IllegalArgumentException("Not an input stream");
+        }
+        this.stream = stream;
+        this.bytesPerFrame = stream.getBytesPerFrame();
+        this.framesPerBurst = stream.getFramesPerBurst();
+        this.parkNanos = Math.max(100_000L, framesPerBurst * 1_000_000_000L / stream.getSampleRate() / 2);
+        this.staging = arena.allocate((long) framesPerBurst * bytesPerFrame, 64);
+    }
+
+    public int getBytesPerFrame() {
+        return bytesPerFrame;
+    }
+
+    @Override
+    public int read() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            if (stagingOffset == stagingLimit && fillStaging() < 0) {
+                return -1;
+            }
+            return staging.get(ValueLayout.JAVA_BYTE, stagingOffset++) & 0xFF;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            ensureOpen();
+            if (stagingOffset == stagingLimit && fillStaging() < 0) {
+                return -1;
+            }
+            int n = (int) Math.min(len, stagingLimit - stagingOffset);
+            MemorySegment.copy(staging, ValueLayout.JAVA_BYTE, stagingOffset, b, off, n);
+            stagingOffset += n;
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int remaining = dst.remaining();
+        lock.lock();
+        try {
+            ensureOpen();
+            if (remaining == 0) {
+                return 0;
+            }
+            if (stagingOffset == stagingLimit && dst.isDirect() && remaining >= bytesPerFrame) {
+                // Zero copy: AAudio writes into the buffer's memory.
+                MemorySegment target = MemorySegment.ofBuffer(dst);
+                int frames = readFrames(target, remaining / bytesPerFrame);
+                if (frames < 0) {
+                    return -1;
+                }
+                int bytes = frames * bytesPerFrame;
+                dst.position(dst.position() + bytes);
+                return bytes;
+            }
+            if (stagingOffset == stagingLimit && fillStaging() < 0) {
+                return -1;
+            }
+            int n = (int) Math.min(remaining, stagingLimit - stagingOffset);
+            MemorySegment.copy(staging, stagingOffset, MemorySegment.ofBuffer(dst), 0, n);
+            dst.position(dst.position() + n);
+            stagingOffset += n;
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes that can be read without blocking
+     */
+    @Override
+    public int available() throws IOException {
+        if (!open) {
+            return 0;
+        }
+        try {
+            long frames = Math.max(0, stream.getFramesWritten() - stream.getFramesRead());
+            return (int) Math.min(Integer.MAX_VALUE, frames * bytesPerFrame + (stagingLimit - stagingOffset));
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private int fillStaging() throws IOException {
+        int frames = readFrames(staging, framesPerBurst);
+        if (frames < 0) {
+            return -1;
+        }
+        stagingOffset = 0;
+        stagingLimit = (long) frames * bytesPerFrame;
+        return frames;
+    }
+
+    /**
+     * Read at least one frame.
+     *
+     * @return frames read, or -1 once closed
+     */
+    private int readFrames(MemorySegment target, int maxFrames) throws IOException {
+        while (open) {
+            int n;
+            try {
+                n = stream.read(target, maxFrames, 0);
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+            if (n < 0) {
+                throw new IOException("AAudioStream_read failed: " + AAudioResult.fromValue(n));
+            }
+            if (n > 0) {
+                return n;
+            }
+            LockSupport.parkNanos(this, parkNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Stop reading. Blocked reads return -1, later reads throw {@link ClosedChannelException}.
+     * The stream is not closed.
+     */
+    @Override
+    public void close() {
+        open = false;
+        lock.lock();
+        try {
+            if (!freed) {
+                freed = true;
+                arena.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
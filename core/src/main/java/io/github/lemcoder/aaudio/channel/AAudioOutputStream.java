@@ -0,0 +1,200 @@
+package io.github.lemcoder.aaudio.channel;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes raw interleaved bytes to an output stream that was opened without a data callback.
+ * <p>
+ * {@link #write(ByteBuffer)} from a direct buffer passes the buffer's memory straight to
+ * AAudioStream_write(). Heap arrays and partial frames go through a one burst staging buffer; a trailing
+ * partial frame is kept until the rest of it is written.
+ * <p>
+ * Writes block until all whole frames are accepted by the stream. Instead of waiting inside
+ * AAudioStream_write(), the thread polls with a zero timeout and parks in between, so a waiting virtual
+ * thread releases its carrier. Closing this object does not close the stream.
+ */
+public class AAudioOutputStream extends OutputStream implements WritableByteChannel {
+    private final AAudioStream stream;
+    private final int bytesPerFrame;
+    private final int framesPerBurst;
+    private final long parkNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment staging;
+    private final long stagingCapacity;
+    private long stagingLimit;
+    private volatile boolean open = true;
+    private boolean freed;
+
+    /**
+     * @param stream started output stream without a data callback
+     */
+    public AAudioOutputStream(AAudioStream stream) throws Throwable {
+        if (stream.getDirection() != AAudioAudioDirection.OUTPUT) {
+            throw new IllegalArgumentException("Not an output stream");
+        }
+        this.stream = stream;
+        this.bytesPerFrame = stream.getBytesPerFrame();
+        this.framesPerBurst = stream.getFramesPerBurst();
+        this.parkNanos = Math.max(100_000L, framesPerBurst * 1_000_000_000L / stream.getSampleRate() / 2);
+        this.stagingCapacity = (long) framesPerBurst * bytesPerFrame;
+        this.staging = arena.allocate(stagingCapacity, 64);
+    }
+
+    public int getBytesPerFrame() {
+        return bytesPerFrame;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            staging.set(ValueLayout.JAVA_BYTE, stagingLimit++, (byte) b);
+            if (stagingLimit == stagingCapacity) {
+                flushStaging();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        lock.lock();
+        try {
+            ensureOpen();
+            while (len > 0) {
+                int n = (int) Math.min(len, stagingCapacity - stagingLimit);
+                MemorySegment.copy(b, off, staging, ValueLayout.JAVA_BYTE, stagingLimit, n);
+                stagingLimit += n;
+                off += n;
+                len -= n;
+                flushStaging();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int total = src.remaining();
+        lock.lock();
+        try {
+            ensureOpen();
+            // Complete a pending partial frame first.
+            while (stagingLimit % bytesPerFrame != 0 && src.hasRemaining()) {
+                staging.set(ValueLayout.JAVA_BYTE, stagingLimit++, src.get());
+            }
+            flushStaging();
+
+            if (src.isDirect() && src.remaining() >= bytesPerFrame) {
+                // Zero copy: AAudio reads from the buffer's memory.
+                MemorySegment source = MemorySegment.ofBuffer(src);
+                int frames = src.remaining() / bytesPerFrame;
+                writeFrames(source, frames);
+                src.position(src.position() + frames * bytesPerFrame);
+            }
+            while (src.hasRemaining()) {
+                int n = (int) Math.min(src.remaining(), stagingCapacity - stagingLimit);
+                MemorySegment.copy(MemorySegment.ofBuffer(src), 0, staging, stagingLimit, n);
+                src.position(src.position() + n);
+                stagingLimit += n;
+                flushStaging();
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Write the whole frames in the staging buffer and move a partial frame to its start.
+     */
+    private void flushStaging() throws IOException {
+        int frames = (int) (stagingLimit / bytesPerFrame);
+        if (frames == 0) {
+            return;
+        }
+        writeFrames(staging, frames);
+        long written = (long) frames * bytesPerFrame;
+        long partial = stagingLimit - written;
+        if (partial > 0) {
+            MemorySegment.copy(staging, written, staging, 0, partial);
+        }
+        stagingLimit = partial;
+    }
+
+    private void writeFrames(MemorySegment source, int frames) throws IOException {
+        int done = 0;
+        while (done < frames) {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int n;
+            try {
+                MemorySegment buffer = done == 0 ? source : source.asSlice((long) done * bytesPerFrame);
+                n = stream.write(buffer, frames - done, 0);
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+            if (n < 0) {
+                throw new IOException("AAudioStream_write failed: " + AAudioResult.fromValue(n));
+            }
+            done += n;
+            if (n == 0) {
+                LockSupport.parkNanos(this, parkNanos);
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Stop writing. A pending partial frame is discarded, blocked writes throw
+     * {@link ClosedChannelException}. The stream is not closed.
+     */
+    @Override
+    public void close() {
+        open = false;
+        lock.lock();
+        try {
+            if (!freed) {
+                freed = true;
+                arena.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
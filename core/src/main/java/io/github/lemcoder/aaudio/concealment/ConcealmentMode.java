@@ -0,0 +1,16 @@
+package io.github.lemcoder.aaudio.concealment;
+
+/**
+ * What {@link UnderrunConcealer} plays while its source is starved.
+ */
+public enum ConcealmentMode {
+    /**
+     * Fade the last played audio out within the fade time, then play silence.
+     */
+    FADE_OUT,
+    /**
+     * Loop the last played period for up to the maximum repeat time, then fade it out.
+     * Bridges short gaps without an audible drop.
+     */
+    REPEAT
+}
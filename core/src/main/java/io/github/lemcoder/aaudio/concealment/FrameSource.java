@@ -0,0 +1,39 @@
+package io.github.lemcoder.aaudio.concealment;
+
+import io.github.lemcoder.aaudio.buffer.SampleConverter;
+import io.github.lemcoder.aaudio.buffer.SegmentRingBuffer;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+/**
+ * Supplies interleaved float frames to an output path and reports how many it actually had.
+ */
+@FunctionalInterface
+public interface FrameSource {
+    /**
+     * Called on the real-time callback thread.
+     *
+     * @param out       receives interleaved samples
+     * @param numFrames frames requested
+     * @return frames written to the start of out, 0 to numFrames
+     */
+    int read(float[] out, int numFrames);
+
+    /**
+     * A source reading whole frames from a ring buffer filled by a producer thread, eg. a decoder.
+     *
+     * @param ring         ring holding interleaved native frames
+     * @param format       format of the frames in the ring
+     * @param channelCount channels of the frames in the ring
+     * @param maxFrames    largest numFrames that will be requested
+     */
+    static FrameSource ofRing(SegmentRingBuffer ring, AAudioFormat format, int channelCount, int maxFrames) {
+        int bytesPerFrame = format.getBytesPerSample() * channelCount;
+        byte[] scratch = new byte[maxFrames * bytesPerFrame];
+        return (out, numFrames) -> {
+            int frames = (int) Math.min(numFrames, ring.availableToRead() / bytesPerFrame);
+            int bytes = ring.read(scratch, 0, frames * bytesPerFrame);
+            SampleConverter.toFloat(scratch, 0, format, out, 0, bytes / bytesPerFrame * channelCount);
+            return bytes / bytesPerFrame;
+        };
+    }
+}
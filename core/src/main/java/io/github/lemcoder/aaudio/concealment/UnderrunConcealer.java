@@ -0,0 +1,235 @@
+package io.github.lemcoder.aaudio.concealment;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Output stage that hides starvation of the source feeding an output callback.
+ * <p>
+ * When the {@link FrameSource} delivers fewer frames than requested, the missing frames are concealed
+ * instead of being played as silence or stale data. The concealment material is the last period played
+ * from the source, looped. Where the loop restarts, and where concealment begins, the step between the
+ * previous output and the loop is faded out over the crossfade time, so no discontinuity is audible.
+ * Depending on the {@link ConcealmentMode} the loop fades out right away or after the maximum repeat time.
+ * Once the source delivers again, the concealment is crossfaded into the real audio over the fade time.
+ * <p>
+ * The source is not skipped ahead on recovery, so every starvation adds its length to the latency of the
+ * audio that follows.
+ * <p>
+ * Starvations are counted as concealment events. Device underruns show up in
+ * {@link AAudioStream#getXRunCount()} instead; {@link #getStatistics(AAudioStream)} reports both so they
+ * can be told apart.
+ */
+public class UnderrunConcealer {
+    private final FrameSource source;
+    private final int channelCount;
+    private final int sampleRate;
+    private final ConcealmentMode mode;
+    private final float[] input;
+    private final float[] lastOutput;
+    private final float[] spliceStep;
+
+    private float[] history;
+    private float[] loop;
+    private int periodFrames;
+    private int historyWrite;
+    private int fadeFrames;
+    private int spliceFrames;
+    private long maxRepeatFrames;
+
+    private boolean concealing;
+    private long concealPosition;
+    private int recoverPosition = -1;
+
+    private final AtomicLong concealmentEvents = new AtomicLong();
+    private final AtomicLong concealedFrames = new AtomicLong();
+
+    /**
+     * @param source       source of the audio
+     * @param channelCount channels of the output
+     * @param sampleRate   sample rate of the output
+     * @param maxFrames    largest numFrames of a callback
+     * @param mode         what to play while starved
+     */
+    public UnderrunConcealer(FrameSource source, int channelCount, int sampleRate, int maxFrames, ConcealmentMode mode) {
+        if (channelCount <= 0 || sampleRate <= 0 || maxFrames <= 0) {
+            throw new IllegalArgumentException("Channel count, sample rate and frame count must be positive");
+        }
+        this.source = source;
+        this.channelCount = channelCount;
+        this.sampleRate = sampleRate;
+        this.mode = mode;
+        this.input = new float[maxFrames * channelCount];
+        this.lastOutput = new float[channelCount];
+        this.spliceStep = new float[channelCount];
+        setFadeMillis(10, 2);
+        setRepeatMillis(20, 200);
+    }
+
+    /**
+     * Not thread safe, call before the stream starts.
+     *
+     * @param fadeMillis      duration of the fade out and of the crossfade on recovery
+     * @param crossfadeMillis duration over which the step at a loop splice is smoothed
+     */
+    public final void setFadeMillis(int fadeMillis, int crossfadeMillis) {
+        this.fadeFrames = Math.max(1, (int) ((long) sampleRate * fadeMillis / 1000));
+        this.spliceFrames = Math.max(1, (int) ((long) sampleRate * crossfadeMillis / 1000));
+    }
+
+    /**
+     * Not thread safe, call before the stream starts.
+     *
+     * @param periodMillis    length of the looped period
+     * @param maxRepeatMillis how long {@link ConcealmentMode#REPEAT} loops before fading out
+     */
+    public final void setRepeatMillis(int periodMillis, int maxRepeatMillis) {
+        this.periodFrames = Math.max(1, (int) ((long) sampleRate * periodMillis / 1000));
+        this.maxRepeatFrames = (long) sampleRate * maxRepeatMillis / 1000;
+        this.history = new float[periodFrames * channelCount];
+        this.loop = new float[periodFrames * channelCount];
+        this.historyWrite = 0;
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Produce numFrames frames. Never allocates.
+     *
+     * @param out       receives interleaved samples
+     * @param numFrames frames to produce, at most maxFrames
+     */
+    public void render(float[] out, int numFrames) {
+        int available = Math.max(0, Math.min(numFrames, source.read(input, numFrames)));
+        if (concealing && available > 0) {
+            concealing = false;
+            recoverPosition = 0;
+        }
+
+        for (int i = 0; i < available; i++) {
+            int base = i * channelCount;
+            if (recoverPosition >= 0) {
+                // Crossfade from the concealment into the recovered audio.
+                float t = (float) recoverPosition / fadeFrames;
+                concealFrame(out, base);
+                for (int c = 0; c < channelCount; c++) {
+                    out[base + c] = out[base + c] * (1 - t) + input[base + c] * t;
+                }
+                if (++recoverPosition >= fadeFrames) {
+                    recoverPosition = -1;
+                }
+            } else {
+                System.arraycopy(input, base, out, base, channelCount);
+            }
+            pushHistory(input, base);
+            System.arraycopy(out, base, lastOutput, 0, channelCount);
+        }
+
+        if (available < numFrames) {
+            if (!concealing) {
+                concealing = true;
+                concealPosition = 0;
+                snapshotLoop();
+                concealmentEvents.incrementAndGet();
+            }
+            recoverPosition = -1;
+            for (int i = available; i < numFrames; i++) {
+                int base = i * channelCount;
+                concealFrame(out, base);
+                System.arraycopy(out, base, lastOutput, 0, channelCount);
+            }
+            concealedFrames.addAndGet(numFrames - available);
+        }
+    }
+
+    public void render(AudioBuffer buffer) {
+        render(buffer.getInterleaved(), buffer.getNumFrames());
+        buffer.writeInterleaved();
+    }
+
+    /**
+     * A data callback that plays the source through this stage.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return buffer -> {
+            render(buffer);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    private void pushHistory(float[] frames, int base) {
+        System.arraycopy(frames, base, history, historyWrite * channelCount, channelCount);
+        if (++historyWrite == periodFrames) {
+            historyWrite = 0;
+        }
+    }
+
+    /**
+     * Copy the last period, oldest frame first, so the loop stays intact while a recovery overwrites the history.
+     */
+    private void snapshotLoop() {
+        int split = historyWrite * channelCount;
+        System.arraycopy(history, split, loop, 0, history.length - split);
+        System.arraycopy(history, 0, loop, history.length - split, split);
+    }
+
+    /**
+     * Write the next concealment frame and advance the loop.
+     */
+    private void concealFrame(float[] out, int base) {
+        int loopFrame = (int) (concealPosition % periodFrames);
+        int index = loopFrame * channelCount;
+        if (loopFrame == 0) {
+            // Splice: measure the step from the previous output to the start of the loop.
+            for (int c = 0; c < channelCount; c++) {
+                spliceStep[c] = lastOutput[c] - loop[index + c];
+            }
+        }
+        float splice = loopFrame < spliceFrames ? 1 - (float) loopFrame / spliceFrames : 0;
+        float gain = concealGain(concealPosition);
+        for (int c = 0; c < channelCount; c++) {
+            out[base + c] = (loop[index + c] + spliceStep[c] * splice) * gain;
+        }
+        concealPosition++;
+    }
+
+    private float concealGain(long position) {
+        long fadeStart = mode == ConcealmentMode.REPEAT ? maxRepeatFrames : 0;
+        if (position < fadeStart) {
+            return 1;
+        }
+        return Math.max(0, 1 - (float) (position - fadeStart) / fadeFrames);
+    }
+
+    // ============================================================
+    // Statistics
+    // ============================================================
+
+    /**
+     * @return number of times the source starved
+     */
+    public long getConcealmentEvents() {
+        return concealmentEvents.get();
+    }
+
+    /**
+     * @return frames that were concealed instead of played from the source
+     */
+    public long getConcealedFrames() {
+        return concealedFrames.get();
+    }
+
+    /**
+     * @param stream the stream this stage plays to
+     * @return concealment counts together with the device underruns of the stream
+     */
+    public UnderrunStatistics getStatistics(AAudioStream stream) throws Throwable {
+        return new UnderrunStatistics(stream.getXRunCount(), concealmentEvents.get(), concealedFrames.get());
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.lemcoder.aaudio.concealment;
+
+/**
+ * Underrun counts of an output stream: starvation of the application's source next to device underruns.
+ */
+public class UnderrunStatistics {
+    private final int deviceXRuns;
+    private final long concealmentEvents;
+    private final long concealedFrames;
+
+    public UnderrunStatistics(int deviceXRuns, long concealmentEvents, long concealedFrames) {
+        this.deviceXRuns = deviceXRuns;
+        this.concealmentEvents = concealmentEvents;
+        this.concealedFrames = concealedFrames;
+    }
+
+    /**
+     * @return underruns of the device, from AAudioStream_getXRunCount()
+     */
+    public int getDeviceXRuns() {
+        return deviceXRuns;
+    }
+
+    /**
+     * @return times the application's source could not supply enough frames
+     */
+    public long getConcealmentEvents() {
+        return concealmentEvents;
+    }
+
+    public long getConcealedFrames() {
+        return concealedFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "UnderrunStatistics{deviceXRuns=" + deviceXRuns
+                + ", concealmentEvents=" + concealmentEvents
+                + ", concealedFrames=" + concealedFrames + '}';
+    }
+}
@@ -0,0 +1,303 @@
+package io.github.lemcoder.aaudio.convolution;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.fft.RealFft;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Real-time convolution with long impulse responses, eg. reverbs or linear phase FIR filters.
+ * <p>
+ * Uses uniformly partitioned overlap-save convolution: the impulse response is split into partitions
+ * of blockSize samples whose spectra are computed once. Every block of input is transformed once and
+ * kept in a frequency-domain delay line, so each block costs one forward FFT, one complex
+ * multiply-accumulate per partition and one inverse FFT. All buffers are preallocated.
+ * <p>
+ * The latency is blockSize frames. Pick blockSize from the burst size of the stream, see
+ * {@link #blockSizeFor(int)}, so that at most one block is computed per data callback.
+ * <p>
+ * For very long impulse responses the tail can be moved to a background worker: the callback thread
+ * then only computes the first headPartitions partitions, the worker computes the rest ahead of
+ * time. If the worker misses its deadline the tail of that block is dropped and counted in
+ * {@link #getMissedTailBlocks()}.
+ * <p>
+ * One instance processes one channel. {@link #process(float[], int, float[], int, int)}
+ * must always be called from the same thread.
+ */
+public class PartitionedConvolver implements AutoCloseable {
+    private final int blockSize;
+    private final int spectrumSize;
+    private final int partitionCount;
+    private final int headPartitions;
+    private final RealFft fft;
+
+    // partitionCount spectra of spectrumSize floats each
+    private final float[] partitions;
+    // frequency-domain delay line: spectra of the last partitionCount input blocks
+    private final float[] delayLine;
+    private long blockIndex;
+
+    // Callback thread state
+    private final float[] inputBlock;
+    private final float[] previousBlock;
+    private final float[] outputBlock;
+    private final float[] accumulator;
+    private int position;
+
+    // Background tail computation
+    private Thread worker;
+    private final int tailLead;
+    private final float[][] tailOutput;
+    private final long[] tailBlockIndex;
+    private final float[] tailAccumulator;
+    private final AtomicLong requestedTailBlock = new AtomicLong(-1);
+    private final AtomicLong completedTailBlock = new AtomicLong(-1);
+    private volatile boolean running = true;
+    private final AtomicLong missedTailBlocks = new AtomicLong();
+
+    /**
+     * Convolution computed entirely on the calling thread.
+     *
+     * @param impulseResponse the impulse response, copied
+     * @param blockSize       partition and processing block size, a power of two
+     */
+    public PartitionedConvolver(float[] impulseResponse, int blockSize) {
+        this(impulseResponse, blockSize, Integer.MAX_VALUE);
+    }
+
+    private PartitionedConvolver(float[] impulseResponse, int blockSize, int headPartitions) {
+        if (impulseResponse.length == 0) {
+            throw new IllegalArgumentException("Impulse response is empty");
+        }
+        if (headPartitions < 1) {
+            throw new IllegalArgumentException("At least one partition must be computed on the calling thread");
+        }
+        this.blockSize = blockSize;
+        this.spectrumSize = 2 * blockSize;
+        this.fft = RealFft.forSize(spectrumSize);
+        this.partitionCount = (impulseResponse.length + blockSize - 1) / blockSize;
+        this.headPartitions = Math.min(headPartitions, partitionCount);
+
+        this.partitions = new float[partitionCount * spectrumSize];
+        for (int p = 0; p < partitionCount; p++) {
+            int start = p * blockSize;
+            int length = Math.min(blockSize, impulseResponse.length - start);
+            int offset = p * spectrumSize;
+            System.arraycopy(impulseResponse, start, partitions, offset, length);
+            fft.forward(partitions, offset);
+        }
+        this.delayLine = new float[partitionCount * spectrumSize];
+
+        this.inputBlock = new float[blockSize];
+        this.previousBlock = new float[blockSize];
+        this.outputBlock = new float[blockSize];
+        this.accumulator = new float[spectrumSize];
+
+        if (this.headPartitions < partitionCount) {
+            this.tailLead = this.headPartitions;
+            this.tailOutput = new float[tailLead + 1][blockSize];
+            this.tailBlockIndex = new long[tailLead + 1];
+            Arrays.fill(tailBlockIndex, -1);
+            this.tailAccumulator = new float[spectrumSize];
+        } else {
+            this.tailLead = 0;
+            this.tailOutput = null;
+            this.tailBlockIndex = null;
+            this.tailAccumulator = null;
+        }
+    }
+
+    /**
+     * Create a convolver that may move the tail of the impulse response to a background worker.
+     *
+     * @param impulseResponse the impulse response, copied
+     * @param blockSize       partition and processing block size, a power of two
+     * @param headPartitions  number of partitions computed on the calling thread. The remaining tail
+     *                        partitions are computed by a background worker which gets headPartitions
+     *                        blocks of time for each tail, so 2 or more is recommended. It must also
+     *                        exceed the number of blocks covered by one process() call.
+     *                        Use {@link Integer#MAX_VALUE} to disable the worker.
+     */
+    public static PartitionedConvolver create(float[] impulseResponse, int blockSize, int headPartitions) {
+        PartitionedConvolver convolver = new PartitionedConvolver(impulseResponse, blockSize, headPartitions);
+        convolver.startWorker();
+        return convolver;
+    }
+
+    private void startWorker() {
+        if (tailOutput == null) {
+            return;
+        }
+        worker = new Thread(this::runWorker, "ConvolutionTail");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MAX_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Smallest power of two block size that covers one burst, so that the cost of a data callback
+     * of AAudioStream_getFramesPerBurst() frames is bounded by a single block.
+     *
+     * @param framesPerBurst burst size of the stream
+     * @return block size
+     */
+    public static int blockSizeFor(int framesPerBurst) {
+        int size = Integer.highestOneBit(Math.max(2, framesPerBurst));
+        return size < framesPerBurst ? size << 1 : size;
+    }
+
+    /**
+     * Create a convolver with a block size derived from the burst size of the stream.
+     *
+     * @see #create(float[], int, int)
+     */
+    public static PartitionedConvolver forStream(AAudioStream stream, float[] impulseResponse, int headPartitions) throws Throwable {
+        return create(impulseResponse, blockSizeFor(stream.getFramesPerBurst()), headPartitions);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * @return delay between input and output in frames
+     */
+    public int getLatencyFrames() {
+        return blockSize;
+    }
+
+    /**
+     * @return number of blocks whose tail was not ready in time
+     */
+    public long getMissedTailBlocks() {
+        return missedTailBlocks.get();
+    }
+
+    /**
+     * Convolve numFrames mono samples. input and output may be the same array.
+     *
+     * @param input        input samples
+     * @param inputOffset  index of the first input sample
+     * @param output       receives the convolved samples, delayed by {@link #getLatencyFrames()}
+     * @param outputOffset index of the first output sample
+     * @param numFrames    number of samples
+     */
+    public void process(float[] input, int inputOffset, float[] output, int outputOffset, int numFrames) {
+        while (numFrames > 0) {
+            int n = Math.min(numFrames, blockSize - position);
+            System.arraycopy(input, inputOffset, inputBlock, position, n);
+            System.arraycopy(outputBlock, position, output, outputOffset, n);
+            position += n;
+            inputOffset += n;
+            outputOffset += n;
+            numFrames -= n;
+            if (position == blockSize) {
+                processBlock();
+                position = 0;
+            }
+        }
+    }
+
+    private void processBlock() {
+        long t = blockIndex;
+
+        // Overlap-save input window: previous block followed by the current block.
+        int slot = (int) (t % partitionCount) * spectrumSize;
+        System.arraycopy(previousBlock, 0, delayLine, slot, blockSize);
+        System.arraycopy(inputBlock, 0, delayLine, slot + blockSize, blockSize);
+        fft.forward(delayLine, slot);
+        System.arraycopy(inputBlock, 0, previousBlock, 0, blockSize);
+
+        Arrays.fill(accumulator, 0f);
+        accumulate(t, 0, headPartitions, accumulator);
+        fft.inverse(accumulator, 0);
+        System.arraycopy(accumulator, blockSize, outputBlock, 0, blockSize);
+
+        if (tailOutput != null) {
+            int tailSlot = (int) (t % (tailLead + 1));
+            if (completedTailBlock.get() >= t && tailBlockIndex[tailSlot] == t) {
+                float[] tail = tailOutput[tailSlot];
+                for (int i = 0; i < blockSize; i++) {
+                    outputBlock[i] += tail[i];
+                }
+            } else if (t >= tailLead) {
+                missedTailBlocks.lazySet(missedTailBlocks.get() + 1);
+            }
+            requestedTailBlock.lazySet(t + tailLead);
+            LockSupport.unpark(worker);
+        }
+        blockIndex = t + 1;
+    }
+
+    /**
+     * Sum of X[t - p] * H[p] for p in [from, to).
+     */
+    private void accumulate(long t, int from, int to, float[] acc) {
+        for (int p = from; p < to; p++) {
+            long block = t - p;
+            int x = (int) Math.floorMod(block, (long) partitionCount) * spectrumSize;
+            int h = p * spectrumSize;
+            multiplyAccumulate(delayLine, x, partitions, h, acc, spectrumSize);
+        }
+    }
+
+    private static void multiplyAccumulate(float[] x, int xo, float[] h, int ho, float[] acc, int n) {
+        // DC and Nyquist are real
+        acc[0] += x[xo] * h[ho];
+        acc[1] += x[xo + 1] * h[ho + 1];
+        for (int i = 2; i < n; i += 2) {
+            float xr = x[xo + i], xi = x[xo + i + 1];
+            float hr = h[ho + i], hi = h[ho + i + 1];
+            acc[i] += xr * hr - xi * hi;
+            acc[i + 1] += xr * hi + xi * hr;
+        }
+    }
+
+    private void runWorker() {
+        // Tails of blocks before tailLead only cover inputs before the stream started, which are silence.
+        long last = tailLead - 1;
+        while (running) {
+            long target = requestedTailBlock.get();
+            if (target <= last) {
+                LockSupport.park(this);
+                continue;
+            }
+            // One process() call may cover several blocks: compute every requested tail, skipping only
+            // those whose slot has already been reused.
+            for (long block = Math.max(last + 1, target - tailLead); block <= target && running; block++) {
+                computeTail(block);
+            }
+            last = target;
+        }
+    }
+
+    private void computeTail(long block) {
+        // Inputs up to block - headPartitions are available, the callback thread
+        // will not overwrite them before it needs this result.
+        Arrays.fill(tailAccumulator, 0f);
+        accumulate(block, headPartitions, partitionCount, tailAccumulator);
+        fft.inverse(tailAccumulator, 0);
+
+        int tailSlot = (int) (block % (tailLead + 1));
+        System.arraycopy(tailAccumulator, blockSize, tailOutput[tailSlot], 0, blockSize);
+        tailBlockIndex[tailSlot] = block;
+        completedTailBlock.lazySet(block);
+    }
+
+    /**
+     * Stop the background worker, if any.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (tailOutput != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+}
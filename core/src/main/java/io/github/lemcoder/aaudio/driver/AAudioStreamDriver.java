@@ -0,0 +1,339 @@
+package io.github.lemcoder.aaudio.driver;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.buffer.SegmentRingBuffer;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a stream that was opened without a data callback from a dedicated thread.
+ * <p>
+ * The thread loops on AAudioStream_write() for output streams or AAudioStream_read() for input streams,
+ * one burst (AAudioStream_getFramesPerBurst()) at a time. Unlike a data callback, the renderer may block
+ * on other resources; the stream simply underruns or overruns if it takes too long.
+ * <p>
+ * Frames come from (or go to) either a renderer with the same contract as a data callback, or a
+ * {@link SegmentRingBuffer} filled (or drained) by another thread. How the thread waits for the device
+ * is selected by the {@link WaitStrategy}.
+ * <p>
+ * The time spent in the renderer and the period between iterations are tracked for every iteration.
+ */
+public class AAudioStreamDriver implements AutoCloseable {
+    private static final long DEFAULT_SPIN_NANOS = 200_000L;
+    private static final long MIN_TIMEOUT_NANOS = 1_000_000L;
+
+    private final AAudioStream stream;
+    private final AAudioStreamBufferCallback renderer;
+    private final SegmentRingBuffer ring;
+    private final WaitStrategy waitStrategy;
+    private final boolean input;
+    private final int framesPerBurst;
+    private final int bytesPerFrame;
+    private final long timeoutNanos;
+
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment burst;
+    private final AudioBuffer audioBuffer;
+    private volatile long spinNanos = DEFAULT_SPIN_NANOS;
+
+    private final AtomicLong iterations = new AtomicLong();
+    private final AtomicLong lastRenderNanos = new AtomicLong();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+    private final AtomicLong lastPeriodNanos = new AtomicLong();
+    private final AtomicLong maxPeriodNanos = new AtomicLong();
+    private final AtomicLong ringShortfallFrames = new AtomicLong();
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile Throwable failure;
+
+    /**
+     * Drive the stream with a renderer. For output streams it fills each burst before it is written,
+     * for input streams it receives each burst after it was read. Returning
+     * {@link AAudioCallbackResult#STOP} ends the loop.
+     *
+     * @param stream       stream opened without a data callback, in PCM_FLOAT or PCM_I16
+     * @param renderer     produces or consumes the audio
+     * @param waitStrategy how to wait for the device
+     */
+    public AAudioStreamDriver(AAudioStream stream, AAudioStreamBufferCallback renderer, WaitStrategy waitStrategy) throws Throwable {
+        this(stream, renderer, null, waitStrategy);
+    }
+
+    /**
+     * Drive the stream from a ring buffer. Output streams play what the ring holds and silence when it
+     * runs empty, input streams append to the ring and drop what does not fit. Only whole frames are moved.
+     *
+     * @param stream       stream opened without a data callback
+     * @param ring         ring holding interleaved frames in the stream format
+     * @param waitStrategy how to wait for the device
+     */
+    public AAudioStreamDriver(AAudioStream stream, SegmentRingBuffer ring, WaitStrategy waitStrategy) throws Throwable {
+        this(stream, null, ring, waitStrategy);
+    }
+
+    private AAudioStreamDriver(AAudioStream stream, AAudioStreamBufferCallback renderer, SegmentRingBuffer ring,
+                               WaitStrategy waitStrategy) throws Throwable {
+        this.stream = stream;
+        this.renderer = renderer;
+        this.ring = ring;
+        this.waitStrategy = waitStrategy;
+        AAudioAudioDirection direction = stream.getDirection();
+        this.input = direction == AAudioAudioDirection.INPUT;
+        this.framesPerBurst = stream.getFramesPerBurst();
+        this.bytesPerFrame = stream.getBytesPerFrame();
+        long burstNanos = framesPerBurst * 1_000_000_000L / stream.getSampleRate();
+        this.timeoutNanos = Math.max(2 * burstNanos, MIN_TIMEOUT_NANOS);
+        this.burst = arena.allocate((long) framesPerBurst * bytesPerFrame, 64);
+        this.audioBuffer = renderer != null
+                ? new AudioBuffer(stream.getChannelCount(), stream.getFormat(), framesPerBurst, direction)
+                : null;
+    }
+
+    /**
+     * @param spinNanos how long {@link WaitStrategy#HYBRID} polls before it blocks
+     */
+    public void setHybridSpinNanos(long spinNanos) {
+        this.spinNanos = spinNanos;
+    }
+
+    public int getFramesPerBurst() {
+        return framesPerBurst;
+    }
+
+    /**
+     * Start the stream and the driver thread. Also restarts a driver whose loop ended on its own.
+     */
+    public synchronized void start() throws Throwable {
+        if (thread != null) {
+            return;
+        }
+        AAudioResult result = stream.requestStart();
+        if (result != AAudioResult.OK) {
+            throw new RuntimeException("Failed to start stream: " + result);
+        }
+        failure = null;
+        running = true;
+        thread = new Thread(this::run, "AAudioStreamDriver");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop the driver thread and the stream. The stream is stopped as well when the loop already ended
+     * on its own.
+     */
+    public void stop() throws Throwable {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+            running = false;
+        }
+        if (t != null) {
+            t.join();
+        }
+        stream.requestStop();
+    }
+
+    /**
+     * @return true while the driver thread runs
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return the error that ended the loop, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    // ============================================================
+    // Timing
+    // ============================================================
+
+    public long getIterations() {
+        return iterations.get();
+    }
+
+    /**
+     * @return time spent in the renderer or ring in the last iteration
+     */
+    public long getLastRenderNanos() {
+        return lastRenderNanos.get();
+    }
+
+    public long getMaxRenderNanos() {
+        return maxRenderNanos.get();
+    }
+
+    /**
+     * @return time between the starts of the last two iterations, ideally one burst
+     */
+    public long getLastPeriodNanos() {
+        return lastPeriodNanos.get();
+    }
+
+    public long getMaxPeriodNanos() {
+        return maxPeriodNanos.get();
+    }
+
+    /**
+     * @return frames of silence played because the output ring was empty,
+     * or frames dropped because the input ring was full
+     */
+    public long getRingShortfallFrames() {
+        return ringShortfallFrames.get();
+    }
+
+    /**
+     * Clear the maximum timings.
+     */
+    public void resetMaxTimings() {
+        maxRenderNanos.set(0);
+        maxPeriodNanos.set(0);
+    }
+
+    // ============================================================
+    // Driver thread
+    // ============================================================
+
+    private void run() {
+        long previousStart = 0;
+        try {
+            while (running) {
+                long start = System.nanoTime();
+                if (previousStart != 0) {
+                    record(lastPeriodNanos, maxPeriodNanos, start - previousStart);
+                }
+                previousStart = start;
+
+                boolean keepGoing;
+                if (input) {
+                    long framePosition = stream.getFramesRead();
+                    if (!transfer()) {
+                        break;
+                    }
+                    long renderStart = System.nanoTime();
+                    keepGoing = consume(framePosition);
+                    record(lastRenderNanos, maxRenderNanos, System.nanoTime() - renderStart);
+                } else {
+                    keepGoing = produce(stream.getFramesWritten());
+                    record(lastRenderNanos, maxRenderNanos, System.nanoTime() - start);
+                    if (!transfer()) {
+                        break;
+                    }
+                }
+                iterations.lazySet(iterations.get() + 1);
+                if (!keepGoing) {
+                    running = false;
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+            running = false;
+        } finally {
+            synchronized (this) {
+                // Unless stop() already took it, so that start() can run the driver again.
+                if (thread == Thread.currentThread()) {
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    private boolean produce(long framePosition) {
+        if (renderer != null) {
+            audioBuffer.wrap(burst, framesPerBurst, framePosition);
+            return renderer.onAudioReady(audioBuffer) != AAudioCallbackResult.STOP;
+        }
+        long bytes = (long) framesPerBurst * bytesPerFrame;
+        long available = Math.min(bytes, ring.availableToRead() / bytesPerFrame * bytesPerFrame);
+        ring.read(burst, 0, available);
+        if (available < bytes) {
+            burst.asSlice(available, bytes - available).fill((byte) 0);
+            ringShortfallFrames.addAndGet((bytes - available) / bytesPerFrame);
+        }
+        return true;
+    }
+
+    private boolean consume(long framePosition) {
+        if (renderer != null) {
+            audioBuffer.wrap(burst, framesPerBurst, framePosition);
+            return renderer.onAudioReady(audioBuffer) != AAudioCallbackResult.STOP;
+        }
+        long bytes = (long) framesPerBurst * bytesPerFrame;
+        long space = Math.min(bytes, ring.availableToWrite() / bytesPerFrame * bytesPerFrame);
+        ring.write(burst, 0, space);
+        if (space < bytes) {
+            ringShortfallFrames.addAndGet((bytes - space) / bytesPerFrame);
+        }
+        return true;
+    }
+
+    /**
+     * Move one burst between the buffer and the device.
+     *
+     * @return false if the stream reported an error or the driver was stopped
+     */
+    private boolean transfer() throws Throwable {
+        int done = 0;
+        long spinDeadline = System.nanoTime() + spinNanos;
+        while (done < framesPerBurst) {
+            if (!running) {
+                return false;
+            }
+            long timeout = switch (waitStrategy) {
+                case BLOCKING -> timeoutNanos;
+                case SPINNING -> 0;
+                case HYBRID -> System.nanoTime() < spinDeadline ? 0 : timeoutNanos;
+            };
+            // Partial transfers are rare, the slice is only created for them.
+            MemorySegment buffer = done == 0 ? burst : burst.asSlice((long) done * bytesPerFrame);
+            int n = input
+                    ? stream.read(buffer, framesPerBurst - done, timeout)
+                    : stream.write(buffer, framesPerBurst - done, timeout);
+            if (n < 0) {
+                throw new RuntimeException((input ? "AAudioStream_read" : "AAudioStream_write")
+                        + " failed: " + AAudioResult.fromValue(n));
+            }
+            if (n == 0 && timeout == 0) {
+                Thread.yield();
+            }
+            done += n;
+        }
+        return true;
+    }
+
+    private static void record(AtomicLong last, AtomicLong max, long nanos) {
+        last.lazySet(nanos);
+        if (nanos > max.get()) {
+            max.lazySet(nanos);
+        }
+    }
+
+    /**
+     * Stop the driver and free the burst buffer. The stream itself is not closed.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            stop();
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        } finally {
+            arena.close();
+        }
+    }
+}
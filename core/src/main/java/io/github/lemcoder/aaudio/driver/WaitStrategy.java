@@ -0,0 +1,19 @@
+package io.github.lemcoder.aaudio.driver;
+
+public enum WaitStrategy {
+    /**
+     * Wait inside AAudioStream_read() or AAudioStream_write() until the burst is transferred.
+     * Uses the least CPU.
+     */
+    BLOCKING,
+
+    /**
+     * Poll with a zero timeout and yield between attempts. Reacts fastest, but keeps a core busy.
+     */
+    SPINNING,
+
+    /**
+     * Poll for a short while, then block for the rest of the burst.
+     */
+    HYBRID
+}
@@ -0,0 +1,414 @@
+package io.github.lemcoder.aaudio.fft;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-place FFT of real signals.
+ * <p>
+ * A real signal of size N is transformed as a complex signal of size N/2 with radix-4 stages
+ * (plus one radix-2 stage when needed), followed by a split step that separates the spectrum.
+ * Twiddle and bit reversal tables are computed once per size and shared, see {@link #forSize(int)}.
+ * Instances are immutable and can be used from several threads at once.
+ * <p>
+ * The transform works in place and never allocates. The spectrum uses the packed layout:
+ * <pre>
+ * data[0]        = Re X[0]      (DC)
+ * data[1]        = Re X[N/2]    (Nyquist)
+ * data[2k]       = Re X[k]      for 0 &lt; k &lt; N/2
+ * data[2k + 1]   = Im X[k]      for 0 &lt; k &lt; N/2
+ * </pre>
+ * {@link #forward(float[], int)} is unscaled, {@link #inverse(float[], int)} scales by 1/N,
+ * so a forward transform followed by an inverse transform restores the input.
+ */
+public class RealFft {
+    private static final ConcurrentHashMap<Integer, RealFft> CACHE = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int half;
+    // cos/sin of 2*pi*k/size for k in [0, size/2)
+    private final float[] cos;
+    private final float[] sin;
+    // pairs of complex indices swapped by the bit reversal permutation
+    private final int[] swaps;
+
+    private RealFft(int size) {
+        this.size = size;
+        this.half = size / 2;
+        this.cos = new float[half];
+        this.sin = new float[half];
+        for (int k = 0; k < half; k++) {
+            double angle = 2.0 * Math.PI * k / size;
+            cos[k] = (float) Math.cos(angle);
+            sin[k] = (float) Math.sin(angle);
+        }
+        this.swaps = bitReversalSwaps(half);
+    }
+
+    /**
+     * Get the transform for the given size. Tables are built on first use and cached,
+     * so call this outside of the data callback.
+     *
+     * @param size number of real samples, a power of two of at least 4
+     * @return shared transform instance
+     */
+    public static RealFft forSize(int size) {
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4: " + size);
+        }
+        return CACHE.computeIfAbsent(size, RealFft::new);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // ============================================================
+    // float[]
+    // ============================================================
+
+    /**
+     * Forward transform of size real samples starting at offset, in place.
+     *
+     * @param data   samples, replaced by the packed spectrum
+     * @param offset index of the first sample
+     */
+    public void forward(float[] data, int offset) {
+        complexTransform(data, offset, -1f);
+
+        float zr = data[offset];
+        float zi = data[offset + 1];
+        data[offset] = zr + zi;
+        data[offset + 1] = zr - zi;
+
+        for (int k = 1; k <= half / 2; k++) {
+            int a = offset + 2 * k;
+            int b = offset + 2 * (half - k);
+            float kr = data[a], ki = data[a + 1];
+            float mr = data[b], mi = data[b + 1];
+
+            float er = 0.5f * (kr + mr);
+            float ei = 0.5f * (ki - mi);
+            float or = 0.5f * (kr - mr);
+            float oi = 0.5f * (ki + mi);
+            float c = cos[k], s = sin[k];
+
+            data[a] = er + c * oi - s * or;
+            data[a + 1] = ei - c * or - s * oi;
+            data[b] = er - c * oi + s * or;
+            data[b + 1] = -ei - c * or - s * oi;
+        }
+    }
+
+    /**
+     * Inverse transform of a packed spectrum starting at offset, in place.
+     *
+     * @param data   packed spectrum, replaced by size real samples
+     * @param offset index of the first value
+     */
+    public void inverse(float[] data, int offset) {
+        float x0 = data[offset];
+        float xn = data[offset + 1];
+        data[offset] = 0.5f * (x0 + xn);
+        data[offset + 1] = 0.5f * (x0 - xn);
+
+        for (int k = 1; k <= half / 2; k++) {
+            int a = offset + 2 * k;
+            int b = offset + 2 * (half - k);
+            float kr = data[a], ki = data[a + 1];
+            float mr = data[b], mi = data[b + 1];
+
+            float er = 0.5f * (kr + mr);
+            float ei = 0.5f * (ki - mi);
+            float tr = 0.5f * (kr - mr);
+            float ti = 0.5f * (ki + mi);
+            float c = cos[k], s = sin[k];
+
+            data[a] = er - (tr * s + ti * c);
+            data[a + 1] = ei + (tr * c - ti * s);
+            data[b] = er + tr * s + ti * c;
+            data[b + 1] = -ei + tr * c - ti * s;
+        }
+
+        complexTransform(data, offset, 1f);
+
+        float scale = 1f / half;
+        for (int i = offset, end = offset + size; i < end; i++) {
+            data[i] *= scale;
+        }
+    }
+
+    private void complexTransform(float[] data, int offset, float sign) {
+        int[] swaps = this.swaps;
+        for (int i = 0; i < swaps.length; i += 2) {
+            int a = offset + 2 * swaps[i];
+            int b = offset + 2 * swaps[i + 1];
+            float tr = data[a], ti = data[a + 1];
+            data[a] = data[b];
+            data[a + 1] = data[b + 1];
+            data[b] = tr;
+            data[b + 1] = ti;
+        }
+
+        int n = half;
+        int m = 1;
+        if ((Integer.numberOfTrailingZeros(n) & 1) == 1) {
+            // Odd number of radix-2 stages, start with a single one (all twiddles are 1).
+            for (int j = 0; j < n; j += 2) {
+                int a = offset + 2 * j;
+                float ar = data[a], ai = data[a + 1];
+                float br = data[a + 2], bi = data[a + 3];
+                data[a] = ar + br;
+                data[a + 1] = ai + bi;
+                data[a + 2] = ar - br;
+                data[a + 3] = ai - bi;
+            }
+            m = 2;
+        }
+
+        // Radix-4 stages, each fusing two radix-2 stages of span m and 2m.
+        for (; m < n; m *= 4) {
+            int stride1 = half / (2 * m); // W_{2m}^k = W_size^(2k * half / 2m)
+            int stride2 = half / (4 * m); // W_{4m}^k
+            for (int j = 0; j < n; j += 4 * m) {
+                for (int k = 0; k < m; k++) {
+                    int t1 = 2 * k * stride1;
+                    int t2 = 2 * k * stride2;
+                    float w1r = cos[t1], w1i = sign * sin[t1];
+                    float w2r = cos[t2], w2i = sign * sin[t2];
+
+                    int i0 = offset + 2 * (j + k);
+                    int i1 = i0 + 2 * m;
+                    int i2 = i1 + 2 * m;
+                    int i3 = i2 + 2 * m;
+
+                    float a0r = data[i0], a0i = data[i0 + 1];
+                    float a1r = data[i1], a1i = data[i1 + 1];
+                    float a2r = data[i2], a2i = data[i2 + 1];
+                    float a3r = data[i3], a3i = data[i3 + 1];
+
+                    // first stage: span m, twiddle w1
+                    float p1r = w1r * a1r - w1i * a1i, p1i = w1r * a1i + w1i * a1r;
+                    float p3r = w1r * a3r - w1i * a3i, p3i = w1r * a3i + w1i * a3r;
+                    float b0r = a0r + p1r, b0i = a0i + p1i;
+                    float b1r = a0r - p1r, b1i = a0i - p1i;
+                    float b2r = a2r + p3r, b2i = a2i + p3i;
+                    float b3r = a2r - p3r, b3i = a2i - p3i;
+
+                    // second stage: span 2m, twiddle w2 and w2 * W_4 for the odd half
+                    float q2r = w2r * b2r - w2i * b2i, q2i = w2r * b2i + w2i * b2r;
+                    float q3r = w2r * b3r - w2i * b3i, q3i = w2r * b3i + w2i * b3r;
+                    // multiply q3 by W_4 = sign * i
+                    float r3r = -sign * q3i, r3i = sign * q3r;
+
+                    data[i0] = b0r + q2r;
+                    data[i0 + 1] = b0i + q2i;
+                    data[i2] = b0r - q2r;
+                    data[i2 + 1] = b0i - q2i;
+                    data[i1] = b1r + r3r;
+                    data[i1 + 1] = b1i + r3i;
+                    data[i3] = b1r - r3r;
+                    data[i3 + 1] = b1i - r3i;
+                }
+            }
+        }
+    }
+
+    // ============================================================
+    // MemorySegment
+    // ============================================================
+
+    /**
+     * Forward transform of size native float samples, in place.
+     *
+     * @param data       segment holding the samples, replaced by the packed spectrum
+     * @param byteOffset offset of the first sample in bytes
+     */
+    public void forward(MemorySegment data, long byteOffset) {
+        complexTransform(data, byteOffset, -1f);
+
+        float zr = get(data, byteOffset, 0);
+        float zi = get(data, byteOffset, 1);
+        set(data, byteOffset, 0, zr + zi);
+        set(data, byteOffset, 1, zr - zi);
+
+        for (int k = 1; k <= half / 2; k++) {
+            int a = 2 * k;
+            int b = 2 * (half - k);
+            float kr = get(data, byteOffset, a), ki = get(data, byteOffset, a + 1);
+            float mr = get(data, byteOffset, b), mi = get(data, byteOffset, b + 1);
+
+            float er = 0.5f * (kr + mr);
+            float ei = 0.5f * (ki - mi);
+            float or = 0.5f * (kr - mr);
+            float oi = 0.5f * (ki + mi);
+            float c = cos[k], s = sin[k];
+
+            set(data, byteOffset, a, er + c * oi - s * or);
+            set(data, byteOffset, a + 1, ei - c * or - s * oi);
+            set(data, byteOffset, b, er - c * oi + s * or);
+            set(data, byteOffset, b + 1, -ei - c * or - s * oi);
+        }
+    }
+
+    /**
+     * Inverse transform of a native packed spectrum, in place.
+     *
+     * @param data       segment holding the packed spectrum, replaced by size real samples
+     * @param byteOffset offset of the first value in bytes
+     */
+    public void inverse(MemorySegment data, long byteOffset) {
+        float x0 = get(data, byteOffset, 0);
+        float xn = get(data, byteOffset, 1);
+        set(data, byteOffset, 0, 0.5f * (x0 + xn));
+        set(data, byteOffset, 1, 0.5f * (x0 - xn));
+
+        for (int k = 1; k <= half / 2; k++) {
+            int a = 2 * k;
+            int b = 2 * (half - k);
+            float kr = get(data, byteOffset, a), ki = get(data, byteOffset, a + 1);
+            float mr = get(data, byteOffset, b), mi = get(data, byteOffset, b + 1);
+
+            float er = 0.5f * (kr + mr);
+            float ei = 0.5f * (ki - mi);
+            float tr = 0.5f * (kr - mr);
+            float ti = 0.5f * (ki + mi);
+            float c = cos[k], s = sin[k];
+
+            set(data, byteOffset, a, er - (tr * s + ti * c));
+            set(data, byteOffset, a + 1, ei + (tr * c - ti * s));
+            set(data, byteOffset, b, er + tr * s + ti * c);
+            set(data, byteOffset, b + 1, -ei + tr * c - ti * s);
+        }
+
+        complexTransform(data, byteOffset, 1f);
+
+        float scale = 1f / half;
+        for (int i = 0; i < size; i++) {
+            set(data, byteOffset, i, get(data, byteOffset, i) * scale);
+        }
+    }
+
+    private void complexTransform(MemorySegment data, long byteOffset, float sign) {
+        int[] swaps = this.swaps;
+        for (int i = 0; i < swaps.length; i += 2) {
+            int a = 2 * swaps[i];
+            int b = 2 * swaps[i + 1];
+            float tr = get(data, byteOffset, a), ti = get(data, byteOffset, a + 1);
+            set(data, byteOffset, a, get(data, byteOffset, b));
+            set(data, byteOffset, a + 1, get(data, byteOffset, b + 1));
+            set(data, byteOffset, b, tr);
+            set(data, byteOffset, b + 1, ti);
+        }
+
+        int n = half;
+        int m = 1;
+        if ((Integer.numberOfTrailingZeros(n) & 1) == 1) {
+            for (int j = 0; j < n; j += 2) {
+                int a = 2 * j;
+                float ar = get(data, byteOffset, a), ai = get(data, byteOffset, a + 1);
+                float br = get(data, byteOffset, a + 2), bi = get(data, byteOffset, a + 3);
+                set(data, byteOffset, a, ar + br);
+                set(data, byteOffset, a + 1, ai + bi);
+                set(data, byteOffset, a + 2, ar - br);
+                set(data, byteOffset, a + 3, ai - bi);
+            }
+            m = 2;
+        }
+
+        for (; m < n; m *= 4) {
+            int stride1 = half / (2 * m);
+            int stride2 = half / (4 * m);
+            for (int j = 0; j < n; j += 4 * m) {
+                for (int k = 0; k < m; k++) {
+                    int t1 = 2 * k * stride1;
+                    int t2 = 2 * k * stride2;
+                    float w1r = cos[t1], w1i = sign * sin[t1];
+                    float w2r = cos[t2], w2i = sign * sin[t2];
+
+                    int i0 = 2 * (j + k);
+                    int i1 = i0 + 2 * m;
+                    int i2 = i1 + 2 * m;
+                    int i3 = i2 + 2 * m;
+
+                    float a0r = get(data, byteOffset, i0), a0i = get(data, byteOffset, i0 + 1);
+                    float a1r = get(data, byteOffset, i1), a1i = get(data, byteOffset, i1 + 1);
+                    float a2r = get(data, byteOffset, i2), a2i = get(data, byteOffset, i2 + 1);
+                    float a3r = get(data, byteOffset, i3), a3i = get(data, byteOffset, i3 + 1);
+
+                    float p1r = w1r * a1r - w1i * a1i, p1i = w1r * a1i + w1i * a1r;
+                    float p3r = w1r * a3r - w1i * a3i, p3i = w1r * a3i + w1i * a3r;
+                    float b0r = a0r + p1r, b0i = a0i + p1i;
+                    float b1r = a0r - p1r, b1i = a0i - p1i;
+                    float b2r = a2r + p3r, b2i = a2i + p3i;
+                    float b3r = a2r - p3r, b3i = a2i - p3i;
+
+                    float q2r = w2r * b2r - w2i * b2i, q2i = w2r * b2i + w2i * b2r;
+                    float q3r = w2r * b3r - w2i * b3i, q3i = w2r * b3i + w2i * b3r;
+                    float r3r = -sign * q3i, r3i = sign * q3r;
+
+                    set(data, byteOffset, i0, b0r + q2r);
+                    set(data, byteOffset, i0 + 1, b0i + q2i);
+                    set(data, byteOffset, i2, b0r - q2r);
+                    set(data, byteOffset, i2 + 1, b0i - q2i);
+                    set(data, byteOffset, i1, b1r + r3r);
+                    set(data, byteOffset, i1 + 1, b1i + r3i);
+                    set(data, byteOffset, i3, b1r - r3r);
+                    set(data, byteOffset, i3 + 1, b1i - r3i);
+                }
+            }
+        }
+    }
+
+    private static float get(MemorySegment data, long byteOffset, int index) {
+        return data.get(ValueLayout.JAVA_FLOAT_UNALIGNED, byteOffset + 4L * index);
+    }
+
+    private static void set(MemorySegment data, long byteOffset, int index, float value) {
+        data.set(ValueLayout.JAVA_FLOAT_UNALIGNED, byteOffset + 4L * index, value);
+    }
+
+    // ============================================================
+    // Spectrum helpers
+    // ============================================================
+
+    /**
+     * Magnitudes of a packed spectrum.
+     *
+     * @param spectrum   packed spectrum produced by {@link #forward(float[], int)}
+     * @param offset     index of the first value
+     * @param magnitudes receives size/2 + 1 magnitudes, from DC to Nyquist
+     */
+    public void magnitudes(float[] spectrum, int offset, float[] magnitudes) {
+        magnitudes[0] = Math.abs(spectrum[offset]);
+        magnitudes[half] = Math.abs(spectrum[offset + 1]);
+        for (int k = 1; k < half; k++) {
+            float re = spectrum[offset + 2 * k];
+            float im = spectrum[offset + 2 * k + 1];
+            magnitudes[k] = (float) Math.sqrt(re * re + im * im);
+        }
+    }
+
+    private static int[] bitReversalSwaps(int n) {
+        int bits = Integer.numberOfTrailingZeros(n);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int r = Integer.reverse(i) >>> (32 - bits);
+            if (bits > 0 && r > i) {
+                count++;
+            }
+        }
+        int[] swaps = new int[2 * count];
+        int p = 0;
+        for (int i = 0; i < n && bits > 0; i++) {
+            int r = Integer.reverse(i) >>> (32 - bits);
+            if (r > i) {
+                swaps[p++] = i;
+                swaps[p++] = r;
+            }
+        }
+        return swaps;
+    }
+}
@@ -0,0 +1,228 @@
+package io.github.lemcoder.aaudio.fft;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamDataCallback;
+import io.github.lemcoder.aaudio.buffer.FloatSnapshotRing;
+import io.github.lemcoder.aaudio.buffer.SampleConverter;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spectrum analyzer fed from a data callback.
+ * <p>
+ * The callback side only mixes the audio down to mono and appends it to a lock-free
+ * {@link FloatSnapshotRing}. A background thread takes the latest fftSize samples at a fixed rate,
+ * applies the window, runs a {@link RealFft} and reports the magnitudes to a {@link SpectrumListener}.
+ * Neither side allocates after construction.
+ * <p>
+ * The tap can wrap an existing callback with {@link #wrap(AAudioStreamDataCallback)}: output data
+ * is taken from onOutputReady, input data from onInputReady. Callbacks that already work on floats
+ * can call {@link #write(float[], int, int)} directly.
+ */
+public class SpectrumAnalyzerTap implements AutoCloseable {
+    private final int fftSize;
+    private final int channelCount;
+    private final AAudioFormat format;
+    private final int bytesPerFrame;
+    private final long periodNanos;
+    private final SpectrumListener listener;
+
+    // Data callback side
+    private final FloatSnapshotRing ring;
+    private final float[] interleaved;
+    private final float[] mono;
+
+    // Analyzer thread side
+    private final RealFft fft;
+    private final float[] window;
+    private final float[] work;
+    private final float[] magnitudes;
+    private final float magnitudeScale;
+    private long lastAnalyzedPosition = -1;
+
+    // Handoff to pollers
+    private final float[] latest;
+    private long latestPosition = -1;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param fftSize              analysis window in frames, a power of two
+     * @param windowFunction       window applied before the transform
+     * @param channelCount         channels in the tapped audio, they are averaged
+     * @param format               format of the tapped native data, used by the byte[] path: PCM_FLOAT,
+     *                             PCM_I16, PCM_I24_PACKED or PCM_I32
+     * @param maxFramesPerCallback largest numFrames passed by the data callback
+     * @param spectraPerSecond     analysis rate, eg. the display refresh rate
+     * @param listener             receives every spectrum on the analyzer thread, may be null
+     */
+    public SpectrumAnalyzerTap(int fftSize, WindowFunction windowFunction, int channelCount, AAudioFormat format,
+                               int maxFramesPerCallback, float spectraPerSecond, SpectrumListener listener) {
+        if (channelCount <= 0 || maxFramesPerCallback <= 0 || spectraPerSecond <= 0f) {
+            throw new IllegalArgumentException("Invalid spectrum analyzer configuration");
+        }
+        if (format == null || format.getBytesPerSample() == 0) {
+            // Checked here, the data callback must not fail on it.
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        this.fft = RealFft.forSize(fftSize);
+        this.fftSize = fftSize;
+        this.channelCount = channelCount;
+        this.format = format;
+        this.bytesPerFrame = channelCount * format.getBytesPerSample();
+        this.periodNanos = (long) (1_000_000_000L / spectraPerSecond);
+        this.listener = listener;
+
+        this.ring = new FloatSnapshotRing(fftSize);
+        this.interleaved = new float[maxFramesPerCallback * channelCount];
+        this.mono = new float[maxFramesPerCallback];
+
+        this.window = new float[fftSize];
+        windowFunction.fill(window);
+        float sum = 0f;
+        for (float w : window) {
+            sum += w;
+        }
+        this.magnitudeScale = 2f / sum;
+        this.work = new float[fftSize];
+        this.magnitudes = new float[fftSize / 2 + 1];
+        this.latest = new float[fftSize / 2 + 1];
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    /**
+     * Start the analyzer thread.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SpectrumAnalyzer");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::analyze, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop the analyzer thread. The tap keeps accepting audio.
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Wrap a callback so that everything it plays or records is analyzed.
+     *
+     * @param delegate the callback producing or consuming the audio
+     * @return a callback to pass to {@code AAudioStreamBuilder.setDataCallback}
+     */
+    public AAudioStreamDataCallback wrap(AAudioStreamDataCallback delegate) {
+        return new AAudioStreamDataCallback() {
+            @Override
+            public byte[] onOutputReady(int numFrames) {
+                byte[] data = delegate.onOutputReady(numFrames);
+                if (data != null) {
+                    write(data, Math.min(numFrames, data.length / bytesPerFrame));
+                }
+                return data;
+            }
+
+            @Override
+            public void onInputReady(byte[] input, int numFrames) {
+                write(input, numFrames);
+                delegate.onInputReady(input, numFrames);
+            }
+        };
+    }
+
+    /**
+     * Feed native data in the format given at construction.
+     */
+    public void write(byte[] data, int numFrames) {
+        numFrames = Math.min(numFrames, mono.length);
+        SampleConverter.toFloat(data, 0, format, interleaved, 0, numFrames * channelCount);
+        write(interleaved, 0, numFrames);
+    }
+
+    /**
+     * Feed interleaved float frames.
+     *
+     * @param data      interleaved samples
+     * @param offset    index of the first sample
+     * @param numFrames number of frames, at most maxFramesPerCallback
+     */
+    public void write(float[] data, int offset, int numFrames) {
+        numFrames = Math.min(numFrames, mono.length);
+        if (channelCount == 1) {
+            ring.write(data, offset, numFrames);
+            return;
+        }
+        float gain = 1f / channelCount;
+        for (int i = 0, s = offset; i < numFrames; i++) {
+            float sum = 0f;
+            for (int c = 0; c < channelCount; c++) {
+                sum += data[s++];
+            }
+            mono[i] = sum * gain;
+        }
+        ring.write(mono, 0, numFrames);
+    }
+
+    // ============================================================
+    // Analyzer thread
+    // ============================================================
+
+    private void analyze() {
+        long position = ring.readLatest(work, 0, fftSize);
+        if (position < 0 || position == lastAnalyzedPosition) {
+            return; // not enough data yet, or the stream is not running
+        }
+        lastAnalyzedPosition = position;
+
+        for (int i = 0; i < fftSize; i++) {
+            work[i] *= window[i];
+        }
+        fft.forward(work, 0);
+        fft.magnitudes(work, 0, magnitudes);
+        for (int i = 0; i < magnitudes.length; i++) {
+            magnitudes[i] *= magnitudeScale;
+        }
+
+        synchronized (latest) {
+            System.arraycopy(magnitudes, 0, latest, 0, latest.length);
+            latestPosition = position;
+        }
+        if (listener != null) {
+            listener.onSpectrum(magnitudes, position);
+        }
+    }
+
+    /**
+     * Copy the most recent spectrum, eg. from a UI frame callback.
+     * Never call this from the data callback.
+     *
+     * @param dst receives fftSize/2 + 1 magnitudes
+     * @return frame position of the spectrum, or -1 if none was computed yet
+     */
+    public long copyLatestSpectrum(float[] dst) {
+        synchronized (latest) {
+            System.arraycopy(latest, 0, dst, 0, latest.length);
+            return latestPosition;
+        }
+    }
+}
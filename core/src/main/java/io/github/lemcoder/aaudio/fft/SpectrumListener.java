@@ -0,0 +1,13 @@
+package io.github.lemcoder.aaudio.fft;
+
+@FunctionalInterface
+public interface SpectrumListener {
+    /**
+     * Called on the analyzer thread for every computed spectrum.
+     *
+     * @param magnitudes    fftSize/2 + 1 magnitudes from DC to Nyquist, where a full scale sine
+     *                      has a magnitude of about 1. The array is reused, copy it to keep it.
+     * @param framePosition number of frames seen by the tap up to the end of the analyzed window
+     */
+    void onSpectrum(float[] magnitudes, long framePosition);
+}
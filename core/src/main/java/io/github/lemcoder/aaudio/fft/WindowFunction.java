@@ -0,0 +1,26 @@
+package io.github.lemcoder.aaudio.fft;
+
+public enum WindowFunction {
+    RECTANGULAR,
+    HANN,
+    HAMMING,
+    BLACKMAN;
+
+    /**
+     * Fill an array with the window coefficients.
+     *
+     * @param window receives the coefficients, its length is the window size
+     */
+    public void fill(float[] window) {
+        int n = window.length;
+        for (int i = 0; i < n; i++) {
+            double phase = 2.0 * Math.PI * i / n;
+            window[i] = (float) switch (this) {
+                case RECTANGULAR -> 1.0;
+                case HANN -> 0.5 - 0.5 * Math.cos(phase);
+                case HAMMING -> 0.54 - 0.46 * Math.cos(phase);
+                case BLACKMAN -> 0.42 - 0.5 * Math.cos(phase) + 0.08 * Math.cos(2 * phase);
+            };
+        }
+    }
+}
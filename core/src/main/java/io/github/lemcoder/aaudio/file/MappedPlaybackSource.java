@@ -0,0 +1,281 @@
+package io.github.lemcoder.aaudio.file;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.buffer.SampleConverter;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays a memory-mapped {@link WavFile} into an output stream.
+ * <p>
+ * When the file has the format and channel count of the stream, frames are moved from the mapping
+ * straight into the native audioData with {@link MemorySegment#copy}. Otherwise each sample is
+ * converted on the fly; a mono file is copied to every output channel. There is no heap buffer in
+ * either path.
+ * <p>
+ * The source does not resample: the file plays at the stream's sample rate. {@link #forStream(WavFile,
+ * AAudioStream)} rejects a file with another rate; otherwise compare {@link #getSampleRate()} with the
+ * stream's before playing.
+ * <p>
+ * Control methods may be called from any thread. A seek is picked up at the start of the next callback
+ * and the play position is published at the end of every callback.
+ * <p>
+ * Reading the mapping may fault if the pages are not resident. Register the source with a
+ * {@link PagePrefetcher} to have upcoming pages touched on a background thread.
+ */
+public class MappedPlaybackSource {
+    private final WavFile file;
+    private final MemorySegment data;
+    private final AAudioFormat format;
+    private final int channelCount;
+    private final int bytesPerFrame;
+    private final long frameCount;
+
+    private final AtomicLong playPosition = new AtomicLong();
+    private final AtomicLong pendingSeek = new AtomicLong(-1);
+    private final AtomicReference<long[]> loop = new AtomicReference<>();
+    private volatile boolean playing;
+
+    /**
+     * @param file file to play, the caller makes sure its sample rate matches the stream's
+     */
+    public MappedPlaybackSource(WavFile file) {
+        this.file = file;
+        this.data = file.getData();
+        this.format = file.getFormat();
+        this.channelCount = file.getChannelCount();
+        this.bytesPerFrame = file.getBytesPerFrame();
+        this.frameCount = file.getFrameCount();
+    }
+
+    /**
+     * Create a source for the stream.
+     *
+     * @throws IllegalArgumentException if the file's sample rate or channel count does not fit the stream
+     */
+    public static MappedPlaybackSource forStream(WavFile file, AAudioStream stream) throws Throwable {
+        int streamRate = stream.getSampleRate();
+        if (file.getSampleRate() != streamRate) {
+            throw new IllegalArgumentException("File sample rate " + file.getSampleRate()
+                    + " does not match the stream sample rate " + streamRate + ", resample it first");
+        }
+        int streamChannels = stream.getChannelCount();
+        if (file.getChannelCount() != streamChannels && file.getChannelCount() != 1) {
+            throw new IllegalArgumentException("Cannot play " + file.getChannelCount() + " channels on "
+                    + streamChannels);
+        }
+        return new MappedPlaybackSource(file);
+    }
+
+    public WavFile getFile() {
+        return file;
+    }
+
+    /**
+     * @return sample rate of the file, which the source plays unchanged
+     */
+    public int getSampleRate() {
+        return file.getSampleRate();
+    }
+
+    // ============================================================
+    // Control
+    // ============================================================
+
+    /**
+     * Start or resume playback. If the end was reached, playback restarts from the beginning.
+     */
+    public void play() {
+        if (playPosition.get() >= frameCount && loop.get() == null) {
+            seek(0);
+        }
+        playing = true;
+    }
+
+    public void pause() {
+        playing = false;
+    }
+
+    /**
+     * @return false once a non-looping source reached the end, or after {@link #pause()}
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Move the play position. Applied at the start of the next callback.
+     *
+     * @param frame file frame, clamped to the file length
+     */
+    public void seek(long frame) {
+        pendingSeek.set(Math.max(0, Math.min(frame, frameCount)));
+    }
+
+    /**
+     * @return file frame that will be played next, as of the last callback
+     */
+    public long getPlayPosition() {
+        long seek = pendingSeek.get();
+        return seek >= 0 ? seek : playPosition.get();
+    }
+
+    /**
+     * Loop between two file frames. When the play position reaches endFrame it jumps to startFrame.
+     *
+     * @param startFrame first frame of the loop
+     * @param endFrame   frame after the last frame of the loop
+     */
+    public void setLoop(long startFrame, long endFrame) {
+        if (startFrame < 0 || endFrame > frameCount || startFrame >= endFrame) {
+            throw new IllegalArgumentException("Invalid loop region: " + startFrame + " - " + endFrame);
+        }
+        loop.set(new long[]{startFrame, endFrame});
+    }
+
+    /**
+     * Loop the whole file.
+     */
+    public void setLooping() {
+        setLoop(0, frameCount);
+    }
+
+    public void clearLoop() {
+        loop.set(null);
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Write numFrames frames of output. Frames past the end of a non-looping file, or all frames while
+     * paused, are silent.
+     *
+     * @param dst          native audioData
+     * @param dstFormat    format of the stream
+     * @param dstChannels  channel count of the stream, equal to the file's or the file must be mono
+     * @param numFrames    number of frames to write
+     * @return number of frames taken from the file
+     */
+    public int render(MemorySegment dst, AAudioFormat dstFormat, int dstChannels, int numFrames) {
+        int dstBytesPerFrame = dstFormat.getBytesPerSample() * dstChannels;
+        long position = playPosition.get();
+        long seek = pendingSeek.getAndSet(-1);
+        if (seek >= 0) {
+            position = seek;
+        }
+
+        int done = 0;
+        while (playing && done < numFrames) {
+            long[] region = loop.get();
+            long end = region != null ? region[1] : frameCount;
+            if (position >= end) {
+                if (region == null) {
+                    playing = false;
+                    break;
+                }
+                position = region[0];
+                continue;
+            }
+            int n = (int) Math.min(numFrames - done, end - position);
+            copy(position, dst, (long) done * dstBytesPerFrame, dstFormat, dstChannels, n);
+            position += n;
+            done += n;
+        }
+
+        if (done < numFrames) {
+            dst.asSlice((long) done * dstBytesPerFrame, (long) (numFrames - done) * dstBytesPerFrame).fill((byte) 0);
+        }
+        playPosition.lazySet(position);
+        return done;
+    }
+
+    /**
+     * Write a whole callback buffer.
+     */
+    public int render(AudioBuffer buffer) {
+        return render(buffer.getSegment(), buffer.getFormat(), buffer.getChannelCount(), buffer.getNumFrames());
+    }
+
+    /**
+     * A data callback that plays this source.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return buffer -> {
+            render(buffer);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    private void copy(long position, MemorySegment dst, long dstOffset, AAudioFormat dstFormat, int dstChannels, int numFrames) {
+        long srcOffset = position * bytesPerFrame;
+        if (dstFormat == format && dstChannels == channelCount) {
+            MemorySegment.copy(data, srcOffset, dst, dstOffset, (long) numFrames * bytesPerFrame);
+            return;
+        }
+        if (dstChannels != channelCount && channelCount != 1) {
+            throw new IllegalArgumentException("Cannot play " + channelCount + " channels on " + dstChannels);
+        }
+        int srcBytesPerSample = format.getBytesPerSample();
+        int dstBytesPerSample = dstFormat.getBytesPerSample();
+        long s = srcOffset;
+        long d = dstOffset;
+        if (channelCount == 1) {
+            for (int i = 0; i < numFrames; i++, s += srcBytesPerSample) {
+                float sample = SampleConverter.readFloat(data, s, format);
+                for (int c = 0; c < dstChannels; c++, d += dstBytesPerSample) {
+                    SampleConverter.writeFloat(dst, d, dstFormat, sample);
+                }
+            }
+        } else {
+            int samples = numFrames * channelCount;
+            for (int i = 0; i < samples; i++, s += srcBytesPerSample, d += dstBytesPerSample) {
+                SampleConverter.writeFloat(dst, d, dstFormat, SampleConverter.readFloat(data, s, format));
+            }
+        }
+    }
+
+    // ============================================================
+    // Prefetch
+    // ============================================================
+
+    /**
+     * Touch the pages of the next frames to play, including the loop start if the window wraps.
+     * Only called from the prefetcher thread.
+     *
+     * @param frames   length of the window in frames
+     * @param pageSize distance between touched bytes
+     * @return a value derived from the touched pages, so the reads cannot be optimized away
+     */
+    int prefetch(long frames, int pageSize) {
+        if (!playing && pendingSeek.get() < 0) {
+            return 0;
+        }
+        long position = getPlayPosition();
+        long[] region = loop.get();
+        long end = region != null && position < region[1] ? region[1] : frameCount;
+        int sum = touch(position, Math.min(end, position + frames), pageSize);
+        long remaining = frames - (end - position);
+        if (region != null && remaining > 0) {
+            sum += touch(region[0], Math.min(region[1], region[0] + remaining), pageSize);
+        }
+        return sum;
+    }
+
+    private int touch(long fromFrame, long toFrame, int pageSize) {
+        // Reading one byte per page is enough to fault it in; resident pages cost next to nothing.
+        int sum = 0;
+        for (long offset = fromFrame * bytesPerFrame, to = toFrame * bytesPerFrame; offset < to; offset += pageSize) {
+            sum += data.get(ValueLayout.JAVA_BYTE, offset);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.lemcoder.aaudio.file;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background thread that keeps the upcoming pages of {@link MappedPlaybackSource}s resident,
+ * so the data callback never takes a page fault.
+ * <p>
+ * Every interval it touches one byte per page in a window ahead of each playing source's position.
+ * The window must be longer than the interval plus the worst case I/O latency. A single prefetcher
+ * is meant to serve all sources of an application.
+ */
+public class PagePrefetcher implements AutoCloseable {
+    private static final int PAGE_SIZE = 4096;
+    private static final long DEFAULT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final CopyOnWriteArrayList<MappedPlaybackSource> sources = new CopyOnWriteArrayList<>();
+    private final int windowMillis;
+    private final long intervalNanos;
+
+    private Thread thread;
+    private volatile boolean running;
+    @SuppressWarnings("unused")
+    private volatile int sink;
+
+    /**
+     * @param windowMillis length of the prefetched window ahead of the play position
+     */
+    public PagePrefetcher(int windowMillis) {
+        this(windowMillis, DEFAULT_INTERVAL_NANOS);
+    }
+
+    /**
+     * @param intervalNanos time between two passes over all sources
+     */
+    public PagePrefetcher(int windowMillis, long intervalNanos) {
+        if (windowMillis <= 0 || intervalNanos <= 0) {
+            throw new IllegalArgumentException("Window and interval must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Keep the pages of the source resident while it plays. Files that fit in the window
+     * are loaded completely right away.
+     */
+    public void register(MappedPlaybackSource source) {
+        WavFile file = source.getFile();
+        if (file.getFrameCount() <= windowFrames(file)) {
+            file.load();
+            return;
+        }
+        sources.addIfAbsent(source);
+        LockSupport.unpark(thread);
+    }
+
+    public void unregister(MappedPlaybackSource source) {
+        sources.remove(source);
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "PagePrefetcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private long windowFrames(WavFile file) {
+        return (long) file.getSampleRate() * windowMillis / 1000;
+    }
+
+    private void run() {
+        while (running) {
+            int sum = 0;
+            for (MappedPlaybackSource source : sources) {
+                sum += source.prefetch(windowFrames(source.getFile()), PAGE_SIZE);
+            }
+            sink = sum;
+            LockSupport.parkNanos(this, intervalNanos);
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            running = false;
+            thread = null;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sources.clear();
+    }
+}
@@ -0,0 +1,211 @@
+package io.github.lemcoder.aaudio.file;
+
+import com.v7878.foreign.MemorySegment;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped PCM file. The header is parsed once when the file is opened,
+ * afterwards the samples are read directly from the mapping.
+ * <p>
+ * WAV (PCM, IEEE float and WAVE_FORMAT_EXTENSIBLE), RF64 and headerless PCM files are supported.
+ * The mapping is limited to 2 GiB per file.
+ */
+public class WavFile {
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final File file;
+    private final AAudioFormat format;
+    private final int sampleRate;
+    private final int channelCount;
+    private final MappedByteBuffer mapping;
+    private final MemorySegment data;
+    private final long frameCount;
+
+    private WavFile(File file, AAudioFormat format, int sampleRate, int channelCount,
+                    MappedByteBuffer mapping, long dataOffset, long dataSize) {
+        this.file = file;
+        this.format = format;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.mapping = mapping;
+        int bytesPerFrame = format.getBytesPerSample() * channelCount;
+        this.frameCount = dataSize / bytesPerFrame;
+        this.data = MemorySegment.ofBuffer(mapping).asSlice(dataOffset, frameCount * bytesPerFrame);
+    }
+
+    /**
+     * Map a WAV or RF64 file.
+     *
+     * @throws IOException if the file cannot be read or is not a supported WAV file
+     */
+    public static WavFile open(File file) throws IOException {
+        MappedByteBuffer mapping = map(file);
+        ByteBuffer header = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long fileSize = header.capacity();
+
+        if (fileSize < 12) {
+            throw new IOException("Not a WAV file: " + file);
+        }
+        String riff = tag(header, 0);
+        if (!(riff.equals("RIFF") || riff.equals("RF64")) || !tag(header, 8).equals("WAVE")) {
+            throw new IOException("Not a WAV file: " + file);
+        }
+
+        AAudioFormat format = null;
+        int sampleRate = 0;
+        int channelCount = 0;
+        long ds64DataSize = -1;
+        long dataOffset = -1;
+        long dataSize = 0;
+
+        long position = 12;
+        while (position + 8 <= fileSize) {
+            String id = tag(header, (int) position);
+            long size = header.getInt((int) position + 4) & 0xFFFFFFFFL;
+            int body = (int) position + 8;
+            switch (id) {
+                case "ds64" -> {
+                    requireChunk(file, id, size, 16, body, fileSize);
+                    ds64DataSize = header.getLong(body + 8);
+                }
+                case "fmt " -> {
+                    requireChunk(file, id, size, 16, body, fileSize);
+                    int formatTag = header.getShort(body) & 0xFFFF;
+                    channelCount = header.getShort(body + 2) & 0xFFFF;
+                    sampleRate = header.getInt(body + 4);
+                    int bits = header.getShort(body + 14) & 0xFFFF;
+                    if (formatTag == WAVE_FORMAT_EXTENSIBLE && size >= 26) {
+                        // first two bytes of the sub format GUID hold the actual format tag
+                        formatTag = header.getShort(body + 24) & 0xFFFF;
+                    }
+                    format = toFormat(formatTag, bits);
+                }
+                case "data" -> {
+                    dataOffset = body;
+                    dataSize = size == WavHeader.MAX_RIFF_SIZE && ds64DataSize >= 0 ? ds64DataSize : size;
+                }
+                default -> {
+                }
+            }
+            if (dataOffset >= 0) {
+                break;
+            }
+            position = body + size + (size & 1);
+        }
+
+        if (format == null || dataOffset < 0 || channelCount == 0 || sampleRate <= 0 || dataSize < 0) {
+            throw new IOException("Unsupported or incomplete WAV file: " + file);
+        }
+        // A recording that was cut short may claim more data than the file holds.
+        dataSize = Math.min(dataSize, fileSize - dataOffset);
+        return new WavFile(file, format, sampleRate, channelCount, mapping, dataOffset, dataSize);
+    }
+
+    /**
+     * Map a headerless PCM file.
+     */
+    public static WavFile openRaw(File file, AAudioFormat format, int sampleRate, int channelCount) throws IOException {
+        if (format.getBytesPerSample() == 0) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        MappedByteBuffer mapping = map(file);
+        return new WavFile(file, format, sampleRate, channelCount, mapping, 0, mapping.capacity());
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static AAudioFormat toFormat(int formatTag, int bits) throws IOException {
+        if (formatTag == WAVE_FORMAT_IEEE_FLOAT && bits == 32) {
+            return AAudioFormat.PCM_FLOAT;
+        }
+        if (formatTag == WAVE_FORMAT_PCM) {
+            switch (bits) {
+                case 16:
+                    return AAudioFormat.PCM_I16;
+                case 24:
+                    return AAudioFormat.PCM_I24_PACKED;
+                case 32:
+                    return AAudioFormat.PCM_I32;
+                default:
+                    break;
+            }
+        }
+        throw new IOException("Unsupported WAV sample format: tag " + formatTag + ", " + bits + " bits");
+    }
+
+    /**
+     * @throws IOException if the chunk is shorter than its fields or runs past the end of the file
+     */
+    private static void requireChunk(File file, String id, long size, int minSize, int body, long fileSize)
+            throws IOException {
+        if (size < minSize || body + size > fileSize) {
+            throw new IOException("Truncated '" + id + "' chunk in WAV file: " + file);
+        }
+    }
+
+    private static String tag(ByteBuffer buffer, int offset) {
+        char[] chars = new char[4];
+        for (int i = 0; i < 4; i++) {
+            chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public AAudioFormat getFormat() {
+        return format;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public int getBytesPerFrame() {
+        return format.getBytesPerSample() * channelCount;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the mapped sample data, interleaved, in the file format
+     */
+    public MemorySegment getData() {
+        return data;
+    }
+
+    /**
+     * Load the whole file into memory, eg. for short sounds that must never fault.
+     */
+    public void load() {
+        mapping.load();
+    }
+}
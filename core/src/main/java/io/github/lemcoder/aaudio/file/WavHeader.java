@@ -0,0 +1,79 @@
+package io.github.lemcoder.aaudio.file;
+
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the WAV headers written by this library.
+ * <p>
+ * The header always reserves a 28 byte JUNK chunk right after the RIFF header. When the data grows
+ * beyond 4 GiB the chunk is turned into a ds64 chunk and the file becomes RF64 (EBU Tech 3306)
+ * without moving any audio data.
+ * <pre>
+ *  0 RIFF | RF64     4 riff size      8 WAVE
+ * 12 JUNK | ds64    16 28            20 riff size 64, data size 64, sample count 64, table length
+ * 48 fmt            52 18            56 WAVEFORMATEX with cbSize = 0
+ * 74 data           78 data size     82 samples
+ * </pre>
+ */
+class WavHeader {
+    static final int SIZE = 82;
+    static final int RIFF_SIZE_OFFSET = 4;
+    static final int DS64_OFFSET = 12;
+    static final int DS64_RIFF_SIZE_OFFSET = 20;
+    static final int DS64_DATA_SIZE_OFFSET = 28;
+    static final int DS64_SAMPLE_COUNT_OFFSET = 36;
+    static final int DATA_SIZE_OFFSET = 78;
+
+    static final long MAX_RIFF_SIZE = 0xFFFFFFFFL;
+
+    private static final short WAVE_FORMAT_PCM = 1;
+    private static final short WAVE_FORMAT_IEEE_FLOAT = 3;
+
+    WavHeader() {
+        // Should not be called directly
+    }
+
+    /**
+     * Header of an empty file.
+     */
+    static ByteBuffer create(AAudioFormat format, int sampleRate, int channelCount) {
+        int bytesPerSample = format.getBytesPerSample();
+        if (bytesPerSample == 0) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        int blockAlign = bytesPerSample * channelCount;
+
+        ByteBuffer header = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        putTag(header, "RIFF");
+        header.putInt(SIZE - 8);
+        putTag(header, "WAVE");
+
+        putTag(header, "JUNK");
+        header.putInt(28);
+        header.put(new byte[28]);
+
+        putTag(header, "fmt ");
+        header.putInt(18);
+        header.putShort(format == AAudioFormat.PCM_FLOAT ? WAVE_FORMAT_IEEE_FLOAT : WAVE_FORMAT_PCM);
+        header.putShort((short) channelCount);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) (bytesPerSample * 8));
+        header.putShort((short) 0);
+
+        putTag(header, "data");
+        header.putInt(0);
+        header.flip();
+        return header;
+    }
+
+    static void putTag(ByteBuffer buffer, String tag) {
+        for (int i = 0; i < 4; i++) {
+            buffer.put((byte) tag.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package io.github.lemcoder.aaudio.file;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.buffer.SegmentRingBuffer;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records an input stream to a WAV file, switching to RF64 beyond 4 GiB.
+ * <p>
+ * The data callback only copies frames into an off-heap {@link SegmentRingBuffer}. A dedicated writer
+ * thread moves them into a memory-mapped region of the file, which is mapped ahead in large chunks.
+ * The RIFF and data sizes in the header are patched periodically, so if the process dies the file
+ * still holds a valid, playable recording up to the last patch.
+ * <p>
+ * If the writer falls behind by more than the ring capacity, whole callback buffers are dropped
+ * and counted in {@link #getDroppedFrames()}; the callback never waits for I/O.
+ * <p>
+ * Supported formats are PCM_I16, PCM_I24_PACKED, PCM_I32 and PCM_FLOAT.
+ */
+public class WavRecorder implements AutoCloseable {
+    private static final long DEFAULT_MAP_CHUNK_BYTES = 8L * 1024 * 1024;
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DEFAULT_PATCH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int bytesPerFrame;
+    private final int channelCount;
+
+    private final Arena arena = Arena.ofShared();
+    private final SegmentRingBuffer ring;
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    // Writer thread state
+    private final ByteBuffer patch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final long mapChunkBytes;
+    private final long patchIntervalNanos;
+    private MappedByteBuffer mappedBuffer;
+    private MemorySegment mapped;
+    private long mappedStart;
+    private long dataBytes;
+    private boolean rf64;
+    private volatile long committedBytes;
+    private volatile IOException failure;
+
+    private Thread writer;
+    private volatile boolean running;
+
+    /**
+     * @param file         target file, truncated if it exists
+     * @param format       sample format of the recorded data
+     * @param sampleRate   sample rate in Hertz
+     * @param channelCount number of interleaved channels
+     * @param ringFrames   frames buffered between the callback and the writer, this is the longest
+     *                     I/O stall that is survived without dropping input
+     */
+    public WavRecorder(File file, AAudioFormat format, int sampleRate, int channelCount, int ringFrames) throws IOException {
+        this(file, format, sampleRate, channelCount, ringFrames, DEFAULT_MAP_CHUNK_BYTES, DEFAULT_PATCH_INTERVAL_NANOS);
+    }
+
+    /**
+     * @param mapChunkBytes      size of each mapped region of the file
+     * @param patchIntervalNanos interval between header updates
+     */
+    public WavRecorder(File file, AAudioFormat format, int sampleRate, int channelCount, int ringFrames,
+                       long mapChunkBytes, long patchIntervalNanos) throws IOException {
+        this.file = file;
+        this.channelCount = channelCount;
+        this.bytesPerFrame = format.getBytesPerSample() * channelCount;
+        this.mapChunkBytes = Math.max(mapChunkBytes, 64 * 1024);
+        this.patchIntervalNanos = patchIntervalNanos;
+
+        ByteBuffer header = WavHeader.create(format, sampleRate, channelCount);
+        this.ring = new SegmentRingBuffer(arena, (long) ringFrames * bytesPerFrame);
+
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        channel.truncate(0);
+        channel.write(header, 0);
+    }
+
+    /**
+     * Create a recorder matching the format, sample rate and channel count of the stream.
+     *
+     * @param bufferSeconds longest I/O stall that is survived without dropping input
+     */
+    public static WavRecorder forStream(AAudioStream stream, File file, float bufferSeconds) throws Throwable {
+        int sampleRate = stream.getSampleRate();
+        return new WavRecorder(file, stream.getFormat(), sampleRate, stream.getChannelCount(),
+                (int) Math.ceil(bufferSeconds * sampleRate));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Start the writer thread.
+     */
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "WavRecorder");
+        writer.setPriority(Thread.NORM_PRIORITY + 1);
+        writer.start();
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Queue interleaved native frames for writing. Never blocks.
+     *
+     * @return false if the frames were dropped because the writer is behind
+     */
+    public boolean write(MemorySegment data, int numFrames) {
+        long bytes = (long) numFrames * bytesPerFrame;
+        if (ring.availableToWrite() < bytes) {
+            droppedFrames.addAndGet(numFrames);
+            return false;
+        }
+        ring.write(data, 0, bytes);
+        return true;
+    }
+
+    /**
+     * Queue the frames of a callback buffer, which must have the recorder's format and channel count.
+     */
+    public boolean write(AudioBuffer buffer) {
+        return write(buffer.getSegment(), buffer.getNumFrames());
+    }
+
+    /**
+     * Queue interleaved frames from a byte[] data callback.
+     */
+    public boolean write(byte[] data, int numFrames) {
+        int bytes = numFrames * bytesPerFrame;
+        if (ring.availableToWrite() < bytes) {
+            droppedFrames.addAndGet(numFrames);
+            return false;
+        }
+        ring.write(data, 0, bytes);
+        return true;
+    }
+
+    /**
+     * A data callback that records everything it receives.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return buffer -> {
+            write(buffer);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    /**
+     * @return frames dropped because the ring was full
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * @return frames covered by the last header update, ie. what survives a crash
+     */
+    public long getCommittedFrames() {
+        return committedBytes / bytesPerFrame;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    // ============================================================
+    // Writer thread
+    // ============================================================
+
+    private void runWriter() {
+        long lastPatch = System.nanoTime();
+        try {
+            while (running || ring.availableToRead() > 0) {
+                long available = ring.availableToRead();
+                if (available == 0) {
+                    LockSupport.parkNanos(this, POLL_INTERVAL_NANOS);
+                } else {
+                    drain(available);
+                }
+
+                long now = System.nanoTime();
+                if (now - lastPatch >= patchIntervalNanos) {
+                    commit();
+                    lastPatch = now;
+                }
+            }
+            commit();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void drain(long available) throws IOException {
+        while (available > 0) {
+            long offsetInMap = dataBytes - mappedStart;
+            if (mapped == null || offsetInMap == mapped.byteSize()) {
+                mapNextChunk();
+                offsetInMap = 0;
+            }
+            long n = Math.min(available, mapped.byteSize() - offsetInMap);
+            ring.read(mapped, offsetInMap, n);
+            dataBytes += n;
+            available -= n;
+        }
+    }
+
+    private void mapNextChunk() throws IOException {
+        mappedStart = dataBytes;
+        // Mapping past the end of the file grows it, so the file is extended chunk by chunk.
+        mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, WavHeader.SIZE + dataBytes, mapChunkBytes);
+        mapped = MemorySegment.ofBuffer(mappedBuffer);
+    }
+
+    /**
+     * Make the data written so far part of the file by updating the sizes in the header.
+     */
+    private void commit() throws IOException {
+        long data = dataBytes;
+        long riffSize = WavHeader.SIZE - 8 + data + (data & 1);
+        if (!rf64 && riffSize > WavHeader.MAX_RIFF_SIZE) {
+            switchToRf64();
+        }
+        if (rf64) {
+            putLong(WavHeader.DS64_RIFF_SIZE_OFFSET, riffSize);
+            putLong(WavHeader.DS64_DATA_SIZE_OFFSET, data);
+            putLong(WavHeader.DS64_SAMPLE_COUNT_OFFSET, data / bytesPerFrame);
+        } else {
+            putInt(WavHeader.RIFF_SIZE_OFFSET, (int) riffSize);
+            putInt(WavHeader.DATA_SIZE_OFFSET, (int) data);
+        }
+        committedBytes = data;
+    }
+
+    private void switchToRf64() throws IOException {
+        putTag(0, "RF64");
+        putInt(WavHeader.RIFF_SIZE_OFFSET, -1);
+        putTag(WavHeader.DS64_OFFSET, "ds64");
+        putInt(WavHeader.DATA_SIZE_OFFSET, -1);
+        rf64 = true;
+    }
+
+    private void putInt(long position, int value) throws IOException {
+        patch.clear();
+        patch.putInt(value).flip();
+        channel.write(patch, position);
+    }
+
+    private void putLong(long position, long value) throws IOException {
+        patch.clear();
+        patch.putLong(value).flip();
+        channel.write(patch, position);
+    }
+
+    private void putTag(long position, String tag) throws IOException {
+        patch.clear();
+        WavHeader.putTag(patch, tag);
+        patch.flip();
+        channel.write(patch, position);
+    }
+
+    /**
+     * Stop the writer, flush all queued frames, finalize the header and close the file.
+     * The data callback must not write to the recorder anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            thread = writer;
+            running = false;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            if (thread == null) {
+                drain(ring.availableToRead());
+                commit();
+            }
+            if (mappedBuffer != null) {
+                mappedBuffer.force();
+            }
+            long data = dataBytes;
+            long size = WavHeader.SIZE + data;
+            if ((data & 1) == 1) {
+                // RIFF chunks are word aligned
+                channel.write(ByteBuffer.allocate(1), size);
+                size++;
+            }
+            channel.truncate(size);
+        } finally {
+            mappedBuffer = null;
+            mapped = null;
+            channel.close();
+            randomAccessFile.close();
+            arena.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.lemcoder.aaudio.file;
+
+import com.v7878.foreign.MemorySegment;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a WAV file sequentially from the calling thread, switching to RF64 beyond 4 GiB.
+ * <p>
+ * Unlike {@link WavRecorder} this blocks on I/O, so it is meant for offline rendering and tools,
+ * never for the data callback. The header sizes are written on {@link #close()}.
+ * <p>
+ * Supported formats are PCM_I16, PCM_I24_PACKED, PCM_I32 and PCM_FLOAT.
+ */
+public class WavWriter implements AutoCloseable {
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int bytesPerFrame;
+    private final ByteBuffer patch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private long dataBytes;
+    private boolean closed;
+
+    /**
+     * @param file         target file, truncated if it exists
+     * @param format       sample format of the data
+     * @param sampleRate   sample rate in Hertz
+     * @param channelCount number of interleaved channels
+     */
+    public WavWriter(File file, AAudioFormat format, int sampleRate, int channelCount) throws IOException {
+        this.file = file;
+        this.bytesPerFrame = format.getBytesPerSample() * channelCount;
+        ByteBuffer header = WavHeader.create(format, sampleRate, channelCount);
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        channel.truncate(0);
+        channel.write(header, 0);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Append interleaved frames.
+     *
+     * @param data whole frames in the format of the file
+     */
+    public void write(MemorySegment data) throws IOException {
+        if (data.byteSize() % bytesPerFrame != 0) {
+            throw new IllegalArgumentException("Data is not a whole number of frames");
+        }
+        ByteBuffer buffer = data.asByteBuffer();
+        while (buffer.hasRemaining()) {
+            dataBytes += channel.write(buffer, WavHeader.SIZE + dataBytes);
+        }
+    }
+
+    /**
+     * @return frames written so far
+     */
+    public long getFrameCount() {
+        return dataBytes / bytesPerFrame;
+    }
+
+    /**
+     * Write the header sizes and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if ((dataBytes & 1) != 0) {
+                // RIFF chunks are padded to an even size.
+                channel.write(ByteBuffer.allocate(1), WavHeader.SIZE + dataBytes);
+            }
+            long riffSize = WavHeader.SIZE - 8 + dataBytes + (dataBytes & 1);
+            if (riffSize > WavHeader.MAX_RIFF_SIZE) {
+                putTag(0, "RF64");
+                putInt(WavHeader.RIFF_SIZE_OFFSET, -1);
+                putTag(WavHeader.DS64_OFFSET, "ds64");
+                putInt(WavHeader.DATA_SIZE_OFFSET, -1);
+                putLong(WavHeader.DS64_RIFF_SIZE_OFFSET, riffSize);
+                putLong(WavHeader.DS64_DATA_SIZE_OFFSET, dataBytes);
+                putLong(WavHeader.DS64_SAMPLE_COUNT_OFFSET, dataBytes / bytesPerFrame);
+            } else {
+                putInt(WavHeader.RIFF_SIZE_OFFSET, (int) riffSize);
+                putInt(WavHeader.DATA_SIZE_OFFSET, (int) dataBytes);
+            }
+        } finally {
+            channel.close();
+            randomAccessFile.close();
+        }
+    }
+
+    private void putInt(long position, int value) throws IOException {
+        patch.clear();
+        patch.putInt(value).flip();
+        channel.write(patch, position);
+    }
+
+    private void putLong(long position, long value) throws IOException {
+        patch.clear();
+        patch.putLong(value).flip();
+        channel.write(patch, position);
+    }
+
+    private void putTag(long position, String tag) throws IOException {
+        patch.clear();
+        WavHeader.putTag(patch, tag);
+        patch.flip();
+        channel.write(patch, position);
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.lemcoder.aaudio.filter;
+
+/**
+ * Normalized coefficients of a second order IIR section:
+ * <pre>
+ * y[n] = b0 x[n] + b1 x[n-1] + b2 x[n-2] - a1 y[n-1] - a2 y[n-2]
+ * </pre>
+ * The factory methods follow the Audio EQ Cookbook by Robert Bristow-Johnson.
+ * Crossovers can be built from two cascaded Butterworth sections (Q = {@link #BUTTERWORTH_Q}),
+ * which gives a Linkwitz-Riley response.
+ */
+public final class BiquadCoefficients {
+    public static final float BUTTERWORTH_Q = (float) (1.0 / Math.sqrt(2.0));
+
+    /**
+     * Passes the signal unchanged.
+     */
+    public static final BiquadCoefficients IDENTITY = new BiquadCoefficients(1f, 0f, 0f, 0f, 0f);
+
+    public final float b0;
+    public final float b1;
+    public final float b2;
+    public final float a1;
+    public final float a2;
+
+    public BiquadCoefficients(float b0, float b1, float b2, float a1, float a2) {
+        this.b0 = b0;
+        this.b1 = b1;
+        this.b2 = b2;
+        this.a1 = a1;
+        this.a2 = a2;
+    }
+
+    public static BiquadCoefficients lowPass(float sampleRate, float frequency, float q) {
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double alpha = Math.sin(w) / (2 * q);
+        return normalize((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public static BiquadCoefficients highPass(float sampleRate, float frequency, float q) {
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double alpha = Math.sin(w) / (2 * q);
+        return normalize((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /**
+     * Band pass with a peak gain of 0 dB.
+     */
+    public static BiquadCoefficients bandPass(float sampleRate, float frequency, float q) {
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double alpha = Math.sin(w) / (2 * q);
+        return normalize(alpha, 0, -alpha, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public static BiquadCoefficients notch(float sampleRate, float frequency, float q) {
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double alpha = Math.sin(w) / (2 * q);
+        return normalize(1, -2 * cos, 1, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public static BiquadCoefficients allPass(float sampleRate, float frequency, float q) {
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double alpha = Math.sin(w) / (2 * q);
+        return normalize(1 - alpha, -2 * cos, 1 + alpha, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    /**
+     * Parametric EQ band.
+     */
+    public static BiquadCoefficients peaking(float sampleRate, float frequency, float q, float gainDb) {
+        double a = Math.pow(10, gainDb / 40.0);
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double alpha = Math.sin(w) / (2 * q);
+        return normalize(1 + alpha * a, -2 * cos, 1 - alpha * a, 1 + alpha / a, -2 * cos, 1 - alpha / a);
+    }
+
+    public static BiquadCoefficients lowShelf(float sampleRate, float frequency, float q, float gainDb) {
+        double a = Math.pow(10, gainDb / 40.0);
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double beta = 2 * Math.sqrt(a) * Math.sin(w) / (2 * q);
+        return normalize(
+                a * ((a + 1) - (a - 1) * cos + beta),
+                2 * a * ((a - 1) - (a + 1) * cos),
+                a * ((a + 1) - (a - 1) * cos - beta),
+                (a + 1) + (a - 1) * cos + beta,
+                -2 * ((a - 1) + (a + 1) * cos),
+                (a + 1) + (a - 1) * cos - beta);
+    }
+
+    public static BiquadCoefficients highShelf(float sampleRate, float frequency, float q, float gainDb) {
+        double a = Math.pow(10, gainDb / 40.0);
+        double w = omega(sampleRate, frequency);
+        double cos = Math.cos(w);
+        double beta = 2 * Math.sqrt(a) * Math.sin(w) / (2 * q);
+        return normalize(
+                a * ((a + 1) + (a - 1) * cos + beta),
+                -2 * a * ((a - 1) + (a + 1) * cos),
+                a * ((a + 1) + (a - 1) * cos - beta),
+                (a + 1) - (a - 1) * cos + beta,
+                2 * ((a - 1) - (a + 1) * cos),
+                (a + 1) - (a - 1) * cos - beta);
+    }
+
+    private static double omega(float sampleRate, float frequency) {
+        if (frequency <= 0f || frequency >= sampleRate / 2f) {
+            throw new IllegalArgumentException("Frequency must be between 0 and Nyquist: " + frequency);
+        }
+        return 2 * Math.PI * frequency / sampleRate;
+    }
+
+    private static BiquadCoefficients normalize(double b0, double b1, double b2, double a0, double a1, double a2) {
+        return new BiquadCoefficients((float) (b0 / a0), (float) (b1 / a0), (float) (b2 / a0), (float) (a1 / a0), (float) (a2 / a0));
+    }
+}
@@ -0,0 +1,281 @@
+package io.github.lemcoder.aaudio.filter;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cascade of biquad sections applied to every channel of an interleaved buffer.
+ * <p>
+ * Coefficients and state are stored as structure-of-arrays indexed by {@code section * channelCount + channel},
+ * so the inner loop walks the channels of a frame with contiguous, branch-free loads and stores.
+ * Sections use the transposed direct form II.
+ * <p>
+ * Coefficients are changed from a control thread with {@link #setSection}. The new set is handed to
+ * the data callback through an atomic reference and the callback glides from the old to the new
+ * coefficients over the ramp time, which avoids clicks. The callback never locks or allocates.
+ * <p>
+ * Denormal state values are flushed to zero after every block.
+ */
+public class BiquadFilterBank {
+    /**
+     * Number of channel positions defined in {@link io.github.lemcoder.aaudio.model.AAudioChannelMask}.
+     */
+    public static final int MAX_CHANNELS = 26;
+
+    private static final int RAMP_STEP_FRAMES = 16;
+    private static final float DENORMAL_GUARD = 1e-18f;
+
+    private final int channelCount;
+    private final int sectionCount;
+    private final int size;
+
+    // Data callback state
+    private final float[] b0, b1, b2, a1, a2;
+    private final float[] z1, z2;
+    private final float[] target;
+    private final float[] delta;
+    private int rampSteps;
+    private int rampStepsRemaining;
+    private int rampFrameInStep;
+
+    // Control thread state
+    private final float[] design;
+    private final AtomicReference<float[]> pending = new AtomicReference<>();
+
+    /**
+     * @param channelCount number of interleaved channels, 1 to {@link #MAX_CHANNELS}
+     * @param sectionCount number of cascaded sections, eg. one per parametric EQ band
+     * @param rampFrames   glide time for coefficient changes in frames
+     */
+    public BiquadFilterBank(int channelCount, int sectionCount, int rampFrames) {
+        if (channelCount < 1 || channelCount > MAX_CHANNELS) {
+            throw new IllegalArgumentException("Channel count must be between 1 and " + MAX_CHANNELS + ": " + channelCount);
+        }
+        if (sectionCount < 1) {
+            throw new IllegalArgumentException("At least one section is required");
+        }
+        this.channelCount = channelCount;
+        this.sectionCount = sectionCount;
+        this.size = channelCount * sectionCount;
+        this.rampSteps = Math.max(1, rampFrames / RAMP_STEP_FRAMES);
+
+        this.b0 = new float[size];
+        this.b1 = new float[size];
+        this.b2 = new float[size];
+        this.a1 = new float[size];
+        this.a2 = new float[size];
+        this.z1 = new float[size];
+        this.z2 = new float[size];
+        Arrays.fill(b0, 1f);
+
+        this.target = new float[5 * size];
+        this.delta = new float[5 * size];
+        this.design = new float[5 * size];
+        for (int i = 0; i < size; i++) {
+            design[i] = 1f;
+        }
+    }
+
+    /**
+     * Create a bank for all channels of the stream.
+     */
+    public static BiquadFilterBank forStream(AAudioStream stream, int sectionCount, int rampFrames) throws Throwable {
+        return new BiquadFilterBank(stream.getChannelCount(), sectionCount, rampFrames);
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    // ============================================================
+    // Control thread
+    // ============================================================
+
+    /**
+     * Set the coefficients of one section for all channels.
+     */
+    public void setSection(int section, BiquadCoefficients coefficients) {
+        setSection(section, -1, coefficients);
+    }
+
+    /**
+     * Set the coefficients of one section. The data callback starts gliding to them at its next block.
+     *
+     * @param section      section index
+     * @param channel      channel index, or -1 for all channels
+     * @param coefficients new coefficients
+     */
+    public void setSection(int section, int channel, BiquadCoefficients coefficients) {
+        if (section < 0 || section >= sectionCount || channel < -1 || channel >= channelCount) {
+            throw new IndexOutOfBoundsException("section " + section + ", channel " + channel);
+        }
+        synchronized (design) {
+            int from = channel < 0 ? 0 : channel;
+            int to = channel < 0 ? channelCount : channel + 1;
+            for (int c = from; c < to; c++) {
+                int i = section * channelCount + c;
+                design[i] = coefficients.b0;
+                design[size + i] = coefficients.b1;
+                design[2 * size + i] = coefficients.b2;
+                design[3 * size + i] = coefficients.a1;
+                design[4 * size + i] = coefficients.a2;
+            }
+            // A fresh copy per update keeps the handoff lock-free for the data callback.
+            pending.set(design.clone());
+        }
+    }
+
+    /**
+     * Change the glide time used for future coefficient changes.
+     */
+    public void setRampFrames(int rampFrames) {
+        this.rampSteps = Math.max(1, rampFrames / RAMP_STEP_FRAMES);
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Filter interleaved float frames in place.
+     *
+     * @param data      interleaved samples
+     * @param offset    index of the first sample
+     * @param numFrames number of frames
+     */
+    public void process(float[] data, int offset, int numFrames) {
+        pollCoefficients();
+        while (numFrames > 0) {
+            int n = rampStepsRemaining > 0 ? Math.min(numFrames, RAMP_STEP_FRAMES - rampFrameInStep) : numFrames;
+            processBlock(data, offset, n);
+            advanceRamp(n);
+            offset += n * channelCount;
+            numFrames -= n;
+        }
+        flushDenormals();
+    }
+
+    /**
+     * Filter interleaved native float frames in place, eg. the audioData of a data callback.
+     *
+     * @param data      interleaved samples
+     * @param numFrames number of frames
+     */
+    public void process(MemorySegment data, int numFrames) {
+        pollCoefficients();
+        long index = 0;
+        while (numFrames > 0) {
+            int n = rampStepsRemaining > 0 ? Math.min(numFrames, RAMP_STEP_FRAMES - rampFrameInStep) : numFrames;
+            processBlock(data, index, n);
+            advanceRamp(n);
+            index += (long) n * channelCount;
+            numFrames -= n;
+        }
+        flushDenormals();
+    }
+
+    /**
+     * Clear the filter state, eg. after a discontinuity in the input.
+     */
+    public void reset() {
+        Arrays.fill(z1, 0f);
+        Arrays.fill(z2, 0f);
+    }
+
+    private void processBlock(float[] data, int offset, int numFrames) {
+        int channels = channelCount;
+        for (int s = 0; s < sectionCount; s++) {
+            int base = s * channels;
+            for (int f = 0, frame = offset; f < numFrames; f++, frame += channels) {
+                for (int c = 0; c < channels; c++) {
+                    int i = base + c;
+                    float x = data[frame + c];
+                    float y = b0[i] * x + z1[i];
+                    z1[i] = b1[i] * x - a1[i] * y + z2[i];
+                    z2[i] = b2[i] * x - a2[i] * y;
+                    data[frame + c] = y;
+                }
+            }
+        }
+    }
+
+    private void processBlock(MemorySegment data, long index, int numFrames) {
+        int channels = channelCount;
+        for (int s = 0; s < sectionCount; s++) {
+            int base = s * channels;
+            long frame = index;
+            for (int f = 0; f < numFrames; f++, frame += channels) {
+                for (int c = 0; c < channels; c++) {
+                    int i = base + c;
+                    float x = data.getAtIndex(ValueLayout.JAVA_FLOAT, frame + c);
+                    float y = b0[i] * x + z1[i];
+                    z1[i] = b1[i] * x - a1[i] * y + z2[i];
+                    z2[i] = b2[i] * x - a2[i] * y;
+                    data.setAtIndex(ValueLayout.JAVA_FLOAT, frame + c, y);
+                }
+            }
+        }
+    }
+
+    private void pollCoefficients() {
+        float[] next = pending.getAndSet(null);
+        if (next == null) {
+            return;
+        }
+        System.arraycopy(next, 0, target, 0, target.length);
+        int steps = rampSteps;
+        float inverse = 1f / steps;
+        for (int i = 0; i < size; i++) {
+            delta[i] = (target[i] - b0[i]) * inverse;
+            delta[size + i] = (target[size + i] - b1[i]) * inverse;
+            delta[2 * size + i] = (target[2 * size + i] - b2[i]) * inverse;
+            delta[3 * size + i] = (target[3 * size + i] - a1[i]) * inverse;
+            delta[4 * size + i] = (target[4 * size + i] - a2[i]) * inverse;
+        }
+        rampStepsRemaining = steps;
+        rampFrameInStep = 0;
+    }
+
+    private void advanceRamp(int numFrames) {
+        if (rampStepsRemaining == 0) {
+            return;
+        }
+        rampFrameInStep += numFrames;
+        if (rampFrameInStep < RAMP_STEP_FRAMES) {
+            return;
+        }
+        rampFrameInStep = 0;
+        if (--rampStepsRemaining == 0) {
+            // Land exactly on the target to avoid accumulated rounding errors.
+            System.arraycopy(target, 0, b0, 0, size);
+            System.arraycopy(target, size, b1, 0, size);
+            System.arraycopy(target, 2 * size, b2, 0, size);
+            System.arraycopy(target, 3 * size, a1, 0, size);
+            System.arraycopy(target, 4 * size, a2, 0, size);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            b0[i] += delta[i];
+            b1[i] += delta[size + i];
+            b2[i] += delta[2 * size + i];
+            a1[i] += delta[3 * size + i];
+            a2[i] += delta[4 * size + i];
+        }
+    }
+
+    private void flushDenormals() {
+        // Adding and removing a tiny constant rounds denormals to zero without branches.
+        for (int i = 0; i < size; i++) {
+            z1[i] = (z1[i] + DENORMAL_GUARD) - DENORMAL_GUARD;
+            z2[i] = (z2[i] + DENORMAL_GUARD) - DENORMAL_GUARD;
+        }
+    }
+}
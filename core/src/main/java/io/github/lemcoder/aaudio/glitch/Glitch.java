@@ -0,0 +1,101 @@
+package io.github.lemcoder.aaudio.glitch;
+
+/**
+ * One discontinuity found by {@link GlitchDetector}, with what happened on the stream around it.
+ */
+public class Glitch {
+    private final long frame;
+    private final GlitchType type;
+    private final float offsetFrames;
+    private final long callbackIntervalNanos;
+    private final long expectedIntervalNanos;
+    private final boolean xRunNearby;
+    private final boolean bufferSizeChangedNearby;
+    private final int bufferSizeInFrames;
+
+    public Glitch(long frame, GlitchType type, float offsetFrames, long callbackIntervalNanos,
+                  long expectedIntervalNanos, boolean xRunNearby, boolean bufferSizeChangedNearby,
+                  int bufferSizeInFrames) {
+        this.frame = frame;
+        this.type = type;
+        this.offsetFrames = offsetFrames;
+        this.callbackIntervalNanos = callbackIntervalNanos;
+        this.expectedIntervalNanos = expectedIntervalNanos;
+        this.xRunNearby = xRunNearby;
+        this.bufferSizeChangedNearby = bufferSizeChangedNearby;
+        this.bufferSizeInFrames = bufferSizeInFrames;
+    }
+
+    /**
+     * @return stream frame at which the glitch started
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    public GlitchType getType() {
+        return type;
+    }
+
+    /**
+     * @return phase offset after the glitch in frames, modulo one period of the sine; negative for
+     * repeated frames, positive for lost frames
+     */
+    public float getOffsetFrames() {
+        return offsetFrames;
+    }
+
+    /**
+     * @return time between the start of the callback that saw the glitch and the one before it
+     */
+    public long getCallbackIntervalNanos() {
+        return callbackIntervalNanos;
+    }
+
+    /**
+     * @return duration of the audio in that callback
+     */
+    public long getExpectedIntervalNanos() {
+        return expectedIntervalNanos;
+    }
+
+    /**
+     * @return true if the callback came late by more than its own duration
+     */
+    public boolean isLateCallback() {
+        return callbackIntervalNanos > 2 * expectedIntervalNanos;
+    }
+
+    /**
+     * @return true if AAudioStream_getXRunCount() increased around the glitch
+     */
+    public boolean isXRunNearby() {
+        return xRunNearby;
+    }
+
+    /**
+     * @return true if the buffer size of the stream changed around the glitch
+     */
+    public boolean isBufferSizeChangedNearby() {
+        return bufferSizeChangedNearby;
+    }
+
+    /**
+     * @return buffer size of the stream around the glitch, or 0 if the stream was not polled
+     */
+    public int getBufferSizeInFrames() {
+        return bufferSizeInFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "Glitch{frame=" + frame
+                + ", type=" + type
+                + ", offsetFrames=" + offsetFrames
+                + ", callbackIntervalNanos=" + callbackIntervalNanos
+                + ", expectedIntervalNanos=" + expectedIntervalNanos
+                + ", xRunNearby=" + xRunNearby
+                + ", bufferSizeChangedNearby=" + bufferSizeChangedNearby
+                + ", bufferSizeInFrames=" + bufferSizeInFrames + '}';
+    }
+}
@@ -0,0 +1,399 @@
+package io.github.lemcoder.aaudio.glitch;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds glitches in a pure sine, for automated soak tests.
+ * <p>
+ * One side plays the sine with {@link #asOutputCallback()}, the other side analyzes what arrives with
+ * {@link #asInputCallback()}, eg. over a loopback adapter. The analyzer first locks onto the sine with a
+ * least-squares fit of amplitude and phase over a window of about 10 ms, then predicts every sample.
+ * Slow drift of phase and amplitude, eg. from two clocks running at slightly different rates, is tracked
+ * window by window.
+ * <p>
+ * A sample that deviates from the prediction by more than the tolerance starts a glitch. The analyzer
+ * relocks on the signal that follows and classifies the glitch by the new phase: a signal back in phase
+ * after a stretch of silence is a {@link GlitchType#DROPOUT}, a phase lag means
+ * {@link GlitchType#REPEATED_FRAMES}, a lead means lost frames ({@link GlitchType#PHASE_JUMP}). Offsets are
+ * only known modulo one period of the sine.
+ * <p>
+ * Each glitch is timestamped in stream frames together with the interval since the previous callback.
+ * Calling {@link #poll(AAudioStream)} periodically from a non real-time thread samples the xrun count and
+ * buffer size of the stream; {@link #getReport()} correlates the glitches with those samples.
+ */
+public class GlitchDetector {
+    private static final int LOG_CAPACITY = 256;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final int sampleRate;
+    private final double frequency;
+    private final float outputAmplitude;
+    private final int lockFrames;
+    private final int dropoutFrames;
+
+    private volatile float tolerance = 0.25f;
+    private volatile float amplitudeToleranceDb = 3f;
+    private volatile float minAmplitude = 0.01f;
+
+    // Generator, output callback thread only.
+    private double outputPhase;
+
+    // Analyzer, input callback thread only.
+    private double omega;
+    private boolean locked;
+    private boolean signalFound;
+    private double amplitude;
+    private double phase;
+    private int fitCount;
+    private double sxs, sxc, sss, scc, ssc, sxx;
+    private final double[] fitResult = new double[2];
+    private boolean pending;
+    private long pendingFrame;
+    private double predictedPhase;
+    private double pendingAmplitude;
+    private int zeroRun;
+    private int maxZeroRun;
+    private long lastCallbackNanos;
+    private long callbackIntervalNanos;
+    private long expectedIntervalNanos;
+    private volatile long framesAnalyzed;
+    private volatile boolean signalFoundPublished;
+
+    // Glitch log, written by the analyzer, read under the lock.
+    private final long[] logFrames = new long[LOG_CAPACITY];
+    private final GlitchType[] logTypes = new GlitchType[LOG_CAPACITY];
+    private final float[] logOffsets = new float[LOG_CAPACITY];
+    private final long[] logIntervals = new long[LOG_CAPACITY];
+    private final long[] logExpected = new long[LOG_CAPACITY];
+    private final AtomicLong logWrite = new AtomicLong();
+    private final AtomicLong logRead = new AtomicLong();
+    private final AtomicLong unrecorded = new AtomicLong();
+
+    // Under the lock.
+    private final List<long[]> rawGlitches = new ArrayList<>();
+    private final List<GlitchType> rawTypes = new ArrayList<>();
+    private final List<float[]> rawOffsets = new ArrayList<>();
+    private final List<long[]> polls = new ArrayList<>();
+
+    /**
+     * @param sampleRate sample rate of the streams
+     * @param frequency  frequency of the sine, eg. sampleRate / 48
+     * @param amplitude  amplitude of the generated sine
+     */
+    public GlitchDetector(int sampleRate, double frequency, float amplitude) {
+        if (frequency <= 0 || frequency >= sampleRate / 2.0) {
+            throw new IllegalArgumentException("Frequency must be between 0 and Nyquist: " + frequency);
+        }
+        this.sampleRate = sampleRate;
+        this.frequency = frequency;
+        this.outputAmplitude = amplitude;
+        this.omega = TWO_PI * frequency / sampleRate;
+        this.lockFrames = Math.max((int) Math.ceil(2 * sampleRate / frequency), sampleRate / 100);
+        this.dropoutFrames = Math.max(3, (int) Math.ceil(0.3 / omega));
+    }
+
+    /**
+     * @param tolerance            largest deviation from the predicted sample, relative to the amplitude
+     * @param amplitudeToleranceDb largest amplitude change between tracking windows
+     * @param minAmplitude         smallest amplitude accepted as the sine
+     */
+    public void setTolerance(float tolerance, float amplitudeToleranceDb, float minAmplitude) {
+        this.tolerance = tolerance;
+        this.amplitudeToleranceDb = amplitudeToleranceDb;
+        this.minAmplitude = minAmplitude;
+    }
+
+    public double getFrequency() {
+        return frequency;
+    }
+
+    // ============================================================
+    // Generator
+    // ============================================================
+
+    /**
+     * Write the sine to every channel.
+     */
+    public void generate(float[] interleaved, int channelCount, int numFrames) {
+        double step = TWO_PI * frequency / sampleRate;
+        for (int i = 0; i < numFrames; i++) {
+            float sample = (float) (outputAmplitude * Math.sin(outputPhase));
+            for (int c = 0; c < channelCount; c++) {
+                interleaved[i * channelCount + c] = sample;
+            }
+            outputPhase += step;
+            if (outputPhase >= TWO_PI) {
+                outputPhase -= TWO_PI;
+            }
+        }
+    }
+
+    /**
+     * A data callback for the output stream that plays the sine.
+     */
+    public AAudioStreamBufferCallback asOutputCallback() {
+        return buffer -> {
+            generate(buffer.getInterleaved(), buffer.getChannelCount(), buffer.getNumFrames());
+            buffer.writeInterleaved();
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    // ============================================================
+    // Analyzer
+    // ============================================================
+
+    /**
+     * Analyze the first channel of a callback's data. Never allocates.
+     *
+     * @param framePosition stream frame of the first frame
+     */
+    public void analyze(float[] interleaved, int channelCount, int numFrames, long framePosition) {
+        long now = System.nanoTime();
+        callbackIntervalNanos = lastCallbackNanos == 0 ? 0 : now - lastCallbackNanos;
+        expectedIntervalNanos = numFrames * 1_000_000_000L / sampleRate;
+        lastCallbackNanos = now;
+
+        for (int i = 0; i < numFrames; i++) {
+            double x = interleaved[i * channelCount];
+            if (locked) {
+                track(x, framePosition + i);
+            } else {
+                search(x);
+            }
+        }
+        framesAnalyzed += numFrames;
+    }
+
+    public void analyze(AudioBuffer buffer) {
+        analyze(buffer.readInterleaved(), buffer.getChannelCount(), buffer.getNumFrames(), buffer.getFramePosition());
+    }
+
+    /**
+     * A data callback for the input stream that analyzes what it captures.
+     */
+    public AAudioStreamBufferCallback asInputCallback() {
+        return buffer -> {
+            analyze(buffer);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    private void track(double x, long frame) {
+        double expected = amplitude * Math.sin(phase);
+        if (Math.abs(x - expected) > tolerance * amplitude) {
+            // Glitch: follow where the sine would have been and lock again.
+            pending = true;
+            pendingFrame = frame;
+            pendingAmplitude = amplitude;
+            predictedPhase = wrap(phase + omega);
+            zeroRun = 0;
+            maxZeroRun = 0;
+            locked = false;
+            resetFit();
+            return;
+        }
+
+        accumulate(x, Math.sin(phase), Math.cos(phase));
+        phase = wrap(phase + omega);
+        if (fitCount == lockFrames) {
+            // Fit against the predicted phase: the fitted phase is the prediction error.
+            double[] fit = solve();
+            if (fit != null) {
+                double error = Math.atan2(fit[1], fit[0]);
+                double measured = Math.hypot(fit[0], fit[1]);
+                phase = wrap(phase + error);
+                omega += 0.1 * error / lockFrames;
+                if (Math.abs(decibels(measured / amplitude)) > amplitudeToleranceDb) {
+                    log(frame, GlitchType.AMPLITUDE_CHANGE, 0);
+                    amplitude = measured;
+                } else {
+                    amplitude = 0.9 * amplitude + 0.1 * measured;
+                }
+            }
+            resetFit();
+        }
+    }
+
+    private void search(double x) {
+        if (pending) {
+            if (Math.abs(x) < 0.05 * pendingAmplitude) {
+                maxZeroRun = Math.max(maxZeroRun, ++zeroRun);
+            } else {
+                zeroRun = 0;
+            }
+            predictedPhase = wrap(predictedPhase + omega);
+        }
+
+        double angle = omega * fitCount;
+        accumulate(x, Math.sin(angle), Math.cos(angle));
+        if (fitCount < lockFrames) {
+            return;
+        }
+
+        double[] fit = solve();
+        double fitAmplitude = fit == null ? 0 : Math.hypot(fit[0], fit[1]);
+        // Residual energy of the fit, relative to the signal energy.
+        double residual = fit == null || sxx == 0 ? 1 : (sxx - fit[0] * sxs - fit[1] * sxc) / sxx;
+        if (fitAmplitude < minAmplitude || residual > tolerance * tolerance) {
+            // No clean sine in this window yet.
+            resetFit();
+            return;
+        }
+
+        double lockedPhase = wrap(Math.atan2(fit[1], fit[0]) + omega * lockFrames);
+        if (pending) {
+            double offset = wrap(lockedPhase - predictedPhase + Math.PI) - Math.PI;
+            float offsetFrames = (float) (offset / omega);
+            GlitchType type;
+            if (maxZeroRun >= dropoutFrames) {
+                type = GlitchType.DROPOUT;
+            } else if (Math.abs(offsetFrames) >= 0.5f) {
+                type = offsetFrames < 0 ? GlitchType.REPEATED_FRAMES : GlitchType.PHASE_JUMP;
+            } else if (Math.abs(decibels(fitAmplitude / pendingAmplitude)) > amplitudeToleranceDb) {
+                type = GlitchType.AMPLITUDE_CHANGE;
+            } else {
+                type = GlitchType.NOISE;
+            }
+            log(pendingFrame, type, offsetFrames);
+            pending = false;
+        } else if (!signalFound) {
+            signalFound = true;
+            signalFoundPublished = true;
+        }
+        amplitude = fitAmplitude;
+        phase = lockedPhase;
+        locked = true;
+        resetFit();
+    }
+
+    private void accumulate(double x, double s, double c) {
+        sxs += x * s;
+        sxc += x * c;
+        sss += s * s;
+        scc += c * c;
+        ssc += s * c;
+        sxx += x * x;
+        fitCount++;
+    }
+
+    /**
+     * Least-squares fit of x = a * sin + b * cos.
+     *
+     * @return {a, b}, or null if the window is degenerate
+     */
+    private double[] solve() {
+        double det = sss * scc - ssc * ssc;
+        if (Math.abs(det) < 1e-12) {
+            return null;
+        }
+        fitResult[0] = (sxs * scc - sxc * ssc) / det;
+        fitResult[1] = (sxc * sss - sxs * ssc) / det;
+        return fitResult;
+    }
+
+    private void resetFit() {
+        fitCount = 0;
+        sxs = sxc = sss = scc = ssc = sxx = 0;
+    }
+
+    private static double wrap(double angle) {
+        angle %= TWO_PI;
+        return angle < 0 ? angle + TWO_PI : angle;
+    }
+
+    private static double decibels(double ratio) {
+        return ratio > 0 ? 20 * Math.log10(ratio) : Double.NEGATIVE_INFINITY;
+    }
+
+    private void log(long frame, GlitchType type, float offsetFrames) {
+        long w = logWrite.get();
+        if (w - logRead.get() >= LOG_CAPACITY) {
+            unrecorded.incrementAndGet();
+            return;
+        }
+        int index = (int) (w % LOG_CAPACITY);
+        logFrames[index] = frame;
+        logTypes[index] = type;
+        logOffsets[index] = offsetFrames;
+        logIntervals[index] = callbackIntervalNanos;
+        logExpected[index] = expectedIntervalNanos;
+        logWrite.lazySet(w + 1);
+    }
+
+    // ============================================================
+    // Monitoring and report
+    // ============================================================
+
+    /**
+     * Sample the xrun count and buffer size of the analyzed stream and collect logged glitches.
+     * Call every 100 ms or so from a non real-time thread.
+     */
+    public synchronized void poll(AAudioStream stream) throws Throwable {
+        long frame = stream.getDirection() == AAudioAudioDirection.INPUT ? stream.getFramesRead() : stream.getFramesWritten();
+        polls.add(new long[]{frame, stream.getXRunCount(), stream.getBufferSizeInFrames()});
+        drainLog();
+    }
+
+    private void drainLog() {
+        long r = logRead.get();
+        long w = logWrite.get();
+        for (long i = r; i < w; i++) {
+            int index = (int) (i % LOG_CAPACITY);
+            rawGlitches.add(new long[]{logFrames[index], logIntervals[index], logExpected[index]});
+            rawTypes.add(logTypes[index]);
+            rawOffsets.add(new float[]{logOffsets[index]});
+        }
+        logRead.lazySet(w);
+    }
+
+    /**
+     * @return all glitches so far, correlated with the polled stream state
+     */
+    public synchronized GlitchReport getReport() {
+        drainLog();
+        List<Glitch> glitches = new ArrayList<>();
+        for (int g = 0; g < rawGlitches.size(); g++) {
+            long[] raw = rawGlitches.get(g);
+            long frame = raw[0];
+            boolean xRun = false;
+            boolean bufferSizeChanged = false;
+            int bufferSize = 0;
+            for (int p = 1; p < polls.size(); p++) {
+                long[] before = polls.get(p - 1);
+                long[] after = polls.get(p);
+                long margin = Math.max(before[2], after[2]);
+                if (frame >= before[0] - margin && frame <= after[0] + margin) {
+                    xRun |= after[1] > before[1];
+                    bufferSizeChanged |= after[2] != before[2];
+                    if (bufferSize == 0) {
+                        bufferSize = (int) after[2];
+                    }
+                }
+            }
+            glitches.add(new Glitch(frame, rawTypes.get(g), rawOffsets.get(g)[0], raw[1], raw[2], xRun,
+                    bufferSizeChanged, bufferSize));
+        }
+
+        int xRuns = 0;
+        int bufferSizeChanges = 0;
+        if (!polls.isEmpty()) {
+            xRuns = (int) (polls.get(polls.size() - 1)[1] - polls.get(0)[1]);
+            for (int p = 1; p < polls.size(); p++) {
+                if (polls.get(p)[2] != polls.get(p - 1)[2]) {
+                    bufferSizeChanges++;
+                }
+            }
+        }
+        return new GlitchReport(glitches, framesAnalyzed, sampleRate, signalFoundPublished, xRuns, bufferSizeChanges,
+                unrecorded.get());
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.lemcoder.aaudio.glitch;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Summary of a {@link GlitchDetector} run, with a pass/fail verdict for soak tests.
+ */
+public class GlitchReport {
+    private final List<Glitch> glitches;
+    private final long framesAnalyzed;
+    private final int sampleRate;
+    private final boolean signalFound;
+    private final int xRuns;
+    private final int bufferSizeChanges;
+    private final long unrecordedGlitches;
+
+    public GlitchReport(List<Glitch> glitches, long framesAnalyzed, int sampleRate, boolean signalFound, int xRuns,
+                        int bufferSizeChanges, long unrecordedGlitches) {
+        this.glitches = Collections.unmodifiableList(glitches);
+        this.framesAnalyzed = framesAnalyzed;
+        this.sampleRate = sampleRate;
+        this.signalFound = signalFound;
+        this.xRuns = xRuns;
+        this.bufferSizeChanges = bufferSizeChanges;
+        this.unrecordedGlitches = unrecordedGlitches;
+    }
+
+    /**
+     * @return true if the sine was found and no glitch occurred
+     */
+    public boolean isPassed() {
+        return signalFound && glitches.isEmpty() && unrecordedGlitches == 0;
+    }
+
+    public List<Glitch> getGlitches() {
+        return glitches;
+    }
+
+    public long getFramesAnalyzed() {
+        return framesAnalyzed;
+    }
+
+    public double getSecondsAnalyzed() {
+        return (double) framesAnalyzed / sampleRate;
+    }
+
+    /**
+     * @return false if the detector never locked onto the sine, eg. because nothing was connected
+     */
+    public boolean isSignalFound() {
+        return signalFound;
+    }
+
+    /**
+     * @return increase of AAudioStream_getXRunCount() over the polled period
+     */
+    public int getXRuns() {
+        return xRuns;
+    }
+
+    public int getBufferSizeChanges() {
+        return bufferSizeChanges;
+    }
+
+    /**
+     * @return glitches that were counted but not recorded because the event log overflowed
+     */
+    public long getUnrecordedGlitches() {
+        return unrecordedGlitches;
+    }
+
+    public Map<GlitchType, Integer> countByType() {
+        Map<GlitchType, Integer> counts = new EnumMap<>(GlitchType.class);
+        for (Glitch glitch : glitches) {
+            counts.merge(glitch.getType(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%s: %d glitches in %.1f s, signal %s, %d xruns, %d buffer size changes",
+                isPassed() ? "PASS" : "FAIL", glitches.size() + unrecordedGlitches, getSecondsAnalyzed(),
+                signalFound ? "found" : "not found", xRuns, bufferSizeChanges));
+        sb.append(' ').append(countByType());
+        for (Glitch glitch : glitches) {
+            sb.append(String.format(Locale.ROOT, "%n  %.3f s frame %d %s offset %.1f%s%s%s",
+                    (double) glitch.getFrame() / sampleRate, glitch.getFrame(), glitch.getType(),
+                    glitch.getOffsetFrames(),
+                    glitch.isXRunNearby() ? ", xrun" : "",
+                    glitch.isBufferSizeChangedNearby() ? ", buffer size changed" : "",
+                    glitch.isLateCallback() ? String.format(Locale.ROOT, ", late callback %.2f ms",
+                            glitch.getCallbackIntervalNanos() / 1e6) : ""));
+        }
+        return sb.toString();
+    }
+}
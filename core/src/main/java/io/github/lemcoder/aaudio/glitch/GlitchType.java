@@ -0,0 +1,24 @@
+package io.github.lemcoder.aaudio.glitch;
+
+public enum GlitchType {
+    /**
+     * The sine dropped to silence for a while, then continued in phase.
+     */
+    DROPOUT,
+    /**
+     * The sine continued with a phase lag, as if frames were played or captured twice.
+     */
+    REPEATED_FRAMES,
+    /**
+     * The sine continued with a phase lead, as if frames were lost.
+     */
+    PHASE_JUMP,
+    /**
+     * The amplitude changed by more than the tolerance.
+     */
+    AMPLITUDE_CHANGE,
+    /**
+     * A short disturbance after which the sine continued unchanged, eg. a click.
+     */
+    NOISE
+}
@@ -0,0 +1,44 @@
+package io.github.lemcoder.aaudio.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directed acyclic graph of {@link AudioNode}s.
+ * <p>
+ * A node can only depend on nodes added before it, so the graph is acyclic by construction and the
+ * order of addition is a valid serial execution order.
+ */
+public class AudioGraph {
+    private final List<AudioNode> nodes = new ArrayList<>();
+    private final List<int[]> dependencies = new ArrayList<>();
+
+    /**
+     * @param node         the node
+     * @param dependencies ids of nodes that must finish before this one starts
+     * @return id of the node
+     */
+    public int addNode(AudioNode node, int... dependencies) {
+        int id = nodes.size();
+        for (int dependency : dependencies) {
+            if (dependency < 0 || dependency >= id) {
+                throw new IllegalArgumentException("Unknown dependency: " + dependency);
+            }
+        }
+        nodes.add(node);
+        this.dependencies.add(dependencies.clone());
+        return id;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    AudioNode getNode(int id) {
+        return nodes.get(id);
+    }
+
+    int[] getDependencies(int id) {
+        return dependencies.get(id);
+    }
+}
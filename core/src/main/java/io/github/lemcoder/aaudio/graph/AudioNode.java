@@ -0,0 +1,19 @@
+package io.github.lemcoder.aaudio.graph;
+
+/**
+ * One processing step of an {@link AudioGraph}, eg. a track of a mixer.
+ * <p>
+ * A node reads the outputs of the nodes it depends on and writes its own output, usually to buffers
+ * the nodes share by reference. {@link GraphExecutor} runs a node only after all its dependencies have
+ * finished, and the writes of a dependency are visible to the node, whichever thread ran it.
+ * Nodes without a path between them may run at the same time on different threads.
+ */
+@FunctionalInterface
+public interface AudioNode {
+    /**
+     * Called on the data callback thread or on a worker thread. Must not allocate or block.
+     *
+     * @param numFrames frames of the current callback
+     */
+    void process(int numFrames);
+}
@@ -0,0 +1,329 @@
+package io.github.lemcoder.aaudio.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs an {@link AudioGraph} once per data callback, spread over the callback thread and a small pool of
+ * worker threads.
+ * <p>
+ * The workers are started up front and spin between callbacks, so no thread has to be woken within the
+ * callback period; they only park after being idle for a while, eg. when the stream is stopped. Each
+ * thread owns a work stealing deque. The callback thread queues the nodes without dependencies and then
+ * joins the work. A node that completes queues the dependents it made ready on its own thread's deque,
+ * idle threads steal from the others. A countdown of unfinished nodes acts as the barrier:
+ * {@link #execute(int)} returns when it reaches zero.
+ * <p>
+ * A worker that is preempted while holding a node delays the whole callback. When a parallel cycle takes
+ * longer than the miss threshold of the callback budget, the executor falls back to running the graph
+ * serially on the callback thread, and tries parallel execution again after a number of callbacks.
+ */
+public class GraphExecutor implements AutoCloseable {
+    private static final int CALLBACK_THREAD = 0;
+
+    private final AudioNode[] nodes;
+    private final int[][] dependents;
+    private final int[] dependencyCounts;
+    private final int[] roots;
+    private final int sampleRate;
+
+    private final AtomicIntegerArray pending;
+    private final AtomicInteger remaining = new AtomicInteger();
+    private final WorkStealingDeque[] deques;
+    private final Thread[] workers;
+    private final AtomicIntegerArray parked;
+    private volatile int currentFrames;
+    private volatile boolean running;
+    private boolean started;
+
+    private volatile float missThreshold = 0.9f;
+    private volatile int retryCallbacks = 2000;
+    private volatile long idleParkNanos = 20_000_000L;
+
+    // Callback thread only.
+    private boolean parallel = true;
+    private int serialCallbacks;
+
+    private final AtomicLong parallelCycles = new AtomicLong();
+    private final AtomicLong serialCycles = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private volatile long lastCycleNanos;
+    private volatile long maxCycleNanos;
+    private volatile Throwable failure;
+
+    /**
+     * @param graph       the graph, must not change afterwards
+     * @param sampleRate  sample rate of the stream, for the callback budget
+     * @param workerCount worker threads besides the callback thread, eg. the number of big cores minus one
+     */
+    public GraphExecutor(AudioGraph graph, int sampleRate, int workerCount) {
+        if (workerCount < 0) {
+            throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+        }
+        int count = graph.size();
+        this.sampleRate = sampleRate;
+        this.nodes = new AudioNode[count];
+        this.dependencyCounts = new int[count];
+        List<List<Integer>> dependentLists = new ArrayList<>();
+        List<Integer> rootList = new ArrayList<>();
+        for (int id = 0; id < count; id++) {
+            nodes[id] = graph.getNode(id);
+            dependentLists.add(new ArrayList<>());
+            int[] dependencies = graph.getDependencies(id);
+            dependencyCounts[id] = dependencies.length;
+            for (int dependency : dependencies) {
+                dependentLists.get(dependency).add(id);
+            }
+            if (dependencies.length == 0) {
+                rootList.add(id);
+            }
+        }
+        this.dependents = new int[count][];
+        for (int id = 0; id < count; id++) {
+            dependents[id] = dependentLists.get(id).stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.roots = rootList.stream().mapToInt(Integer::intValue).toArray();
+
+        this.pending = new AtomicIntegerArray(count);
+        this.deques = new WorkStealingDeque[workerCount + 1];
+        for (int i = 0; i < deques.length; i++) {
+            deques[i] = new WorkStealingDeque(Math.max(1, count));
+        }
+        this.workers = new Thread[workerCount];
+        this.parked = new AtomicIntegerArray(workerCount + 1);
+    }
+
+    /**
+     * @param missThreshold  fraction of the callback budget above which a parallel cycle counts as missed, eg. 0.9
+     * @param retryCallbacks serial callbacks before parallel execution is tried again, 0 to never retry
+     */
+    public void setFallback(float missThreshold, int retryCallbacks) {
+        this.missThreshold = missThreshold;
+        this.retryCallbacks = retryCallbacks;
+    }
+
+    /**
+     * @param idleParkNanos how long an idle worker spins before it parks
+     */
+    public void setIdleParkNanos(long idleParkNanos) {
+        this.idleParkNanos = idleParkNanos;
+    }
+
+    /**
+     * Start the worker threads. Until then, and after {@link #close()}, the graph runs serially.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        running = true;
+        for (int i = 0; i < workers.length; i++) {
+            int self = i + 1;
+            workers[i] = new Thread(() -> work(self), "GraphExecutor-" + self);
+            workers[i].setPriority(Thread.MAX_PRIORITY);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Run every node of the graph once. Call from the data callback; returns when all nodes finished.
+     *
+     * @param numFrames frames of the current callback
+     */
+    public void execute(int numFrames) {
+        long start = System.nanoTime();
+        boolean parallelCycle = parallel && running && workers.length > 0 && nodes.length > 1;
+        if (parallelCycle) {
+            executeParallel(numFrames);
+            parallelCycles.lazySet(parallelCycles.get() + 1);
+        } else {
+            for (int id = 0; id < nodes.length; id++) {
+                runNode(id, numFrames);
+            }
+            serialCycles.lazySet(serialCycles.get() + 1);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        lastCycleNanos = elapsed;
+        if (elapsed > maxCycleNanos) {
+            maxCycleNanos = elapsed;
+        }
+        long budgetNanos = numFrames * 1_000_000_000L / sampleRate;
+        if (parallelCycle) {
+            if (elapsed > budgetNanos * missThreshold) {
+                parallel = false;
+                serialCallbacks = 0;
+                fallbacks.lazySet(fallbacks.get() + 1);
+            }
+        } else if (!parallel) {
+            int retry = retryCallbacks;
+            if (retry > 0 && ++serialCallbacks >= retry) {
+                parallel = true;
+            }
+        }
+    }
+
+    private void executeParallel(int numFrames) {
+        currentFrames = numFrames;
+        for (int id = 0; id < nodes.length; id++) {
+            pending.lazySet(id, dependencyCounts[id]);
+        }
+        WorkStealingDeque own = deques[CALLBACK_THREAD];
+        for (int root : roots) {
+            own.push(root);
+        }
+        // Publishes the counts and the frame count to the workers.
+        remaining.set(nodes.length);
+        for (int i = 0; i < workers.length; i++) {
+            if (parked.get(i + 1) != 0) {
+                LockSupport.unpark(workers[i]);
+            }
+        }
+
+        while (remaining.get() > 0) {
+            int id = own.pop();
+            if (id < 0) {
+                id = steal(CALLBACK_THREAD);
+            }
+            if (id >= 0) {
+                runParallel(id, CALLBACK_THREAD);
+            }
+        }
+    }
+
+    private void work(int self) {
+        WorkStealingDeque own = deques[self];
+        long idleSince = System.nanoTime();
+        while (running) {
+            if (remaining.get() > 0) {
+                int id = own.pop();
+                if (id < 0) {
+                    id = steal(self);
+                }
+                if (id >= 0) {
+                    runParallel(id, self);
+                    idleSince = 0;
+                }
+                continue;
+            }
+            long now = System.nanoTime();
+            if (idleSince == 0) {
+                idleSince = now;
+            } else if (now - idleSince > idleParkNanos) {
+                parked.set(self, 1);
+                if (remaining.get() == 0 && running) {
+                    LockSupport.parkNanos(this, idleParkNanos);
+                }
+                parked.set(self, 0);
+                idleSince = 0;
+            }
+        }
+    }
+
+    private int steal(int self) {
+        for (int i = 1; i < deques.length; i++) {
+            int victim = (self + i) % deques.length;
+            int id = deques[victim].steal();
+            if (id >= 0) {
+                return id;
+            }
+        }
+        return WorkStealingDeque.EMPTY;
+    }
+
+    private void runParallel(int id, int self) {
+        runNode(id, currentFrames);
+        for (int dependent : dependents[id]) {
+            if (pending.decrementAndGet(dependent) == 0) {
+                deques[self].push(dependent);
+            }
+        }
+        remaining.decrementAndGet();
+    }
+
+    private void runNode(int id, int numFrames) {
+        try {
+            nodes[id].process(numFrames);
+        } catch (Throwable t) {
+            if (failure == null) {
+                failure = t;
+            }
+        }
+    }
+
+    // ============================================================
+    // Statistics
+    // ============================================================
+
+    /**
+     * @return true if the next callback runs in parallel
+     */
+    public boolean isParallel() {
+        return parallel && running;
+    }
+
+    public long getParallelCycles() {
+        return parallelCycles.get();
+    }
+
+    public long getSerialCycles() {
+        return serialCycles.get();
+    }
+
+    /**
+     * @return times a missed deadline switched execution to serial
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    public long getLastCycleNanos() {
+        return lastCycleNanos;
+    }
+
+    public long getMaxCycleNanos() {
+        return maxCycleNanos;
+    }
+
+    public void resetMaxCycleNanos() {
+        maxCycleNanos = 0;
+    }
+
+    /**
+     * @return the first exception thrown by a node, or null. The node is treated as finished.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Stop the workers. Must not be called while {@link #execute(int)} runs.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+        }
+        for (Thread worker : workers) {
+            if (worker == null) {
+                continue;
+            }
+            LockSupport.unpark(worker);
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
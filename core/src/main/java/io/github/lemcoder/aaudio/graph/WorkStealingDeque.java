@@ -0,0 +1,73 @@
+package io.github.lemcoder.aaudio.graph;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chase-Lev work stealing deque of node ids. The owner pushes and pops at the bottom,
+ * other threads steal from the top. The capacity is fixed; the executor never queues
+ * more than the node count at once.
+ */
+class WorkStealingDeque {
+    static final int EMPTY = -1;
+    static final int ABORT = -2;
+
+    private final AtomicIntegerArray items;
+    private final int mask;
+    private final AtomicLong top = new AtomicLong();
+    private final AtomicLong bottom = new AtomicLong();
+
+    WorkStealingDeque(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity * 2 - 1));
+        this.items = new AtomicIntegerArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Owner only.
+     */
+    void push(int id) {
+        long b = bottom.get();
+        items.lazySet((int) b & mask, id);
+        bottom.set(b + 1);
+    }
+
+    /**
+     * Owner only.
+     *
+     * @return a node id or {@link #EMPTY}
+     */
+    int pop() {
+        long b = bottom.get() - 1;
+        bottom.set(b);
+        long t = top.get();
+        if (t > b) {
+            bottom.set(b + 1);
+            return EMPTY;
+        }
+        int id = items.get((int) b & mask);
+        if (t == b) {
+            // Last item: race against thieves.
+            if (!top.compareAndSet(t, t + 1)) {
+                id = EMPTY;
+            }
+            bottom.set(b + 1);
+        }
+        return id;
+    }
+
+    /**
+     * Any thread.
+     *
+     * @return a node id, {@link #EMPTY}, or {@link #ABORT} if another thread won the race
+     */
+    int steal() {
+        long t = top.get();
+        long b = bottom.get();
+        if (t >= b) {
+            return EMPTY;
+        }
+        int id = items.get((int) t & mask);
+        return top.compareAndSet(t, t + 1) ? id : ABORT;
+    }
+}
@@ -0,0 +1,393 @@
+package io.github.lemcoder.aaudio.jitter;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive jitter buffer between a network receiver and the output data callback.
+ * <p>
+ * Packets of a fixed number of frames are inserted from any thread with their sequence number and
+ * sender timestamp. The callback reorders them, estimates the network jitter from the arrival times
+ * (the RFC 3550 interarrival jitter) and keeps the buffer depth near a target derived from it. Instead of
+ * dropping or inserting frames, the playout rate is varied by up to {@link #MAX_RATE_DEVIATION} with
+ * linear interpolation, which is inaudible for speech. Missing packets are concealed by repeating the last
+ * packet that was played, fading out over {@link #CONCEALMENT_PACKETS} packets.
+ * <p>
+ * The maximum delay is a budget for the whole path. Once {@link #configure(AAudioStream)} has measured the
+ * device buffer and output latency, the target depth is reduced so that the sum stays within the budget.
+ * <p>
+ * When the buffer runs dry for longer than the maximum delay it rebuffers: it plays silence until the
+ * target depth is reached again. A packet further ahead than the reorder buffer reaches, eg. after an
+ * outage or a sender restart, restarts playout at that packet.
+ */
+public class JitterBuffer {
+    /**
+     * Largest relative change of the playout rate.
+     */
+    public static final float MAX_RATE_DEVIATION = 0.02f;
+
+    /**
+     * Number of consecutive lost packets over which the concealment fades to silence.
+     */
+    public static final int CONCEALMENT_PACKETS = 3;
+
+    private static final double JITTER_MULTIPLIER = 3.0;
+    private static final double RATE_GAIN = 0.5;
+
+    private final int channelCount;
+    private final int sampleRate;
+    private final int packetFrames;
+    private final int packetSamples;
+    private final PacketQueue inbox;
+
+    // Reorder buffer, owned by the callback
+    private final int mask;
+    private final long[] slotSequences;
+    private final float[][] slotData;
+    private float[] lastPlayed;
+    private long lastPlayedSequence = -1;
+
+    private boolean playing;
+    private double cursor;
+    private long cursorSequence;
+    private long highestSequence = -1;
+    private long starvedFrames;
+    private double rate = 1.0;
+
+    private double jitter;
+    private double previousTransit;
+    private long previousSequence = -1;
+
+    private volatile int minDelayFrames;
+    private volatile int maxDelayFrames;
+    private volatile int deviceLatencyFrames;
+    private volatile int targetFrames;
+    private volatile int bufferedFrames;
+    private volatile float playoutRate = 1f;
+    private volatile float jitterFrames;
+
+    private final AtomicLong droppedPackets = new AtomicLong();
+    private final AtomicLong latePackets = new AtomicLong();
+    private final AtomicLong concealedPackets = new AtomicLong();
+    private final AtomicLong rebuffers = new AtomicLong();
+
+    /**
+     * @param channelCount    channels of the packets and the output
+     * @param sampleRate      sample rate of the packets and the output
+     * @param packetFrames    frames per packet
+     * @param capacityPackets packets that can be held, must cover the maximum delay
+     */
+    public JitterBuffer(int channelCount, int sampleRate, int packetFrames, int capacityPackets) {
+        if (packetFrames <= 0 || capacityPackets <= 0) {
+            throw new IllegalArgumentException("Packet size and capacity must be positive");
+        }
+        this.channelCount = channelCount;
+        this.sampleRate = sampleRate;
+        this.packetFrames = packetFrames;
+        this.packetSamples = packetFrames * channelCount;
+        this.inbox = new PacketQueue(capacityPackets, packetSamples);
+
+        int size = Integer.highestOneBit(Math.max(2, capacityPackets - 1)) << 1;
+        this.mask = size - 1;
+        this.slotSequences = new long[size];
+        Arrays.fill(slotSequences, -1);
+        this.slotData = new float[size][packetSamples];
+        this.lastPlayed = new float[packetSamples];
+        this.minDelayFrames = packetFrames;
+        this.maxDelayFrames = Math.min(capacityPackets * packetFrames, sampleRate / 2);
+        this.targetFrames = 2 * packetFrames;
+    }
+
+    /**
+     * @param minMillis lowest buffer depth
+     * @param maxMillis budget for the buffer depth plus the device latency
+     */
+    public void setDelayBounds(int minMillis, int maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Invalid delay bounds");
+        }
+        this.minDelayFrames = (int) ((long) minMillis * sampleRate / 1000);
+        this.maxDelayFrames = (int) ((long) maxMillis * sampleRate / 1000);
+    }
+
+    /**
+     * Measure the latency the output stream adds after the jitter buffer: the buffer size and, once the
+     * stream runs, the distance between frames written and frames presented. Call it from a non-callback
+     * thread, eg. whenever the buffer size is changed.
+     */
+    public void configure(AAudioStream stream) throws Throwable {
+        int latency = stream.getBufferSizeInFrames();
+        long written = stream.getFramesWritten();
+        long read = stream.getFramesRead();
+        if (written > 0 && read > 0) {
+            // Frames handed to the device but not yet consumed by it
+            latency = (int) Math.max(latency, written - read);
+        }
+        deviceLatencyFrames = latency;
+    }
+
+    // ============================================================
+    // Any thread
+    // ============================================================
+
+    /**
+     * Insert a packet of {@code packetFrames} interleaved frames.
+     *
+     * @param sequence  packet sequence number, increasing by one per packet
+     * @param timestamp sender time of the first frame, in frames
+     * @param samples   interleaved samples
+     * @param offset    index of the first sample
+     * @return false if the inbox is full and the packet was dropped
+     */
+    public boolean insert(long sequence, long timestamp, float[] samples, int offset) {
+        if (!inbox.offer(sequence, timestamp, samples, offset, packetSamples)) {
+            droppedPackets.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public int getPacketFrames() {
+        return packetFrames;
+    }
+
+    /**
+     * @return current target depth in frames
+     */
+    public int getTargetFrames() {
+        return targetFrames;
+    }
+
+    /**
+     * @return frames buffered after the last callback
+     */
+    public int getBufferedFrames() {
+        return bufferedFrames;
+    }
+
+    /**
+     * @return estimated interarrival jitter in frames
+     */
+    public float getJitterFrames() {
+        return jitterFrames;
+    }
+
+    /**
+     * @return playout rate of the last callback, 1 is nominal
+     */
+    public float getPlayoutRate() {
+        return playoutRate;
+    }
+
+    /**
+     * @return buffer depth plus device latency, ie. the delay from packet arrival to the speaker
+     */
+    public int getTotalLatencyFrames() {
+        return bufferedFrames + deviceLatencyFrames;
+    }
+
+    /**
+     * @return packets dropped because the inbox was full
+     */
+    public long getDroppedPackets() {
+        return droppedPackets.get();
+    }
+
+    /**
+     * @return packets that arrived after their playout time
+     */
+    public long getLatePackets() {
+        return latePackets.get();
+    }
+
+    /**
+     * @return packets replaced by concealment
+     */
+    public long getConcealedPackets() {
+        return concealedPackets.get();
+    }
+
+    public long getRebuffers() {
+        return rebuffers.get();
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Produce numFrames interleaved frames.
+     */
+    public void read(float[] out, int numFrames) {
+        drainInbox();
+        updateTarget(numFrames);
+
+        if (!playing) {
+            if (highestSequence < 0 || (highestSequence + 1) * packetFrames - cursor < targetFrames) {
+                Arrays.fill(out, 0, numFrames * channelCount, 0f);
+                bufferedFrames = highestSequence < 0 ? 0 : (int) ((highestSequence + 1) * packetFrames - cursor);
+                return;
+            }
+            playing = true;
+            starvedFrames = 0;
+        }
+
+        double buffered = (highestSequence + 1) * packetFrames - cursor;
+        double error = buffered - targetFrames;
+        if (Math.abs(error) < packetFrames / 2.0) {
+            rate = 1.0;
+        } else {
+            double correction = RATE_GAIN * error / Math.max(targetFrames, packetFrames);
+            rate = 1.0 + Math.max(-MAX_RATE_DEVIATION, Math.min(MAX_RATE_DEVIATION, correction));
+        }
+
+        for (int i = 0, o = 0; i < numFrames; i++, o += channelCount) {
+            long index = (long) cursor;
+            float fraction = (float) (cursor - index);
+            for (int c = 0; c < channelCount; c++) {
+                float a = sample(index, c);
+                float b = sample(index + 1, c);
+                out[o + c] = a + (b - a) * fraction;
+            }
+            cursor += rate;
+            advance((long) cursor / packetFrames);
+        }
+
+        buffered = (highestSequence + 1) * packetFrames - cursor;
+        if (buffered <= 0) {
+            starvedFrames += numFrames;
+            if (starvedFrames > maxDelayFrames) {
+                // The sender stopped or the network stalled: start over once enough has arrived.
+                playing = false;
+                rebuffers.incrementAndGet();
+                cursor = (highestSequence + 1) * (double) packetFrames;
+                cursorSequence = highestSequence + 1;
+            }
+        } else {
+            starvedFrames = 0;
+        }
+        bufferedFrames = (int) Math.max(0, buffered);
+        playoutRate = (float) rate;
+    }
+
+    /**
+     * Fill a callback buffer.
+     */
+    public void read(AudioBuffer buffer) {
+        read(buffer.getInterleaved(), buffer.getNumFrames());
+        buffer.writeInterleaved();
+    }
+
+    /**
+     * A data callback that plays this buffer.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return buffer -> {
+            read(buffer);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    private float sample(long frame, int channel) {
+        long sequence = frame / packetFrames;
+        int offset = (int) (frame - sequence * packetFrames) * channelCount + channel;
+        int slot = (int) sequence & mask;
+        if (slotSequences[slot] == sequence) {
+            return slotData[slot][offset];
+        }
+        // Concealment: repeat the last packet played, fading out over consecutive losses.
+        if (lastPlayedSequence < 0) {
+            return 0f;
+        }
+        float lost = (sequence - lastPlayedSequence - 1) + (float) (frame % packetFrames) / packetFrames;
+        float gain = 1f - lost / CONCEALMENT_PACKETS;
+        return gain > 0f ? lastPlayed[offset] * gain : 0f;
+    }
+
+    /**
+     * Release the packets the cursor has moved past.
+     */
+    private void advance(long sequence) {
+        while (cursorSequence < sequence) {
+            int slot = (int) cursorSequence & mask;
+            if (slotSequences[slot] == cursorSequence) {
+                float[] played = slotData[slot];
+                slotData[slot] = lastPlayed;
+                lastPlayed = played;
+                lastPlayedSequence = cursorSequence;
+                slotSequences[slot] = -1;
+            } else {
+                concealedPackets.incrementAndGet();
+            }
+            cursorSequence++;
+        }
+    }
+
+    private void drainInbox() {
+        int slot;
+        while ((slot = inbox.peek()) >= 0) {
+            long sequence = inbox.sequence(slot);
+            if (highestSequence < 0 || sequence - cursorSequence > mask) {
+                // First packet, or beyond the reorder buffer after an outage: start playout here.
+                restart(sequence);
+            }
+            updateJitter(sequence, inbox.timestamp(slot), inbox.arrivalNanos(slot));
+
+            int index = (int) sequence & mask;
+            if (sequence < cursorSequence) {
+                latePackets.incrementAndGet();
+            } else {
+                slotData[index] = inbox.swapPayload(slot, slotData[index]);
+                slotSequences[index] = sequence;
+                highestSequence = Math.max(highestSequence, sequence);
+            }
+            inbox.release();
+        }
+    }
+
+    /**
+     * Drop everything buffered and wait for the target depth from the given packet on.
+     */
+    private void restart(long sequence) {
+        if (highestSequence >= 0) {
+            Arrays.fill(slotSequences, -1);
+            if (playing) {
+                playing = false;
+                rebuffers.incrementAndGet();
+            }
+        }
+        cursorSequence = sequence;
+        cursor = sequence * (double) packetFrames;
+        highestSequence = sequence - 1;
+        lastPlayedSequence = -1;
+        starvedFrames = 0;
+        // The transit times before the gap say nothing about the network after it.
+        previousSequence = -1;
+    }
+
+    private void updateJitter(long sequence, long timestamp, long arrivalNanos) {
+        double transit = arrivalNanos * (sampleRate / 1e9) - timestamp;
+        if (previousSequence >= 0 && sequence > previousSequence) {
+            double d = Math.abs(transit - previousTransit);
+            jitter += (d - jitter) / 16.0;
+            jitterFrames = (float) jitter;
+        }
+        if (sequence > previousSequence) {
+            previousSequence = sequence;
+            previousTransit = transit;
+        }
+    }
+
+    private void updateTarget(int callbackFrames) {
+        // The callback takes a whole buffer at once, so that much must be buffered on top of the jitter.
+        double target = JITTER_MULTIPLIER * jitter + packetFrames + callbackFrames;
+        int budget = maxDelayFrames - deviceLatencyFrames;
+        target = Math.min(target, Math.max(budget, minDelayFrames));
+        targetFrames = (int) Math.max(minDelayFrames, target);
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.lemcoder.aaudio.jitter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer single-consumer queue of audio packets.
+ * <p>
+ * Every slot owns a preallocated payload array. Producers claim a slot with a CAS on the tail, copy the
+ * samples in and publish the slot through its sequence number. The consumer may swap the payload array
+ * of a slot for another array of the same size instead of copying it out.
+ */
+class PacketQueue {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // owned by the consumer
+
+    private final long[] packetSequences;
+    private final long[] timestamps;
+    private final long[] arrivalNanos;
+    private final float[][] payloads;
+
+    PacketQueue(int capacity, int payloadSize) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.packetSequences = new long[size];
+        this.timestamps = new long[size];
+        this.arrivalNanos = new long[size];
+        this.payloads = new float[size][payloadSize];
+    }
+
+    /**
+     * Called from any thread.
+     *
+     * @return false if the queue is full and the packet was dropped
+     */
+    boolean offer(long sequence, long timestamp, float[] samples, int offset, int length) {
+        long t;
+        while (true) {
+            t = tail.get();
+            long difference = sequences.get((int) t & mask) - t;
+            if (difference == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+        int i = (int) t & mask;
+        packetSequences[i] = sequence;
+        timestamps[i] = timestamp;
+        arrivalNanos[i] = System.nanoTime();
+        System.arraycopy(samples, offset, payloads[i], 0, length);
+        sequences.lazySet(i, t + 1);
+        return true;
+    }
+
+    /**
+     * Called from the consumer thread only.
+     *
+     * @return slot of the next published packet, or -1 if there is none
+     */
+    int peek() {
+        int i = (int) head & mask;
+        return sequences.get(i) == head + 1 ? i : -1;
+    }
+
+    /**
+     * Free the slot returned by {@link #peek()}.
+     */
+    void release() {
+        int i = (int) head & mask;
+        sequences.lazySet(i, head + mask + 1);
+        head++;
+    }
+
+    long sequence(int slot) {
+        return packetSequences[slot];
+    }
+
+    long timestamp(int slot) {
+        return timestamps[slot];
+    }
+
+    long arrivalNanos(int slot) {
+        return arrivalNanos[slot];
+    }
+
+    /**
+     * Take the payload of a slot, leaving the given array of the same size in its place.
+     */
+    float[] swapPayload(int slot, float[] replacement) {
+        float[] payload = payloads[slot];
+        payloads[slot] = replacement;
+        return payload;
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.lemcoder.aaudio.jitter;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a {@link JitterBuffer} with a sine tone sent over a simulated network, to exercise it without
+ * a real connection.
+ * <p>
+ * Packets are produced in real time, one every packet duration. Each one is lost with a given probability
+ * or delivered after a base delay plus a random, exponentially distributed extra delay. Packets with a
+ * large extra delay overtake each other, so reordering happens as on a real network.
+ */
+public class SimulatedPacketSource implements AutoCloseable {
+    private final JitterBuffer target;
+    private final int channelCount;
+    private final int sampleRate;
+    private final int packetFrames;
+    private final double phaseIncrement;
+    private final Random random;
+
+    private volatile long baseDelayNanos;
+    private volatile long meanJitterNanos;
+    private volatile float lossProbability;
+
+    private final AtomicLong sentPackets = new AtomicLong();
+    private final AtomicLong lostPackets = new AtomicLong();
+
+    private Thread thread;
+    private volatile boolean running;
+
+    private static final class InFlight implements Comparable<InFlight> {
+        final long arrivalNanos;
+        final long sequence;
+        final float[] samples;
+
+        InFlight(long arrivalNanos, long sequence, float[] samples) {
+            this.arrivalNanos = arrivalNanos;
+            this.sequence = sequence;
+            this.samples = samples;
+        }
+
+        @Override
+        public int compareTo(InFlight other) {
+            return Long.compare(arrivalNanos, other.arrivalNanos);
+        }
+    }
+
+    /**
+     * @param target       receives the packets
+     * @param channelCount channels of the packets
+     * @param sampleRate   sample rate of the packets
+     * @param frequency    frequency of the tone in Hertz
+     * @param seed         seed of the network simulation, for reproducible runs
+     */
+    public SimulatedPacketSource(JitterBuffer target, int channelCount, int sampleRate, float frequency, long seed) {
+        this.target = target;
+        this.channelCount = channelCount;
+        this.sampleRate = sampleRate;
+        this.packetFrames = target.getPacketFrames();
+        this.phaseIncrement = 2 * Math.PI * frequency / sampleRate;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param baseDelayMillis fixed one-way delay
+     * @param jitterMillis    mean of the random extra delay
+     * @param lossProbability probability that a packet is lost, 0 to 1
+     */
+    public void setNetwork(int baseDelayMillis, int jitterMillis, float lossProbability) {
+        this.baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(baseDelayMillis);
+        this.meanJitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        this.lossProbability = lossProbability;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "SimulatedPacketSource");
+        thread.start();
+    }
+
+    public long getSentPackets() {
+        return sentPackets.get();
+    }
+
+    public long getLostPackets() {
+        return lostPackets.get();
+    }
+
+    private void run() {
+        PriorityQueue<InFlight> network = new PriorityQueue<>();
+        long packetNanos = packetFrames * 1_000_000_000L / sampleRate;
+        long start = System.nanoTime();
+        long sequence = 0;
+        double phase = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            long sendTime = start + sequence * packetNanos;
+            while (sendTime <= now) {
+                float[] samples = new float[packetFrames * channelCount];
+                for (int i = 0; i < packetFrames; i++) {
+                    float value = (float) (0.5 * Math.sin(phase));
+                    phase += phaseIncrement;
+                    for (int c = 0; c < channelCount; c++) {
+                        samples[i * channelCount + c] = value;
+                    }
+                }
+                phase %= 2 * Math.PI;
+                sentPackets.incrementAndGet();
+                if (random.nextFloat() < lossProbability) {
+                    lostPackets.incrementAndGet();
+                } else {
+                    long extra = (long) (-Math.log(1 - random.nextDouble()) * meanJitterNanos);
+                    network.add(new InFlight(sendTime + baseDelayNanos + extra, sequence, samples));
+                }
+                sequence++;
+                sendTime = start + sequence * packetNanos;
+            }
+
+            while (!network.isEmpty() && network.peek().arrivalNanos <= now) {
+                InFlight packet = network.poll();
+                target.insert(packet.sequence, packet.sequence * packetFrames, packet.samples, 0);
+            }
+
+            long next = network.isEmpty() ? sendTime : Math.min(sendTime, network.peek().arrivalNanos);
+            LockSupport.parkNanos(this, Math.max(0, next - System.nanoTime()));
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+            running = false;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.lemcoder.aaudio.latency;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilderFactory;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+/**
+ * Loopback over the real device: a mono PCM_FLOAT output stream with a data callback, and an input stream
+ * without one that is read with a zero timeout from inside the output callback.
+ * <p>
+ * For a meaningful result the output must reach the input, eg. through a loopback adapter on the
+ * headset jack or, less precisely, from the speaker to the microphone.
+ */
+public class AAudioLoopbackBackend implements LoopbackBackend {
+    private final int requestedSampleRate;
+    private final AAudioSharingMode sharingMode;
+    private final AAudioPerformanceMode performanceMode;
+
+    private AAudioStreamBuilder outputBuilder;
+    private AAudioStreamBuilder inputBuilder;
+    private AAudioStream output;
+    private AAudioStream input;
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment timestampFrame = arena.allocate(ValueLayout.JAVA_LONG);
+    private final MemorySegment timestampNanos = arena.allocate(ValueLayout.JAVA_LONG);
+    private MemorySegment inputSegment;
+    private float[] inputSamples;
+    private volatile DuplexProcessor processor;
+
+    /**
+     * @param sampleRate      requested sample rate, used for both streams
+     * @param sharingMode     requested sharing mode
+     * @param performanceMode requested performance mode
+     */
+    public AAudioLoopbackBackend(int sampleRate, AAudioSharingMode sharingMode, AAudioPerformanceMode performanceMode) {
+        this.requestedSampleRate = sampleRate;
+        this.sharingMode = sharingMode;
+        this.performanceMode = performanceMode;
+    }
+
+    @Override
+    public synchronized void start(DuplexProcessor processor) throws Throwable {
+        if (output == null) {
+            open();
+        }
+        this.processor = processor;
+        AAudioResult result = input.requestStart();
+        if (result != AAudioResult.OK) {
+            throw new RuntimeException("Failed to start input stream: " + result);
+        }
+        result = output.requestStart();
+        if (result != AAudioResult.OK) {
+            throw new RuntimeException("Failed to start output stream: " + result);
+        }
+    }
+
+    private void open() throws Throwable {
+        try {
+            openStreams();
+        } catch (Throwable t) {
+            // Eg. the output fails to open after the input did, the input must not leak.
+            try {
+                closeStreams();
+            } catch (Throwable suppressed) {
+                t.addSuppressed(suppressed);
+            }
+            throw t;
+        }
+    }
+
+    private void openStreams() throws Throwable {
+        inputBuilder = AAudioStreamBuilderFactory.createStreamBuilder();
+        configure(inputBuilder, AAudioAudioDirection.INPUT);
+        input = inputBuilder.openStream();
+
+        outputBuilder = AAudioStreamBuilderFactory.createStreamBuilder();
+        configure(outputBuilder, AAudioAudioDirection.OUTPUT);
+        outputBuilder.setSampleRate(input.getSampleRate());
+        outputBuilder.setDataCallback(buffer -> {
+            int frames = readInput();
+            DuplexProcessor p = processor;
+            if (p != null) {
+                p.process(inputSamples, frames, buffer.getInterleaved(), buffer.getNumFrames());
+                buffer.writeInterleaved();
+            } else {
+                buffer.clear();
+            }
+            return AAudioCallbackResult.CONTINUE;
+        });
+        output = outputBuilder.openStream();
+
+        int capacity = input.getBufferCapacityInFrames();
+        inputSegment = arena.allocate((long) capacity * Float.BYTES, 64);
+        inputSamples = new float[capacity];
+    }
+
+    private void configure(AAudioStreamBuilder builder, AAudioAudioDirection direction) throws Throwable {
+        builder.setDirection(direction);
+        builder.setFormat(AAudioFormat.PCM_FLOAT);
+        builder.setChannelCount(1);
+        builder.setSampleRate(requestedSampleRate);
+        builder.setSharingMode(sharingMode);
+        builder.setPerformanceMode(performanceMode);
+    }
+
+    /**
+     * Read all available input, up to the scratch capacity.
+     */
+    private int readInput() {
+        try {
+            int n = input.read(inputSegment, inputSamples.length, 0);
+            if (n <= 0) {
+                return 0;
+            }
+            MemorySegment.copy(inputSegment, ValueLayout.JAVA_FLOAT, 0, inputSamples, 0, n);
+            return n;
+        } catch (Throwable t) {
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized void stop() throws Throwable {
+        processor = null;
+        if (output != null) {
+            output.requestStop();
+            input.requestStop();
+        }
+    }
+
+    @Override
+    public int getSampleRate() {
+        try {
+            return output != null ? output.getSampleRate() : requestedSampleRate;
+        } catch (Throwable t) {
+            return requestedSampleRate;
+        }
+    }
+
+    /**
+     * Output latency is the time until the frame written next is presented, input latency the time
+     * since the frame read next was captured, both extrapolated from the last timestamp.
+     */
+    @Override
+    public double getTimestampLatencyFrames() throws Throwable {
+        if (output == null) {
+            return Double.NaN;
+        }
+        int sampleRate = output.getSampleRate();
+        if (output.getTimestamp(AAudioStream.CLOCK_MONOTONIC, timestampFrame, timestampNanos) != AAudioResult.OK) {
+            return Double.NaN;
+        }
+        long now = System.nanoTime();
+        double presented = timestampNanos.get(ValueLayout.JAVA_LONG, 0)
+                + (output.getFramesWritten() - timestampFrame.get(ValueLayout.JAVA_LONG, 0)) * 1e9 / sampleRate;
+        double outputNanos = presented - now;
+
+        if (input.getTimestamp(AAudioStream.CLOCK_MONOTONIC, timestampFrame, timestampNanos) != AAudioResult.OK) {
+            return Double.NaN;
+        }
+        now = System.nanoTime();
+        double captured = timestampNanos.get(ValueLayout.JAVA_LONG, 0)
+                + (input.getFramesRead() - timestampFrame.get(ValueLayout.JAVA_LONG, 0)) * 1e9 / sampleRate;
+        double inputNanos = now - captured;
+
+        return (outputNanos + inputNanos) * sampleRate / 1e9;
+    }
+
+    @Override
+    public LoopbackStreamConfig getOutputConfig() throws Throwable {
+        return output != null ? LoopbackStreamConfig.of(output) : null;
+    }
+
+    @Override
+    public LoopbackStreamConfig getInputConfig() throws Throwable {
+        return input != null ? LoopbackStreamConfig.of(input) : null;
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
+        processor = null;
+        closeStreams();
+        arena.close();
+    }
+
+    private void closeStreams() throws Exception {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+        if (outputBuilder != null) {
+            outputBuilder.close();
+            outputBuilder = null;
+        }
+        if (input != null) {
+            input.close();
+            input = null;
+        }
+        if (inputBuilder != null) {
+            inputBuilder.close();
+            inputBuilder = null;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.lemcoder.aaudio.latency;
+
+/**
+ * Processes one cycle of a full-duplex mono loop: the input read so far and the output to write next.
+ */
+@FunctionalInterface
+public interface DuplexProcessor {
+    /**
+     * Called on the real-time thread of the backend. Must not allocate or block.
+     *
+     * @param input        input samples read in this cycle
+     * @param inputFrames  number of valid input samples, may differ from outputFrames
+     * @param output       receives the output samples
+     * @param outputFrames number of output samples to write
+     */
+    void process(float[] input, int inputFrames, float[] output, int outputFrames);
+}
@@ -0,0 +1,16 @@
+package io.github.lemcoder.aaudio.latency;
+
+/**
+ * Test signal played by {@link LoopbackLatencyTester}.
+ */
+public enum Excitation {
+    /**
+     * Maximum length sequence. Noise-like with a sharp autocorrelation peak, robust against
+     * background noise and processing on the path.
+     */
+    MLS,
+    /**
+     * A short raised-cosine click. Easy to inspect in a recording, but more sensitive to noise.
+     */
+    IMPULSE
+}
@@ -0,0 +1,135 @@
+package io.github.lemcoder.aaudio.latency;
+
+import io.github.lemcoder.aaudio.fft.RealFft;
+
+/**
+ * Test signals and the cross-correlation that finds them in a recording.
+ */
+class LatencyAnalyzer {
+
+    LatencyAnalyzer() {
+        // Should not be called directly
+    }
+
+    // Feedback taps of maximal length Fibonacci LFSRs, indexed by order.
+    private static final int[][] MLS_TAPS = {
+            null, null, null, null, null, null, null, null,
+            {8, 6, 5, 4},
+            {9, 5},
+            {10, 7},
+            {11, 9},
+            {12, 11, 10, 4},
+            {13, 12, 11, 8},
+            {14, 13, 12, 2},
+            {15, 14},
+            {16, 15, 13, 4},
+    };
+
+    static final int MIN_MLS_ORDER = 8;
+    static final int MAX_MLS_ORDER = 16;
+
+    /**
+     * @return maximum length sequence of 2^order - 1 samples of +-amplitude
+     */
+    static float[] mls(int order, float amplitude) {
+        int[] taps = MLS_TAPS[order];
+        int length = (1 << order) - 1;
+        float[] sequence = new float[length];
+        int state = 1;
+        for (int i = 0; i < length; i++) {
+            sequence[i] = (state & 1) != 0 ? amplitude : -amplitude;
+            int bit = 0;
+            for (int tap : taps) {
+                bit ^= state >> (order - tap);
+            }
+            state = (state >> 1) | ((bit & 1) << (order - 1));
+        }
+        return sequence;
+    }
+
+    /**
+     * @return raised-cosine click of the given length
+     */
+    static float[] impulse(int length, float amplitude) {
+        float[] click = new float[length];
+        for (int i = 0; i < length; i++) {
+            click[i] = (float) (amplitude * 0.5 * (1 - Math.cos(2 * Math.PI * (i + 1) / (length + 1))));
+        }
+        return click;
+    }
+
+    /**
+     * Result of {@link #locate(float[], int, float[])}.
+     */
+    static final class Peak {
+        final double lag;
+        final double confidence;
+
+        Peak(double lag, double confidence) {
+            this.lag = lag;
+            this.confidence = confidence;
+        }
+    }
+
+    /**
+     * Find where the template starts in the recording.
+     *
+     * @param recording samples
+     * @param length    number of valid samples in the recording
+     * @param template  the played signal
+     * @return lag of the correlation peak with parabolic sub-sample interpolation, and the normalized
+     * correlation at the peak, 0 to 1
+     */
+    static Peak locate(float[] recording, int length, float[] template) {
+        int size = Integer.highestOneBit(Math.max(4, length + template.length - 1)) << 1;
+        RealFft fft = RealFft.forSize(size);
+        float[] a = new float[size];
+        float[] b = new float[size];
+        System.arraycopy(recording, 0, a, 0, length);
+        System.arraycopy(template, 0, b, 0, template.length);
+        fft.forward(a, 0);
+        fft.forward(b, 0);
+
+        // a * conj(b) in the packed layout.
+        a[0] *= b[0];
+        a[1] *= b[1];
+        for (int k = 2; k < size; k += 2) {
+            float re = a[k] * b[k] + a[k + 1] * b[k + 1];
+            float im = a[k + 1] * b[k] - a[k] * b[k + 1];
+            a[k] = re;
+            a[k + 1] = im;
+        }
+        fft.inverse(a, 0);
+
+        int lastLag = length - template.length;
+        if (lastLag < 0) {
+            return new Peak(Double.NaN, 0);
+        }
+        int best = 0;
+        for (int k = 1; k <= lastLag; k++) {
+            if (Math.abs(a[k]) > Math.abs(a[best])) {
+                best = k;
+            }
+        }
+
+        double lag = best;
+        if (best > 0 && best < lastLag) {
+            double y0 = Math.abs(a[best - 1]);
+            double y1 = Math.abs(a[best]);
+            double y2 = Math.abs(a[best + 1]);
+            double denominator = y0 - 2 * y1 + y2;
+            if (denominator != 0) {
+                lag += 0.5 * (y0 - y2) / denominator;
+            }
+        }
+
+        double templateEnergy = 0;
+        double windowEnergy = 0;
+        for (int i = 0; i < template.length; i++) {
+            templateEnergy += template[i] * template[i];
+            windowEnergy += recording[best + i] * recording[best + i];
+        }
+        double norm = Math.sqrt(templateEnergy * windowEnergy);
+        return new Peak(lag, norm > 0 ? Math.abs(a[best]) / norm : 0);
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.lemcoder.aaudio.latency;
+
+import java.util.Locale;
+
+/**
+ * Result of a {@link LoopbackLatencyTester} measurement.
+ */
+public class LatencyReport {
+    private final double latencyFrames;
+    private final double confidence;
+    private final double timestampLatencyFrames;
+    private final int sampleRate;
+    private final Excitation excitation;
+    private final LoopbackStreamConfig outputConfig;
+    private final LoopbackStreamConfig inputConfig;
+
+    public LatencyReport(double latencyFrames, double confidence, double timestampLatencyFrames, int sampleRate,
+                         Excitation excitation, LoopbackStreamConfig outputConfig, LoopbackStreamConfig inputConfig) {
+        this.latencyFrames = latencyFrames;
+        this.confidence = confidence;
+        this.timestampLatencyFrames = timestampLatencyFrames;
+        this.sampleRate = sampleRate;
+        this.excitation = excitation;
+        this.outputConfig = outputConfig;
+        this.inputConfig = inputConfig;
+    }
+
+    /**
+     * @return measured round-trip latency in frames, with sub-frame resolution
+     */
+    public double getLatencyFrames() {
+        return latencyFrames;
+    }
+
+    public double getLatencyMillis() {
+        return latencyFrames * 1000 / sampleRate;
+    }
+
+    /**
+     * @return normalized correlation at the detected peak, 0 to 1. Values below about 0.3 mean the
+     * test signal was not found reliably.
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return true if the test signal was found with enough confidence for the latency to be trusted
+     */
+    public boolean isValid() {
+        return !Double.isNaN(latencyFrames) && confidence >= LoopbackLatencyTester.MIN_CONFIDENCE;
+    }
+
+    /**
+     * @return latency estimated from the stream timestamps during the measurement, or NaN if unavailable
+     */
+    public double getTimestampLatencyFrames() {
+        return timestampLatencyFrames;
+    }
+
+    public double getTimestampLatencyMillis() {
+        return timestampLatencyFrames * 1000 / sampleRate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public Excitation getExcitation() {
+        return excitation;
+    }
+
+    public LoopbackStreamConfig getOutputConfig() {
+        return outputConfig;
+    }
+
+    public LoopbackStreamConfig getInputConfig() {
+        return inputConfig;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "LatencyReport{latency=%.3f ms (%.2f frames), confidence=%.3f, timestampLatency=%.3f ms, "
+                        + "excitation=%s, output=%s, input=%s}",
+                getLatencyMillis(), latencyFrames, confidence, getTimestampLatencyMillis(), excitation,
+                outputConfig, inputConfig);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.lemcoder.aaudio.latency;
+
+/**
+ * A pair of output and input streams driven as one full-duplex loop.
+ * <p>
+ * Every cycle the backend reads all input that is available, then asks the {@link DuplexProcessor} for
+ * the next output. Because input and output are handled in the same cycle, the number of input frames
+ * read between writing a sample and reading it back is the round-trip latency as the application sees it.
+ */
+public interface LoopbackBackend extends AutoCloseable {
+    /**
+     * Open the streams if needed and start the loop.
+     */
+    void start(DuplexProcessor processor) throws Throwable;
+
+    /**
+     * Stop the loop. The processor is not called anymore once this returns.
+     */
+    void stop() throws Throwable;
+
+    int getSampleRate();
+
+    /**
+     * Round-trip latency estimated from the presentation timestamps of both streams.
+     * Only valid while the loop runs.
+     *
+     * @return latency in frames, or NaN if the streams do not report timestamps
+     */
+    double getTimestampLatencyFrames() throws Throwable;
+
+    LoopbackStreamConfig getOutputConfig() throws Throwable;
+
+    LoopbackStreamConfig getInputConfig() throws Throwable;
+}
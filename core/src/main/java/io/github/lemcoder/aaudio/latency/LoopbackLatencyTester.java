@@ -0,0 +1,157 @@
+package io.github.lemcoder.aaudio.latency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the round-trip latency of a {@link LoopbackBackend}.
+ * <p>
+ * After a warm-up of silence, so the streams settle, a test signal is played once while the input is
+ * recorded, starting in the same cycle. The recording is cross-correlated with the test signal; the lag of
+ * the correlation peak, refined to a fraction of a frame, is the number of input frames read between
+ * writing the signal and reading it back, ie. the round-trip latency seen by the application.
+ * <p>
+ * While the signal plays, the backend's timestamp-based estimate is sampled as well, so both can be
+ * compared in the {@link LatencyReport}.
+ */
+public class LoopbackLatencyTester {
+    static final double MIN_CONFIDENCE = 0.3;
+    private static final long POLL_MILLIS = 20;
+
+    private final LoopbackBackend backend;
+    private Excitation excitation = Excitation.MLS;
+    private float amplitude = 0.5f;
+    private int warmupMillis = 500;
+    private int maxLatencyMillis = 1000;
+
+    public LoopbackLatencyTester(LoopbackBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * @param excitation test signal
+     * @param amplitude  peak amplitude of the test signal
+     */
+    public void setExcitation(Excitation excitation, float amplitude) {
+        this.excitation = excitation;
+        this.amplitude = amplitude;
+    }
+
+    /**
+     * @param warmupMillis     silence played before the test signal
+     * @param maxLatencyMillis longest latency that can be measured
+     */
+    public void setTiming(int warmupMillis, int maxLatencyMillis) {
+        this.warmupMillis = warmupMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /**
+     * Run one measurement. Blocks for about the warm-up plus the maximum latency.
+     *
+     * @throws RuntimeException if the backend stopped delivering audio
+     */
+    public LatencyReport measure() throws Throwable {
+        int sampleRate = backend.getSampleRate();
+        float[] signal = createSignal(sampleRate);
+        int recordingFrames = signal.length + (int) ((long) sampleRate * maxLatencyMillis / 1000);
+        Capture capture = new Capture(signal, (int) ((long) sampleRate * warmupMillis / 1000), recordingFrames);
+
+        List<Double> timestampEstimates = new ArrayList<>();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(2L * (warmupMillis + maxLatencyMillis) + 2000)
+                + recordingFrames * 1_000_000_000L / sampleRate;
+        long deadline = System.nanoTime() + timeoutNanos;
+
+        backend.start(capture);
+        try {
+            while (!capture.done) {
+                if (System.nanoTime() > deadline) {
+                    throw new RuntimeException("Loopback measurement timed out");
+                }
+                if (capture.recording) {
+                    double estimate = backend.getTimestampLatencyFrames();
+                    if (!Double.isNaN(estimate)) {
+                        timestampEstimates.add(estimate);
+                    }
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+        } finally {
+            backend.stop();
+        }
+
+        LatencyAnalyzer.Peak peak = LatencyAnalyzer.locate(capture.recorded, capture.recordedFrames, signal);
+        return new LatencyReport(peak.lag, peak.confidence, median(timestampEstimates), sampleRate, excitation,
+                backend.getOutputConfig(), backend.getInputConfig());
+    }
+
+    private float[] createSignal(int sampleRate) {
+        if (excitation == Excitation.IMPULSE) {
+            return LatencyAnalyzer.impulse(Math.max(3, sampleRate / 4000), amplitude);
+        }
+        // About 85 ms at 48 kHz, long enough to stand out of noise, short enough for a quick run.
+        int order = LatencyAnalyzer.MIN_MLS_ORDER;
+        while (order < LatencyAnalyzer.MAX_MLS_ORDER && (1 << order) - 1 < sampleRate / 12) {
+            order++;
+        }
+        return LatencyAnalyzer.mls(order, amplitude);
+    }
+
+    private static double median(List<Double> values) {
+        if (values.isEmpty()) {
+            return Double.NaN;
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    /**
+     * Plays the signal after the warm-up and records the input from the same cycle on.
+     */
+    private static final class Capture implements DuplexProcessor {
+        private final float[] signal;
+        private final float[] recorded;
+        private int warmupFrames;
+        private int signalPosition;
+        private int recordedFrames;
+        volatile boolean recording;
+        volatile boolean done;
+
+        Capture(float[] signal, int warmupFrames, int recordingFrames) {
+            this.signal = signal;
+            this.warmupFrames = warmupFrames;
+            this.recorded = new float[recordingFrames];
+        }
+
+        @Override
+        public void process(float[] input, int inputFrames, float[] output, int outputFrames) {
+            if (!recording && !done && warmupFrames <= 0) {
+                recording = true;
+            }
+            if (recording) {
+                int n = Math.min(inputFrames, recorded.length - recordedFrames);
+                System.arraycopy(input, 0, recorded, recordedFrames, n);
+                recordedFrames += n;
+                if (recordedFrames == recorded.length) {
+                    recording = false;
+                    done = true;
+                }
+            }
+
+            int i = 0;
+            if (recording || done) {
+                int n = Math.min(outputFrames, signal.length - signalPosition);
+                System.arraycopy(signal, signalPosition, output, 0, n);
+                signalPosition += n;
+                i = n;
+            } else {
+                warmupFrames -= outputFrames;
+            }
+            for (; i < outputFrames; i++) {
+                output[i] = 0f;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.lemcoder.aaudio.latency;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.model.AAudioPerformanceMode;
+import io.github.lemcoder.aaudio.model.AAudioSharingMode;
+
+/**
+ * Configuration of one stream of a loopback measurement, as actually opened.
+ */
+public class LoopbackStreamConfig {
+    private final int deviceId;
+    private final int sampleRate;
+    private final AAudioSharingMode sharingMode;
+    private final AAudioPerformanceMode performanceMode;
+    private final int framesPerBurst;
+    private final int bufferSizeInFrames;
+    private final int bufferCapacityInFrames;
+
+    /**
+     * @param sharingMode     sharing mode, or null for a simulated stream
+     * @param performanceMode performance mode, or null for a simulated stream
+     */
+    public LoopbackStreamConfig(int deviceId, int sampleRate, AAudioSharingMode sharingMode,
+                                AAudioPerformanceMode performanceMode, int framesPerBurst,
+                                int bufferSizeInFrames, int bufferCapacityInFrames) {
+        this.deviceId = deviceId;
+        this.sampleRate = sampleRate;
+        this.sharingMode = sharingMode;
+        this.performanceMode = performanceMode;
+        this.framesPerBurst = framesPerBurst;
+        this.bufferSizeInFrames = bufferSizeInFrames;
+        this.bufferCapacityInFrames = bufferCapacityInFrames;
+    }
+
+    /**
+     * Read the configuration of an open stream.
+     */
+    public static LoopbackStreamConfig of(AAudioStream stream) throws Throwable {
+        return new LoopbackStreamConfig(stream.getDeviceId(), stream.getSampleRate(), stream.getSharingMode(),
+                stream.getPerformanceMode(), stream.getFramesPerBurst(), stream.getBufferSizeInFrames(),
+                stream.getBufferCapacityInFrames());
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public AAudioSharingMode getSharingMode() {
+        return sharingMode;
+    }
+
+    public AAudioPerformanceMode getPerformanceMode() {
+        return performanceMode;
+    }
+
+    public int getFramesPerBurst() {
+        return framesPerBurst;
+    }
+
+    public int getBufferSizeInFrames() {
+        return bufferSizeInFrames;
+    }
+
+    public int getBufferCapacityInFrames() {
+        return bufferCapacityInFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "LoopbackStreamConfig{deviceId=" + deviceId
+                + ", sampleRate=" + sampleRate
+                + ", sharingMode=" + sharingMode
+                + ", performanceMode=" + performanceMode
+                + ", framesPerBurst=" + framesPerBurst
+                + ", bufferSizeInFrames=" + bufferSizeInFrames
+                + ", bufferCapacityInFrames=" + bufferCapacityInFrames + '}';
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.lemcoder.aaudio.latency;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loopback stand-in without a device: the output is fed back to the input through a delay line with a
+ * known, possibly fractional, delay plus optional gain and noise.
+ * <p>
+ * Used to validate {@link LoopbackLatencyTester}: the measured latency must match the injected delay.
+ * The loop runs one burst per cycle on its own thread, in real time or as fast as possible.
+ */
+public class SoftwareLoopbackBackend implements LoopbackBackend {
+    private final int sampleRate;
+    private final int framesPerBurst;
+    private final double delayFrames;
+    private final float[] delayLine;
+    private final int mask;
+    private final float[] input;
+    private final float[] output;
+
+    private volatile float gain = 1f;
+    private volatile float noiseLevel;
+    private volatile boolean realTime = true;
+    private long seed = 1;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param sampleRate     simulated sample rate
+     * @param framesPerBurst frames per cycle
+     * @param delayFrames    injected round-trip delay, at least one burst
+     */
+    public SoftwareLoopbackBackend(int sampleRate, int framesPerBurst, double delayFrames) {
+        if (framesPerBurst <= 0 || delayFrames < framesPerBurst) {
+            throw new IllegalArgumentException("The delay must be at least one burst");
+        }
+        this.sampleRate = sampleRate;
+        this.framesPerBurst = framesPerBurst;
+        this.delayFrames = delayFrames;
+        int size = Integer.highestOneBit((int) Math.ceil(delayFrames) + 2 * framesPerBurst) << 1;
+        this.delayLine = new float[size];
+        this.mask = size - 1;
+        this.input = new float[framesPerBurst];
+        this.output = new float[framesPerBurst];
+    }
+
+    /**
+     * @param gain       gain of the simulated path
+     * @param noiseLevel standard deviation of the added Gaussian noise
+     * @param seed       seed of the noise
+     */
+    public void setPath(float gain, float noiseLevel, long seed) {
+        this.gain = gain;
+        this.noiseLevel = noiseLevel;
+        this.seed = seed;
+    }
+
+    /**
+     * @param realTime true to run one burst per burst duration, false to run as fast as possible
+     */
+    public void setRealTime(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    @Override
+    public synchronized void start(DuplexProcessor processor) {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(() -> run(processor), "SoftwareLoopback");
+        thread.start();
+    }
+
+    private void run(DuplexProcessor processor) {
+        Random random = new Random(seed);
+        long burstNanos = framesPerBurst * 1_000_000_000L / sampleRate;
+        long next = System.nanoTime();
+        long position = 0;
+        int whole = (int) Math.floor(delayFrames);
+        float fraction = (float) (delayFrames - whole);
+        Arrays.fill(delayLine, 0f);
+
+        while (running) {
+            // in[m] = out[m - delay], the delay is at least one burst so all of it was written already.
+            float g = gain;
+            float noise = noiseLevel;
+            for (int i = 0; i < framesPerBurst; i++) {
+                long m = position + i;
+                float a = delayLine[(int) (m - whole) & mask];
+                float b = delayLine[(int) (m - whole - 1) & mask];
+                float sample = (a + (b - a) * fraction) * g;
+                if (noise > 0) {
+                    sample += (float) random.nextGaussian() * noise;
+                }
+                input[i] = sample;
+            }
+            processor.process(input, framesPerBurst, output, framesPerBurst);
+            for (int i = 0; i < framesPerBurst; i++) {
+                delayLine[(int) (position + i) & mask] = output[i];
+            }
+            position += framesPerBurst;
+
+            if (realTime) {
+                next += burstNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+            running = false;
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return the injected delay, as if the simulated streams reported perfect timestamps
+     */
+    @Override
+    public double getTimestampLatencyFrames() {
+        return delayFrames;
+    }
+
+    @Override
+    public LoopbackStreamConfig getOutputConfig() {
+        return new LoopbackStreamConfig(0, sampleRate, null, null, framesPerBurst, framesPerBurst, framesPerBurst);
+    }
+
+    @Override
+    public LoopbackStreamConfig getInputConfig() {
+        return getOutputConfig();
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+}
@@ -63,6 +63,20 @@ public enum AAudioFormat {
         return value;
     }
 
+    /**
+     * Size of a single sample of this format in bytes.
+     *
+     * @return bytes per sample, or 0 for formats without a fixed PCM sample size
+     */
+    public int getBytesPerSample() {
+        return switch (this) {
+            case PCM_I16 -> 2;
+            case PCM_I24_PACKED -> 3;
+            case PCM_FLOAT, PCM_I32 -> 4;
+            default -> 0;
+        };
+    }
+
     public static AAudioFormat fromValue(int value) {
         for (AAudioFormat format : values()) {
             if (format.value == value) {
@@ -11,7 +11,7 @@ public enum AAudioSharingMode {
      * Multiple applications will be mixed by the AAudio Server.
      * This will have higher latency than the EXCLUSIVE mode.
      */
-    AAUDIO_SHARING_MODE_SHARED(0);
+    AAUDIO_SHARING_MODE_SHARED(1);
 
     private final int value;
 
@@ -0,0 +1,114 @@
+package io.github.lemcoder.aaudio.mux;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Mixes many {@link VirtualStream}s into one physical output stream.
+ * <p>
+ * Each open stream costs power and exclusive streams are scarce, so sounds that would each get their own
+ * stream can share one instead: open a single PCM_FLOAT output stream with {@link #asBufferCallback()} and
+ * create a virtual stream per sound. Virtual streams run at the physical sample rate; their channels are
+ * mapped onto the physical ones modulo their channel count, so mono goes to every channel.
+ * <p>
+ * Streams live in a fixed table of slots. Creating and closing a stream is a compare-and-set on its slot,
+ * and the data callback walks the table without locks or allocation.
+ */
+public class StreamMultiplexer {
+    private final int sampleRate;
+    private final int channelCount;
+    private final int maxFramesPerCallback;
+    private final AtomicReferenceArray<VirtualStream> slots;
+
+    /**
+     * @param sampleRate           sample rate of the physical stream
+     * @param channelCount         channel count of the physical stream
+     * @param maxFramesPerCallback largest numFrames of a data callback, eg. the buffer capacity
+     * @param maxStreams           most virtual streams open at the same time
+     */
+    public StreamMultiplexer(int sampleRate, int channelCount, int maxFramesPerCallback, int maxStreams) {
+        if (channelCount <= 0 || maxFramesPerCallback <= 0 || maxStreams <= 0) {
+            throw new IllegalArgumentException("Invalid multiplexer configuration");
+        }
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.maxFramesPerCallback = maxFramesPerCallback;
+        this.slots = new AtomicReferenceArray<>(maxStreams);
+    }
+
+    /**
+     * Create a virtual stream in the OPEN state. Allocates, so call it off the data callback thread.
+     *
+     * @param channelCount channels rendered by the callback
+     * @throws IllegalStateException if all slots are taken
+     */
+    public VirtualStream openStream(int channelCount, VirtualStreamCallback callback) {
+        if (channelCount <= 0) {
+            throw new IllegalArgumentException("Invalid channel count: " + channelCount);
+        }
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null) {
+                VirtualStream stream = new VirtualStream(this, i, channelCount, maxFramesPerCallback, callback);
+                if (slots.compareAndSet(i, null, stream)) {
+                    return stream;
+                }
+            }
+        }
+        throw new IllegalStateException("No free virtual stream slots");
+    }
+
+    void remove(int slot, VirtualStream stream) {
+        slots.compareAndSet(slot, stream, null);
+    }
+
+    /**
+     * @return open virtual streams, in any state
+     */
+    public int getStreamCount() {
+        int count = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * Mix all running virtual streams into out, overwriting it.
+     *
+     * @param out interleaved with the physical channel count
+     */
+    public void mix(float[] out, int numFrames) {
+        Arrays.fill(out, 0, numFrames * channelCount, 0f);
+        for (int i = 0; i < slots.length(); i++) {
+            VirtualStream stream = slots.get(i);
+            if (stream != null) {
+                stream.mixInto(out, channelCount, numFrames);
+            }
+        }
+    }
+
+    /**
+     * A data callback for the physical stream, which must be PCM_FLOAT or PCM_I16 with the multiplexer's
+     * channel count.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return buffer -> {
+            mix(buffer.getInterleaved(), buffer.getNumFrames());
+            buffer.writeInterleaved();
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+}
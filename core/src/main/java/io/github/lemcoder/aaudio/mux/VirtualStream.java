@@ -0,0 +1,231 @@
+package io.github.lemcoder.aaudio.mux;
+
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+import io.github.lemcoder.aaudio.model.AAudioStreamState;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A logical output stream mixed by a {@link StreamMultiplexer} into its physical stream.
+ * <p>
+ * The control methods mirror those of {@code AAudioStream} and its state machine: requestStart moves to
+ * STARTING, the next data callback fades the stream in and moves to STARTED; requestPause and requestStop
+ * move to PAUSING and STOPPING, the next callback fades the stream out and moves to PAUSED and STOPPED.
+ * Requests are single compare-and-set transitions on the state, so they never block the data callback and
+ * may be called from any thread.
+ */
+public class VirtualStream {
+    private static final long WAIT_POLL_NANOS = 1_000_000;
+
+    private final StreamMultiplexer multiplexer;
+    private final int slot;
+    private final int channelCount;
+    private final VirtualStreamCallback callback;
+    private final float[] scratch;
+
+    private final AtomicInteger state = new AtomicInteger(AAudioStreamState.OPEN.getValue());
+    private final AtomicLong framesWritten = new AtomicLong();
+    private volatile float gain = 1f;
+
+    // Data callback thread only.
+    private float appliedGain;
+
+    VirtualStream(StreamMultiplexer multiplexer, int slot, int channelCount, int maxFrames,
+                  VirtualStreamCallback callback) {
+        this.multiplexer = multiplexer;
+        this.slot = slot;
+        this.channelCount = channelCount;
+        this.callback = callback;
+        this.scratch = new float[maxFrames * channelCount];
+    }
+
+    // ============================================================
+    // Control
+    // ============================================================
+
+    /**
+     * @return {@link AAudioResult#OK} or {@link AAudioResult#ERROR_INVALID_STATE}
+     */
+    public AAudioResult requestStart() {
+        return transition(AAudioStreamState.STARTING,
+                new AAudioStreamState[]{AAudioStreamState.STARTING, AAudioStreamState.STARTED},
+                AAudioStreamState.OPEN, AAudioStreamState.PAUSING, AAudioStreamState.PAUSED,
+                AAudioStreamState.FLUSHED, AAudioStreamState.STOPPING, AAudioStreamState.STOPPED);
+    }
+
+    public AAudioResult requestPause() {
+        return transition(AAudioStreamState.PAUSING,
+                new AAudioStreamState[]{AAudioStreamState.PAUSING, AAudioStreamState.PAUSED},
+                AAudioStreamState.STARTING, AAudioStreamState.STARTED);
+    }
+
+    /**
+     * A virtual stream buffers nothing, so a flush completes immediately.
+     */
+    public AAudioResult requestFlush() {
+        return transition(AAudioStreamState.FLUSHED,
+                new AAudioStreamState[]{AAudioStreamState.FLUSHED},
+                AAudioStreamState.OPEN, AAudioStreamState.PAUSED, AAudioStreamState.STOPPED);
+    }
+
+    public AAudioResult requestStop() {
+        while (true) {
+            int current = state.get();
+            AAudioStreamState target;
+            if (current == AAudioStreamState.STOPPING.getValue() || current == AAudioStreamState.STOPPED.getValue()) {
+                return AAudioResult.OK;
+            } else if (current == AAudioStreamState.STARTING.getValue()
+                    || current == AAudioStreamState.STARTED.getValue()
+                    || current == AAudioStreamState.PAUSING.getValue()) {
+                target = AAudioStreamState.STOPPING;
+            } else if (current == AAudioStreamState.OPEN.getValue()
+                    || current == AAudioStreamState.PAUSED.getValue()
+                    || current == AAudioStreamState.FLUSHED.getValue()) {
+                target = AAudioStreamState.STOPPED;
+            } else {
+                return AAudioResult.ERROR_INVALID_STATE;
+            }
+            if (state.compareAndSet(current, target.getValue())) {
+                return AAudioResult.OK;
+            }
+        }
+    }
+
+    /**
+     * Move to target from one of the allowed states; already being in one of the done states is a no-op.
+     */
+    private AAudioResult transition(AAudioStreamState target, AAudioStreamState[] done, AAudioStreamState... from) {
+        while (true) {
+            int current = state.get();
+            if (contains(done, current)) {
+                return AAudioResult.OK;
+            }
+            if (!contains(from, current)) {
+                return AAudioResult.ERROR_INVALID_STATE;
+            }
+            if (state.compareAndSet(current, target.getValue())) {
+                return AAudioResult.OK;
+            }
+        }
+    }
+
+    private static boolean contains(AAudioStreamState[] states, int value) {
+        for (AAudioStreamState s : states) {
+            if (s.getValue() == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove the stream from the mix. It cannot be used afterwards.
+     */
+    public void close() {
+        state.set(AAudioStreamState.CLOSED.getValue());
+        multiplexer.remove(slot, this);
+    }
+
+    public AAudioStreamState getState() {
+        return AAudioStreamState.fromValue(state.get());
+    }
+
+    /**
+     * Wait until the state is no longer inputState, eg. from PAUSING to PAUSED.
+     *
+     * @return the new state, or the current one after the timeout
+     */
+    public AAudioStreamState waitForStateChange(AAudioStreamState inputState, long timeoutNanoseconds) {
+        long deadline = System.nanoTime() + timeoutNanoseconds;
+        int current = state.get();
+        while (current == inputState.getValue() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(this, WAIT_POLL_NANOS);
+            current = state.get();
+        }
+        return AAudioStreamState.fromValue(current);
+    }
+
+    /**
+     * @param gain linear gain, ramped over one callback when changed
+     */
+    public void setGain(float gain) {
+        this.gain = gain;
+    }
+
+    public float getGain() {
+        return gain;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public int getSampleRate() {
+        return multiplexer.getSampleRate();
+    }
+
+    /**
+     * @return frames rendered by the stream's callback and mixed into the physical stream
+     */
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Render and add this stream to the physical output, following and advancing the state machine.
+     */
+    void mixInto(float[] out, int outChannels, int numFrames) {
+        int current = state.get();
+        float startGain;
+        float endGain;
+        int next;
+        if (current == AAudioStreamState.STARTING.getValue()) {
+            startGain = appliedGain;
+            endGain = gain;
+            next = AAudioStreamState.STARTED.getValue();
+        } else if (current == AAudioStreamState.STARTED.getValue()) {
+            startGain = appliedGain;
+            endGain = gain;
+            next = current;
+        } else if (current == AAudioStreamState.PAUSING.getValue()) {
+            startGain = appliedGain;
+            endGain = 0f;
+            next = AAudioStreamState.PAUSED.getValue();
+        } else if (current == AAudioStreamState.STOPPING.getValue()) {
+            startGain = appliedGain;
+            endGain = 0f;
+            next = AAudioStreamState.STOPPED.getValue();
+        } else {
+            return;
+        }
+
+        AAudioCallbackResult result = callback.onAudioReady(this, scratch, numFrames);
+        if (result == AAudioCallbackResult.STOP) {
+            endGain = 0f;
+            next = AAudioStreamState.STOPPED.getValue();
+        }
+
+        float step = (endGain - startGain) / numFrames;
+        for (int i = 0; i < numFrames; i++) {
+            float g = startGain + step * (i + 1);
+            int in = i * channelCount;
+            int o = i * outChannels;
+            for (int c = 0; c < outChannels; c++) {
+                out[o + c] += scratch[in + c % channelCount] * g;
+            }
+        }
+        appliedGain = endGain;
+        framesWritten.lazySet(framesWritten.get() + numFrames);
+        if (next != current) {
+            // A request from the control side during this block wins over the callback's transition.
+            state.compareAndSet(current, next);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.lemcoder.aaudio.mux;
+
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+/**
+ * Renders the audio of a {@link VirtualStream}, called on the data callback thread of the physical stream.
+ */
+@FunctionalInterface
+public interface VirtualStreamCallback {
+    /**
+     * Write numFrames frames of the stream's channel count into interleaved. The same real-time rules as
+     * for a data callback apply: no blocking, no allocation.
+     *
+     * @return {@link AAudioCallbackResult#STOP} to stop the virtual stream after this block
+     */
+    AAudioCallbackResult onAudioReady(VirtualStream stream, float[] interleaved, int numFrames);
+}
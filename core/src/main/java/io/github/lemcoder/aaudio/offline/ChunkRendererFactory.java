@@ -0,0 +1,21 @@
+package io.github.lemcoder.aaudio.offline;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+
+/**
+ * Creates independent renderers for {@link OfflineRenderer#renderChunked}.
+ */
+@FunctionalInterface
+public interface ChunkRendererFactory {
+    /**
+     * Called on a pool thread for every chunk.
+     * <p>
+     * The renderer must not share mutable state with renderers of other chunks, and its output must only
+     * depend on the frame positions it is asked for, see {@link io.github.lemcoder.aaudio.buffer.AudioBuffer#getFramePosition()}.
+     * State that builds up over time, eg. a reverb tail, can be warmed up with pre-roll frames.
+     *
+     * @param startFrame first frame the renderer is asked for, including the pre-roll
+     * @return a new renderer
+     */
+    AAudioStreamBufferCallback create(long startFrame);
+}
@@ -0,0 +1,141 @@
+package io.github.lemcoder.aaudio.offline;
+
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Renders float audio into heap arrays without a device or native memory, so unlike
+ * {@link OfflineRenderer} it also runs on a plain JVM, eg. in unit tests.
+ * <p>
+ * Renderers are called with framesPerCallback frames at a time and frame positions running from 0.
+ * A renderer returning {@link AAudioCallbackResult#STOP} is silent from then on. Two modes are supported:
+ * <ul>
+ *     <li>serial: one renderer on the calling thread;</li>
+ *     <li>tracks: independent renderers run in parallel, each continuing its own state, and are summed in
+ *     list order.</li>
+ * </ul>
+ * As with {@link OfflineRenderer}, the result never depends on scheduling.
+ */
+public class HeapOfflineRenderer {
+    private final int sampleRate;
+    private final int channelCount;
+    private final int framesPerCallback;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * @param sampleRate        sample rate of the rendered audio
+     * @param channelCount      channels of the rendered audio
+     * @param framesPerCallback frames per renderer call
+     */
+    public HeapOfflineRenderer(int sampleRate, int channelCount, int framesPerCallback) {
+        if (sampleRate <= 0 || channelCount <= 0 || framesPerCallback <= 0) {
+            throw new IllegalArgumentException("Sample rate, channel count and frames per callback must be positive");
+        }
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.framesPerCallback = framesPerCallback;
+    }
+
+    /**
+     * @param pool pool for the tracks mode, the common pool by default
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Render into the whole interleaved target on the calling thread.
+     *
+     * @return frames rendered before the renderer stopped, the rest is silence
+     */
+    public int render(HeapRenderer renderer, float[] target) {
+        int frames = frameCount(target);
+        int stoppedAt = renderRange(renderer, new float[framesPerCallback * channelCount], target, 0, frames);
+        return stoppedAt < 0 ? frames : stoppedAt;
+    }
+
+    /**
+     * Render the tracks in parallel and sum them into the interleaved target.
+     */
+    public void renderTracks(List<HeapRenderer> tracks, float[] target) {
+        int frames = frameCount(target);
+        int window = alignedWindow();
+        HeapRenderer[] renderers = tracks.toArray(new HeapRenderer[0]);
+        float[][] windows = new float[renderers.length][window * channelCount];
+        float[][] scratch = new float[renderers.length][framesPerCallback * channelCount];
+        boolean[] stopped = new boolean[renderers.length];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        for (int start = 0; start < frames; start += window) {
+            int firstFrame = start;
+            int n = Math.min(window, frames - start);
+            tasks.clear();
+            for (int i = 0; i < renderers.length; i++) {
+                int track = i;
+                if (stopped[i]) {
+                    Arrays.fill(windows[i], 0, n * channelCount, 0f);
+                    continue;
+                }
+                tasks.add(pool.submit(() -> {
+                    if (renderRange(renderers[track], scratch[track], windows[track], firstFrame, n) >= 0) {
+                        stopped[track] = true;
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+
+            int offset = start * channelCount;
+            int count = n * channelCount;
+            Arrays.fill(target, offset, offset + count, 0f);
+            for (float[] trackWindow : windows) {
+                for (int s = 0; s < count; s++) {
+                    target[offset + s] += trackWindow[s];
+                }
+            }
+        }
+    }
+
+    /**
+     * Call the renderer for consecutive callbacks, writing frames from the start of out.
+     *
+     * @return -1, or the frames rendered up to and including the callback that returned
+     * {@link AAudioCallbackResult#STOP}; the remainder of the range is then silenced
+     */
+    private int renderRange(HeapRenderer renderer, float[] scratch, float[] out, long firstFrame, int frames) {
+        int done = 0;
+        while (done < frames) {
+            int n = Math.min(framesPerCallback, frames - done);
+            int count = n * channelCount;
+            Arrays.fill(scratch, 0, count, 0f);
+            AAudioCallbackResult result = renderer.onAudioReady(scratch, n, firstFrame + done);
+            System.arraycopy(scratch, 0, out, done * channelCount, count);
+            done += n;
+            if (result == AAudioCallbackResult.STOP) {
+                Arrays.fill(out, done * channelCount, frames * channelCount, 0f);
+                return done;
+            }
+        }
+        return -1;
+    }
+
+    private int frameCount(float[] target) {
+        if (target.length % channelCount != 0) {
+            throw new IllegalArgumentException("Target is not a whole number of frames");
+        }
+        return target.length / channelCount;
+    }
+
+    /**
+     * About one second, as a multiple of the callback size.
+     */
+    private int alignedWindow() {
+        return Math.max(1, (sampleRate + framesPerCallback - 1) / framesPerCallback) * framesPerCallback;
+    }
+}
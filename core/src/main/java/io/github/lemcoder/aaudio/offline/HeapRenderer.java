@@ -0,0 +1,19 @@
+package io.github.lemcoder.aaudio.offline;
+
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+/**
+ * Renders float audio for {@link HeapOfflineRenderer}.
+ */
+@FunctionalInterface
+public interface HeapRenderer {
+    /**
+     * Called for consecutive callbacks on the rendering thread or on a pool thread.
+     *
+     * @param interleaved   receives numFrames interleaved frames, zeroed before the call
+     * @param numFrames     frames to render
+     * @param framePosition frame of the first frame, counted from 0
+     * @return {@link AAudioCallbackResult#CONTINUE} or {@link AAudioCallbackResult#STOP}
+     */
+    AAudioCallbackResult onAudioReady(float[] interleaved, int numFrames, long framePosition);
+}
@@ -0,0 +1,374 @@
+package io.github.lemcoder.aaudio.offline;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.api.AAudioStreamDataCallback;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.buffer.SampleConverter;
+import io.github.lemcoder.aaudio.file.WavWriter;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import io.github.lemcoder.aaudio.model.AAudioFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Renders output audio without a device, as fast as the CPU allows.
+ * <p>
+ * Renderers are the same {@link AAudioStreamBufferCallback}s that feed a real stream, called with
+ * buffers of framesPerCallback frames whose frame position runs from 0. A renderer returning
+ * {@link AAudioCallbackResult#STOP} is silent from then on. Legacy {@link AAudioStreamDataCallback}s
+ * can be adapted with {@link #fromDataCallback(AAudioStreamDataCallback)}.
+ * <p>
+ * Three modes are supported, each into a memory segment or a WAV file:
+ * <ul>
+ *     <li>serial: one renderer on the calling thread;</li>
+ *     <li>chunked: time is cut into chunks rendered in parallel by independent renderers from a
+ *     {@link ChunkRendererFactory}, each placed at its own offset;</li>
+ *     <li>tracks: independent renderers run in parallel, each continuing its own state, and are summed in
+ *     list order.</li>
+ * </ul>
+ * Parallel work runs on a {@link ForkJoinPool}. The result never depends on scheduling: chunks only write
+ * their own range, and tracks are always summed in the same order. File output is rendered window by
+ * window with windows aligned to callbacks and chunks, so it is identical to memory output.
+ * <p>
+ * Target segments must be accessible from the pool threads, ie. not allocated by a confined arena.
+ * Supported formats are PCM_FLOAT and PCM_I16. {@link HeapOfflineRenderer} renders float audio into heap
+ * arrays without native memory.
+ */
+public class OfflineRenderer {
+    private final AAudioFormat format;
+    private final int sampleRate;
+    private final int channelCount;
+    private final int framesPerCallback;
+    private final int bytesPerFrame;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * @param format            format of the rendered audio
+     * @param sampleRate        sample rate of the rendered audio
+     * @param channelCount      channels of the rendered audio
+     * @param framesPerCallback frames per renderer call, like AAudioStreamBuilder_setFramesPerDataCallback()
+     */
+    public OfflineRenderer(AAudioFormat format, int sampleRate, int channelCount, int framesPerCallback) {
+        if (format != AAudioFormat.PCM_FLOAT && format != AAudioFormat.PCM_I16) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        if (sampleRate <= 0 || channelCount <= 0 || framesPerCallback <= 0) {
+            throw new IllegalArgumentException("Sample rate, channel count and frames per callback must be positive");
+        }
+        this.format = format;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.framesPerCallback = framesPerCallback;
+        this.bytesPerFrame = format.getBytesPerSample() * channelCount;
+    }
+
+    /**
+     * @param pool pool for parallel modes, the common pool by default
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public int getBytesPerFrame() {
+        return bytesPerFrame;
+    }
+
+    /**
+     * Adapt a byte array data callback. Missing frames are filled with silence.
+     */
+    public static AAudioStreamBufferCallback fromDataCallback(AAudioStreamDataCallback callback) {
+        return buffer -> {
+            MemorySegment segment = buffer.getSegment();
+            long bytes = segment.byteSize();
+            byte[] data = callback.onOutputReady(buffer.getNumFrames());
+            int n = data == null ? 0 : (int) Math.min(bytes, data.length);
+            if (n > 0) {
+                MemorySegment.copy(data, 0, segment, ValueLayout.JAVA_BYTE, 0, n);
+            }
+            if (n < bytes) {
+                segment.asSlice(n).fill((byte) 0);
+            }
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    // ============================================================
+    // Serial
+    // ============================================================
+
+    /**
+     * Render into the whole target on the calling thread.
+     *
+     * @return frames rendered before the renderer stopped, the rest is silence
+     */
+    public long render(AAudioStreamBufferCallback renderer, MemorySegment target) {
+        long frames = frameCount(target);
+        long stoppedAt = renderRange(renderer, newBuffer(format), target, 0, frames);
+        return stoppedAt < 0 ? frames : stoppedAt;
+    }
+
+    /**
+     * Render frames into a WAV file on the calling thread.
+     *
+     * @return frames rendered before the renderer stopped
+     */
+    public long render(AAudioStreamBufferCallback renderer, File file, long frames) throws IOException {
+        AudioBuffer buffer = newBuffer(format);
+        long window = alignedWindow(framesPerCallback);
+        long rendered = 0;
+        boolean stopped = false;
+        try (Arena arena = Arena.ofConfined(); WavWriter writer = new WavWriter(file, format, sampleRate, channelCount)) {
+            MemorySegment scratch = arena.allocate(window * bytesPerFrame, 64);
+            for (long start = 0; start < frames; start += window) {
+                long n = Math.min(window, frames - start);
+                MemorySegment slice = scratch.asSlice(0, n * bytesPerFrame);
+                if (stopped) {
+                    slice.fill((byte) 0);
+                } else {
+                    long stoppedAt = renderRange(renderer, buffer, slice, start, n);
+                    stopped = stoppedAt >= 0;
+                    rendered += stopped ? stoppedAt : n;
+                }
+                writer.write(slice);
+            }
+        }
+        return rendered;
+    }
+
+    // ============================================================
+    // Chunked
+    // ============================================================
+
+    /**
+     * Render the target in parallel chunks.
+     *
+     * @param chunkFrames   frames per chunk
+     * @param preRollFrames frames rendered and discarded before each chunk but the first
+     */
+    public void renderChunked(ChunkRendererFactory factory, MemorySegment target, int chunkFrames, int preRollFrames) {
+        renderChunks(factory, target, 0, frameCount(target), chunkFrames, preRollFrames);
+    }
+
+    /**
+     * Render frames into a WAV file in parallel chunks.
+     *
+     * @param chunkFrames   frames per chunk
+     * @param preRollFrames frames rendered and discarded before each chunk but the first
+     */
+    public void renderChunked(ChunkRendererFactory factory, File file, long frames, int chunkFrames,
+                              int preRollFrames) throws IOException {
+        long window = (long) chunkFrames * Math.max(1, pool.getParallelism()) * 4;
+        try (Arena arena = Arena.ofShared(); WavWriter writer = new WavWriter(file, format, sampleRate, channelCount)) {
+            MemorySegment scratch = arena.allocate(Math.min(window, frames) * bytesPerFrame, 64);
+            for (long start = 0; start < frames; start += window) {
+                long n = Math.min(window, frames - start);
+                MemorySegment slice = scratch.asSlice(0, n * bytesPerFrame);
+                renderChunks(factory, slice, start, n, chunkFrames, preRollFrames);
+                writer.write(slice);
+            }
+        }
+    }
+
+    private void renderChunks(ChunkRendererFactory factory, MemorySegment target, long firstFrame, long frames,
+                              int chunkFrames, int preRollFrames) {
+        if (chunkFrames <= 0 || preRollFrames < 0) {
+            throw new IllegalArgumentException("Invalid chunk or pre-roll size");
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (long offset = 0; offset < frames; offset += chunkFrames) {
+            long chunkOffset = offset;
+            long n = Math.min(chunkFrames, frames - offset);
+            tasks.add(pool.submit(() -> renderChunk(factory, target.asSlice(chunkOffset * bytesPerFrame, n * bytesPerFrame),
+                    firstFrame + chunkOffset, n, preRollFrames)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private void renderChunk(ChunkRendererFactory factory, MemorySegment target, long startFrame, long frames,
+                             int preRollFrames) {
+        long preRoll = Math.min(preRollFrames, startFrame);
+        AAudioStreamBufferCallback renderer = factory.create(startFrame - preRoll);
+        AudioBuffer buffer = newBuffer(format);
+        if (preRoll > 0) {
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment discard = arena.allocate(preRoll * bytesPerFrame, 64);
+                if (renderRange(renderer, buffer, discard, startFrame - preRoll, preRoll) >= 0) {
+                    target.fill((byte) 0);
+                    return;
+                }
+            }
+        }
+        renderRange(renderer, buffer, target, startFrame, frames);
+    }
+
+    // ============================================================
+    // Tracks
+    // ============================================================
+
+    /**
+     * Render the tracks in parallel and sum them into the target.
+     */
+    public void renderTracks(List<AAudioStreamBufferCallback> tracks, MemorySegment target) {
+        long frames = frameCount(target);
+        try (TrackMixer mixer = new TrackMixer(tracks, alignedWindow(framesPerCallback))) {
+            for (long start = 0; start < frames; start += mixer.window) {
+                long n = Math.min(mixer.window, frames - start);
+                mixer.render(target.asSlice(start * bytesPerFrame, n * bytesPerFrame), start, n);
+            }
+        }
+    }
+
+    /**
+     * Render frames of the tracks in parallel and sum them into a WAV file.
+     */
+    public void renderTracks(List<AAudioStreamBufferCallback> tracks, File file, long frames) throws IOException {
+        try (TrackMixer mixer = new TrackMixer(tracks, alignedWindow(framesPerCallback));
+             Arena arena = Arena.ofConfined();
+             WavWriter writer = new WavWriter(file, format, sampleRate, channelCount)) {
+            MemorySegment scratch = arena.allocate(Math.min(mixer.window, frames) * bytesPerFrame, 64);
+            for (long start = 0; start < frames; start += mixer.window) {
+                long n = Math.min(mixer.window, frames - start);
+                MemorySegment slice = scratch.asSlice(0, n * bytesPerFrame);
+                mixer.render(slice, start, n);
+                writer.write(slice);
+            }
+        }
+    }
+
+    /**
+     * Renders every track as float into its own window, then sums them in list order.
+     */
+    private final class TrackMixer implements AutoCloseable {
+        final long window;
+        private final AAudioStreamBufferCallback[] tracks;
+        private final AudioBuffer[] buffers;
+        private final boolean[] stopped;
+        private final MemorySegment[] windows;
+        private final Arena arena = Arena.ofShared();
+        private final float[] mix;
+        private final float[] samples;
+        private final short[] shorts;
+
+        TrackMixer(List<AAudioStreamBufferCallback> tracks, long window) {
+            this.window = window;
+            this.tracks = tracks.toArray(new AAudioStreamBufferCallback[0]);
+            this.buffers = new AudioBuffer[this.tracks.length];
+            this.stopped = new boolean[this.tracks.length];
+            this.windows = new MemorySegment[this.tracks.length];
+            for (int i = 0; i < this.tracks.length; i++) {
+                buffers[i] = newBuffer(AAudioFormat.PCM_FLOAT);
+                windows[i] = arena.allocate(window * channelCount * Float.BYTES, 64);
+            }
+            this.mix = new float[framesPerCallback * channelCount];
+            this.samples = new float[framesPerCallback * channelCount];
+            this.shorts = new short[framesPerCallback * channelCount];
+        }
+
+        void render(MemorySegment target, long firstFrame, long frames) {
+            long floatBytes = frames * channelCount * Float.BYTES;
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < tracks.length; i++) {
+                int track = i;
+                MemorySegment out = windows[i].asSlice(0, floatBytes);
+                if (stopped[i]) {
+                    out.fill((byte) 0);
+                    continue;
+                }
+                tasks.add(pool.submit(() -> {
+                    if (renderRange(tracks[track], buffers[track], out, firstFrame, frames) >= 0) {
+                        stopped[track] = true;
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+
+            for (long offset = 0; offset < frames; offset += framesPerCallback) {
+                int n = (int) Math.min(framesPerCallback, frames - offset);
+                int count = n * channelCount;
+                long floatOffset = offset * channelCount * Float.BYTES;
+                Arrays.fill(mix, 0, count, 0f);
+                for (MemorySegment trackWindow : windows) {
+                    MemorySegment.copy(trackWindow, ValueLayout.JAVA_FLOAT, floatOffset, samples, 0, count);
+                    for (int s = 0; s < count; s++) {
+                        mix[s] += samples[s];
+                    }
+                }
+                long targetOffset = offset * bytesPerFrame;
+                if (format == AAudioFormat.PCM_FLOAT) {
+                    MemorySegment.copy(mix, 0, target, ValueLayout.JAVA_FLOAT, targetOffset, count);
+                } else {
+                    for (int s = 0; s < count; s++) {
+                        shorts[s] = (short) SampleConverter.toI16(mix[s]);
+                    }
+                    MemorySegment.copy(shorts, 0, target, ValueLayout.JAVA_SHORT, targetOffset, count);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            arena.close();
+        }
+    }
+
+    // ============================================================
+    // Helpers
+    // ============================================================
+
+    /**
+     * Call the renderer for consecutive callbacks covering the target.
+     *
+     * @return -1, or the frames rendered up to and including the callback that returned
+     * {@link AAudioCallbackResult#STOP}; the remainder of the target is then silenced
+     */
+    private long renderRange(AAudioStreamBufferCallback renderer, AudioBuffer buffer, MemorySegment target,
+                             long firstFrame, long frames) {
+        int frameBytes = buffer.getChannelCount() * buffer.getFormat().getBytesPerSample();
+        long done = 0;
+        while (done < frames) {
+            int n = (int) Math.min(framesPerCallback, frames - done);
+            buffer.wrap(target.asSlice(done * frameBytes, (long) n * frameBytes), n, firstFrame + done);
+            AAudioCallbackResult result = renderer.onAudioReady(buffer);
+            done += n;
+            if (result == AAudioCallbackResult.STOP) {
+                if (done < frames) {
+                    target.asSlice(done * frameBytes).fill((byte) 0);
+                }
+                return done;
+            }
+        }
+        return -1;
+    }
+
+    private AudioBuffer newBuffer(AAudioFormat bufferFormat) {
+        return new AudioBuffer(channelCount, bufferFormat, framesPerCallback, AAudioAudioDirection.OUTPUT);
+    }
+
+    private long frameCount(MemorySegment target) {
+        if (target.byteSize() % bytesPerFrame != 0) {
+            throw new IllegalArgumentException("Target is not a whole number of frames");
+        }
+        return target.byteSize() / bytesPerFrame;
+    }
+
+    /**
+     * About one second, as a multiple of the given frame count.
+     */
+    private long alignedWindow(long multiple) {
+        return Math.max(1, (sampleRate + multiple - 1) / multiple) * multiple;
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.lemcoder.aaudio.pool;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of {@link StreamPool} latencies and counters.
+ * <p>
+ * Open is the duration of openStream, start of requestStart, hand-off the time from
+ * {@link StreamPool#acquire} to the first data callback of the new holder. A warm hand-off skips both open
+ * and start and costs at most one callback.
+ */
+public class PoolMetrics {
+    private final Timing open;
+    private final Timing start;
+    private final Timing handoff;
+    private final long warmHandoffs;
+    private final long standbyHandoffs;
+    private final long coldHandoffs;
+    private final long evictions;
+    private final int idleStreams;
+    private final int streamsInUse;
+
+    PoolMetrics(Timing open, Timing start, Timing handoff, long warmHandoffs, long standbyHandoffs,
+                long coldHandoffs, long evictions, int idleStreams, int streamsInUse) {
+        this.open = open;
+        this.start = start;
+        this.handoff = handoff;
+        this.warmHandoffs = warmHandoffs;
+        this.standbyHandoffs = standbyHandoffs;
+        this.coldHandoffs = coldHandoffs;
+        this.evictions = evictions;
+        this.idleStreams = idleStreams;
+        this.streamsInUse = streamsInUse;
+    }
+
+    public Timing getOpen() {
+        return open;
+    }
+
+    public Timing getStart() {
+        return start;
+    }
+
+    public Timing getHandoff() {
+        return handoff;
+    }
+
+    /**
+     * @return hand-offs of a stream that was already running
+     */
+    public long getWarmHandoffs() {
+        return warmHandoffs;
+    }
+
+    /**
+     * @return hand-offs of a stream that was open but had to be started
+     */
+    public long getStandbyHandoffs() {
+        return standbyHandoffs;
+    }
+
+    /**
+     * @return hand-offs that had to open a stream first
+     */
+    public long getColdHandoffs() {
+        return coldHandoffs;
+    }
+
+    /**
+     * @return idle streams closed by the idle timeout
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getIdleStreams() {
+        return idleStreams;
+    }
+
+    public int getStreamsInUse() {
+        return streamsInUse;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{open=" + open
+                + ", start=" + start
+                + ", handoff=" + handoff
+                + ", warm/standby/cold=" + warmHandoffs + '/' + standbyHandoffs + '/' + coldHandoffs
+                + ", evictions=" + evictions
+                + ", idle=" + idleStreams
+                + ", inUse=" + streamsInUse + '}';
+    }
+
+    /**
+     * Count, mean and maximum of one latency.
+     */
+    public static class Timing {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        Timing() {
+        }
+
+        Timing(Timing other) {
+            this.count = other.count;
+            this.totalNanos = other.totalNanos;
+            this.maxNanos = other.maxNanos;
+        }
+
+        void add(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return count > 0 ? totalNanos / 1e6 / count : Double.NaN;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d x %.2f ms (max %.2f ms)", count, getMeanMillis(), getMaxMillis());
+        }
+    }
+}
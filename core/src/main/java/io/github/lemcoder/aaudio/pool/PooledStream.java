@@ -0,0 +1,116 @@
+package io.github.lemcoder.aaudio.pool;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+/**
+ * A stream owned by a {@link StreamPool}, handed out by {@link StreamPool#acquire(AAudioStreamBufferCallback)}.
+ * <p>
+ * The stream's data callback delegates to the callback of the current holder and plays silence, or
+ * discards the input, while the stream is idle. Give the stream back with {@link #release()} instead of stopping or closing it.
+ */
+public class PooledStream {
+    enum State {
+        /**
+         * Open, not handed out, not running.
+         */
+        STANDBY,
+        /**
+         * Open, not handed out, running and playing silence.
+         */
+        WARM,
+        IN_USE,
+        CLOSED
+    }
+
+    private final StreamPool pool;
+    private final AAudioStreamBuilder builder;
+    private AAudioStream stream;
+    private volatile AAudioStreamBufferCallback target;
+
+    // Under the pool lock.
+    State state = State.STANDBY;
+    long idleSinceNanos;
+    boolean handoffCounted;
+
+    // Set by acquire, consumed by the first callback of the holder.
+    private volatile long handoffRequestNanos;
+    private volatile long handoffNanos;
+
+    PooledStream(StreamPool pool, AAudioStreamBuilder builder) throws Throwable {
+        this.pool = pool;
+        this.builder = builder;
+        builder.setDataCallback(this::onAudioReady);
+    }
+
+    void open() throws Throwable {
+        stream = builder.openStream();
+    }
+
+    private AAudioCallbackResult onAudioReady(AudioBuffer buffer) {
+        AAudioStreamBufferCallback callback = target;
+        if (callback == null) {
+            // Input data must not be modified, it is simply discarded.
+            if (buffer.getDirection() == AAudioAudioDirection.OUTPUT) {
+                buffer.clear();
+            }
+            return AAudioCallbackResult.CONTINUE;
+        }
+        long requested = handoffRequestNanos;
+        if (requested != 0) {
+            handoffNanos = System.nanoTime() - requested;
+            handoffRequestNanos = 0;
+        }
+        return callback.onAudioReady(buffer);
+    }
+
+    void handOff(AAudioStreamBufferCallback callback) {
+        handoffNanos = 0;
+        handoffRequestNanos = System.nanoTime();
+        target = callback;
+    }
+
+    void detach() {
+        target = null;
+        handoffRequestNanos = 0;
+    }
+
+    /**
+     * @return time from the hand-off to the first callback of the holder, or 0 if there was none yet
+     */
+    long getHandoffNanos() {
+        return handoffNanos;
+    }
+
+    /**
+     * @return the stream, for queries and settings such as the buffer size
+     */
+    public AAudioStream getStream() {
+        return stream;
+    }
+
+    /**
+     * Give the stream back to the pool, which puts it in standby.
+     */
+    public void release() {
+        pool.release(this);
+    }
+
+    void close() {
+        detach();
+        try {
+            if (stream != null) {
+                stream.close();
+            }
+        } catch (Throwable ignored) {
+        }
+        try {
+            builder.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.lemcoder.aaudio.pool;
+
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+
+/**
+ * Configures the builder of every stream a {@link StreamPool} opens.
+ * <p>
+ * Everything but the data callback, which the pool installs itself.
+ */
+@FunctionalInterface
+public interface StreamConfigurer {
+    void configure(AAudioStreamBuilder builder) throws Throwable;
+}
@@ -0,0 +1,328 @@
+package io.github.lemcoder.aaudio.pool;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilder;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStreamBuilderFactory;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps streams of one configuration open so that playing does not wait for openStream and requestStart.
+ * <p>
+ * {@link #prewarm(int)} opens streams on a background thread. With warm start they are started right
+ * away and play silence, so a hand-off only swaps the data callback and the holder's audio goes out with the
+ * next callback. {@link PooledStream#release()} detaches the holder and puts the stream in standby:
+ * paused and, for output, flushed. A standby stream only needs requestStart on its next hand-off.
+ * <p>
+ * Idle streams, warm or standby, are closed after the idle timeout to bound the power they cost.
+ * {@link #getMetrics()} reports open, start and hand-off latencies.
+ */
+public class StreamPool implements AutoCloseable {
+    private final StreamConfigurer configurer;
+    private final List<PooledStream> streams = new ArrayList<>();
+    private final PoolMetrics.Timing open = new PoolMetrics.Timing();
+    private final PoolMetrics.Timing start = new PoolMetrics.Timing();
+    private final PoolMetrics.Timing handoff = new PoolMetrics.Timing();
+    private long warmHandoffs;
+    private long standbyHandoffs;
+    private long coldHandoffs;
+    private long evictions;
+
+    private volatile boolean warmStart;
+    private volatile long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    private ScheduledExecutorService executor;
+    private boolean closed;
+
+    /**
+     * @param configurer configures every stream of the pool
+     */
+    public StreamPool(StreamConfigurer configurer) {
+        this.configurer = configurer;
+    }
+
+    /**
+     * @param warmStart true to start prewarmed streams right away, playing silence until handed out
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * @param idleTimeoutMillis idle streams are closed after this long
+     */
+    public void setIdleTimeout(long idleTimeoutMillis) {
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    /**
+     * Open streams in the background until there are at least count idle ones.
+     */
+    public synchronized void prewarm(int count) {
+        ensureExecutor();
+        int missing = count - countIdle();
+        for (int i = 0; i < missing; i++) {
+            executor.execute(this::openIdle);
+        }
+    }
+
+    private void ensureExecutor() {
+        if (closed) {
+            throw new IllegalStateException("Stream pool is closed");
+        }
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "StreamPool");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodMillis = Math.max(100, TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 4);
+        executor.scheduleWithFixedDelay(this::evictIdle, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void openIdle() {
+        PooledStream stream;
+        try {
+            stream = openStream();
+        } catch (Throwable t) {
+            return;
+        }
+        boolean started = warmStart && startStream(stream);
+        synchronized (this) {
+            if (closed) {
+                stream.close();
+                return;
+            }
+            stream.state = started ? PooledStream.State.WARM : PooledStream.State.STANDBY;
+            stream.idleSinceNanos = System.nanoTime();
+            streams.add(stream);
+        }
+    }
+
+    private PooledStream openStream() throws Throwable {
+        AAudioStreamBuilder builder = AAudioStreamBuilderFactory.createStreamBuilder();
+        PooledStream stream;
+        try {
+            configurer.configure(builder);
+            stream = new PooledStream(this, builder);
+        } catch (Throwable t) {
+            builder.close();
+            throw t;
+        }
+        try {
+            long begin = System.nanoTime();
+            stream.open();
+            long elapsed = System.nanoTime() - begin;
+            synchronized (this) {
+                open.add(elapsed);
+            }
+            return stream;
+        } catch (Throwable t) {
+            stream.close();
+            throw t;
+        }
+    }
+
+    private boolean startStream(PooledStream stream) {
+        try {
+            long begin = System.nanoTime();
+            AAudioResult result = stream.getStream().requestStart();
+            long elapsed = System.nanoTime() - begin;
+            if (result != AAudioResult.OK) {
+                return false;
+            }
+            synchronized (this) {
+                start.add(elapsed);
+            }
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * Hand out a stream that plays or records through a callback, preferring a warm one, then one in
+     * standby, and opening a new one if there is none. Blocks only in the last case.
+     *
+     * @throws RuntimeException if a new stream could not be opened or started
+     */
+    public PooledStream acquire(AAudioStreamBufferCallback callback) throws Throwable {
+        PooledStream stream;
+        PooledStream.State previous;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Stream pool is closed");
+            }
+            stream = findIdle(PooledStream.State.WARM);
+            if (stream == null) {
+                stream = findIdle(PooledStream.State.STANDBY);
+            }
+            previous = stream != null ? stream.state : null;
+            if (stream != null) {
+                stream.state = PooledStream.State.IN_USE;
+                stream.handoffCounted = false;
+            }
+        }
+
+        if (stream == null) {
+            stream = openStream();
+            synchronized (this) {
+                stream.state = PooledStream.State.IN_USE;
+                stream.handoffCounted = false;
+                streams.add(stream);
+                coldHandoffs++;
+            }
+        } else {
+            synchronized (this) {
+                if (previous == PooledStream.State.WARM) {
+                    warmHandoffs++;
+                } else {
+                    standbyHandoffs++;
+                }
+            }
+        }
+
+        stream.handOff(callback);
+        if (previous != PooledStream.State.WARM && !startStream(stream)) {
+            discard(stream);
+            throw new RuntimeException("Failed to start pooled stream");
+        }
+        return stream;
+    }
+
+    private PooledStream findIdle(PooledStream.State state) {
+        for (PooledStream stream : streams) {
+            if (stream.state == state) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Detach the holder and put the stream in standby. Streams that cannot be paused are closed.
+     */
+    void release(PooledStream stream) {
+        synchronized (this) {
+            if (stream.state != PooledStream.State.IN_USE) {
+                return;
+            }
+            foldHandoff(stream);
+        }
+        stream.detach();
+        boolean standby;
+        try {
+            AAudioStream s = stream.getStream();
+            standby = s.requestPause() == AAudioResult.OK;
+            if (standby && s.getDirection() == AAudioAudioDirection.OUTPUT) {
+                standby = s.requestFlush() == AAudioResult.OK;
+            }
+        } catch (Throwable t) {
+            standby = false;
+        }
+        if (!standby) {
+            discard(stream);
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                stream.close();
+                return;
+            }
+            stream.state = PooledStream.State.STANDBY;
+            stream.idleSinceNanos = System.nanoTime();
+        }
+    }
+
+    private void foldHandoff(PooledStream stream) {
+        long nanos = stream.getHandoffNanos();
+        if (!stream.handoffCounted && nanos > 0) {
+            handoff.add(nanos);
+            stream.handoffCounted = true;
+        }
+    }
+
+    private void discard(PooledStream stream) {
+        synchronized (this) {
+            streams.remove(stream);
+            stream.state = PooledStream.State.CLOSED;
+        }
+        stream.close();
+    }
+
+    private void evictIdle() {
+        List<PooledStream> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (PooledStream stream : streams) {
+                if ((stream.state == PooledStream.State.WARM || stream.state == PooledStream.State.STANDBY)
+                        && now - stream.idleSinceNanos > idleTimeoutNanos) {
+                    stream.state = PooledStream.State.CLOSED;
+                    evicted.add(stream);
+                }
+            }
+            streams.removeAll(evicted);
+            evictions += evicted.size();
+        }
+        for (PooledStream stream : evicted) {
+            stream.close();
+        }
+    }
+
+    private int countIdle() {
+        int count = 0;
+        for (PooledStream stream : streams) {
+            if (stream.state == PooledStream.State.WARM || stream.state == PooledStream.State.STANDBY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized PoolMetrics getMetrics() {
+        int inUse = 0;
+        for (PooledStream stream : streams) {
+            if (stream.state == PooledStream.State.IN_USE) {
+                foldHandoff(stream);
+                inUse++;
+            }
+        }
+        return new PoolMetrics(new PoolMetrics.Timing(open), new PoolMetrics.Timing(start),
+                new PoolMetrics.Timing(handoff), warmHandoffs, standbyHandoffs, coldHandoffs, evictions, countIdle(),
+                inUse);
+    }
+
+    /**
+     * Close every stream, including those handed out, and stop the background thread.
+     */
+    @Override
+    public void close() {
+        List<PooledStream> all;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            all = new ArrayList<>(streams);
+            streams.clear();
+            for (PooledStream stream : all) {
+                stream.state = PooledStream.State.CLOSED;
+            }
+        }
+        for (PooledStream stream : all) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.lemcoder.aaudio.sampler;
+
+/**
+ * Linear attack, decay, sustain, release envelope. Times are in seconds.
+ */
+public class AdsrEnvelope {
+    /**
+     * Plays the sample as is, with a short release to avoid clicks on note-off.
+     */
+    public static final AdsrEnvelope ONE_SHOT = new AdsrEnvelope(0f, 0f, 1f, 0.005f);
+
+    public final float attack;
+    public final float decay;
+    public final float sustain;
+    public final float release;
+
+    /**
+     * @param attack  time from silence to full level
+     * @param decay   time from full level to the sustain level
+     * @param sustain level held until note-off, 0 to 1
+     * @param release time from the current level to silence after note-off
+     */
+    public AdsrEnvelope(float attack, float decay, float sustain, float release) {
+        if (attack < 0 || decay < 0 || release < 0 || sustain < 0 || sustain > 1) {
+            throw new IllegalArgumentException("Invalid envelope");
+        }
+        this.attack = attack;
+        this.decay = decay;
+        this.sustain = sustain;
+        this.release = release;
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.lemcoder.aaudio.sampler;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.buffer.SampleConverter;
+import io.github.lemcoder.aaudio.file.WavFile;
+
+/**
+ * Off-heap store of float samples shared by all voices of one or more {@link Sampler}s.
+ * <p>
+ * The pool is allocated once with a fixed size; samples are appended and never removed.
+ * Samples may be added while samplers are playing, an id becomes playable once {@code add} returns.
+ * Closing the pool frees the memory, no sampler may use it afterwards.
+ */
+public class SamplePool implements AutoCloseable {
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment data;
+    private final long capacity;
+
+    private final long[] offsets;
+    private final int[] frameCounts;
+    private final int[] channelCounts;
+    private final int[] sampleRates;
+    private final AdsrEnvelope[] envelopes;
+    private long used;
+    private volatile int size;
+
+    /**
+     * @param capacitySamples total number of float samples (frames times channels) the pool can hold
+     * @param maxSamples      maximum number of samples
+     */
+    public SamplePool(long capacitySamples, int maxSamples) {
+        this.capacity = capacitySamples;
+        this.data = arena.allocate(capacitySamples * Float.BYTES, 64);
+        this.offsets = new long[maxSamples];
+        this.frameCounts = new int[maxSamples];
+        this.channelCounts = new int[maxSamples];
+        this.sampleRates = new int[maxSamples];
+        this.envelopes = new AdsrEnvelope[maxSamples];
+    }
+
+    /**
+     * Copy interleaved float frames into the pool.
+     *
+     * @param samples      interleaved samples, mono or stereo
+     * @param channelCount 1 or 2
+     * @param sampleRate   sample rate of the data in Hertz
+     * @param envelope     envelope applied to every note of this sample
+     * @return id of the sample
+     * @throws IllegalStateException if the pool is full
+     */
+    public synchronized int add(float[] samples, int channelCount, int sampleRate, AdsrEnvelope envelope) {
+        int frames = samples.length / channelCount;
+        int id = reserve(frames, channelCount, sampleRate, envelope);
+        MemorySegment.copy(samples, 0, data, ValueLayout.JAVA_FLOAT, offsets[id] * Float.BYTES, frames * channelCount);
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Convert a mono or stereo file into the pool.
+     *
+     * @return id of the sample
+     */
+    public synchronized int add(WavFile file, AdsrEnvelope envelope) {
+        if (file.getFrameCount() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Sample too long");
+        }
+        int channelCount = file.getChannelCount();
+        int frames = (int) file.getFrameCount();
+        int id = reserve(frames, channelCount, file.getSampleRate(), envelope);
+        MemorySegment src = file.getData();
+        int bytesPerSample = file.getFormat().getBytesPerSample();
+        long dst = offsets[id] * Float.BYTES;
+        for (long i = 0, samples = (long) frames * channelCount; i < samples; i++) {
+            float sample = SampleConverter.readFloat(src, i * bytesPerSample, file.getFormat());
+            data.set(ValueLayout.JAVA_FLOAT, dst + i * Float.BYTES, sample);
+        }
+        size = id + 1;
+        return id;
+    }
+
+    private int reserve(int frames, int channelCount, int sampleRate, AdsrEnvelope envelope) {
+        if (channelCount != 1 && channelCount != 2) {
+            throw new IllegalArgumentException("Only mono and stereo samples are supported");
+        }
+        int id = size;
+        long length = (long) frames * channelCount;
+        if (id == offsets.length || used + length > capacity) {
+            throw new IllegalStateException("Sample pool is full");
+        }
+        offsets[id] = used;
+        frameCounts[id] = frames;
+        channelCounts[id] = channelCount;
+        sampleRates[id] = sampleRate;
+        envelopes[id] = envelope;
+        used += length;
+        return id;
+    }
+
+    /**
+     * @return number of samples in the pool
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getFrameCount(int id) {
+        return frameCounts[id];
+    }
+
+    public int getChannelCount(int id) {
+        return channelCounts[id];
+    }
+
+    public int getSampleRate(int id) {
+        return sampleRates[id];
+    }
+
+    /**
+     * @return floats still available
+     */
+    public synchronized long remaining() {
+        return capacity - used;
+    }
+
+    MemorySegment getData() {
+        return data;
+    }
+
+    /**
+     * @return index of the first float of the sample
+     */
+    long getOffset(int id) {
+        return offsets[id];
+    }
+
+    AdsrEnvelope getEnvelope(int id) {
+        return envelopes[id];
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
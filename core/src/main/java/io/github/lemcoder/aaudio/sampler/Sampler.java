@@ -0,0 +1,337 @@
+package io.github.lemcoder.aaudio.sampler;
+
+import com.v7878.foreign.MemorySegment;
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polyphonic sample player for the output data callback.
+ * <p>
+ * Notes are triggered from any thread with a stream frame at which they should start, eg.
+ * {@code AAudioStream.getFramesWritten()} plus some lead time. The callback applies every event at its
+ * exact frame inside the buffer; events whose frame has already passed are applied at the start of the
+ * next buffer.
+ * <p>
+ * All voices are allocated up front. When every voice is busy a new note steals one according to
+ * the {@link VoiceStealing} policy; the stolen note fades out over a few milliseconds while the new
+ * note starts, so stealing does not click. Nothing allocates on the callback thread.
+ */
+public class Sampler {
+    private final SamplePool pool;
+    private final Voice[] voices;
+    private final VoiceStealing stealing;
+    private final int sampleRate;
+    private final SamplerEventQueue queue;
+
+    // Events taken from the queue, sorted by frame. Owned by the callback.
+    private final int[] pendingTypes;
+    private final long[] pendingFrames;
+    private final int[] pendingSampleIds;
+    private final int[] pendingNoteIds;
+    private final float[] pendingRates;
+    private final float[] pendingGains;
+    private final float[] pendingPans;
+    private int pendingCount;
+    private long startCounter;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong stolenVoices = new AtomicLong();
+    private final AtomicLong framePosition = new AtomicLong();
+    private volatile int activeVoices;
+
+    /**
+     * @param pool          samples to play
+     * @param maxVoices     number of notes that can sound at the same time
+     * @param sampleRate    sample rate of the output stream
+     * @param stealing      what to do with a note-on when all voices are busy
+     * @param eventCapacity maximum number of events queued between two callbacks
+     */
+    public Sampler(SamplePool pool, int maxVoices, int sampleRate, VoiceStealing stealing, int eventCapacity) {
+        if (maxVoices <= 0) {
+            throw new IllegalArgumentException("Invalid voice count: " + maxVoices);
+        }
+        this.pool = pool;
+        this.sampleRate = sampleRate;
+        this.stealing = stealing;
+        this.voices = new Voice[maxVoices];
+        for (int i = 0; i < maxVoices; i++) {
+            voices[i] = new Voice();
+        }
+        this.queue = new SamplerEventQueue(eventCapacity);
+        this.pendingTypes = new int[eventCapacity];
+        this.pendingFrames = new long[eventCapacity];
+        this.pendingSampleIds = new int[eventCapacity];
+        this.pendingNoteIds = new int[eventCapacity];
+        this.pendingRates = new float[eventCapacity];
+        this.pendingGains = new float[eventCapacity];
+        this.pendingPans = new float[eventCapacity];
+    }
+
+    /**
+     * @param semitones pitch offset
+     * @return playback rate for {@link #noteOn(int, int, float, float, float, long)}
+     */
+    public static float semitonesToRate(float semitones) {
+        return (float) Math.pow(2.0, semitones / 12.0);
+    }
+
+    // ============================================================
+    // Control, any thread
+    // ============================================================
+
+    /**
+     * Start a note.
+     *
+     * @param sampleId id from the {@link SamplePool}
+     * @param noteId   caller chosen id used by {@link #noteOff(int, long)}
+     * @param rate     playback rate, 1 plays at the original pitch
+     * @param gain     linear gain
+     * @param pan      -1 is left, 0 center, 1 right
+     * @param frame    stream frame at which the note starts
+     * @return false if the event queue is full
+     */
+    public boolean noteOn(int sampleId, int noteId, float rate, float gain, float pan, long frame) {
+        if (sampleId < 0 || sampleId >= pool.size()) {
+            throw new IllegalArgumentException("Unknown sample: " + sampleId);
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        return offer(SamplerEventQueue.NOTE_ON, frame, sampleId, noteId, rate, gain, pan);
+    }
+
+    /**
+     * Start a note at the original pitch, full gain and centered.
+     */
+    public boolean noteOn(int sampleId, int noteId, long frame) {
+        return noteOn(sampleId, noteId, 1f, 1f, 0f, frame);
+    }
+
+    /**
+     * Release every voice playing the note.
+     *
+     * @param frame stream frame at which the release starts
+     */
+    public boolean noteOff(int noteId, long frame) {
+        return offer(SamplerEventQueue.NOTE_OFF, frame, 0, noteId, 0f, 0f, 0f);
+    }
+
+    /**
+     * Release every voice.
+     */
+    public boolean allNotesOff(long frame) {
+        return offer(SamplerEventQueue.ALL_NOTES_OFF, frame, 0, 0, 0f, 0f, 0f);
+    }
+
+    private boolean offer(int type, long frame, int sampleId, int noteId, float rate, float gain, float pan) {
+        if (!queue.offer(type, frame, sampleId, noteId, rate, gain, pan)) {
+            droppedEvents.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return stream frame after the last rendered buffer
+     */
+    public long getFramePosition() {
+        return framePosition.get();
+    }
+
+    /**
+     * @return voices sounding at the end of the last callback
+     */
+    public int getActiveVoices() {
+        return activeVoices;
+    }
+
+    /**
+     * @return events dropped because the queue was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return notes that took over a busy voice, or were dropped with {@link VoiceStealing#NONE}
+     */
+    public long getStolenVoices() {
+        return stolenVoices.get();
+    }
+
+    public int getMaxVoices() {
+        return voices.length;
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Add numFrames frames of all voices to an interleaved float buffer.
+     *
+     * @param out          interleaved samples, mixed into
+     * @param outChannels  channel count of out; voices use the first two channels
+     * @param numFrames    number of frames
+     * @param streamFrame  stream frame of the first frame in out
+     */
+    public void render(float[] out, int outChannels, int numFrames, long streamFrame) {
+        drainQueue();
+        MemorySegment data = pool.getData();
+
+        int offset = 0;
+        while (offset < numFrames) {
+            while (pendingCount > 0 && pendingFrames[0] <= streamFrame + offset) {
+                apply(0);
+                removeFirstPending();
+            }
+            int end = numFrames;
+            if (pendingCount > 0) {
+                end = (int) Math.min(numFrames, pendingFrames[0] - streamFrame);
+            }
+            for (Voice voice : voices) {
+                if (voice.isSounding()) {
+                    voice.render(data, out, outChannels, offset, end - offset);
+                }
+            }
+            offset = end;
+        }
+
+        int active = 0;
+        for (Voice voice : voices) {
+            if (voice.stage != Voice.IDLE) {
+                active++;
+            }
+        }
+        activeVoices = active;
+        framePosition.lazySet(streamFrame + numFrames);
+    }
+
+    /**
+     * Replace the contents of a callback buffer with the output of all voices.
+     */
+    public void render(AudioBuffer buffer) {
+        float[] out = buffer.getInterleaved();
+        Arrays.fill(out, 0, buffer.getNumFrames() * buffer.getChannelCount(), 0f);
+        render(out, buffer.getChannelCount(), buffer.getNumFrames(), buffer.getFramePosition());
+        buffer.writeInterleaved();
+    }
+
+    /**
+     * A data callback that plays this sampler.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return buffer -> {
+            render(buffer);
+            return AAudioCallbackResult.CONTINUE;
+        };
+    }
+
+    private void drainQueue() {
+        int slot;
+        while (pendingCount < pendingFrames.length && (slot = queue.peek()) >= 0) {
+            long frame = queue.frame(slot);
+            // Insertion sort: producers on different threads may enqueue out of frame order.
+            // Equal frames keep their queue order.
+            int i = pendingCount;
+            while (i > 0 && pendingFrames[i - 1] > frame) {
+                movePending(i - 1, i);
+                i--;
+            }
+            pendingTypes[i] = queue.type(slot);
+            pendingFrames[i] = frame;
+            pendingSampleIds[i] = queue.sampleId(slot);
+            pendingNoteIds[i] = queue.noteId(slot);
+            pendingRates[i] = queue.rate(slot);
+            pendingGains[i] = queue.gain(slot);
+            pendingPans[i] = queue.pan(slot);
+            pendingCount++;
+            queue.release();
+        }
+    }
+
+    private void removeFirstPending() {
+        for (int i = 1; i < pendingCount; i++) {
+            movePending(i, i - 1);
+        }
+        pendingCount--;
+    }
+
+    private void movePending(int from, int to) {
+        pendingTypes[to] = pendingTypes[from];
+        pendingFrames[to] = pendingFrames[from];
+        pendingSampleIds[to] = pendingSampleIds[from];
+        pendingNoteIds[to] = pendingNoteIds[from];
+        pendingRates[to] = pendingRates[from];
+        pendingGains[to] = pendingGains[from];
+        pendingPans[to] = pendingPans[from];
+    }
+
+    private void apply(int i) {
+        switch (pendingTypes[i]) {
+            case SamplerEventQueue.NOTE_ON -> {
+                Voice voice = allocateVoice();
+                if (voice != null) {
+                    voice.start(pool, pendingSampleIds[i], pendingNoteIds[i], startCounter++,
+                            pendingRates[i], pendingGains[i], pendingPans[i], sampleRate);
+                }
+            }
+            case SamplerEventQueue.NOTE_OFF -> {
+                for (Voice voice : voices) {
+                    if (voice.noteId == pendingNoteIds[i]) {
+                        voice.release();
+                    }
+                }
+            }
+            case SamplerEventQueue.ALL_NOTES_OFF -> {
+                for (Voice voice : voices) {
+                    voice.release();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private Voice allocateVoice() {
+        for (Voice voice : voices) {
+            if (voice.stage == Voice.IDLE) {
+                return voice;
+            }
+        }
+        stolenVoices.incrementAndGet();
+        Voice victim = null;
+        switch (stealing) {
+            case OLDEST -> {
+                for (Voice voice : voices) {
+                    if (victim == null || isOlderCandidate(voice, victim)) {
+                        victim = voice;
+                    }
+                }
+            }
+            case QUIETEST -> {
+                for (Voice voice : voices) {
+                    if (victim == null || voice.loudness() < victim.loudness()) {
+                        victim = voice;
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+        return victim;
+    }
+
+    private static boolean isOlderCandidate(Voice voice, Voice victim) {
+        boolean released = voice.stage == Voice.RELEASE;
+        boolean victimReleased = victim.stage == Voice.RELEASE;
+        if (released != victimReleased) {
+            return released;
+        }
+        return voice.startOrder < victim.startOrder;
+    }
+}
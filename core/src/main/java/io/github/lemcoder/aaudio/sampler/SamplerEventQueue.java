@@ -0,0 +1,123 @@
+package io.github.lemcoder.aaudio.sampler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer single-consumer queue of note events.
+ * <p>
+ * Each slot carries a sequence number: producers claim a slot by advancing the tail with a CAS and
+ * publish it by bumping the slot sequence, so any number of threads can trigger notes without locks.
+ * The consumer is the data callback. Payloads live in preallocated primitive arrays.
+ */
+class SamplerEventQueue {
+    static final int NOTE_ON = 0;
+    static final int NOTE_OFF = 1;
+    static final int ALL_NOTES_OFF = 2;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // owned by the consumer
+
+    private final int[] types;
+    private final long[] frames;
+    private final int[] sampleIds;
+    private final int[] noteIds;
+    private final float[] rates;
+    private final float[] gains;
+    private final float[] pans;
+
+    SamplerEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.types = new int[size];
+        this.frames = new long[size];
+        this.sampleIds = new int[size];
+        this.noteIds = new int[size];
+        this.rates = new float[size];
+        this.gains = new float[size];
+        this.pans = new float[size];
+    }
+
+    /**
+     * Called from any thread.
+     *
+     * @return false if the queue is full and the event was dropped
+     */
+    boolean offer(int type, long frame, int sampleId, int noteId, float rate, float gain, float pan) {
+        long t;
+        while (true) {
+            t = tail.get();
+            long difference = sequences.get((int) t & mask) - t;
+            if (difference == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+        int i = (int) t & mask;
+        types[i] = type;
+        frames[i] = frame;
+        sampleIds[i] = sampleId;
+        noteIds[i] = noteId;
+        rates[i] = rate;
+        gains[i] = gain;
+        pans[i] = pan;
+        sequences.lazySet(i, t + 1);
+        return true;
+    }
+
+    /**
+     * Called from the consumer thread only.
+     *
+     * @return slot of the next published event, or -1 if there is none
+     */
+    int peek() {
+        int i = (int) head & mask;
+        return sequences.get(i) == head + 1 ? i : -1;
+    }
+
+    /**
+     * Free the slot returned by {@link #peek()}.
+     */
+    void release() {
+        int i = (int) head & mask;
+        sequences.lazySet(i, head + mask + 1);
+        head++;
+    }
+
+    int type(int slot) {
+        return types[slot];
+    }
+
+    long frame(int slot) {
+        return frames[slot];
+    }
+
+    int sampleId(int slot) {
+        return sampleIds[slot];
+    }
+
+    int noteId(int slot) {
+        return noteIds[slot];
+    }
+
+    float rate(int slot) {
+        return rates[slot];
+    }
+
+    float gain(int slot) {
+        return gains[slot];
+    }
+
+    float pan(int slot) {
+        return pans[slot];
+    }
+}
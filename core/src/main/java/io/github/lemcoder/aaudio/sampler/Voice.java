@@ -0,0 +1,203 @@
+package io.github.lemcoder.aaudio.sampler;
+
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+
+/**
+ * One playing note. Voices are preallocated by the {@link Sampler} and reused, so note-on does not allocate.
+ */
+class Voice {
+    static final int IDLE = 0;
+    static final int ATTACK = 1;
+    static final int DECAY = 2;
+    static final int SUSTAIN = 3;
+    static final int RELEASE = 4;
+
+    /**
+     * Time over which the note of a stolen voice fades out while the new note starts.
+     */
+    static final float STEAL_FADE_SECONDS = 0.005f;
+
+    int stage = IDLE;
+    int noteId;
+    long startOrder;
+
+    private long base;
+    private int frames;
+    private int channels;
+    private double position;
+    private double increment;
+    private float gainLeft;
+    private float gainRight;
+
+    private float level;
+    private float attackStep;
+    private float decayStep;
+    private float sustain;
+    private float releaseSeconds;
+    private float releaseStep;
+    private int outputRate;
+
+    // The previous note of a stolen voice, faded out in parallel with the new one.
+    private boolean fading;
+    private long fadeBase;
+    private int fadeFrames;
+    private int fadeChannels;
+    private double fadePosition;
+    private double fadeIncrement;
+    private float fadeGainLeft;
+    private float fadeGainRight;
+    private float fadeLevel;
+    private float fadeStep;
+
+    void start(SamplePool pool, int sampleId, int noteId, long startOrder, float rate, float gain, float pan, int outputRate) {
+        // Cutting a stolen note mid-waveform clicks, so it keeps playing and fades out instead.
+        fading = stage != IDLE && level > 0f;
+        if (fading) {
+            fadeBase = base;
+            fadeFrames = frames;
+            fadeChannels = channels;
+            fadePosition = position;
+            fadeIncrement = increment;
+            fadeGainLeft = gainLeft;
+            fadeGainRight = gainRight;
+            fadeLevel = level;
+            fadeStep = level / Math.max(1f, STEAL_FADE_SECONDS * outputRate);
+        }
+
+        this.noteId = noteId;
+        this.startOrder = startOrder;
+        this.base = pool.getOffset(sampleId);
+        this.frames = pool.getFrameCount(sampleId);
+        this.channels = pool.getChannelCount(sampleId);
+        this.position = 0;
+        this.increment = (double) rate * pool.getSampleRate(sampleId) / outputRate;
+        this.outputRate = outputRate;
+
+        // constant power pan, -1 left to 1 right
+        double angle = (Math.max(-1f, Math.min(1f, pan)) + 1) * Math.PI / 4;
+        this.gainLeft = (float) (gain * Math.cos(angle));
+        this.gainRight = (float) (gain * Math.sin(angle));
+
+        AdsrEnvelope envelope = pool.getEnvelope(sampleId);
+        this.sustain = envelope.sustain;
+        this.releaseSeconds = envelope.release;
+        this.attackStep = envelope.attack > 0 ? 1f / (envelope.attack * outputRate) : 1f;
+        this.decayStep = envelope.decay > 0 ? (1f - sustain) / (envelope.decay * outputRate) : 1f;
+        this.level = 0;
+        this.stage = ATTACK;
+    }
+
+    void release() {
+        if (stage == IDLE || stage == RELEASE) {
+            return;
+        }
+        stage = RELEASE;
+        releaseStep = releaseSeconds > 0 ? level / (releaseSeconds * outputRate) : level;
+    }
+
+    /**
+     * @return true while the note or the fade-out of a stolen note is audible
+     */
+    boolean isSounding() {
+        return stage != IDLE || fading;
+    }
+
+    /**
+     * @return current level including the voice gain, used for voice stealing
+     */
+    float loudness() {
+        return level * Math.max(gainLeft, gainRight);
+    }
+
+    /**
+     * Add numFrames frames to an interleaved float buffer.
+     */
+    void render(MemorySegment pool, float[] out, int outChannels, int offset, int numFrames) {
+        for (int i = 0, o = offset * outChannels; i < numFrames; i++, o += outChannels) {
+            if (fading) {
+                renderFade(pool, out, outChannels, o);
+            }
+            if (stage == IDLE) {
+                if (!fading) {
+                    return;
+                }
+                continue;
+            }
+            if ((int) position >= frames - 1) {
+                stage = IDLE;
+                continue;
+            }
+            float envelope = nextLevel();
+            if (stage == IDLE) {
+                continue;
+            }
+            mix(pool, out, o, outChannels, base, channels, position, gainLeft * envelope, gainRight * envelope);
+            position += increment;
+        }
+    }
+
+    private void renderFade(MemorySegment pool, float[] out, int outChannels, int o) {
+        fadeLevel -= fadeStep;
+        if (fadeLevel <= 0f || (int) fadePosition >= fadeFrames - 1) {
+            fading = false;
+            return;
+        }
+        mix(pool, out, o, outChannels, fadeBase, fadeChannels, fadePosition,
+                fadeGainLeft * fadeLevel, fadeGainRight * fadeLevel);
+        fadePosition += fadeIncrement;
+    }
+
+    /**
+     * Add one interpolated frame of a sample to out.
+     */
+    private static void mix(MemorySegment pool, float[] out, int o, int outChannels, long base, int channels,
+                            double position, float gainLeft, float gainRight) {
+        int index = (int) position;
+        float fraction = (float) (position - index);
+        long s = (base + (long) index * channels) * Float.BYTES;
+        float left = pool.get(ValueLayout.JAVA_FLOAT, s);
+        left += (pool.get(ValueLayout.JAVA_FLOAT, s + (long) channels * Float.BYTES) - left) * fraction;
+        float right = left;
+        if (channels == 2) {
+            right = pool.get(ValueLayout.JAVA_FLOAT, s + Float.BYTES);
+            right += (pool.get(ValueLayout.JAVA_FLOAT, s + 3L * Float.BYTES) - right) * fraction;
+        }
+
+        if (outChannels == 1) {
+            out[o] += left * gainLeft + right * gainRight;
+        } else {
+            out[o] += left * gainLeft;
+            out[o + 1] += right * gainRight;
+        }
+    }
+
+    private float nextLevel() {
+        switch (stage) {
+            case ATTACK -> {
+                level += attackStep;
+                if (level >= 1f) {
+                    level = 1f;
+                    stage = DECAY;
+                }
+            }
+            case DECAY -> {
+                level -= decayStep;
+                if (level <= sustain) {
+                    level = sustain;
+                    stage = sustain > 0f ? SUSTAIN : IDLE;
+                }
+            }
+            case RELEASE -> {
+                level -= releaseStep;
+                if (level <= 0f) {
+                    level = 0f;
+                    stage = IDLE;
+                }
+            }
+            default -> {
+            }
+        }
+        return level;
+    }
+}
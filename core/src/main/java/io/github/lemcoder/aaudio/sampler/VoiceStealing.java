@@ -0,0 +1,18 @@
+package io.github.lemcoder.aaudio.sampler;
+
+public enum VoiceStealing {
+    /**
+     * A note-on is dropped when all voices are busy.
+     */
+    NONE,
+
+    /**
+     * The voice that started first is reused. Released voices are preferred over held ones.
+     */
+    OLDEST,
+
+    /**
+     * The voice with the lowest current envelope level times gain is reused.
+     */
+    QUIETEST
+}
@@ -0,0 +1,109 @@
+package io.github.lemcoder.aaudio.scheduling;
+
+/**
+ * Binary min-heap of events in preallocated arrays, owned by the data callback.
+ * Events with equal times keep their insertion order.
+ */
+class EventHeap {
+    private final long[] times;
+    private final long[] sequences;
+    private final int[] eventIds;
+    private final long[] arguments;
+    private int size;
+    private long sequence;
+
+    EventHeap(int capacity) {
+        this.times = new long[capacity];
+        this.sequences = new long[capacity];
+        this.eventIds = new int[capacity];
+        this.arguments = new long[capacity];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size == times.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(long time, int eventId, long argument) {
+        int i = size++;
+        times[i] = time;
+        sequences[i] = sequence++;
+        eventIds[i] = eventId;
+        arguments[i] = argument;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    long peekTime() {
+        return times[0];
+    }
+
+    int peekEventId() {
+        return eventIds[0];
+    }
+
+    long peekArgument() {
+        return arguments[0];
+    }
+
+    void removeFirst() {
+        size--;
+        if (size == 0) {
+            return;
+        }
+        move(size, 0);
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int child = left + 1 < size && less(left + 1, left) ? left + 1 : left;
+            if (!less(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private boolean less(int a, int b) {
+        return times[a] < times[b] || (times[a] == times[b] && sequences[a] < sequences[b]);
+    }
+
+    private void move(int from, int to) {
+        times[to] = times[from];
+        sequences[to] = sequences[from];
+        eventIds[to] = eventIds[from];
+        arguments[to] = arguments[from];
+    }
+
+    private void swap(int a, int b) {
+        long time = times[a];
+        long seq = sequences[a];
+        int id = eventIds[a];
+        long argument = arguments[a];
+        move(b, a);
+        times[b] = time;
+        sequences[b] = seq;
+        eventIds[b] = id;
+        arguments[b] = argument;
+    }
+}
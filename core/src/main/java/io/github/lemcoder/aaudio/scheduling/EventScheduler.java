@@ -0,0 +1,162 @@
+package io.github.lemcoder.aaudio.scheduling;
+
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches events to the data callback at the exact frame they are scheduled for.
+ * <p>
+ * Events can be scheduled from any thread, either at a stream frame or at a {@link System#nanoTime()}
+ * at which they should be heard. They pass through a lock-free inbox and are kept in two time-ordered
+ * heaps on the callback thread. Times in nanoseconds are converted with the {@link TransportClock}
+ * only when they are about to be dispatched, so long-range events follow clock drift.
+ * <p>
+ * The callback size may change from one callback to the next; every buffer simply dispatches the
+ * events that fall inside it. Events that are already due are dispatched at offset 0 and counted as late.
+ * A time in nanoseconds must be at least the output latency ahead to be on time.
+ */
+public class EventScheduler {
+    private final TransportClock clock;
+    private final ScheduledEventQueue inbox;
+    private final EventHeap frameEvents;
+    private final EventHeap nanoEvents;
+
+    private final AtomicBoolean cancelRequested = new AtomicBoolean();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong lateEvents = new AtomicLong();
+
+    /**
+     * @param clock    clock of the stream the events are dispatched on
+     * @param capacity maximum number of pending events of each kind
+     */
+    public EventScheduler(TransportClock clock, int capacity) {
+        this.clock = clock;
+        this.inbox = new ScheduledEventQueue(capacity);
+        this.frameEvents = new EventHeap(capacity);
+        this.nanoEvents = new EventHeap(capacity);
+    }
+
+    public TransportClock getClock() {
+        return clock;
+    }
+
+    // ============================================================
+    // Any thread
+    // ============================================================
+
+    /**
+     * @param frame    stream frame at which the event takes effect
+     * @param eventId  passed to the handler
+     * @param argument passed to the handler
+     * @return false if the inbox is full and the event was dropped
+     */
+    public boolean scheduleAtFrame(long frame, int eventId, long argument) {
+        return offer(false, frame, eventId, argument);
+    }
+
+    /**
+     * @param nanoTime time at which the event should be heard, in the {@link System#nanoTime()} base
+     * @param eventId  passed to the handler
+     * @param argument passed to the handler
+     * @return false if the inbox is full and the event was dropped
+     */
+    public boolean scheduleAtNanos(long nanoTime, int eventId, long argument) {
+        return offer(true, nanoTime, eventId, argument);
+    }
+
+    private boolean offer(boolean nanoTime, long time, int eventId, long argument) {
+        if (!inbox.offer(nanoTime, time, eventId, argument)) {
+            droppedEvents.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drop all pending events, including those scheduled before this call that are still in the inbox.
+     * Takes effect at the next callback.
+     */
+    public void cancelAll() {
+        cancelRequested.set(true);
+    }
+
+    /**
+     * @return events dropped because the inbox was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * @return events dispatched after their time had passed
+     */
+    public long getLateEvents() {
+        return lateEvents.get();
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Dispatch the events inside one buffer. Call once at the start of every data callback.
+     *
+     * @param blockStartFrame frames written (output) or read (input) at the start of the callback
+     * @param numFrames       frames in this callback
+     * @param handler         receives the events in time order
+     */
+    public void process(long blockStartFrame, int numFrames, ScheduledEventHandler handler) {
+        clock.onCallback(blockStartFrame);
+        if (cancelRequested.getAndSet(false)) {
+            while (inbox.peek() >= 0) {
+                inbox.release();
+            }
+            frameEvents.clear();
+            nanoEvents.clear();
+        }
+        drainInbox();
+
+        long blockEndFrame = blockStartFrame + numFrames;
+        while (true) {
+            long frameTime = frameEvents.isEmpty() ? Long.MAX_VALUE : frameEvents.peekTime();
+            long nanoFrame = nanoEvents.isEmpty() ? Long.MAX_VALUE : clock.frameAtNanos(nanoEvents.peekTime());
+            EventHeap next = nanoFrame < frameTime ? nanoEvents : frameEvents;
+            long frame = Math.min(frameTime, nanoFrame);
+            if (frame >= blockEndFrame) {
+                break;
+            }
+            int offset = 0;
+            if (frame < blockStartFrame) {
+                lateEvents.incrementAndGet();
+            } else {
+                offset = (int) (frame - blockStartFrame);
+            }
+            int eventId = next.peekEventId();
+            long argument = next.peekArgument();
+            next.removeFirst();
+            handler.onEvent(eventId, argument, offset);
+        }
+    }
+
+    /**
+     * Dispatch the events inside a callback buffer.
+     */
+    public void process(AudioBuffer buffer, ScheduledEventHandler handler) {
+        process(buffer.getFramePosition(), buffer.getNumFrames(), handler);
+    }
+
+    private void drainInbox() {
+        int slot;
+        while ((slot = inbox.peek()) >= 0) {
+            EventHeap heap = inbox.isNanoTime(slot) ? nanoEvents : frameEvents;
+            if (heap.isFull()) {
+                // Keep the rest in the inbox until events have been dispatched.
+                return;
+            }
+            heap.add(inbox.time(slot), inbox.eventId(slot), inbox.argument(slot));
+            inbox.release();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.lemcoder.aaudio.scheduling;
+
+/**
+ * Receives scheduled events on the data callback thread, in time order.
+ */
+@FunctionalInterface
+public interface ScheduledEventHandler {
+    /**
+     * Called for every event that falls inside the current buffer. Must not block or allocate.
+     *
+     * @param eventId     id passed when scheduling
+     * @param argument    argument passed when scheduling
+     * @param frameOffset frame inside the buffer at which the event takes effect
+     */
+    void onEvent(int eventId, long argument, int frameOffset);
+}
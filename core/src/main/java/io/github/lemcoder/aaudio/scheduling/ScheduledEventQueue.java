@@ -0,0 +1,97 @@
+package io.github.lemcoder.aaudio.scheduling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer single-consumer inbox of scheduled events.
+ * <p>
+ * Producers claim a slot with a CAS on the tail and publish it through the slot sequence number.
+ * The data callback drains the inbox into an {@link EventHeap}.
+ */
+class ScheduledEventQueue {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // owned by the consumer
+
+    private final boolean[] nanoTimes;
+    private final long[] times;
+    private final int[] eventIds;
+    private final long[] arguments;
+
+    ScheduledEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.nanoTimes = new boolean[size];
+        this.times = new long[size];
+        this.eventIds = new int[size];
+        this.arguments = new long[size];
+    }
+
+    /**
+     * Called from any thread.
+     *
+     * @return false if the queue is full and the event was dropped
+     */
+    boolean offer(boolean nanoTime, long time, int eventId, long argument) {
+        long t;
+        while (true) {
+            t = tail.get();
+            long difference = sequences.get((int) t & mask) - t;
+            if (difference == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+        int i = (int) t & mask;
+        nanoTimes[i] = nanoTime;
+        times[i] = time;
+        eventIds[i] = eventId;
+        arguments[i] = argument;
+        sequences.lazySet(i, t + 1);
+        return true;
+    }
+
+    /**
+     * Called from the consumer thread only.
+     *
+     * @return slot of the next published event, or -1 if there is none
+     */
+    int peek() {
+        int i = (int) head & mask;
+        return sequences.get(i) == head + 1 ? i : -1;
+    }
+
+    /**
+     * Free the slot returned by {@link #peek()}.
+     */
+    void release() {
+        int i = (int) head & mask;
+        sequences.lazySet(i, head + mask + 1);
+        head++;
+    }
+
+    boolean isNanoTime(int slot) {
+        return nanoTimes[slot];
+    }
+
+    long time(int slot) {
+        return times[slot];
+    }
+
+    int eventId(int slot) {
+        return eventIds[slot];
+    }
+
+    long argument(int slot) {
+        return arguments[slot];
+    }
+}
@@ -0,0 +1,183 @@
+package io.github.lemcoder.aaudio.scheduling;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maps {@link System#nanoTime()} to stream frame positions and back.
+ * <p>
+ * The mapping is anchored on {@link AAudioStream#getTimestamp(int, MemorySegment, MemorySegment)},
+ * which reports when a frame was actually presented by the device. {@link #update(AAudioStream)} should be
+ * called periodically from a non-callback thread, a few times per second is enough. The measured frame
+ * rate is smoothed across updates, so the mapping follows the drift between the audio and system clocks.
+ * <p>
+ * Until the first valid timestamp arrives, the mapping falls back to the time of the last data callback
+ * (see {@link #onCallback(long)}) minus the buffer size as a latency estimate.
+ */
+public class TransportClock implements AutoCloseable {
+    /**
+     * Returned by {@link #nanosAtFrame(long)} before the stream has run.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final long MIN_RATE_INTERVAL_NANOS = 200_000_000L;
+    private static final double RATE_SMOOTHING = 0.1;
+    private static final double MAX_DRIFT = 0.005;
+
+    private final int sampleRate;
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment timestampFrame = arena.allocate(ValueLayout.JAVA_LONG);
+    private final MemorySegment timestampNanos = arena.allocate(ValueLayout.JAVA_LONG);
+
+    // Written by update()
+    private volatile Anchor anchor;
+    private long rateFrame = -1;
+    private long rateNanos;
+    private double framesPerSecond;
+
+    // Written by the data callback, guarded by an even/odd version counter
+    private final AtomicLong callbackVersion = new AtomicLong();
+    private volatile long callbackFrame = -1;
+    private volatile long callbackNanos;
+    private volatile int fallbackLatencyFrames;
+
+    /**
+     * Immutable linear mapping, replaced on every update.
+     */
+    private static final class Anchor {
+        final long frame;
+        final long nanos;
+        final double framesPerNano;
+
+        Anchor(long frame, long nanos, double framesPerNano) {
+            this.frame = frame;
+            this.nanos = nanos;
+            this.framesPerNano = framesPerNano;
+        }
+    }
+
+    /**
+     * @param sampleRate nominal sample rate of the stream
+     */
+    public TransportClock(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.framesPerSecond = sampleRate;
+    }
+
+    /**
+     * Query the presentation timestamp of the stream and refresh the mapping.
+     * Must not be called from the data callback.
+     *
+     * @return false if the stream did not provide a timestamp, eg. because it is still starting
+     */
+    public synchronized boolean update(AAudioStream stream) throws Throwable {
+        AAudioResult result = stream.getTimestamp(AAudioStream.CLOCK_MONOTONIC, timestampFrame, timestampNanos);
+        if (result != AAudioResult.OK) {
+            fallbackLatencyFrames = stream.getBufferSizeInFrames();
+            return false;
+        }
+        long frame = timestampFrame.get(ValueLayout.JAVA_LONG, 0);
+        long nanos = timestampNanos.get(ValueLayout.JAVA_LONG, 0);
+
+        if (rateFrame < 0 || frame < rateFrame) {
+            rateFrame = frame;
+            rateNanos = nanos;
+        } else if (nanos - rateNanos >= MIN_RATE_INTERVAL_NANOS) {
+            double measured = (frame - rateFrame) * 1e9 / (nanos - rateNanos);
+            measured = Math.max(sampleRate * (1 - MAX_DRIFT), Math.min(sampleRate * (1 + MAX_DRIFT), measured));
+            framesPerSecond += (measured - framesPerSecond) * RATE_SMOOTHING;
+            rateFrame = frame;
+            rateNanos = nanos;
+        }
+        anchor = new Anchor(frame, nanos, framesPerSecond / 1e9);
+        return true;
+    }
+
+    /**
+     * Record the start of a data callback. Called from the data callback, does not allocate.
+     *
+     * @param streamFrame frames written (output) or read (input) at the start of the callback
+     */
+    public void onCallback(long streamFrame) {
+        long version = callbackVersion.get();
+        callbackVersion.set(version + 1);
+        callbackFrame = streamFrame;
+        callbackNanos = System.nanoTime();
+        callbackVersion.set(version + 2);
+    }
+
+    /**
+     * @return true once a presentation timestamp was received
+     */
+    public boolean hasTimestamp() {
+        return anchor != null;
+    }
+
+    /**
+     * @return estimated frame rate of the device measured against the system clock
+     */
+    public synchronized double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param nanoTime time in the {@link System#nanoTime()} base
+     * @return frame that is presented at that time, or -1 if the stream has not run yet
+     */
+    public long frameAtNanos(long nanoTime) {
+        Anchor a = anchor;
+        if (a != null) {
+            return a.frame + Math.round((nanoTime - a.nanos) * a.framesPerNano);
+        }
+        long frame;
+        long nanos;
+        long version;
+        do {
+            version = callbackVersion.get();
+            frame = callbackFrame;
+            nanos = callbackNanos;
+        } while ((version & 1) != 0 || version != callbackVersion.get());
+        if (frame < 0) {
+            return -1;
+        }
+        return frame - fallbackLatencyFrames + (nanoTime - nanos) * sampleRate / 1_000_000_000L;
+    }
+
+    /**
+     * @param frame stream frame
+     * @return time at which the frame is presented, in the {@link System#nanoTime()} base,
+     * or {@link #NO_TIME} if the stream has not run yet
+     */
+    public long nanosAtFrame(long frame) {
+        Anchor a = anchor;
+        if (a != null) {
+            return a.nanos + Math.round((frame - a.frame) / a.framesPerNano);
+        }
+        long version;
+        long callbackFrame;
+        long nanos;
+        do {
+            version = callbackVersion.get();
+            callbackFrame = this.callbackFrame;
+            nanos = callbackNanos;
+        } while ((version & 1) != 0 || version != callbackVersion.get());
+        if (callbackFrame < 0) {
+            return NO_TIME;
+        }
+        return nanos + (frame - callbackFrame + fallbackLatencyFrames) * 1_000_000_000L / sampleRate;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.lemcoder.aaudio.sync;
+
+/**
+ * Produces or consumes the audio of a {@link SyncedStream}, called on its data callback thread from the
+ * group's start frame on.
+ */
+@FunctionalInterface
+public interface AlignedCallback {
+    /**
+     * For output, write numFrames frames into interleaved; for input, read them.
+     *
+     * @param groupFrame frame of the group clock at the first frame, 0 for the first frame after the
+     *                   synchronized start. Frames of all streams with the same group frame are presented
+     *                   or captured at the same time.
+     */
+    void onAudioReady(float[] interleaved, int channelCount, int numFrames, long groupFrame);
+}
@@ -0,0 +1,193 @@
+package io.github.lemcoder.aaudio.sync;
+
+import com.v7878.foreign.Arena;
+import com.v7878.foreign.MemorySegment;
+import com.v7878.foreign.ValueLayout;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.model.AAudioResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts several streams, outputs and inputs, so that their first frames line up at the transducers.
+ * <p>
+ * Usage: {@link #add(AlignedCallback)} a member per stream, set its {@link SyncedStream#asBufferCallback()} on
+ * the builder, open the stream and {@link SyncedStream#attach(AAudioStream)} it. {@link #start(long)} then:
+ * <ol>
+ * <li>starts every stream with its gate closed, playing silence or discarding input;</li>
+ * <li>waits until every stream reports a timestamp, which maps its frame positions to time;</li>
+ * <li>picks a common start time far enough ahead of every stream's current position, and converts it
+ * to a start frame per stream, the frame presented (output) or captured (input) at that time;</li>
+ * <li>publishes the start frames, which the callbacks reach within a burst or two.</li>
+ * </ol>
+ * The remaining error is below half a frame per stream. While running, {@link #getRelativeOffsetsNanos()}
+ * compares the streams' current timestamps on the group clock, eg. to watch drift between devices.
+ */
+public class SyncStartGroup implements AutoCloseable {
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final List<SyncedStream> members = new ArrayList<>();
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment timestampFrame = arena.allocate(ValueLayout.JAVA_LONG);
+    private final MemorySegment timestampNanos = arena.allocate(ValueLayout.JAVA_LONG);
+    private long marginNanos = TimeUnit.MILLISECONDS.toNanos(5);
+    private long startTimeNanos;
+
+    /**
+     * Add a stream to the group.
+     */
+    public synchronized SyncedStream add(AlignedCallback callback) {
+        SyncedStream member = new SyncedStream(callback);
+        members.add(member);
+        return member;
+    }
+
+    /**
+     * @param marginMillis extra time between the latest current position and the common start
+     */
+    public synchronized void setMargin(int marginMillis) {
+        this.marginNanos = TimeUnit.MILLISECONDS.toNanos(marginMillis);
+    }
+
+    /**
+     * Start all streams aligned. Blocks until every stream reports timestamps.
+     * <p>
+     * All or nothing: if any step fails, the streams started so far are stopped again.
+     *
+     * @param timeoutNanos how long to wait for timestamps
+     * @throws RuntimeException if a stream failed to start or reported no timestamp in time
+     */
+    public synchronized void start(long timeoutNanos) throws Throwable {
+        for (SyncedStream member : members) {
+            if (member.getStream() == null) {
+                throw new IllegalStateException("Stream not attached");
+            }
+            member.close();
+        }
+        int started = 0;
+        try {
+            for (SyncedStream member : members) {
+                AAudioResult result = member.getStream().requestStart();
+                if (result != AAudioResult.OK) {
+                    throw new RuntimeException("Failed to start stream: " + result);
+                }
+                started++;
+            }
+            align(timeoutNanos);
+        } catch (Throwable t) {
+            for (int i = 0; i < started; i++) {
+                SyncedStream member = members.get(i);
+                member.close();
+                try {
+                    member.getStream().requestStop();
+                } catch (Throwable suppressed) {
+                    t.addSuppressed(suppressed);
+                }
+            }
+            throw t;
+        }
+    }
+
+    private void align(long timeoutNanos) throws Throwable {
+        // Wait until every stream maps frames to time.
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (SyncedStream member : members) {
+            while (member.getStream().getTimestamp(AAudioStream.CLOCK_MONOTONIC, timestampFrame, timestampNanos)
+                    != AAudioResult.OK) {
+                if (System.nanoTime() > deadline) {
+                    throw new RuntimeException("Timed out waiting for stream timestamps");
+                }
+                LockSupport.parkNanos(this, POLL_NANOS);
+            }
+        }
+
+        // The common start is the latest time any stream could still begin at, plus the margin.
+        int count = members.size();
+        long[] frames = new long[count];
+        long[] nanos = new long[count];
+        int[] rates = new int[count];
+        long start = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            AAudioStream stream = members.get(i).getStream();
+            if (stream.getTimestamp(AAudioStream.CLOCK_MONOTONIC, timestampFrame, timestampNanos) != AAudioResult.OK) {
+                throw new RuntimeException("Stream timestamp lost while starting");
+            }
+            frames[i] = timestampFrame.get(ValueLayout.JAVA_LONG, 0);
+            nanos[i] = timestampNanos.get(ValueLayout.JAVA_LONG, 0);
+            rates[i] = stream.getSampleRate();
+            long position = members.get(i).isInput() ? stream.getFramesRead() : stream.getFramesWritten();
+            // The next callback may already be running, so leave it two bursts.
+            long earliest = position + 2L * stream.getFramesPerBurst();
+            start = Math.max(start, nanos[i] + (long) ((earliest - frames[i]) * 1e9 / rates[i]));
+        }
+        start = Math.max(start, System.nanoTime()) + marginNanos;
+
+        for (int i = 0; i < count; i++) {
+            members.get(i).open(frames[i] + Math.round((start - nanos[i]) * rates[i] / 1e9));
+        }
+        startTimeNanos = start;
+    }
+
+    /**
+     * Stop all streams and close their gates.
+     */
+    public synchronized void stop() throws Throwable {
+        for (SyncedStream member : members) {
+            member.close();
+            if (member.getStream() != null) {
+                member.getStream().requestStop();
+            }
+        }
+    }
+
+    /**
+     * @return the common start time on the monotonic clock, 0 before the first start
+     */
+    public synchronized long getStartTimeNanos() {
+        return startTimeNanos;
+    }
+
+    /**
+     * Compare when each stream presents or captures the same group frame, from its latest timestamp.
+     *
+     * @return per member, in the order added, its offset from the first member in nanoseconds; positive
+     * means later. NaN for members without a timestamp.
+     */
+    public synchronized double[] getRelativeOffsetsNanos() throws Throwable {
+        double[] offsets = new double[members.size()];
+        double reference = Double.NaN;
+        for (int i = 0; i < members.size(); i++) {
+            // Time of the member's start frame, extrapolated from its current timestamp.
+            SyncedStream member = members.get(i);
+            double time = Double.NaN;
+            AAudioStream stream = member.getStream();
+            if (stream != null && member.getStartFrame() != Long.MAX_VALUE
+                    && stream.getTimestamp(AAudioStream.CLOCK_MONOTONIC, timestampFrame, timestampNanos)
+                    == AAudioResult.OK) {
+                time = timestampNanos.get(ValueLayout.JAVA_LONG, 0)
+                        + (member.getStartFrame() - timestampFrame.get(ValueLayout.JAVA_LONG, 0))
+                        * 1e9 / stream.getSampleRate();
+            }
+            if (i == 0) {
+                reference = time;
+            }
+            offsets[i] = time - reference;
+        }
+        return offsets;
+    }
+
+    public synchronized List<SyncedStream> getMembers() {
+        return new ArrayList<>(members);
+    }
+
+    /**
+     * Close the group's timestamp memory. The streams are left to the caller.
+     */
+    @Override
+    public synchronized void close() {
+        arena.close();
+    }
+}
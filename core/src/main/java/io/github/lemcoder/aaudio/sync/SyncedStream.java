@@ -0,0 +1,122 @@
+package io.github.lemcoder.aaudio.sync;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.audioSystem.AAudioStream;
+import io.github.lemcoder.aaudio.buffer.AudioBuffer;
+import io.github.lemcoder.aaudio.model.AAudioAudioDirection;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.Arrays;
+
+/**
+ * One stream of a {@link SyncStartGroup}.
+ * <p>
+ * Until the group publishes a start frame, the data callback plays silence or discards the input. In the
+ * callback that contains the start frame, output is padded with silence up to it and input is trimmed
+ * before it, so the {@link AlignedCallback} sees exactly the frames from the start frame on.
+ */
+public class SyncedStream {
+    private static final long CLOSED = Long.MAX_VALUE;
+
+    private final AlignedCallback callback;
+    private AAudioStream stream;
+    private boolean input;
+    private float[] scratch;
+
+    private volatile long startFrame = CLOSED;
+    private volatile long lateFrames;
+
+    // Data callback thread only.
+    private boolean opened;
+
+    SyncedStream(AlignedCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * A data callback for the stream; set it on the builder before opening the stream.
+     */
+    public AAudioStreamBufferCallback asBufferCallback() {
+        return this::onAudioReady;
+    }
+
+    /**
+     * Attach the stream opened with {@link #asBufferCallback()}.
+     */
+    public void attach(AAudioStream stream) throws Throwable {
+        this.input = stream.getDirection() == AAudioAudioDirection.INPUT;
+        this.scratch = new float[stream.getBufferCapacityInFrames() * stream.getChannelCount()];
+        this.stream = stream;
+    }
+
+    private AAudioCallbackResult onAudioReady(AudioBuffer buffer) {
+        long position = buffer.getFramePosition();
+        int numFrames = buffer.getNumFrames();
+        int channels = buffer.getChannelCount();
+        long start = startFrame;
+        if (start == CLOSED || position + numFrames <= start) {
+            opened = false;
+            if (!input) {
+                buffer.clear();
+            }
+            return AAudioCallbackResult.CONTINUE;
+        }
+
+        if (!opened) {
+            opened = true;
+            lateFrames = Math.max(0, position - start);
+        }
+        int skip = (int) Math.max(0, start - position);
+        if (input) {
+            float[] data = buffer.readInterleaved();
+            if (skip == 0) {
+                callback.onAudioReady(data, channels, numFrames, position - start);
+            } else {
+                System.arraycopy(data, skip * channels, scratch, 0, (numFrames - skip) * channels);
+                callback.onAudioReady(scratch, channels, numFrames - skip, 0);
+            }
+        } else {
+            float[] data = buffer.getInterleaved();
+            if (skip == 0) {
+                callback.onAudioReady(data, channels, numFrames, position - start);
+            } else {
+                callback.onAudioReady(scratch, channels, numFrames - skip, 0);
+                Arrays.fill(data, 0, skip * channels, 0f);
+                System.arraycopy(scratch, 0, data, skip * channels, (numFrames - skip) * channels);
+            }
+            buffer.writeInterleaved();
+        }
+        return AAudioCallbackResult.CONTINUE;
+    }
+
+    void open(long startFrame) {
+        this.startFrame = startFrame;
+    }
+
+    void close() {
+        startFrame = CLOSED;
+        lateFrames = 0;
+    }
+
+    public AAudioStream getStream() {
+        return stream;
+    }
+
+    public boolean isInput() {
+        return input;
+    }
+
+    /**
+     * @return stream frame that lines up with group frame 0, or Long.MAX_VALUE before the group started
+     */
+    public long getStartFrame() {
+        return startFrame;
+    }
+
+    /**
+     * @return frames the start frame had already passed when the gate opened, 0 if the start was on time
+     */
+    public long getLateFrames() {
+        return lateFrames;
+    }
+}
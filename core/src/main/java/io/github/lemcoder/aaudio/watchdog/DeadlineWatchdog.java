@@ -0,0 +1,307 @@
+package io.github.lemcoder.aaudio.watchdog;
+
+import io.github.lemcoder.aaudio.api.AAudioStreamBufferCallback;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches how much of its deadline the data callback uses and sheds load when it runs out of time.
+ * <p>
+ * The deadline of a callback is numFrames / sampleRate, the load is the time spent in the callback
+ * divided by that deadline. When the load stays above the high-water mark for a number of consecutive
+ * callbacks, the watchdog steps down one quality tier of a registered {@link QualityScalable} node.
+ * When it stays below the low-water mark for a longer run, it steps back up one tier. Nodes are registered
+ * from most to least important; the last registered node is degraded first, and restored last.
+ * <p>
+ * The shedding level is the total number of tiers stepped down, 0 is full quality. Every change is
+ * recorded and can be collected on another thread with {@link #pollTransitions(TransitionListener)}.
+ * <p>
+ * The load is measured as wall time, which also covers time the callback thread was preempted or ran
+ * on a throttled core, the cases that actually cause glitches.
+ */
+public class DeadlineWatchdog {
+    private static final int TRANSITION_CAPACITY = 64;
+
+    private final int sampleRate;
+    private final List<QualityScalable> registered = new ArrayList<>();
+    private QualityScalable[] nodes = new QualityScalable[0];
+    private int[] nodeTiers = new int[0];
+    private int[] plan = new int[0];
+
+    private float highWaterMark = 0.8f;
+    private float lowWaterMark = 0.5f;
+    private int overloadCallbacks = 8;
+    private int headroomCallbacks = 200;
+
+    // Callback thread only.
+    private int level;
+    private int overloadRun;
+    private int headroomRun;
+    private float runLoadSum;
+
+    private volatile int publishedLevel;
+    private volatile float lastLoad;
+    private volatile float maxLoad;
+    private final AtomicLong callbacks = new AtomicLong();
+    private final AtomicLong deadlineMisses = new AtomicLong();
+    private final AtomicLong stepDowns = new AtomicLong();
+    private final AtomicLong stepUps = new AtomicLong();
+
+    private final long[] transitionTimes = new long[TRANSITION_CAPACITY];
+    private final int[] transitionFrom = new int[TRANSITION_CAPACITY];
+    private final int[] transitionTo = new int[TRANSITION_CAPACITY];
+    private final float[] transitionLoads = new float[TRANSITION_CAPACITY];
+    private final AtomicLong transitionWrite = new AtomicLong();
+    private final AtomicLong transitionRead = new AtomicLong();
+    private final AtomicLong droppedTransitions = new AtomicLong();
+
+    /**
+     * @param sampleRate sample rate of the stream
+     */
+    public DeadlineWatchdog(int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Not thread safe, call before the stream starts.
+     *
+     * @param highWaterMark     load above which a callback counts as overloaded, eg. 0.8
+     * @param overloadCallbacks consecutive overloaded callbacks before stepping down
+     * @param lowWaterMark      load below which a callback counts as having headroom, eg. 0.5
+     * @param headroomCallbacks consecutive callbacks with headroom before stepping up
+     */
+    public void setThresholds(float highWaterMark, int overloadCallbacks, float lowWaterMark, int headroomCallbacks) {
+        if (lowWaterMark <= 0 || lowWaterMark >= highWaterMark) {
+            throw new IllegalArgumentException("Low-water mark must be positive and below the high-water mark");
+        }
+        if (overloadCallbacks <= 0 || headroomCallbacks <= 0) {
+            throw new IllegalArgumentException("Callback counts must be positive");
+        }
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.overloadCallbacks = overloadCallbacks;
+        this.headroomCallbacks = headroomCallbacks;
+    }
+
+    /**
+     * Add a node. Register the most important node first. Not thread safe, call before the stream starts.
+     * The node is set to full quality.
+     */
+    public void register(QualityScalable node) {
+        if (node.getTierCount() < 1) {
+            throw new IllegalArgumentException("A node needs at least one tier");
+        }
+        registered.add(node);
+        node.setQualityTier(0);
+
+        nodes = registered.toArray(new QualityScalable[0]);
+        nodeTiers = new int[nodes.length];
+        int steps = 0;
+        for (QualityScalable n : nodes) {
+            steps += n.getTierCount() - 1;
+        }
+        plan = new int[steps];
+        int step = 0;
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            for (int t = 1; t < nodes[i].getTierCount(); t++) {
+                plan[step++] = i;
+            }
+        }
+        level = 0;
+        publishedLevel = 0;
+    }
+
+    // ============================================================
+    // Data callback
+    // ============================================================
+
+    /**
+     * Call at the start of the data callback.
+     *
+     * @return start time to pass to {@link #end(long, int)}
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Call at the end of the data callback. Changes quality tiers if needed. Never allocates.
+     *
+     * @param beginNanos value returned by {@link #begin()}
+     * @param numFrames  frames of the callback
+     */
+    public void end(long beginNanos, int numFrames) {
+        long now = System.nanoTime();
+        if (numFrames <= 0) {
+            return;
+        }
+        long budgetNanos = numFrames * 1_000_000_000L / sampleRate;
+        float load = (float) (now - beginNanos) / budgetNanos;
+        lastLoad = load;
+        if (load > maxLoad) {
+            maxLoad = load;
+        }
+        callbacks.lazySet(callbacks.get() + 1);
+        if (load > 1) {
+            deadlineMisses.lazySet(deadlineMisses.get() + 1);
+        }
+
+        if (load > highWaterMark) {
+            if (headroomRun > 0) {
+                headroomRun = 0;
+                runLoadSum = 0;
+            }
+            runLoadSum += load;
+            if (++overloadRun >= overloadCallbacks) {
+                if (level < plan.length) {
+                    stepDown(now, runLoadSum / overloadRun);
+                }
+                overloadRun = 0;
+                runLoadSum = 0;
+            }
+        } else if (load < lowWaterMark) {
+            if (overloadRun > 0) {
+                overloadRun = 0;
+                runLoadSum = 0;
+            }
+            runLoadSum += load;
+            if (++headroomRun >= headroomCallbacks) {
+                if (level > 0) {
+                    stepUp(now, runLoadSum / headroomRun);
+                }
+                headroomRun = 0;
+                runLoadSum = 0;
+            }
+        } else {
+            overloadRun = 0;
+            headroomRun = 0;
+            runLoadSum = 0;
+        }
+    }
+
+    /**
+     * Wrap a data callback so its load is watched.
+     */
+    public AAudioStreamBufferCallback wrap(AAudioStreamBufferCallback callback) {
+        return buffer -> {
+            long begin = begin();
+            AAudioCallbackResult result = callback.onAudioReady(buffer);
+            end(begin, buffer.getNumFrames());
+            return result;
+        };
+    }
+
+    private void stepDown(long now, float load) {
+        int node = plan[level];
+        nodes[node].setQualityTier(++nodeTiers[node]);
+        record(now, level, level + 1, load);
+        level++;
+        publishedLevel = level;
+        stepDowns.lazySet(stepDowns.get() + 1);
+    }
+
+    private void stepUp(long now, float load) {
+        int node = plan[level - 1];
+        nodes[node].setQualityTier(--nodeTiers[node]);
+        record(now, level, level - 1, load);
+        level--;
+        publishedLevel = level;
+        stepUps.lazySet(stepUps.get() + 1);
+    }
+
+    private void record(long now, int from, int to, float load) {
+        long w = transitionWrite.get();
+        if (w - transitionRead.get() >= TRANSITION_CAPACITY) {
+            droppedTransitions.incrementAndGet();
+            return;
+        }
+        int index = (int) (w % TRANSITION_CAPACITY);
+        transitionTimes[index] = now;
+        transitionFrom[index] = from;
+        transitionTo[index] = to;
+        transitionLoads[index] = load;
+        transitionWrite.lazySet(w + 1);
+    }
+
+    // ============================================================
+    // Metrics
+    // ============================================================
+
+    /**
+     * Hand the recorded transitions to the listener, oldest first. Call from a single non real-time thread.
+     *
+     * @return number of transitions delivered
+     */
+    public int pollTransitions(TransitionListener listener) {
+        long r = transitionRead.get();
+        long w = transitionWrite.get();
+        for (long i = r; i < w; i++) {
+            int index = (int) (i % TRANSITION_CAPACITY);
+            listener.onTransition(transitionTimes[index], transitionFrom[index], transitionTo[index],
+                    transitionLoads[index]);
+        }
+        transitionRead.lazySet(w);
+        return (int) (w - r);
+    }
+
+    /**
+     * @return current shedding level, 0 is full quality
+     */
+    public int getLevel() {
+        return publishedLevel;
+    }
+
+    /**
+     * @return the level at which every node runs at its cheapest tier
+     */
+    public int getMaxLevel() {
+        return plan.length;
+    }
+
+    /**
+     * @return load of the last callback, 1.0 is the full deadline
+     */
+    public float getLastLoad() {
+        return lastLoad;
+    }
+
+    public float getMaxLoad() {
+        return maxLoad;
+    }
+
+    public void resetMaxLoad() {
+        maxLoad = 0;
+    }
+
+    public long getCallbacks() {
+        return callbacks.get();
+    }
+
+    /**
+     * @return callbacks that took longer than their deadline
+     */
+    public long getDeadlineMisses() {
+        return deadlineMisses.get();
+    }
+
+    public long getStepDowns() {
+        return stepDowns.get();
+    }
+
+    public long getStepUps() {
+        return stepUps.get();
+    }
+
+    /**
+     * @return transitions that were not recorded because nobody polled them
+     */
+    public long getDroppedTransitions() {
+        return droppedTransitions.get();
+    }
+}
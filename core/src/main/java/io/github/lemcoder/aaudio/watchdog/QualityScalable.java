@@ -0,0 +1,20 @@
+package io.github.lemcoder.aaudio.watchdog;
+
+/**
+ * A processing node that can trade quality for CPU time, eg. full reverb, short reverb, bypass.
+ * <p>
+ * Tier 0 is the full quality, each higher tier is cheaper. {@link DeadlineWatchdog} calls
+ * {@link #setQualityTier(int)} on the callback thread between two callbacks, so the switch needs no
+ * synchronization but must not allocate or block.
+ */
+public interface QualityScalable {
+    /**
+     * @return number of tiers, at least 1
+     */
+    int getTierCount();
+
+    /**
+     * @param tier the tier to use from the next callback on, 0 to {@link #getTierCount()} - 1
+     */
+    void setQualityTier(int tier);
+}
@@ -0,0 +1,14 @@
+package io.github.lemcoder.aaudio.watchdog;
+
+@FunctionalInterface
+public interface TransitionListener {
+    /**
+     * Called from {@link DeadlineWatchdog#pollTransitions(TransitionListener)} for every recorded quality change.
+     *
+     * @param timeNanos System.nanoTime() of the callback that changed the level
+     * @param fromLevel shedding level before the change, 0 is full quality
+     * @param toLevel   shedding level after the change
+     * @param load      average load of the callbacks that triggered the change, 1.0 is the full deadline
+     */
+    void onTransition(long timeNanos, int fromLevel, int toLevel, float load);
+}
@@ -0,0 +1,86 @@
+package io.github.lemcoder.aaudio.jitter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JitterBufferTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int PACKET_FRAMES = 480;
+    private static final int CAPACITY_PACKETS = 64;
+
+    private final JitterBuffer buffer = new JitterBuffer(1, SAMPLE_RATE, PACKET_FRAMES, CAPACITY_PACKETS);
+    private final float[] packet = new float[PACKET_FRAMES];
+    private final float[] out = new float[PACKET_FRAMES];
+
+    @Test
+    public void recoversAfterOutageLongerThanTheRing() {
+        Arrays.fill(packet, 1f);
+        long sequence = 0;
+        for (int i = 0; i < 50; i++, sequence++) {
+            insertAndRead(sequence);
+        }
+        assertTrue("plays before the outage", isAudible(out));
+
+        // No packets for longer than the maximum delay: the buffer rebuffers.
+        for (int i = 0; i < 300; i++) {
+            buffer.read(out, PACKET_FRAMES);
+        }
+        assertEquals(1, buffer.getRebuffers());
+        assertTrue("silent during the outage", isSilent(out));
+
+        // The sender continues far beyond the reorder buffer.
+        sequence += 300;
+        boolean recovered = false;
+        for (int i = 0; i < 20 && !recovered; i++, sequence++) {
+            insertAndRead(sequence);
+            recovered = isAudible(out);
+        }
+        assertTrue("plays again after the outage", recovered);
+        assertEquals(0, buffer.getDroppedPackets());
+    }
+
+    @Test
+    public void farAheadPacketRestartsPlayout() {
+        Arrays.fill(packet, 1f);
+        for (long sequence = 0; sequence < 20; sequence++) {
+            insertAndRead(sequence);
+        }
+
+        // The sender restarted with a sequence well past the reorder buffer.
+        boolean recovered = false;
+        for (long sequence = 10_000; sequence < 10_020 && !recovered; sequence++) {
+            insertAndRead(sequence);
+            recovered = isAudible(out);
+        }
+        assertTrue("plays the restarted stream", recovered);
+        assertEquals(1, buffer.getRebuffers());
+        assertEquals(0, buffer.getDroppedPackets());
+    }
+
+    private void insertAndRead(long sequence) {
+        assertTrue(buffer.insert(sequence, sequence * PACKET_FRAMES, packet, 0));
+        buffer.read(out, PACKET_FRAMES);
+    }
+
+    private static boolean isAudible(float[] samples) {
+        for (float sample : samples) {
+            if (Math.abs(sample - 1f) > 0.01f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSilent(float[] samples) {
+        for (float sample : samples) {
+            if (sample != 0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.lemcoder.aaudio.offline;
+
+import io.github.lemcoder.aaudio.graph.AudioGraph;
+import io.github.lemcoder.aaudio.graph.GraphExecutor;
+import io.github.lemcoder.aaudio.model.AAudioCallbackResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HeapOfflineRendererTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int CHANNELS = 2;
+    private static final int FRAMES_PER_CALLBACK = 192;
+    private static final int FRAMES = SAMPLE_RATE * 3 + 77;
+
+    @Test
+    public void renderingTheSameGraphTwiceGivesIdenticalOutput() {
+        float[] first = renderGraph();
+        float[] second = renderGraph();
+        assertTrue("graph produces audio", peak(first) > 0.1f);
+        assertArrayEquals(first, second, 0f);
+    }
+
+    @Test
+    public void renderingTheSameTracksTwiceGivesIdenticalOutput() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            HeapOfflineRenderer renderer = new HeapOfflineRenderer(SAMPLE_RATE, CHANNELS, FRAMES_PER_CALLBACK);
+            renderer.setPool(pool);
+            float[] first = new float[FRAMES * CHANNELS];
+            float[] second = new float[FRAMES * CHANNELS];
+            renderer.renderTracks(newTracks(), first);
+            renderer.renderTracks(newTracks(), second);
+            assertArrayEquals(first, second, 0f);
+
+            // The same as rendering each track serially and summing in list order.
+            float[] expected = new float[FRAMES * CHANNELS];
+            float[] track = new float[FRAMES * CHANNELS];
+            for (HeapRenderer t : newTracks()) {
+                renderer.render(t, track);
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] += track[i];
+                }
+            }
+            assertArrayEquals(expected, first, 0f);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void stoppedRendererIsSilentAfterwards() {
+        HeapOfflineRenderer renderer = new HeapOfflineRenderer(SAMPLE_RATE, 1, FRAMES_PER_CALLBACK);
+        float[] target = new float[FRAMES_PER_CALLBACK * 10];
+        int rendered = renderer.render((out, numFrames, framePosition) -> {
+            Arrays.fill(out, 0, numFrames, 1f);
+            return framePosition >= FRAMES_PER_CALLBACK * 2L ? AAudioCallbackResult.STOP : AAudioCallbackResult.CONTINUE;
+        }, target);
+        assertEquals(FRAMES_PER_CALLBACK * 3, rendered);
+        assertEquals(1f, target[rendered - 1], 0f);
+        assertEquals(0f, peak(Arrays.copyOfRange(target, rendered, target.length)), 0f);
+    }
+
+    private static float[] renderGraph() {
+        float[] left = new float[FRAMES_PER_CALLBACK];
+        float[] right = new float[FRAMES_PER_CALLBACK];
+        float[] noise = new float[FRAMES_PER_CALLBACK];
+        float[] mix = new float[FRAMES_PER_CALLBACK * CHANNELS];
+        Random random = new Random(42);
+        double[] phases = new double[2];
+
+        AudioGraph graph = new AudioGraph();
+        int a = graph.addNode(n -> sine(left, n, phases, 0, 440));
+        int b = graph.addNode(n -> sine(right, n, phases, 1, 660));
+        int c = graph.addNode(n -> {
+            for (int i = 0; i < n; i++) {
+                noise[i] = (random.nextFloat() - 0.5f) * 0.1f;
+            }
+        });
+        graph.addNode(n -> {
+            for (int i = 0; i < n; i++) {
+                mix[2 * i] = left[i] + noise[i];
+                mix[2 * i + 1] = right[i] - noise[i];
+            }
+        }, a, b, c);
+
+        float[] target = new float[FRAMES * CHANNELS];
+        try (GraphExecutor executor = new GraphExecutor(graph, SAMPLE_RATE, 2)) {
+            executor.start();
+            new HeapOfflineRenderer(SAMPLE_RATE, CHANNELS, FRAMES_PER_CALLBACK).render((out, numFrames, framePosition) -> {
+                executor.execute(numFrames);
+                System.arraycopy(mix, 0, out, 0, numFrames * CHANNELS);
+                return AAudioCallbackResult.CONTINUE;
+            }, target);
+        }
+        return target;
+    }
+
+    private static List<HeapRenderer> newTracks() {
+        List<HeapRenderer> tracks = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            Random random = new Random(t);
+            double frequency = 110 * (t + 1);
+            long stopAt = t == 3 ? SAMPLE_RATE : Long.MAX_VALUE;
+            tracks.add((out, numFrames, framePosition) -> {
+                for (int i = 0; i < numFrames; i++) {
+                    float s = (float) Math.sin(2 * Math.PI * frequency * (framePosition + i) / SAMPLE_RATE) * 0.2f;
+                    out[2 * i] = s + random.nextFloat() * 0.01f;
+                    out[2 * i + 1] = s;
+                }
+                return framePosition + numFrames >= stopAt ? AAudioCallbackResult.STOP : AAudioCallbackResult.CONTINUE;
+            });
+        }
+        return tracks;
+    }
+
+    private static void sine(float[] out, int numFrames, double[] phases, int index, double frequency) {
+        double phase = phases[index];
+        double step = 2 * Math.PI * frequency / SAMPLE_RATE;
+        for (int i = 0; i < numFrames; i++) {
+            out[i] = (float) Math.sin(phase) * 0.5f;
+            phase += step;
+        }
+        phases[index] = phase;
+    }
+
+    private static float peak(float[] data) {
+        float peak = 0f;
+        for (float v : data) {
+            peak = Math.max(peak, Math.abs(v));
+        }
+        return peak;
+    }
+}